@@ -182,6 +182,22 @@ public enum AFF4Lexicon {
 	 * The hash of the stream
 	 */
 	hash(AFF4.AFF4_BASE_URI + "hash"),
+	/**
+	 * The block hashes of an image stream for a single hash type.
+	 */
+	BlockHashes(AFF4.AFF4_BASE_URI + "BlockHashes"),
+	/**
+	 * Hash of the block hashes and map hashes of a map.
+	 */
+	blockMapHash(AFF4.AFF4_BASE_URI + "blockMapHash"),
+	/**
+	 * Hash of the stored contents of an image stream.
+	 */
+	imageStreamHash(AFF4.AFF4_BASE_URI + "imageStreamHash"),
+	/**
+	 * Hash of the bevvy index segments of an image stream.
+	 */
+	imageStreamIndexHash(AFF4.AFF4_BASE_URI + "imageStreamIndexHash"),
 
 	/**
 	 * The SHA1 data type
@@ -0,0 +1,97 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4;
+
+import java.io.IOException;
+
+/**
+ * Signals that a chunk of an image stream did not match its stored block hash, or could not be verified.
+ */
+public class ChunkIntegrityException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The image stream holding the chunk.
+	 */
+	private final String stream;
+	/**
+	 * The index of the chunk in the stream.
+	 */
+	private final long chunkIndex;
+	/**
+	 * The offset of the chunk in the stream.
+	 */
+	private final long offset;
+	/**
+	 * The block hash type checked, or NULL if no block hash was available.
+	 */
+	private final AFF4Lexicon type;
+
+	/**
+	 * Create a new chunk integrity exception.
+	 * 
+	 * @param message The detail message.
+	 * @param stream The image stream holding the chunk.
+	 * @param chunkIndex The index of the chunk in the stream.
+	 * @param offset The offset of the chunk in the stream.
+	 * @param type The block hash type checked, or NULL if no block hash was available.
+	 */
+	public ChunkIntegrityException(String message, String stream, long chunkIndex, long offset, AFF4Lexicon type) {
+		super(String.format("%s: %s chunk %d @ 0x%x", message, stream, chunkIndex, offset));
+		this.stream = stream;
+		this.chunkIndex = chunkIndex;
+		this.offset = offset;
+		this.type = type;
+	}
+
+	/**
+	 * Get the image stream holding the chunk.
+	 * 
+	 * @return The image stream resource.
+	 */
+	public String getStream() {
+		return stream;
+	}
+
+	/**
+	 * Get the index of the chunk in the stream.
+	 * 
+	 * @return The chunk index.
+	 */
+	public long getChunkIndex() {
+		return chunkIndex;
+	}
+
+	/**
+	 * Get the offset of the chunk in the stream.
+	 * 
+	 * @return The offset in bytes.
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Get the block hash type the chunk was checked against.
+	 * 
+	 * @return The hash data type, or NULL if no block hash was available.
+	 */
+	public AFF4Lexicon getType() {
+		return type;
+	}
+}
@@ -0,0 +1,108 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.evimetry.aff4.cache.Chunk;
+
+/**
+ * A read-only view of the contents of an image or stream, lent without copying where possible.
+ * <p>
+ * A view backed by a cached chunk holds a reference to that chunk, so the memory is not recycled by the chunk cache
+ * while the view is open. Views MUST be closed once the caller is done with them, and the data MUST NOT be used after
+ * the view is closed.
+ */
+public final class ChunkView implements AutoCloseable {
+
+	/**
+	 * The contents of the view.
+	 */
+	private final ByteBuffer data;
+	/**
+	 * The chunk backing the view, or NULL if the data is not reference counted.
+	 */
+	private final Chunk chunk;
+	/**
+	 * Closed flag.
+	 */
+	private final AtomicBoolean closed = new AtomicBoolean(false);
+
+	/**
+	 * Create a new view.
+	 * 
+	 * @param data The contents of the view, from the buffer's position to its limit.
+	 * @param chunk The chunk the data belongs to, or NULL if the data is not reference counted. Ownership of the
+	 *            caller's reference passes to the view, and is released when the view is closed.
+	 */
+	public ChunkView(ByteBuffer data, Chunk chunk) {
+		this.data = data.slice().asReadOnlyBuffer();
+		this.chunk = chunk;
+	}
+
+	/**
+	 * Create a new view with no contents.
+	 * 
+	 * @return An empty view.
+	 */
+	public static ChunkView empty() {
+		return new ChunkView(ByteBuffer.allocate(0), null);
+	}
+
+	/**
+	 * Get the contents of the view.
+	 * <p>
+	 * The returned buffer is read-only, little endian, and independent of other callers, with position 0 and the limit
+	 * at the end of the view.
+	 * 
+	 * @return The contents of the view.
+	 * @throws IllegalStateException If the view has been closed.
+	 */
+	public ByteBuffer getData() {
+		if (closed.get()) {
+			throw new IllegalStateException("View has been closed");
+		}
+		return data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Get the length of the view.
+	 * 
+	 * @return The length in bytes.
+	 */
+	public int getLength() {
+		return data.limit();
+	}
+
+	/**
+	 * Determine if the view is still open.
+	 * 
+	 * @return TRUE if the view has not been closed.
+	 */
+	public boolean isOpen() {
+		return !closed.get();
+	}
+
+	@Override
+	public void close() {
+		if (!closed.getAndSet(true) && chunk != null) {
+			chunk.release();
+		}
+	}
+}
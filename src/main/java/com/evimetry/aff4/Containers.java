@@ -29,7 +29,9 @@ import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.evimetry.aff4.cache.ChunkCache;
 import com.evimetry.aff4.container.AFF4ZipContainer;
+import com.evimetry.aff4.container.ContainerOptions;
 import com.evimetry.aff4.resolver.LightResolver;
 
 /**
@@ -51,8 +53,47 @@ public class Containers {
 	 * @throws UnsupportedOperationException If the container type is not supported.
 	 */
 	public static IAFF4Container open(File file) throws IOException, UnsupportedOperationException {
-		IAFF4Container container = openContainer(file);
-		container.setResolver(createResolver(file));
+		return open(file, ChunkCache.getDefault());
+	}
+
+	/**
+	 * Open the given file as a AFF4 Container, using the given chunk cache for all image streams in the container.
+	 * <p>
+	 * The container will be supplied a default Lightweight Resolver to assist in looking for elements outside of it's
+	 * own container. Containers opened by this resolver will share the same chunk cache.
+	 * 
+	 * @param file The file to open
+	 * @param cache The chunk cache to use. This cache may be shared between multiple containers, and bounds the
+	 *        memory used for decompressed chunks and bevvy indexes across all of them.
+	 * @return A AFF4 container instance
+	 * @throws IOException If the file does not exist or is not readable.
+	 * @throws UnsupportedOperationException If the container type is not supported.
+	 */
+	public static IAFF4Container open(File file, ChunkCache cache) throws IOException, UnsupportedOperationException {
+		return open(file, createOptions(cache));
+	}
+
+	/**
+	 * Open the given file as a AFF4 Container, applying the given options.
+	 * <p>
+	 * The container will be supplied a default Lightweight Resolver to assist in looking for elements outside of it's
+	 * own container. Containers opened by this resolver will have the same options applied.
+	 * 
+	 * @param file The file to open
+	 * @param options The options to apply to the container.
+	 * @return A AFF4 container instance
+	 * @throws IOException If the file does not exist or is not readable.
+	 * @throws UnsupportedOperationException If the container type is not supported.
+	 */
+	public static IAFF4Container open(File file, ContainerOptions options)
+			throws IOException, UnsupportedOperationException {
+		IAFF4Container container = openContainer(file, options);
+		try {
+			container.setResolver(createResolver(file, options));
+		} catch (IOException | RuntimeException e) {
+			closeQuietly(container, e);
+			throw e;
+		}
 		return container;
 	}
 
@@ -68,19 +109,83 @@ public class Containers {
 	 */
 	public static IAFF4Container open(File file, IAFF4Resolver resolver)
 			throws IOException, UnsupportedOperationException {
-		IAFF4Container container = openContainer(file);
+		return open(file, resolver, ChunkCache.getDefault());
+	}
+
+	/**
+	 * Open the given file as a AFF4 Container, using the given chunk cache for all image streams in the container.
+	 * 
+	 * @param file The file to open
+	 * @param resolver Set the container to utilise the given AFF4 object resolver to look for objects outside of it's
+	 *        own container.
+	 * @param cache The chunk cache to use. This cache may be shared between multiple containers, and bounds the
+	 *        memory used for decompressed chunks and bevvy indexes across all of them.
+	 * @return A AFF4 container instance
+	 * @throws IOException If the file does not exist or is not readable.
+	 * @throws UnsupportedOperationException If the container type is not supported.
+	 */
+	public static IAFF4Container open(File file, IAFF4Resolver resolver, ChunkCache cache)
+			throws IOException, UnsupportedOperationException {
+		return open(file, resolver, createOptions(cache));
+	}
+
+	/**
+	 * Open the given file as a AFF4 Container, applying the given options.
+	 * 
+	 * @param file The file to open
+	 * @param resolver Set the container to utilise the given AFF4 object resolver to look for objects outside of it's
+	 *        own container.
+	 * @param options The options to apply to the container.
+	 * @return A AFF4 container instance
+	 * @throws IOException If the file does not exist or is not readable.
+	 * @throws UnsupportedOperationException If the container type is not supported.
+	 */
+	public static IAFF4Container open(File file, IAFF4Resolver resolver, ContainerOptions options)
+			throws IOException, UnsupportedOperationException {
+		IAFF4Container container = openContainer(file, options);
 		container.setResolver(resolver);
 		return container;
 	}
 
+	/**
+	 * Create the options to open containers with the given chunk cache.
+	 * 
+	 * @param cache The chunk cache to use.
+	 * @return The options.
+	 */
+	private static ContainerOptions createOptions(ChunkCache cache) {
+		if (cache == null) {
+			throw new IllegalArgumentException("Chunk cache may not be null");
+		}
+		return new ContainerOptions().setChunkCache(cache);
+	}
+
+	/**
+	 * Close the given container after failing to open it.
+	 * 
+	 * @param container The container to close.
+	 * @param cause The failure to add any close failure to.
+	 */
+	private static void closeQuietly(IAFF4Container container, Throwable cause) {
+		try {
+			container.close();
+		} catch (Exception e) {
+			cause.addSuppressed(e);
+		}
+	}
+
 	/**
 	 * Open the given file as an AFF4 Container
 	 * 
 	 * @param file The file to open
+	 * @param options The options to apply.
 	 * @return A AFF4 container instance
 	 * @throws IOException If the file does not exist or is not readable.
 	 */
-	private static IAFF4Container openContainer(File file) throws IOException {
+	private static IAFF4Container openContainer(File file, ContainerOptions options) throws IOException {
+		if (options == null) {
+			throw new IllegalArgumentException("Container options may not be null");
+		}
 		if (!file.exists() || !file.canRead()) {
 			throw new IOException("File does not exist or is not readable");
 		}
@@ -93,7 +198,7 @@ public class Containers {
 			throw new IOException("File does not appear to be an AFF4 File.");
 		}
 		try {
-			return new AFF4ZipContainer(resourceID, file, new ZipFile(file));
+			return new AFF4ZipContainer(resourceID, file, new ZipFile(file), options);
 		} catch (Throwable e) {
 			if (e instanceof IOException) {
 				throw e;
@@ -164,6 +269,34 @@ public class Containers {
 	 * @throws IOException If the file does not exist or is not readable.
 	 */
 	public static IAFF4Resolver createResolver(File path) throws IOException {
+		return createResolver(path, ChunkCache.getDefault());
+	}
+
+	/**
+	 * Create a new lightweight AFF4 Resolver to allow correct access of striped images.
+	 * <p>
+	 * If the path points to a file, then the path used will be the parent folder of the file.
+	 * 
+	 * @param path The path to utilise.
+	 * @param cache The chunk cache to use for containers opened by the resolver.
+	 * @return A lightweight resolver.
+	 * @throws IOException If the file does not exist or is not readable.
+	 */
+	public static IAFF4Resolver createResolver(File path, ChunkCache cache) throws IOException {
+		return createResolver(path, createOptions(cache));
+	}
+
+	/**
+	 * Create a new lightweight AFF4 Resolver to allow correct access of striped images.
+	 * <p>
+	 * If the path points to a file, then the path used will be the parent folder of the file.
+	 * 
+	 * @param path The path to utilise.
+	 * @param options The options to apply to containers opened by the resolver.
+	 * @return A lightweight resolver.
+	 * @throws IOException If the file does not exist or is not readable.
+	 */
+	public static IAFF4Resolver createResolver(File path, ContainerOptions options) throws IOException {
 		if (!path.isDirectory()) {
 			path = path.getAbsoluteFile().getParentFile();
 			if (path == null) {
@@ -173,7 +306,7 @@ public class Containers {
 		if (!path.exists() || !path.canRead()) {
 			throw new IOException("Path does not exist or is not readable");
 		}
-		return new LightResolver(AFF4.generateID(), path);
+		return new LightResolver(AFF4.generateID(), path, options);
 	}
 
 	/**
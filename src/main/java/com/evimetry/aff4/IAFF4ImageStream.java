@@ -17,7 +17,9 @@
 package com.evimetry.aff4;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * aff4:ImageStream Object
@@ -49,4 +51,52 @@ public interface IAFF4ImageStream extends IAFF4Resource {
 	 * @return The channel instance for this image.
 	 */
 	public SeekableByteChannel getChannel();
+
+	/**
+	 * Read a sequence of bytes from this stream into the given buffer, starting at the given position.
+	 * <p>
+	 * This method does not use or modify the position of the channel returned by {@link #getChannel()}, and may be
+	 * invoked concurrently by multiple threads.
+	 * 
+	 * @param position The position in the stream at which the read is to begin.
+	 * @param dst The buffer into which bytes are to be transferred.
+	 * @return The number of bytes read, possibly zero, or -1 if the given position is at or beyond the end of the
+	 *         stream.
+	 * @throws IOException If reading the stream fails.
+	 */
+	public int read(long position, ByteBuffer dst) throws IOException;
+
+	/**
+	 * Transfer bytes from this stream to the given channel, starting at the given position, similar to
+	 * {@link java.nio.channels.FileChannel#transferTo(long, long, WritableByteChannel)}.
+	 * <p>
+	 * Implementations transfer content stored uncompressed in the container directly from the container file where
+	 * possible. The default implementation reads through an intermediate buffer. This method does not use or modify the
+	 * position of the channel returned by {@link #getChannel()}.
+	 * 
+	 * @param position The position in the stream at which the transfer is to begin.
+	 * @param count The maximum number of bytes to be transferred.
+	 * @param target The channel to write to.
+	 * @return The number of bytes transferred, possibly zero.
+	 * @throws IOException If reading the stream or writing the target fails.
+	 */
+	public default long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+		return PositionalCopy.transferTo(position, count, target, this::read);
+	}
+
+	/**
+	 * Get a read-only view of the stream contents starting at the given position, without copying where possible.
+	 * <p>
+	 * The view may be shorter than the maximum length, such as when limited to a single chunk of the underlying
+	 * stream. The returned view MUST be closed once the caller is done with it. The default implementation copies the
+	 * contents into a new buffer.
+	 * 
+	 * @param position The position in the stream.
+	 * @param maxLength The maximum length of the view.
+	 * @return The view, possibly empty, or NULL if the given position is at or beyond the end of the stream.
+	 * @throws IOException If reading the stream fails.
+	 */
+	public default ChunkView view(long position, int maxLength) throws IOException {
+		return PositionalCopy.view(position, maxLength, size(), this::read);
+	}
 }
@@ -17,7 +17,10 @@
 package com.evimetry.aff4;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Iterator;
 
 /**
  * aff4:Map Object
@@ -42,4 +45,84 @@ public interface IAFF4Map extends IAFF4Resource {
 	 * @throws IOException If creation of the channel fails.
 	 */
 	public SeekableByteChannel getChannel() throws IOException;
+
+	/**
+	 * Read a sequence of bytes from the image into the given buffer, starting at the given position.
+	 * <p>
+	 * This method does not use or modify the position of the channel returned by {@link #getChannel()}, and may be
+	 * invoked concurrently by multiple threads.
+	 * 
+	 * @param position The position in the image at which the read is to begin.
+	 * @param dst The buffer into which bytes are to be transferred.
+	 * @return The number of bytes read, possibly zero, or -1 if the given position is at or beyond the end of the
+	 *         image.
+	 * @throws IOException If reading the image fails.
+	 */
+	public int read(long position, ByteBuffer dst) throws IOException;
+
+	/**
+	 * Get the extents of the image, starting with the extent containing the given position.
+	 * <p>
+	 * Extents are returned in order, are contiguous, and cover the image up to its size. Extents that are not
+	 * {@link MapExtent.Kind#DATA} may be synthesised by the caller rather than read.
+	 * 
+	 * @param position The position in the image.
+	 * @return An iterator of the extents, which is empty if the given position is at or beyond the end of the image.
+	 * @throws IOException If materialising the map fails.
+	 */
+	public Iterator<MapExtent> getExtents(long position) throws IOException;
+
+	/**
+	 * Find the first position at or after the given position which is backed by stored data, similar to SEEK_DATA.
+	 * 
+	 * @param position The position in the image.
+	 * @return The position of the next data, or -1 if there is no data at or after the given position.
+	 * @throws IOException If materialising the map fails.
+	 */
+	public long seekData(long position) throws IOException;
+
+	/**
+	 * Find the first position at or after the given position which is not backed by stored data, similar to
+	 * SEEK_HOLE.
+	 * 
+	 * @param position The position in the image.
+	 * @return The position of the next hole, the size of the image if there is no hole after the given position, or -1
+	 *         if the given position is at or beyond the end of the image.
+	 * @throws IOException If materialising the map fails.
+	 */
+	public long seekHole(long position) throws IOException;
+
+	/**
+	 * Transfer bytes from this image to the given channel, starting at the given position, similar to
+	 * {@link java.nio.channels.FileChannel#transferTo(long, long, WritableByteChannel)}.
+	 * <p>
+	 * Implementations transfer content stored uncompressed in the container directly from the container file where
+	 * possible. The default implementation reads through an intermediate buffer. This method does not use or modify the
+	 * position of the channel returned by {@link #getChannel()}.
+	 * 
+	 * @param position The position in the image at which the transfer is to begin.
+	 * @param count The maximum number of bytes to be transferred.
+	 * @param target The channel to write to.
+	 * @return The number of bytes transferred, possibly zero.
+	 * @throws IOException If reading the image or writing the target fails.
+	 */
+	public default long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+		return PositionalCopy.transferTo(position, count, target, this::read);
+	}
+
+	/**
+	 * Get a read-only view of the image contents starting at the given position, without copying where possible.
+	 * <p>
+	 * The view may be shorter than the maximum length, such as when limited to a single chunk of the underlying
+	 * stream. The returned view MUST be closed once the caller is done with it. The default implementation copies the
+	 * contents into a new buffer.
+	 * 
+	 * @param position The position in the image.
+	 * @param maxLength The maximum length of the view.
+	 * @return The view, possibly empty, or NULL if the given position is at or beyond the end of the image.
+	 * @throws IOException If reading the image fails.
+	 */
+	public default ChunkView view(long position, int maxLength) throws IOException {
+		return PositionalCopy.view(position, maxLength, size(), this::read);
+	}
 }
@@ -0,0 +1,170 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4;
+
+/**
+ * A contiguous region of an aff4:Map, and the kind of content it holds.
+ */
+public class MapExtent {
+
+	/**
+	 * The kind of content held by a map region.
+	 */
+	public enum Kind {
+		/**
+		 * Region backed by stored data, such as an aff4:ImageStream.
+		 */
+		DATA,
+		/**
+		 * Region consisting entirely of zero bytes, such as aff4:Zero or chunks of an image stream known to hold only zeros.
+		 */
+		ZERO,
+		/**
+		 * Region consisting entirely of a single non-zero byte, from aff4:SymbolicStreamXX.
+		 */
+		SYMBOLIC,
+		/**
+		 * Region of aff4:UnknownData, or a stream that could not be located.
+		 */
+		UNKNOWN,
+		/**
+		 * Region of aff4:UnreadableData.
+		 */
+		UNREADABLE;
+
+		/**
+		 * Determine if regions of this kind may be synthesised without reading the underlying stream.
+		 * 
+		 * @return TRUE if the content of the region is a fixed pattern.
+		 */
+		public boolean isConstant() {
+			return this != DATA;
+		}
+	}
+
+	/**
+	 * The offset into the map.
+	 */
+	private final long offset;
+	/**
+	 * The length of the region.
+	 */
+	private final long length;
+	/**
+	 * The kind of the region.
+	 */
+	private final Kind kind;
+	/**
+	 * TRUE if the region is not described by the map, and is filled from the map gap stream.
+	 */
+	private final boolean gap;
+	/**
+	 * The stream backing the region.
+	 */
+	private final IAFF4ImageStream stream;
+	/**
+	 * The offset into the stream of the start of the region.
+	 */
+	private final long streamOffset;
+
+	/**
+	 * Create a new map extent.
+	 * 
+	 * @param offset The offset into the map.
+	 * @param length The length of the region.
+	 * @param kind The kind of the region.
+	 * @param gap TRUE if the region is not described by the map, and is filled from the map gap stream.
+	 * @param stream The stream backing the region.
+	 * @param streamOffset The offset into the stream of the start of the region.
+	 */
+	public MapExtent(long offset, long length, Kind kind, boolean gap, IAFF4ImageStream stream, long streamOffset) {
+		this.offset = offset;
+		this.length = length;
+		this.kind = kind;
+		this.gap = gap;
+		this.stream = stream;
+		this.streamOffset = streamOffset;
+	}
+
+	/**
+	 * Get the offset into the map.
+	 * 
+	 * @return The offset into the map.
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Get the length of the region.
+	 * 
+	 * @return The length of the region.
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * Get the offset of the end of the region.
+	 * 
+	 * @return The offset immediately following the region.
+	 */
+	public long getEnd() {
+		return offset + length;
+	}
+
+	/**
+	 * Get the kind of content held by the region.
+	 * 
+	 * @return The kind of the region.
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * Determine if the region is not described by the map, and is filled from the map gap stream.
+	 * 
+	 * @return TRUE if the region is a map gap.
+	 */
+	public boolean isGap() {
+		return gap;
+	}
+
+	/**
+	 * Get the stream backing the region.
+	 * 
+	 * @return The stream.
+	 */
+	public IAFF4ImageStream getStream() {
+		return stream;
+	}
+
+	/**
+	 * Get the offset into the backing stream of the start of the region.
+	 * 
+	 * @return The offset into the stream.
+	 */
+	public long getStreamOffset() {
+		return streamOffset;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("MapExtent [offset=0x%x, length=0x%x, kind=%s, gap=%s]", offset, length, kind, gap);
+	}
+}
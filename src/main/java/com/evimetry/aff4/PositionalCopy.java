@@ -0,0 +1,122 @@
+/*
+  This file is part of AFF4 Java.
+  
+  Copyright (c) 2017-2019 Schatz Forensic Pty Ltd
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+	
+	    http://www.apache.org/licenses/LICENSE-2.0
+	
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.evimetry.aff4;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The default copying implementations of {@link IAFF4ImageStream} and {@link IAFF4Map}, built on a positional read.
+ */
+final class PositionalCopy {
+
+	/**
+	 * The size of the buffer used to copy contents that cannot be transferred directly.
+	 */
+	private final static int TRANSFER_BUFFER_SIZE = 1024 * 1024;
+	/**
+	 * The largest view created by copying contents.
+	 */
+	private final static int VIEW_BUFFER_SIZE = 64 * 1024;
+
+	private PositionalCopy() {
+	}
+
+	/**
+	 * Transfer the given region to the target channel by reading through an intermediate buffer.
+	 * 
+	 * @param position The position to start the transfer at.
+	 * @param count The maximum number of bytes to transfer.
+	 * @param target The channel to write to.
+	 * @param reader The positional read function.
+	 * @return The number of bytes transferred.
+	 * @throws IOException If reading or writing the target failed.
+	 */
+	static long transferTo(long position, long count, WritableByteChannel target, PositionalReader reader)
+			throws IOException {
+		if (position < 0 || count < 0) {
+			throw new IllegalArgumentException();
+		}
+		ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(count, TRANSFER_BUFFER_SIZE));
+		long transferred = 0;
+		while (transferred < count) {
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), count - transferred));
+			int read = reader.read(position + transferred, buffer);
+			if (read <= 0) {
+				break;
+			}
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				if (target.write(buffer) <= 0) {
+					break;
+				}
+			}
+			transferred += read - buffer.remaining();
+			if (buffer.hasRemaining()) {
+				// The target will not accept more bytes.
+				break;
+			}
+		}
+		return transferred;
+	}
+
+	/**
+	 * Create a view by copying the contents into a new buffer.
+	 * 
+	 * @param position The position to read.
+	 * @param maxLength The maximum length of the view.
+	 * @param size The size of the object being read.
+	 * @param reader The positional read function.
+	 * @return The view, or NULL if the position is at or beyond the end of the object.
+	 * @throws IOException If reading failed.
+	 */
+	static ChunkView view(long position, int maxLength, long size, PositionalReader reader) throws IOException {
+		if (position < 0 || maxLength < 0) {
+			throw new IllegalArgumentException();
+		}
+		if (position >= size) {
+			return null;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(Math.min(maxLength, VIEW_BUFFER_SIZE), size - position));
+		while (buffer.hasRemaining()) {
+			if (reader.read(position + buffer.position(), buffer) <= 0) {
+				break;
+			}
+		}
+		buffer.flip();
+		return new ChunkView(buffer, null);
+	}
+
+	/**
+	 * A positional read function.
+	 */
+	@FunctionalInterface
+	interface PositionalReader {
+
+		/**
+		 * Read from the given position into the buffer.
+		 * 
+		 * @param position The position to read from.
+		 * @param dst The buffer to read into.
+		 * @return The number of bytes read, or -1 at the end.
+		 * @throws IOException If reading failed.
+		 */
+		int read(long position, ByteBuffer dst) throws IOException;
+	}
+}
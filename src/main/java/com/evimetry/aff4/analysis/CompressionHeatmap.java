@@ -0,0 +1,311 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.analysis;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import com.evimetry.aff4.IAFF4ImageStream;
+import com.evimetry.aff4.IAFF4Map;
+import com.evimetry.aff4.MapExtent;
+import com.evimetry.aff4.imagestream.AFF4ImageStream;
+
+/**
+ * Estimates the compressibility of an image from the bevvy indexes of its image streams alone, without reading or
+ * decompressing any chunk data.
+ * <p>
+ * The image is divided into fixed size buckets. The map is walked via {@link IAFF4Map#getExtents(long)}, and each
+ * region backed by an aff4:ImageStream is attributed the stored length of each chunk it covers, in proportion to the
+ * coverage. Extents split from such a region as chunks known to hold only zeros are accounted from their stored
+ * length in the same way, so the outcome does not depend on which chunks have been read before. As only the index segments are read, even very large images are analysed quickly, making this suitable
+ * for triage of zero, constant and high entropy (such as encrypted) ranges.
+ */
+public class CompressionHeatmap {
+
+	/**
+	 * The default bucket size.
+	 */
+	public final static long DEFAULT_BUCKET_SIZE = 64l * 1024l * 1024l;
+
+	/**
+	 * The size of each bucket.
+	 */
+	private final long bucketSize;
+
+	/**
+	 * Create a new heatmap analysis with the default bucket size.
+	 */
+	public CompressionHeatmap() {
+		this(DEFAULT_BUCKET_SIZE);
+	}
+
+	/**
+	 * Create a new heatmap analysis.
+	 * 
+	 * @param bucketSize The size of each bucket in bytes.
+	 * @throws IllegalArgumentException If the bucket size is not positive.
+	 */
+	public CompressionHeatmap(long bucketSize) {
+		if (bucketSize <= 0) {
+			throw new IllegalArgumentException("Bucket size must be larger than 0");
+		}
+		this.bucketSize = bucketSize;
+	}
+
+	/**
+	 * Get the size of each bucket.
+	 * 
+	 * @return The size in bytes.
+	 */
+	public long getBucketSize() {
+		return bucketSize;
+	}
+
+	/**
+	 * Analyse the given image.
+	 * 
+	 * @param map The map of the image.
+	 * @return The buckets covering the image, in order.
+	 * @throws IOException If materialising the map or reading a bevvy index failed.
+	 */
+	public List<HeatmapBucket> analyse(IAFF4Map map) throws IOException {
+		Accumulator accumulator = new Accumulator(map.size());
+		Iterator<MapExtent> extents = map.getExtents(0);
+		while (extents.hasNext()) {
+			MapExtent extent = extents.next();
+			IAFF4ImageStream stream = extent.getStream();
+			if (stream instanceof AFF4ImageStream) {
+				accumulator.addStream((AFF4ImageStream) stream, extent.getStreamOffset(), extent.getOffset(),
+						extent.getLength());
+			} else if (extent.getKind() != MapExtent.Kind.DATA) {
+				accumulator.addHole(extent.getOffset(), extent.getLength());
+			} else {
+				accumulator.addUnknown(extent.getOffset(), extent.getLength());
+			}
+		}
+		return accumulator.getBuckets();
+	}
+
+	/**
+	 * Analyse the given image stream.
+	 * 
+	 * @param stream The image stream.
+	 * @return The buckets covering the stream, in order.
+	 * @throws IOException If reading a bevvy index failed.
+	 */
+	public List<HeatmapBucket> analyse(AFF4ImageStream stream) throws IOException {
+		Accumulator accumulator = new Accumulator(stream.size());
+		accumulator.addStream(stream, 0, 0, stream.size());
+		return accumulator.getBuckets();
+	}
+
+	/**
+	 * Combine the given buckets into a single bucket covering them all.
+	 * 
+	 * @param buckets The buckets, in order.
+	 * @return The combined bucket.
+	 */
+	public static HeatmapBucket total(List<HeatmapBucket> buckets) {
+		long offset = buckets.isEmpty() ? 0 : buckets.get(0).getOffset();
+		long length = 0, hole = 0, data = 0, stored = 0, sparse = 0, incompressible = 0, unknown = 0;
+		for (HeatmapBucket bucket : buckets) {
+			length += bucket.getLength();
+			hole += bucket.getHoleBytes();
+			data += bucket.getDataBytes();
+			stored += bucket.getStoredBytes();
+			sparse += bucket.getSparseBytes();
+			incompressible += bucket.getIncompressibleBytes();
+			unknown += bucket.getUnknownBytes();
+		}
+		return new HeatmapBucket(offset, length, hole, data, stored, sparse, incompressible, unknown);
+	}
+
+	/**
+	 * Accumulates the statistics of each bucket of a single analysis.
+	 */
+	private class Accumulator {
+
+		/**
+		 * The size of the image.
+		 */
+		private final long size;
+		/**
+		 * The statistics of each bucket.
+		 */
+		private final long[] hole, data, stored, sparse, incompressible, unknown;
+		/**
+		 * The stream of the most recently loaded chunk lengths.
+		 */
+		private AFF4ImageStream lastStream;
+		/**
+		 * The bevvy of the most recently loaded chunk lengths.
+		 */
+		private long lastBevvy = -1;
+		/**
+		 * The most recently loaded chunk lengths, for a whole bevvy.
+		 */
+		private int[] lastLengths;
+
+		/**
+		 * Create a new accumulator.
+		 * 
+		 * @param size The size of the image.
+		 */
+		Accumulator(long size) {
+			this.size = size;
+			int count = Math.toIntExact((size + bucketSize - 1) / bucketSize);
+			hole = new long[count];
+			data = new long[count];
+			stored = new long[count];
+			sparse = new long[count];
+			incompressible = new long[count];
+			unknown = new long[count];
+		}
+
+		/**
+		 * Account a region that is not stored.
+		 * 
+		 * @param offset The offset of the region in the image.
+		 * @param length The length of the region.
+		 */
+		void addHole(long offset, long length) {
+			add(hole, offset, length);
+		}
+
+		/**
+		 * Account a region stored with unknown compressibility.
+		 * 
+		 * @param offset The offset of the region in the image.
+		 * @param length The length of the region.
+		 */
+		void addUnknown(long offset, long length) {
+			add(unknown, offset, length);
+		}
+
+		/**
+		 * Account a region stored in an image stream.
+		 * 
+		 * @param stream The image stream.
+		 * @param streamOffset The offset of the region in the stream.
+		 * @param offset The offset of the region in the image.
+		 * @param length The length of the region.
+		 * @throws IOException If reading a bevvy index failed.
+		 */
+		void addStream(AFF4ImageStream stream, long streamOffset, long offset, long length) throws IOException {
+			int chunkSize = stream.getChunkSize();
+			long position = streamOffset;
+			long end = streamOffset + length;
+			while (position < end) {
+				long chunkIndex = position / chunkSize;
+				long chunkEnd = Math.min(end, (chunkIndex + 1) * chunkSize);
+				addChunk(offset + (position - streamOffset), chunkEnd - position, getChunkLength(stream, chunkIndex),
+						chunkSize);
+				position = chunkEnd;
+			}
+		}
+
+		/**
+		 * Account part of a chunk.
+		 * 
+		 * @param offset The offset of the part in the image.
+		 * @param length The length of the part.
+		 * @param storedLength The stored length of the chunk, or -1 if unknown.
+		 * @param chunkSize The chunk size.
+		 */
+		private void addChunk(long offset, long length, int storedLength, int chunkSize) {
+			if (storedLength < 0) {
+				addUnknown(offset, length);
+				return;
+			}
+			long[] category = null;
+			if (storedLength <= chunkSize * HeatmapBucket.SPARSE_DENSITY) {
+				category = sparse;
+			} else if (storedLength >= chunkSize * HeatmapBucket.INCOMPRESSIBLE_DENSITY) {
+				category = incompressible;
+			}
+			long end = Math.min(size, offset + length);
+			while (offset < end) {
+				int bucket = (int) (offset / bucketSize);
+				long piece = Math.min(end, (bucket + 1) * bucketSize) - offset;
+				data[bucket] += piece;
+				stored[bucket] += storedLength * piece / chunkSize;
+				if (category != null) {
+					category[bucket] += piece;
+				}
+				offset += piece;
+			}
+		}
+
+		/**
+		 * Get the stored length of the given chunk, loading the lengths of its bevvy if required.
+		 * 
+		 * @param stream The image stream.
+		 * @param chunkIndex The index of the chunk.
+		 * @return The stored length, or -1 if unknown.
+		 * @throws IOException If reading the bevvy index failed.
+		 */
+		private int getChunkLength(AFF4ImageStream stream, long chunkIndex) throws IOException {
+			int chunksInSegment = stream.getChunksInSegment();
+			long chunks = (stream.size() + stream.getChunkSize() - 1) / stream.getChunkSize();
+			if (chunkIndex >= chunks) {
+				return -1;
+			}
+			long bevvy = chunkIndex / chunksInSegment;
+			if (stream != lastStream || bevvy != lastBevvy) {
+				long first = bevvy * chunksInSegment;
+				lastLengths = stream.getChunkLengths(first, (int) Math.min(chunksInSegment, chunks - first));
+				lastStream = stream;
+				lastBevvy = bevvy;
+			}
+			return lastLengths[(int) (chunkIndex % chunksInSegment)];
+		}
+
+		/**
+		 * Account a region in the given statistic.
+		 * 
+		 * @param statistic The statistic of each bucket.
+		 * @param offset The offset of the region in the image.
+		 * @param length The length of the region.
+		 */
+		private void add(long[] statistic, long offset, long length) {
+			long end = Math.min(size, offset + length);
+			while (offset < end) {
+				int bucket = (int) (offset / bucketSize);
+				long piece = Math.min(end, (bucket + 1) * bucketSize) - offset;
+				statistic[bucket] += piece;
+				offset += piece;
+			}
+		}
+
+		/**
+		 * Get the accumulated buckets.
+		 * 
+		 * @return The buckets, in order.
+		 */
+		List<HeatmapBucket> getBuckets() {
+			List<HeatmapBucket> buckets = new ArrayList<>(hole.length);
+			for (int i = 0; i < hole.length; i++) {
+				long offset = i * bucketSize;
+				buckets.add(new HeatmapBucket(offset, Math.min(bucketSize, size - offset), hole[i], data[i], stored[i],
+						sparse[i], incompressible[i], unknown[i]));
+			}
+			return buckets;
+		}
+	}
+}
@@ -0,0 +1,234 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.analysis;
+
+/**
+ * The estimated compressibility of a fixed size region of an image, as produced by {@link CompressionHeatmap}.
+ * <p>
+ * Bytes of the region are accounted as exactly one of: holes (not stored, such as aff4:Zero or aff4:UnknownData),
+ * data (stored in an aff4:ImageStream with a known stored length), or unknown (stored, but in a form whose
+ * compressibility cannot be determined from the stream index).
+ */
+public class HeatmapBucket {
+
+	/**
+	 * The density at or below which content is considered sparse, such as zero or constant data.
+	 */
+	public final static double SPARSE_DENSITY = 1.0 / 8.0;
+	/**
+	 * The density at or above which content is considered incompressible, such as encrypted or already compressed
+	 * data.
+	 */
+	public final static double INCOMPRESSIBLE_DENSITY = 15.0 / 16.0;
+
+	/**
+	 * The overall classification of a region.
+	 */
+	public enum Kind {
+		/**
+		 * The region holds no stored data.
+		 */
+		EMPTY,
+		/**
+		 * The region is mostly holes, or data that compresses extremely well.
+		 */
+		SPARSE,
+		/**
+		 * The region holds data that compresses.
+		 */
+		COMPRESSIBLE,
+		/**
+		 * The region holds high entropy data that does not compress.
+		 */
+		INCOMPRESSIBLE,
+		/**
+		 * The compressibility of the region cannot be estimated.
+		 */
+		UNKNOWN
+	}
+
+	/**
+	 * The offset of the region in the image.
+	 */
+	private final long offset;
+	/**
+	 * The length of the region.
+	 */
+	private final long length;
+	/**
+	 * The number of bytes not stored.
+	 */
+	private final long holeBytes;
+	/**
+	 * The number of bytes of data with a known stored length.
+	 */
+	private final long dataBytes;
+	/**
+	 * The estimated number of bytes used to store the data.
+	 */
+	private final long storedBytes;
+	/**
+	 * The number of bytes of data in sparse chunks.
+	 */
+	private final long sparseBytes;
+	/**
+	 * The number of bytes of data in incompressible chunks.
+	 */
+	private final long incompressibleBytes;
+	/**
+	 * The number of bytes stored in a form with unknown compressibility.
+	 */
+	private final long unknownBytes;
+
+	/**
+	 * Create a new bucket.
+	 * 
+	 * @param offset The offset of the region in the image.
+	 * @param length The length of the region.
+	 * @param holeBytes The number of bytes not stored.
+	 * @param dataBytes The number of bytes of data with a known stored length.
+	 * @param storedBytes The estimated number of bytes used to store the data.
+	 * @param sparseBytes The number of bytes of data in sparse chunks.
+	 * @param incompressibleBytes The number of bytes of data in incompressible chunks.
+	 * @param unknownBytes The number of bytes stored in a form with unknown compressibility.
+	 */
+	public HeatmapBucket(long offset, long length, long holeBytes, long dataBytes, long storedBytes, long sparseBytes,
+			long incompressibleBytes, long unknownBytes) {
+		this.offset = offset;
+		this.length = length;
+		this.holeBytes = holeBytes;
+		this.dataBytes = dataBytes;
+		this.storedBytes = storedBytes;
+		this.sparseBytes = sparseBytes;
+		this.incompressibleBytes = incompressibleBytes;
+		this.unknownBytes = unknownBytes;
+	}
+
+	/**
+	 * Get the offset of the region in the image.
+	 * 
+	 * @return The offset in bytes.
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Get the length of the region.
+	 * 
+	 * @return The length in bytes.
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * Get the number of bytes of the region that are not stored, such as aff4:Zero or aff4:UnknownData regions.
+	 * 
+	 * @return The number of bytes.
+	 */
+	public long getHoleBytes() {
+		return holeBytes;
+	}
+
+	/**
+	 * Get the number of bytes of the region stored in an aff4:ImageStream with a known stored length.
+	 * 
+	 * @return The number of bytes.
+	 */
+	public long getDataBytes() {
+		return dataBytes;
+	}
+
+	/**
+	 * Get the estimated number of bytes used to store the data of the region.
+	 * 
+	 * @return The number of bytes.
+	 */
+	public long getStoredBytes() {
+		return storedBytes;
+	}
+
+	/**
+	 * Get the number of bytes of data in chunks whose stored length is at most {@link #SPARSE_DENSITY} of the chunk
+	 * size.
+	 * 
+	 * @return The number of bytes.
+	 */
+	public long getSparseBytes() {
+		return sparseBytes;
+	}
+
+	/**
+	 * Get the number of bytes of data in chunks whose stored length is at least {@link #INCOMPRESSIBLE_DENSITY} of the
+	 * chunk size, including chunks stored uncompressed.
+	 * 
+	 * @return The number of bytes.
+	 */
+	public long getIncompressibleBytes() {
+		return incompressibleBytes;
+	}
+
+	/**
+	 * Get the number of bytes of the region stored in a form whose compressibility cannot be determined.
+	 * 
+	 * @return The number of bytes.
+	 */
+	public long getUnknownBytes() {
+		return unknownBytes;
+	}
+
+	/**
+	 * Get the stored size of the region relative to its length, where holes count as taking no space. Bytes of unknown
+	 * compressibility are excluded.
+	 * 
+	 * @return The density, from 0 for a region with no stored data to about 1 for incompressible data, or NaN if the
+	 *         density cannot be estimated.
+	 */
+	public double getDensity() {
+		long known = length - unknownBytes;
+		return known > 0 ? (double) storedBytes / known : Double.NaN;
+	}
+
+	/**
+	 * Get the overall classification of the region.
+	 * 
+	 * @return The kind of the region.
+	 */
+	public Kind getKind() {
+		if (dataBytes == 0 && unknownBytes == 0) {
+			return Kind.EMPTY;
+		}
+		double density = getDensity();
+		if (Double.isNaN(density)) {
+			return Kind.UNKNOWN;
+		}
+		if (density <= SPARSE_DENSITY) {
+			return Kind.SPARSE;
+		}
+		if (density >= INCOMPRESSIBLE_DENSITY) {
+			return Kind.INCOMPRESSIBLE;
+		}
+		return Kind.COMPRESSIBLE;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("HeatmapBucket [offset=0x%x, length=0x%x, kind=%s, density=%.3f]", offset, length,
+				getKind(), getDensity());
+	}
+}
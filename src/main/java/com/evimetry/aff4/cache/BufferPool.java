@@ -0,0 +1,179 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of reusable direct buffers, shared by the chunk loader and compression codecs.
+ * <p>
+ * Buffers are pooled in power of two size classes from 4KiB to 4MiB. Requests outside of this range are allocated
+ * directly, and are not retained on release. The pool only retains released buffers up to its maximum size, with any
+ * further buffers left to the garbage collector. Buffers that are never released are also simply left to the garbage
+ * collector, so failing to release a buffer is safe, just slower.
+ * <p>
+ * This implementation is thread safe.
+ */
+public class BufferPool {
+
+	/**
+	 * The default amount of buffer space (in bytes) the pool will retain.
+	 */
+	public final static long DEFAULT_POOL_SIZE = 16l * 1024l * 1024l;
+	/**
+	 * The size class (as a power of two) of the smallest pooled buffer.
+	 */
+	private final static int MIN_SIZE_CLASS = 12;
+	/**
+	 * The size class (as a power of two) of the largest pooled buffer.
+	 */
+	private final static int MAX_SIZE_CLASS = 22;
+
+	/**
+	 * The default JVM wide instance.
+	 */
+	private final static BufferPool DEFAULT = new BufferPool(DEFAULT_POOL_SIZE);
+
+	/**
+	 * The maximum amount of buffer space (in bytes) to retain.
+	 */
+	private final long maximumSize;
+	/**
+	 * The amount of buffer space (in bytes) currently retained.
+	 */
+	private final AtomicLong size = new AtomicLong();
+	/**
+	 * The retained buffers for each size class.
+	 */
+	private final List<Queue<ByteBuffer>> pools;
+
+	/**
+	 * Create a new buffer pool.
+	 * 
+	 * @param maximumSize The maximum amount of buffer space (in bytes) to retain.
+	 * @throws IllegalArgumentException If the maximum size is negative.
+	 */
+	public BufferPool(long maximumSize) {
+		if (maximumSize < 0) {
+			throw new IllegalArgumentException("Pool size must not be negative");
+		}
+		this.maximumSize = maximumSize;
+		this.pools = new ArrayList<>(MAX_SIZE_CLASS + 1);
+		for (int i = 0; i <= MAX_SIZE_CLASS; i++) {
+			pools.add(i < MIN_SIZE_CLASS ? null : new ConcurrentLinkedQueue<>());
+		}
+	}
+
+	/**
+	 * Get the default JVM wide buffer pool.
+	 * 
+	 * @return The default buffer pool.
+	 */
+	public static BufferPool getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Acquire a little endian direct buffer with at least the given capacity.
+	 * <p>
+	 * The buffer will have a position of 0 and a limit of the requested length. The contents of the buffer are
+	 * undefined.
+	 * 
+	 * @param length The required length.
+	 * @return A direct buffer.
+	 * @throws IllegalArgumentException If the length is negative.
+	 */
+	public ByteBuffer acquire(int length) {
+		if (length < 0) {
+			throw new IllegalArgumentException("Length must not be negative");
+		}
+		int sizeClass = getSizeClass(length);
+		if (sizeClass > MAX_SIZE_CLASS) {
+			return ByteBuffer.allocateDirect(length).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		ByteBuffer buffer = pools.get(sizeClass).poll();
+		if (buffer == null) {
+			buffer = ByteBuffer.allocateDirect(1 << sizeClass);
+		} else {
+			size.addAndGet(-buffer.capacity());
+		}
+		buffer.clear();
+		buffer.limit(length);
+		return buffer.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Return the given buffer to the pool.
+	 * <p>
+	 * The buffer MUST have been obtained from {@link #acquire(int)}, and MUST NOT be used by the caller after this
+	 * call.
+	 * 
+	 * @param buffer The buffer to release.
+	 */
+	public void release(ByteBuffer buffer) {
+		if (buffer == null || !buffer.isDirect() || buffer.isReadOnly()) {
+			return;
+		}
+		int capacity = buffer.capacity();
+		int sizeClass = getSizeClass(capacity);
+		if (sizeClass > MAX_SIZE_CLASS || capacity != 1 << sizeClass) {
+			return;
+		}
+		if (size.addAndGet(capacity) > maximumSize) {
+			size.addAndGet(-capacity);
+			return;
+		}
+		pools.get(sizeClass).offer(buffer);
+	}
+
+	/**
+	 * Get the amount of buffer space (in bytes) currently retained by the pool.
+	 * 
+	 * @return The size of the pool in bytes.
+	 */
+	public long getSize() {
+		return size.get();
+	}
+
+	/**
+	 * Get the maximum amount of buffer space (in bytes) the pool will retain.
+	 * 
+	 * @return The maximum size of the pool in bytes.
+	 */
+	public long getMaximumSize() {
+		return maximumSize;
+	}
+
+	/**
+	 * Get the size class for the given length.
+	 * 
+	 * @param length The length.
+	 * @return The power of two of the smallest size class that can hold the length.
+	 */
+	private static int getSizeClass(int length) {
+		if (length <= 1 << MIN_SIZE_CLASS) {
+			return MIN_SIZE_CLASS;
+		}
+		return 32 - Integer.numberOfLeadingZeros(length - 1);
+	}
+}
@@ -0,0 +1,192 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A reference counted chunk of stream data.
+ * <p>
+ * A new chunk holds a single reference owned by its creator. Each holder of the chunk (for example the chunk cache, or
+ * a reader copying from it) owns a reference, and MUST {@link #release()} it once done. When the last reference is
+ * released, the underlying buffer is returned to the pool it was acquired from, so no holder may use the chunk data
+ * after releasing their reference.
+ * <p>
+ * A chunk may also be a slice of another chunk, in which case it holds a reference to its parent for its lifetime.
+ */
+public final class Chunk {
+
+	/**
+	 * The chunk contents, from position 0 to the limit.
+	 */
+	private final ByteBuffer data;
+	/**
+	 * The pool to return the data to, or NULL if the data is not pooled.
+	 */
+	private final BufferPool pool;
+	/**
+	 * The chunk this chunk is a slice of, or NULL.
+	 */
+	private final Chunk parent;
+	/**
+	 * The reference count.
+	 */
+	private final AtomicInteger references = new AtomicInteger(1);
+
+	/**
+	 * Create a new chunk.
+	 * 
+	 * @param data The chunk contents.
+	 * @param pool The pool to return the data to, or NULL if the data is not pooled.
+	 * @param parent The chunk this chunk is a slice of, or NULL.
+	 */
+	private Chunk(ByteBuffer data, BufferPool pool, Chunk parent) {
+		this.data = data;
+		this.pool = pool;
+		this.parent = parent;
+	}
+
+	/**
+	 * Create a new chunk over the given buffer, which is not pooled.
+	 * 
+	 * @param data The chunk contents, from the buffer's position to its limit.
+	 * @return A new chunk holding a single reference.
+	 */
+	public static Chunk wrap(ByteBuffer data) {
+		return new Chunk(data.slice().order(ByteOrder.LITTLE_ENDIAN), null, null);
+	}
+
+	/**
+	 * Create a new chunk over the given pooled buffer.
+	 * <p>
+	 * The buffer will be returned to the pool when the last reference is released.
+	 * 
+	 * @param buffer The buffer as acquired from the pool, with the chunk contents from position 0 to the limit.
+	 * @param pool The pool the buffer was acquired from.
+	 * @return A new chunk holding a single reference.
+	 */
+	public static Chunk pooled(ByteBuffer buffer, BufferPool pool) {
+		return new Chunk(buffer, pool, null);
+	}
+
+	/**
+	 * Create a new chunk over a region of this chunk.
+	 * <p>
+	 * The new chunk holds a reference to this chunk until it is released itself.
+	 * 
+	 * @param offset The offset of the region in this chunk.
+	 * @param length The length of the region.
+	 * @return A new chunk holding a single reference.
+	 * @throws IllegalStateException If this chunk has already been released.
+	 */
+	public Chunk slice(int offset, int length) {
+		if (!retain()) {
+			throw new IllegalStateException("Chunk has been released");
+		}
+		ByteBuffer region = data.duplicate();
+		region.limit(offset + length);
+		region.position(offset);
+		return new Chunk(region.slice().order(ByteOrder.LITTLE_ENDIAN), null, this);
+	}
+
+	/**
+	 * Get a chunk holding the contents of this chunk without retaining a larger pooled chunk it is a slice of, so that
+	 * its weight reflects the memory it holds.
+	 * <p>
+	 * Slices of unpooled chunks, such as a region of a memory mapped container, pin no pooled memory and are not
+	 * copied. The caller's reference to this chunk is transferred to the returned chunk.
+	 * 
+	 * @param pool The pool to acquire a buffer from if the contents must be copied.
+	 * @return This chunk if it is not a slice of a larger pooled chunk, otherwise a copy holding a single reference.
+	 */
+	public Chunk compact(BufferPool pool) {
+		if (parent == null || parent.pool == null || parent.getWeight() <= data.capacity()) {
+			return this;
+		}
+		ByteBuffer buffer = pool.acquire(data.limit());
+		buffer.put(getData());
+		buffer.flip();
+		release();
+		return pooled(buffer, pool);
+	}
+
+	/**
+	 * Get the chunk contents.
+	 * <p>
+	 * The returned buffer is independent of other callers, with position 0 and the limit at the end of the chunk data.
+	 * It MUST NOT be modified, and MUST NOT be used after the caller's reference is released.
+	 * 
+	 * @return The chunk contents.
+	 */
+	public ByteBuffer getData() {
+		return data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Get the length of the chunk contents.
+	 * 
+	 * @return The length in bytes.
+	 */
+	public int getLength() {
+		return data.limit();
+	}
+
+	/**
+	 * Get the approximate memory used by this chunk.
+	 * 
+	 * @return The size of this chunk in bytes.
+	 */
+	public int getWeight() {
+		return data.capacity();
+	}
+
+	/**
+	 * Acquire an additional reference to this chunk.
+	 * 
+	 * @return TRUE if the reference was acquired, or FALSE if the chunk has already been released.
+	 */
+	public boolean retain() {
+		while (true) {
+			int count = references.get();
+			if (count <= 0) {
+				return false;
+			}
+			if (references.compareAndSet(count, count + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Release a reference to this chunk. Releasing the last reference returns the data to its pool.
+	 */
+	public void release() {
+		int count = references.decrementAndGet();
+		if (count == 0) {
+			if (pool != null) {
+				pool.release(data);
+			}
+			if (parent != null) {
+				parent.release();
+			}
+		} else if (count < 0) {
+			throw new IllegalStateException("Chunk released too many times");
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.cache;
+
+import java.util.function.Function;
+
+import com.evimetry.aff4.struct.BevvyIndex;
+
+/**
+ * A cache of decompressed chunks and bevvy indexes, which may be shared across image streams and containers.
+ * <p>
+ * Entries are keyed by the resource ID of the image stream they belong to, and are limited by the total number of
+ * bytes held rather than the number of entries. Implementations MUST be thread safe.
+ */
+public interface ChunkCache {
+
+	/**
+	 * The default amount of chunk data (in bytes) to keep in memory.
+	 */
+	public final static long DEFAULT_CACHE_SIZE = 64l * 1024l * 1024l;
+
+	/**
+	 * Get the default JVM wide chunk cache.
+	 * 
+	 * @return The default chunk cache.
+	 */
+	public static ChunkCache getDefault() {
+		return SharedChunkCache.DEFAULT;
+	}
+
+	/**
+	 * Create a new chunk cache with the given memory budget.
+	 * 
+	 * @param maximumSize The maximum amount of data (in bytes) to hold in the cache.
+	 * @return A new chunk cache.
+	 * @throws IllegalArgumentException If the maximum size is negative.
+	 */
+	public static ChunkCache create(long maximumSize) {
+		return new SharedChunkCache(maximumSize, BufferPool.getDefault());
+	}
+
+	/**
+	 * Create a new chunk cache with the given memory budget.
+	 * 
+	 * @param maximumSize The maximum amount of data (in bytes) to hold in the cache.
+	 * @param pool The buffer pool to load chunks into.
+	 * @return A new chunk cache.
+	 * @throws IllegalArgumentException If the maximum size is negative.
+	 */
+	public static ChunkCache create(long maximumSize, BufferPool pool) {
+		return new SharedChunkCache(maximumSize, pool);
+	}
+
+	/**
+	 * Get the given chunk if present in the cache.
+	 * <p>
+	 * The caller owns a reference to the returned chunk, and MUST {@link Chunk#release()} it once done.
+	 * 
+	 * @param stream The resource ID of the image stream.
+	 * @param chunk The index of the chunk in the image stream.
+	 * @return The decompressed chunk, or NULL if not present.
+	 */
+	public Chunk getChunk(String stream, long chunk);
+
+	/**
+	 * Add the given chunk to the cache.
+	 * <p>
+	 * The cache acquires its own reference to the chunk, which is released when the chunk is evicted. The caller
+	 * retains ownership of their reference.
+	 * 
+	 * @param stream The resource ID of the image stream.
+	 * @param chunk The index of the chunk in the image stream.
+	 * @param data The decompressed chunk.
+	 */
+	public void putChunk(String stream, long chunk, Chunk data);
+
+	/**
+	 * Get the buffer pool that chunks for this cache should be loaded into.
+	 * 
+	 * @return The buffer pool.
+	 */
+	public BufferPool getBufferPool();
+
+	/**
+	 * Get the given bevvy index, loading it if not present in the cache.
+	 * 
+	 * @param stream The resource ID of the image stream.
+	 * @param bevvyID The bevvy ID.
+	 * @param loader The function to load the bevvy index if not present.
+	 * @return The bevvy index, or NULL if it could not be loaded.
+	 */
+	public BevvyIndex getBevvyIndex(String stream, int bevvyID, Function<Integer, BevvyIndex> loader);
+
+	/**
+	 * Remove all entries for the given image stream.
+	 * 
+	 * @param stream The resource ID of the image stream.
+	 */
+	public void invalidate(String stream);
+
+	/**
+	 * Remove all entries from the cache.
+	 */
+	public void invalidateAll();
+
+	/**
+	 * Get the maximum amount of data (in bytes) this cache will hold.
+	 * 
+	 * @return The maximum size of the cache in bytes.
+	 */
+	public long getMaximumSize();
+
+	/**
+	 * Get the approximate amount of data (in bytes) currently held by this cache.
+	 * 
+	 * @return The size of the cache in bytes.
+	 */
+	public long getSize();
+}
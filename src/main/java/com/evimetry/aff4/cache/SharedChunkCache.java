@@ -0,0 +1,207 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.cache;
+
+import java.util.function.Function;
+
+import com.evimetry.aff4.struct.BevvyIndex;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+/**
+ * Chunk cache implementation, weighted by the size of the cached data.
+ */
+public class SharedChunkCache implements ChunkCache {
+
+	/**
+	 * The default JVM wide instance.
+	 */
+	final static SharedChunkCache DEFAULT = new SharedChunkCache(DEFAULT_CACHE_SIZE, BufferPool.getDefault());
+
+	/**
+	 * The maximum weight of the cache.
+	 */
+	private final long maximumSize;
+	/**
+	 * The buffer pool chunks are loaded into.
+	 */
+	private final BufferPool pool;
+	/**
+	 * The underlying cache.
+	 */
+	private final Cache<CacheKey, Object> cache;
+
+	/**
+	 * Create a new chunk cache.
+	 * 
+	 * @param maximumSize The maximum amount of data (in bytes) to hold in the cache.
+	 * @param pool The buffer pool chunks are loaded into.
+	 * @throws IllegalArgumentException If the maximum size is negative.
+	 */
+	public SharedChunkCache(long maximumSize, BufferPool pool) {
+		if (maximumSize < 0) {
+			throw new IllegalArgumentException("Cache size must not be negative");
+		}
+		this.maximumSize = maximumSize;
+		this.pool = pool;
+		// Evicted chunks are released immediately on the evicting thread, so their buffers return to the pool.
+		this.cache = Caffeine.newBuilder()//
+				.maximumWeight(maximumSize)//
+				.weigher((CacheKey key, Object value) -> weigh(value))//
+				.executor(Runnable::run)//
+				.removalListener((CacheKey key, Object value, RemovalCause cause) -> {
+					if (value instanceof Chunk) {
+						((Chunk) value).release();
+					}
+				})//
+				.build();
+	}
+
+	/**
+	 * Determine the weight of the given cache value.
+	 * 
+	 * @param value The value.
+	 * @return The weight in bytes.
+	 */
+	private static int weigh(Object value) {
+		if (value instanceof Chunk) {
+			return ((Chunk) value).getWeight();
+		}
+		if (value instanceof BevvyIndex) {
+			return ((BevvyIndex) value).getWeight();
+		}
+		return 0;
+	}
+
+	@Override
+	public Chunk getChunk(String stream, long chunk) {
+		Chunk data = (Chunk) cache.getIfPresent(new CacheKey(stream, CacheKey.CHUNK, chunk));
+		// The chunk may be evicted and released between the lookup and acquiring our reference.
+		if (data != null && data.retain()) {
+			return data;
+		}
+		return null;
+	}
+
+	@Override
+	public void putChunk(String stream, long chunk, Chunk data) {
+		if (data.retain()) {
+			cache.put(new CacheKey(stream, CacheKey.CHUNK, chunk), data);
+		}
+	}
+
+	@Override
+	public BufferPool getBufferPool() {
+		return pool;
+	}
+
+	@Override
+	public BevvyIndex getBevvyIndex(String stream, int bevvyID, Function<Integer, BevvyIndex> loader) {
+		return (BevvyIndex) cache.get(new CacheKey(stream, CacheKey.BEVVY, bevvyID), k -> loader.apply(bevvyID));
+	}
+
+	@Override
+	public void invalidate(String stream) {
+		cache.asMap().keySet().removeIf(key -> key.stream.equals(stream));
+	}
+
+	@Override
+	public void invalidateAll() {
+		cache.invalidateAll();
+		cache.cleanUp();
+	}
+
+	@Override
+	public long getMaximumSize() {
+		return maximumSize;
+	}
+
+	@Override
+	public long getSize() {
+		cache.cleanUp();
+		return cache.policy().eviction().get().weightedSize().orElse(0l);
+	}
+
+	/**
+	 * Key for entries in the cache.
+	 */
+	private final static class CacheKey {
+		/**
+		 * Entry type for decompressed chunks.
+		 */
+		final static int CHUNK = 0;
+		/**
+		 * Entry type for bevvy indexes.
+		 */
+		final static int BEVVY = 1;
+
+		/**
+		 * The resource ID of the image stream.
+		 */
+		private final String stream;
+		/**
+		 * The entry type.
+		 */
+		private final int type;
+		/**
+		 * The index of the chunk or bevvy.
+		 */
+		private final long index;
+
+		/**
+		 * Create a new cache key.
+		 * 
+		 * @param stream The resource ID of the image stream.
+		 * @param type The entry type.
+		 * @param index The index of the chunk or bevvy.
+		 */
+		CacheKey(String stream, int type, long index) {
+			this.stream = stream;
+			this.type = type;
+			this.index = index;
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + (int) (index ^ (index >>> 32));
+			result = prime * result + stream.hashCode();
+			result = prime * result + type;
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			CacheKey other = (CacheKey) obj;
+			if (index != other.index)
+				return false;
+			if (type != other.type)
+				return false;
+			if (!stream.equals(other.stream))
+				return false;
+			return true;
+		}
+	}
+}
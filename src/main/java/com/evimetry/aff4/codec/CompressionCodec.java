@@ -20,8 +20,15 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 
 import com.evimetry.aff4.AFF4Lexicon;
+import com.evimetry.aff4.cache.BufferPool;
+import com.evimetry.aff4.cache.Chunk;
 
-public interface CompressionCodec {
+/**
+ * A decompressor for aff4:ImageStream chunks.
+ * <p>
+ * Implementations MUST be safe for concurrent use by multiple threads.
+ */
+public interface CompressionCodec extends AutoCloseable {
 
 	/**
 	 * Get an instance of the compression codec based in the resource identification.
@@ -75,6 +82,55 @@ public interface CompressionCodec {
 	 */
 	public ByteBuffer decompress(ByteBuffer source) throws IOException;
 
+	/**
+	 * Decompress the given buffer into the destination buffer.
+	 * <p>
+	 * The decompressed data is written from the current position of the destination, which is advanced by the number
+	 * of bytes written. The destination may be a heap or direct buffer, and should have at least the chunk size
+	 * remaining.
+	 * <p>
+	 * Note: The position of the source buffer will be unchanged after this call.
+	 * 
+	 * @param source The source buffer to decompress
+	 * @param destination The buffer to write the decompressed data to.
+	 * @return The number of bytes written to the destination.
+	 * @throws IOException If decompression fails, or the decompressed data does not fit in the destination.
+	 */
+	public default int decompress(ByteBuffer source, ByteBuffer destination) throws IOException {
+		ByteBuffer result = decompress(source);
+		if (result.remaining() > destination.remaining()) {
+			throw new IOException("Destination buffer too small for decompressed chunk");
+		}
+		int length = result.remaining();
+		destination.put(result);
+		return length;
+	}
+
+	/**
+	 * Decompress the given buffer into a buffer acquired from the given pool.
+	 * <p>
+	 * Note: The position of the source buffer will be unchanged after this call. Codecs that are unable to decompress
+	 * into a pooled buffer return a chunk that is not pooled.
+	 * 
+	 * @param source The source buffer to decompress
+	 * @param pool The pool to acquire buffers from.
+	 * @return A chunk with the decompressed version. The caller owns the single reference to the chunk.
+	 * @throws IOException If decompression fails.
+	 */
+	public default Chunk decompress(ByteBuffer source, BufferPool pool) throws IOException {
+		return Chunk.wrap(decompress(source));
+	}
+
+	/**
+	 * Release any native resources held by this codec.
+	 * <p>
+	 * The codec remains usable after this call, however any resources acquired afterwards are released on use.
+	 */
+	@Override
+	public default void close() {
+		// NOP by default.
+	}
+
 	/**
 	 * Get the resource ID of this Compression Codec
 	 * 
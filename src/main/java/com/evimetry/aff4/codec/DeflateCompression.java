@@ -19,10 +19,10 @@ package com.evimetry.aff4.codec;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.util.zip.DataFormatException;
-import java.util.zip.Inflater;
 
 import com.evimetry.aff4.AFF4Lexicon;
+import com.evimetry.aff4.cache.BufferPool;
+import com.evimetry.aff4.cache.Chunk;
 
 /**
  * Deflate codec
@@ -34,9 +34,9 @@ public class DeflateCompression implements CompressionCodec {
 	 */
 	private final int chunkSize;
 	/**
-	 * Decompressor.
+	 * Pool of decompressors, allowing concurrent use of this codec.
 	 */
-	private final Inflater decompressor = new Inflater(true);
+	private final InflaterPool decompressors = new InflaterPool(true);
 
 	/**
 	 * Create a new Deflate decompression codec.
@@ -52,25 +52,34 @@ public class DeflateCompression implements CompressionCodec {
 	}
 
 	@Override
-	public synchronized ByteBuffer decompress(ByteBuffer source) throws IOException {
-		decompressor.reset();
-		int p = source.position();
-		byte[] destination = new byte[chunkSize];
-		byte[] srcArray = null;
-		if (source.hasArray()) {
-			srcArray = source.array();
-		} else {
-			srcArray = new byte[source.remaining()];
-			source.get(srcArray);
-		}
-		decompressor.setInput(srcArray);
+	public ByteBuffer decompress(ByteBuffer source) throws IOException {
+		ByteBuffer destination = ByteBuffer.allocate(chunkSize).order(ByteOrder.LITTLE_ENDIAN);
+		decompressors.inflate(source, destination, chunkSize);
+		destination.position(0);
+		return destination;
+	}
+
+	@Override
+	public int decompress(ByteBuffer source, ByteBuffer destination) throws IOException {
+		return decompressors.inflate(source, destination, chunkSize);
+	}
+
+	@Override
+	public Chunk decompress(ByteBuffer source, BufferPool pool) throws IOException {
+		ByteBuffer destination = pool.acquire(chunkSize);
 		try {
-			decompressor.inflate(destination);
-			source.position(p);
-			return ByteBuffer.wrap(destination).order(ByteOrder.LITTLE_ENDIAN);
-		} catch (DataFormatException e) {
-			throw new IOException(e);
+			decompressors.inflate(source, destination, chunkSize);
+		} catch (IOException | RuntimeException e) {
+			pool.release(destination);
+			throw e;
 		}
+		destination.flip();
+		return Chunk.pooled(destination, pool);
+	}
+
+	@Override
+	public void close() {
+		decompressors.close();
 	}
 
 	@Override
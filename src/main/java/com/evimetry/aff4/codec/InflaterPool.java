@@ -0,0 +1,225 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A pool of Inflater instances, allowing concurrent decompression without sharing a single native inflater.
+ * <p>
+ * Idle inflaters are retained up to a bound, with any further inflaters released via {@link Inflater#end()}. Closing
+ * the pool ends all idle inflaters, and any inflaters returned afterwards.
+ */
+final class InflaterPool {
+
+	/**
+	 * The maximum number of idle inflaters to retain.
+	 */
+	private final static int MAX_IDLE = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+
+	/**
+	 * TRUE to create inflaters for raw deflate data, FALSE for zlib wrapped data.
+	 */
+	private final boolean nowrap;
+	/**
+	 * The idle inflaters.
+	 */
+	private final Queue<Context> idle = new ConcurrentLinkedQueue<>();
+	/**
+	 * The number of idle inflaters.
+	 */
+	private final AtomicInteger idleCount = new AtomicInteger();
+	/**
+	 * Closed flag.
+	 */
+	private final AtomicBoolean closed = new AtomicBoolean(false);
+
+	/**
+	 * Create a new inflater pool.
+	 * 
+	 * @param nowrap TRUE to create inflaters for raw deflate data, FALSE for zlib wrapped data.
+	 */
+	InflaterPool(boolean nowrap) {
+		this.nowrap = nowrap;
+	}
+
+	/**
+	 * Inflate the given buffer into the destination, from the current position of the destination.
+	 * <p>
+	 * Heap buffers are passed to the inflater directly. The inflater only accepts arrays, so direct buffers are staged
+	 * through scratch arrays retained with the pooled inflater.
+	 * 
+	 * @param source The source buffer to inflate. The position will be unchanged after this call.
+	 * @param destination The destination buffer, with the position advanced by the inflated length after this call.
+	 * @param chunkSize The maximum inflated length.
+	 * @return The number of bytes written to the destination.
+	 * @throws IOException If inflation fails, or the inflated data does not fit in the destination.
+	 */
+	int inflate(ByteBuffer source, ByteBuffer destination, int chunkSize) throws IOException {
+		Context context = acquire();
+		try {
+			Inflater inflater = context.inflater;
+			int srcLength = source.remaining();
+			if (source.hasArray()) {
+				inflater.setInput(source.array(), source.arrayOffset() + source.position(), srcLength);
+			} else {
+				byte[] input = context.getInput(srcLength);
+				source.duplicate().get(input, 0, srcLength);
+				inflater.setInput(input, 0, srcLength);
+			}
+			int limit = Math.min(chunkSize, destination.remaining());
+			int length;
+			if (destination.hasArray()) {
+				length = inflater.inflate(destination.array(), destination.arrayOffset() + destination.position(),
+						limit);
+				if (length == limit && limit < chunkSize && !inflater.finished()) {
+					throw new IOException("Destination buffer too small for decompressed chunk");
+				}
+				destination.position(destination.position() + length);
+			} else {
+				byte[] output = context.getOutput(chunkSize);
+				length = inflater.inflate(output, 0, chunkSize);
+				if (length > limit) {
+					throw new IOException("Destination buffer too small for decompressed chunk");
+				}
+				destination.put(output, 0, length);
+			}
+			return length;
+		} catch (DataFormatException e) {
+			throw new IOException(e);
+		} finally {
+			release(context);
+		}
+	}
+
+	/**
+	 * Close the pool, ending all idle inflaters.
+	 */
+	void close() {
+		if (!closed.getAndSet(true)) {
+			drain();
+		}
+	}
+
+	/**
+	 * Acquire an inflater, ready for new input.
+	 * 
+	 * @return An inflater for exclusive use by the caller until released.
+	 */
+	private Context acquire() {
+		Context context = idle.poll();
+		if (context == null) {
+			return new Context(new Inflater(nowrap));
+		}
+		idleCount.decrementAndGet();
+		return context;
+	}
+
+	/**
+	 * Return the given inflater to the pool.
+	 * 
+	 * @param context The inflater, which MUST NOT be used by the caller after this call.
+	 */
+	private void release(Context context) {
+		if (closed.get()) {
+			context.inflater.end();
+			return;
+		}
+		if (idleCount.incrementAndGet() > MAX_IDLE) {
+			idleCount.decrementAndGet();
+			context.inflater.end();
+			return;
+		}
+		context.inflater.reset();
+		idle.offer(context);
+		if (closed.get()) {
+			// Raced with close, so ensure nothing is left behind.
+			drain();
+		}
+	}
+
+	/**
+	 * End all idle inflaters.
+	 */
+	private void drain() {
+		Context context;
+		while ((context = idle.poll()) != null) {
+			context.inflater.end();
+		}
+	}
+
+	/**
+	 * A pooled inflater, and the scratch arrays used when inflating direct buffers.
+	 */
+	private final static class Context {
+
+		/**
+		 * The inflater.
+		 */
+		private final Inflater inflater;
+		/**
+		 * Scratch array for direct sources.
+		 */
+		private byte[] input;
+		/**
+		 * Scratch array for direct destinations.
+		 */
+		private byte[] output;
+
+		/**
+		 * Create a new pooled inflater.
+		 * 
+		 * @param inflater The inflater.
+		 */
+		private Context(Inflater inflater) {
+			this.inflater = inflater;
+		}
+
+		/**
+		 * Get the input scratch array.
+		 * 
+		 * @param length The minimum length of the array.
+		 * @return An array of at least the given length.
+		 */
+		private byte[] getInput(int length) {
+			if (input == null || input.length < length) {
+				input = new byte[length];
+			}
+			return input;
+		}
+
+		/**
+		 * Get the output scratch array.
+		 * 
+		 * @param length The minimum length of the array.
+		 * @return An array of at least the given length.
+		 */
+		private byte[] getOutput(int length) {
+			if (output == null || output.length < length) {
+				output = new byte[length];
+			}
+			return output;
+		}
+	}
+}
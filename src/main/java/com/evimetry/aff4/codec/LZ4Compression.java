@@ -21,6 +21,8 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
 import com.evimetry.aff4.AFF4Lexicon;
+import com.evimetry.aff4.cache.BufferPool;
+import com.evimetry.aff4.cache.Chunk;
 
 import net.jpountz.lz4.LZ4Factory;
 import net.jpountz.lz4.LZ4SafeDecompressor;
@@ -65,19 +67,19 @@ public class LZ4Compression implements CompressionCodec {
 
 	@Override
 	public ByteBuffer decompress(ByteBuffer source) throws IOException {
-		int p = source.position();
-		byte[] destination = new byte[chunkSize];
-		byte[] srcArray = null;
-		if (source.hasArray()) {
-			srcArray = source.array();
-		} else {
-			srcArray = new byte[source.remaining()];
-			source.get(srcArray);
-		}
+		ByteBuffer destination = ByteBuffer.allocate(chunkSize).order(ByteOrder.LITTLE_ENDIAN);
+		decompress(source, destination);
+		destination.position(0);
+		return destination;
+	}
+
+	@Override
+	public int decompress(ByteBuffer source, ByteBuffer destination) throws IOException {
 		try {
-			decompressor.decompress(srcArray, 0, srcArray.length, destination, 0, chunkSize);
-			source.position(p);
-			return ByteBuffer.wrap(destination).order(ByteOrder.LITTLE_ENDIAN);
+			int length = decompressor.decompress(source, source.position(), source.remaining(), destination,
+					destination.position(), Math.min(chunkSize, destination.remaining()));
+			destination.position(destination.position() + length);
+			return length;
 		} catch (Throwable e) {
 			if (!(e instanceof IOException)) {
 				throw new IOException(e);
@@ -86,6 +88,19 @@ public class LZ4Compression implements CompressionCodec {
 		}
 	}
 
+	@Override
+	public Chunk decompress(ByteBuffer source, BufferPool pool) throws IOException {
+		ByteBuffer destination = pool.acquire(chunkSize);
+		try {
+			decompress(source, destination);
+			destination.flip();
+			return Chunk.pooled(destination, pool);
+		} catch (IOException | RuntimeException e) {
+			pool.release(destination);
+			throw e;
+		}
+	}
+
 	@Override
 	public String getResourceID() {
 		return AFF4Lexicon.LZ4Compression.getValue();
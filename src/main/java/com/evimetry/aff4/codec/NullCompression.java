@@ -21,6 +21,8 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
 import com.evimetry.aff4.AFF4Lexicon;
+import com.evimetry.aff4.cache.BufferPool;
+import com.evimetry.aff4.cache.Chunk;
 
 /**
  * Null compression codec
@@ -55,6 +57,28 @@ public class NullCompression implements CompressionCodec {
 		return destination;
 	}
 
+	@Override
+	public int decompress(ByteBuffer source, ByteBuffer destination) throws IOException {
+		int length = source.remaining();
+		if (length > chunkSize || length > destination.remaining()) {
+			throw new IOException("Destination buffer too small for chunk");
+		}
+		destination.put(source.duplicate());
+		return length;
+	}
+
+	@Override
+	public Chunk decompress(ByteBuffer source, BufferPool pool) throws IOException {
+		ByteBuffer destination = pool.acquire(chunkSize);
+		destination.put(source.duplicate());
+		// Pooled buffers are not cleared, so zero fill any remainder of the chunk.
+		while (destination.hasRemaining()) {
+			destination.put((byte) 0);
+		}
+		destination.position(0);
+		return Chunk.pooled(destination, pool);
+	}
+
 	@Override
 	public String getResourceID() {
 		return AFF4Lexicon.NoCompression.getValue();
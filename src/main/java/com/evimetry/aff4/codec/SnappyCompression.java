@@ -23,6 +23,8 @@ import java.nio.ByteOrder;
 import org.xerial.snappy.Snappy;
 
 import com.evimetry.aff4.AFF4Lexicon;
+import com.evimetry.aff4.cache.BufferPool;
+import com.evimetry.aff4.cache.Chunk;
 
 /**
  * Snappy codec
@@ -49,17 +51,93 @@ public class SnappyCompression implements CompressionCodec {
 
 	@Override
 	public ByteBuffer decompress(ByteBuffer source) throws IOException {
-		if(!source.isDirect()){
-			ByteBuffer newSrc = ByteBuffer.allocateDirect(source.remaining()).order(ByteOrder.LITTLE_ENDIAN);
-			newSrc.put(source);
-			source = newSrc;
-		}
 		ByteBuffer destination = ByteBuffer.allocateDirect(chunkSize).order(ByteOrder.LITTLE_ENDIAN);
-		Snappy.uncompress(source, destination);
-		destination.position(0);
+		decompress(source, destination, BufferPool.getDefault());
+		destination.flip();
 		return destination;
 	}
 
+	@Override
+	public int decompress(ByteBuffer source, ByteBuffer destination) throws IOException {
+		return decompress(source, destination, BufferPool.getDefault());
+	}
+
+	@Override
+	public Chunk decompress(ByteBuffer source, BufferPool pool) throws IOException {
+		ByteBuffer destination = pool.acquire(chunkSize);
+		try {
+			decompress(source, destination, pool);
+		} catch (IOException | RuntimeException e) {
+			pool.release(destination);
+			throw e;
+		}
+		destination.flip();
+		return Chunk.pooled(destination, pool);
+	}
+
+	/**
+	 * Decompress the given buffer into the destination, from the current position of the destination.
+	 * <p>
+	 * Heap sources and destinations are handled via the array API when both are heap buffers, and via the direct
+	 * buffer API when both are direct. Mixed buffers are staged through a buffer acquired from the pool.
+	 * 
+	 * @param source The source buffer to decompress. The position will be unchanged after this call.
+	 * @param destination The destination buffer, with the position advanced by the decompressed length after this
+	 *        call.
+	 * @param pool The pool to acquire temporary buffers from.
+	 * @return The number of bytes written to the destination.
+	 * @throws IOException If decompression fails, or the decompressed data does not fit in the destination.
+	 */
+	private int decompress(ByteBuffer source, ByteBuffer destination, BufferPool pool) throws IOException {
+		if (source.hasArray() && destination.hasArray() && !destination.isReadOnly()) {
+			byte[] src = source.array();
+			int srcOffset = source.arrayOffset() + source.position();
+			int length = Snappy.uncompressedLength(src, srcOffset, source.remaining());
+			checkLength(length, destination);
+			length = Snappy.uncompress(src, srcOffset, source.remaining(), destination.array(),
+					destination.arrayOffset() + destination.position());
+			destination.position(destination.position() + length);
+			return length;
+		}
+		ByteBuffer scratch = null;
+		ByteBuffer output = null;
+		try {
+			if (!source.isDirect()) {
+				scratch = pool.acquire(source.remaining());
+				scratch.put(source.duplicate());
+				scratch.flip();
+				source = scratch;
+			}
+			int length = Snappy.uncompressedLength(source);
+			checkLength(length, destination);
+			if (destination.isDirect()) {
+				length = Snappy.uncompress(source, destination.duplicate());
+				destination.position(destination.position() + length);
+			} else {
+				output = pool.acquire(length);
+				Snappy.uncompress(source, output);
+				destination.put(output);
+			}
+			return length;
+		} finally {
+			pool.release(scratch);
+			pool.release(output);
+		}
+	}
+
+	/**
+	 * Check the decompressed length of a chunk fits the destination.
+	 * 
+	 * @param length The decompressed length.
+	 * @param destination The destination buffer.
+	 * @throws IOException If the decompressed data is larger than the chunk size or the destination.
+	 */
+	private void checkLength(int length, ByteBuffer destination) throws IOException {
+		if (length > chunkSize || length > destination.remaining()) {
+			throw new IOException("Destination buffer too small for decompressed chunk");
+		}
+	}
+
 	@Override
 	public String getResourceID() {
 		return AFF4Lexicon.SnappyCompression.getValue();
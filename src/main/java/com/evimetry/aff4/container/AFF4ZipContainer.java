@@ -19,6 +19,7 @@ package com.evimetry.aff4.container;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.nio.file.StandardOpenOption;
 import java.time.Instant;
@@ -54,9 +55,11 @@ import com.evimetry.aff4.IAFF4ImageStream;
 import com.evimetry.aff4.IAFF4Map;
 import com.evimetry.aff4.IAFF4Resolver;
 import com.evimetry.aff4.IAFF4Resource;
+import com.evimetry.aff4.cache.ChunkCache;
 import com.evimetry.aff4.image.AFF4Image;
 import com.evimetry.aff4.imagestream.AFF4ImageStream;
 import com.evimetry.aff4.imagestream.ImageStreamFactory;
+import com.evimetry.aff4.imagestream.Readahead;
 import com.evimetry.aff4.imagestream.SymbolicImageStream;
 import com.evimetry.aff4.imagestream.ZipSegmentImageCompressedStream;
 import com.evimetry.aff4.imagestream.ZipSegmentImageStream;
@@ -99,9 +102,37 @@ public class AFF4ZipContainer extends AFF4Resource implements IAFF4Container {
 	 * Collection of open streams.
 	 */
 	private final Set<IAFF4ImageStream> openStreams = Collections.synchronizedSet(new HashSet<>());
+	/**
+	 * The cache of decompressed chunks and bevvy indexes used by image streams in this container.
+	 */
+	private final ChunkCache chunkCache;
+	/**
+	 * The identity of the container file (path, size and modification time), qualifying our entries in the chunk cache.
+	 */
+	private final String cacheIdentity;
+	/**
+	 * The readahead settings for image streams in this container, or NULL if readahead is disabled.
+	 */
+	private volatile Readahead readahead;
+	/**
+	 * The memory mapping of the container file, or NULL if reads are performed via the channel.
+	 */
+	private volatile MappedFile mappedFile;
+	/**
+	 * The persisted map and bevvy indexes for this container, or NULL if the index cache is disabled.
+	 */
+	private volatile ContainerIndex containerIndex;
+	/**
+	 * TRUE if maps should look up regions directly in the stored map segment.
+	 */
+	private volatile boolean directMapLookup;
+	/**
+	 * TRUE if image streams should verify chunks against their block hashes as they are loaded.
+	 */
+	private volatile boolean verifyOnRead;
 
 	/**
-	 * Create a new AFF4 Container based on the given file information
+	 * Create a new AFF4 Container based on the given file information, using the default shared chunk cache.
 	 * 
 	 * @param resource The resource of the AFF4 Container
 	 * @param parent The parent file.
@@ -109,9 +140,24 @@ public class AFF4ZipContainer extends AFF4Resource implements IAFF4Container {
 	 * @throws IOException If reading the contents of the parent container or entries fail.
 	 */
 	public AFF4ZipContainer(String resource, File parent, ZipFile zip) throws IOException {
+		this(resource, parent, zip, ChunkCache.getDefault());
+	}
+
+	/**
+	 * Create a new AFF4 Container based on the given file information
+	 * 
+	 * @param resource The resource of the AFF4 Container
+	 * @param parent The parent file.
+	 * @param zip The Zip Container for this file.
+	 * @param chunkCache The chunk cache to use for image streams in this container.
+	 * @throws IOException If reading the contents of the parent container or entries fail.
+	 */
+	public AFF4ZipContainer(String resource, File parent, ZipFile zip, ChunkCache chunkCache) throws IOException {
 		super(resource);
 		this.parentFile = parent;
 		this.zip = zip;
+		this.chunkCache = chunkCache;
+		this.cacheIdentity = parent.getAbsolutePath() + ":" + parent.length() + ":" + parent.lastModified();
 		this.channel = FileChannel.open(parent.toPath(), StandardOpenOption.READ);
 		setBasicProperties();
 		loadVersionInformation();
@@ -123,6 +169,169 @@ public class AFF4ZipContainer extends AFF4Resource implements IAFF4Container {
 		}
 	}
 
+	/**
+	 * Create a new AFF4 Container based on the given file information, and apply the given options to it.
+	 * 
+	 * @param resource The resource of the AFF4 Container
+	 * @param parent The parent file.
+	 * @param zip The Zip Container for this file.
+	 * @param options The options to apply.
+	 * @throws IOException If reading the contents of the parent container or entries fail, or applying the options
+	 *         failed.
+	 */
+	public AFF4ZipContainer(String resource, File parent, ZipFile zip, ContainerOptions options) throws IOException {
+		this(resource, parent, zip, options.getChunkCache());
+		try {
+			options.apply(this);
+		} catch (IOException | RuntimeException e) {
+			try {
+				close();
+			} catch (Exception e1) {
+				e.addSuppressed(e1);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Get the chunk cache used by image streams in this container.
+	 * 
+	 * @return The chunk cache.
+	 */
+	public ChunkCache getChunkCache() {
+		return chunkCache;
+	}
+
+	/**
+	 * Get the key under which chunks and bevvy indexes of the given image stream are held in the chunk cache.
+	 * <p>
+	 * Bevvy indexes hold absolute offsets into the container file, so keys are qualified by the identity of the
+	 * container file. Containers holding the same image stream with a different layout (eg a repacked copy) never share
+	 * cache entries, while reopening an unmodified container reuses those already cached.
+	 * 
+	 * @param resource The resource of the image stream.
+	 * @return The cache key for the image stream.
+	 */
+	public String getCacheKey(String resource) {
+		return resource + "@" + cacheIdentity;
+	}
+
+	/**
+	 * Get the readahead settings for image streams in this container.
+	 * 
+	 * @return The readahead settings, or NULL if readahead is disabled.
+	 */
+	public Readahead getReadahead() {
+		return readahead;
+	}
+
+	/**
+	 * Set the readahead settings for image streams in this container. Readahead is disabled by default.
+	 * 
+	 * @param readahead The readahead settings, or NULL to disable readahead.
+	 */
+	public void setReadahead(Readahead readahead) {
+		this.readahead = readahead;
+	}
+
+	/**
+	 * Get the memory mapping of the container file.
+	 * 
+	 * @return The memory mapping, or NULL if memory mapped IO is disabled.
+	 */
+	public MappedFile getMappedFile() {
+		return mappedFile;
+	}
+
+	/**
+	 * Set if chunk and stored segment reads should be served from a memory mapping of the container file rather than
+	 * via channel reads. Memory mapped IO is disabled by default.
+	 * 
+	 * @param mapped TRUE to enable memory mapped IO.
+	 * @throws IOException If creating the mapping failed.
+	 */
+	public synchronized void setMemoryMapped(boolean mapped) throws IOException {
+		if (closed.get()) {
+			throw new ClosedChannelException();
+		}
+		if (!mapped) {
+			this.mappedFile = null;
+		} else if (mappedFile == null) {
+			this.mappedFile = new MappedFile(channel);
+		}
+	}
+
+	/**
+	 * Get the persisted map and bevvy indexes for this container.
+	 * 
+	 * @return The container index, or NULL if the index cache is disabled.
+	 */
+	public ContainerIndex getContainerIndex() {
+		return containerIndex;
+	}
+
+	/**
+	 * Set the on-disk index cache used to persist materialised map and bevvy indexes between opens of this container.
+	 * The index cache is disabled by default.
+	 * <p>
+	 * This should be set before any images, maps or image streams are opened from this container. Indexes built while
+	 * the container is open are written to the cache when the container is closed.
+	 * 
+	 * @param cache The index cache, or NULL to disable the index cache.
+	 * @throws IOException If opening the index cache failed.
+	 */
+	public synchronized void setIndexCache(IndexCache cache) throws IOException {
+		if (closed.get()) {
+			throw new ClosedChannelException();
+		}
+		this.containerIndex = cache == null ? null : cache.open(getResourceID(), parentFile);
+	}
+
+	/**
+	 * Determine if maps look up regions directly in the stored map segment.
+	 * 
+	 * @return TRUE if maps are not materialised.
+	 */
+	public boolean isDirectMapLookup() {
+		return directMapLookup;
+	}
+
+	/**
+	 * Set if maps should look up regions directly in the stored map segment, rather than materialising the map in
+	 * memory. This gives bounded heap use for maps with very many entries, at the cost of slower region lookups. Maps
+	 * with unsorted entries are still materialised. Direct map lookup is disabled by default.
+	 * <p>
+	 * This should be set before any maps are opened from this container.
+	 * 
+	 * @param direct TRUE to look up regions directly in the stored map segment.
+	 */
+	public void setDirectMapLookup(boolean direct) {
+		this.directMapLookup = direct;
+	}
+
+	/**
+	 * Determine if image streams verify chunks against their block hashes as they are loaded.
+	 * 
+	 * @return TRUE if verifying on read.
+	 */
+	public boolean isVerifyOnRead() {
+		return verifyOnRead;
+	}
+
+	/**
+	 * Set if image streams should verify each chunk against its stored block hash as it is loaded from the container,
+	 * before it is added to the chunk cache. A chunk that fails verification, or that has no supported block hash, is
+	 * reported by a {@link com.evimetry.aff4.ChunkIntegrityException} from the read. Each chunk is only hashed once
+	 * per stream. Verify on read is disabled by default.
+	 * <p>
+	 * This should be set before any image streams are opened from this container.
+	 * 
+	 * @param verify TRUE to verify chunks as they are loaded.
+	 */
+	public void setVerifyOnRead(boolean verify) {
+		this.verifyOnRead = verify;
+	}
+
 	/**
 	 * The collection of base properties for this container.
 	 */
@@ -243,6 +452,16 @@ public class AFF4ZipContainer extends AFF4Resource implements IAFF4Container {
 					logger.error(e.getMessage(), e);
 				}
 			}
+			mappedFile = null;
+			// Persist any indexes built while open.
+			ContainerIndex index = containerIndex;
+			if (index != null) {
+				try {
+					index.save();
+				} catch (IOException e) {
+					logger.warn("Unable to save container index: {}", e.getMessage());
+				}
+			}
 			// Close the zip container and IO channel.
 			try {
 				zip.close();
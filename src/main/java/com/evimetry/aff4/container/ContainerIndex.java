@@ -0,0 +1,374 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.container;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.evimetry.aff4.IAFF4ImageStream;
+import com.evimetry.aff4.map.MapIndex;
+import com.evimetry.aff4.struct.BevvyIndex;
+
+/**
+ * The persisted map and bevvy indexes of a single container, as held by an {@link IndexCache}.
+ * <p>
+ * Existing indexes are memory mapped from the index file when opened, and decoded on request with bulk copies. Indexes
+ * added after opening are written to the index file by {@link #save()}, along with all existing indexes, and the new
+ * index file is mapped in place of the old.
+ * <p>
+ * The index file is little endian, with all records aligned to 8 bytes:
+ * 
+ * <pre>
+ * header: magic (8), version (4), record count (4), container size (8), container mtime (8),
+ *         resource length (4), reserved (4), resource (UTF-8)
+ * record: key length (4), reserved (4), payload length (8), key (UTF-8), payload
+ * </pre>
+ */
+public class ContainerIndex {
+
+	private final static Logger logger = LoggerFactory.getLogger(ContainerIndex.class);
+	/**
+	 * The magic value of an index file, "AFF4IDX1".
+	 */
+	private final static long MAGIC = 0x3158444934464641l;
+	/**
+	 * The index file format version.
+	 */
+	private final static int VERSION = 1;
+	/**
+	 * The key prefix of map indexes.
+	 */
+	private final static String MAP_KEY = "map:";
+	/**
+	 * The key prefix of bevvy indexes.
+	 */
+	private final static String BEVVY_KEY = "bevvy:";
+
+	/**
+	 * The index file.
+	 */
+	private final File file;
+	/**
+	 * The resource ID of the container.
+	 */
+	private final String resource;
+	/**
+	 * The size of the container file.
+	 */
+	private final long size;
+	/**
+	 * The modification time of the container file.
+	 */
+	private final long modified;
+	/**
+	 * The encoded indexes read from the index file, or previously saved.
+	 */
+	private final Map<String, ByteBuffer> stored = new ConcurrentHashMap<>();
+	/**
+	 * The encoded indexes added since last saved.
+	 */
+	private final Map<String, ByteBuffer> added = new ConcurrentHashMap<>();
+
+	/**
+	 * Create a new container index, loading the given index file if it matches the container.
+	 * 
+	 * @param file The index file.
+	 * @param resource The resource ID of the container.
+	 * @param size The size of the container file.
+	 * @param modified The modification time of the container file.
+	 */
+	ContainerIndex(File file, String resource, long size, long modified) {
+		this.file = file;
+		this.resource = resource;
+		this.size = size;
+		this.modified = modified;
+		if (file.exists()) {
+			try {
+				load();
+			} catch (IOException | RuntimeException e) {
+				logger.warn("Ignoring index file {}: {}", file, e.getMessage());
+				stored.clear();
+			}
+		}
+	}
+
+	/**
+	 * Load the index file.
+	 * 
+	 * @throws IOException If reading the index file failed, or it is not valid.
+	 */
+	private void load() throws IOException {
+		ByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Index file too large");
+			}
+			buffer = channel.map(MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		try {
+			if (buffer.getLong() != MAGIC || buffer.getInt() != VERSION) {
+				throw new IOException("Not an index file");
+			}
+			int records = buffer.getInt();
+			long fileSize = buffer.getLong();
+			long fileModified = buffer.getLong();
+			int resourceLength = buffer.getInt();
+			buffer.getInt();
+			String fileResource = getString(buffer, resourceLength);
+			if (fileSize != size || fileModified != modified || !resource.equals(fileResource)) {
+				logger.debug("Index file {} is stale for container {}", file, resource);
+				return;
+			}
+			for (int i = 0; i < records; i++) {
+				int keyLength = buffer.getInt();
+				buffer.getInt();
+				long payloadLength = buffer.getLong();
+				String key = getString(buffer, keyLength);
+				if (payloadLength < 0 || payloadLength > buffer.remaining()) {
+					throw new IOException("Truncated index file");
+				}
+				ByteBuffer payload = buffer.slice();
+				payload.limit((int) payloadLength);
+				stored.put(key, payload.slice().order(ByteOrder.LITTLE_ENDIAN));
+				buffer.position(buffer.position() + align((int) payloadLength));
+			}
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			throw new IOException("Truncated index file", e);
+		}
+	}
+
+	/**
+	 * Get the materialised map index for the given map.
+	 * 
+	 * @param map The resource ID of the map.
+	 * @param streams Function to resolve the stream for the given stream ID.
+	 * @return The map index, or NULL if not present.
+	 */
+	public MapIndex getMap(String map, IntFunction<IAFF4ImageStream> streams) {
+		ByteBuffer buffer = get(MAP_KEY + map);
+		if (buffer != null) {
+			try {
+				return MapIndex.decode(buffer, streams);
+			} catch (IllegalArgumentException e) {
+				logger.warn("Ignoring index of map {}: {}", map, e.getMessage());
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Add the materialised map index for the given map.
+	 * 
+	 * @param map The resource ID of the map.
+	 * @param index The map index.
+	 */
+	public void putMap(String map, MapIndex index) {
+		added.put(MAP_KEY + map, index.encode());
+	}
+
+	/**
+	 * Get the bevvy index for the given image stream bevvy.
+	 * 
+	 * @param stream The resource ID of the image stream.
+	 * @param bevvyID The bevvy ID.
+	 * @return The bevvy index, or NULL if not present.
+	 */
+	public BevvyIndex getBevvyIndex(String stream, int bevvyID) {
+		ByteBuffer buffer = get(getBevvyKey(stream, bevvyID));
+		if (buffer != null) {
+			try {
+				return BevvyIndex.decode(buffer);
+			} catch (IllegalArgumentException e) {
+				logger.warn("Ignoring index of bevvy {} of {}: {}", bevvyID, stream, e.getMessage());
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Add the bevvy index for the given image stream.
+	 * 
+	 * @param stream The resource ID of the image stream.
+	 * @param index The bevvy index.
+	 */
+	public void putBevvyIndex(String stream, BevvyIndex index) {
+		added.put(getBevvyKey(stream, index.getBevvyID()), index.encode());
+	}
+
+	/**
+	 * Get the number of indexes held.
+	 * 
+	 * @return The number of indexes.
+	 */
+	public int size() {
+		Map<String, ByteBuffer> all = new HashMap<>(stored);
+		all.putAll(added);
+		return all.size();
+	}
+
+	/**
+	 * Write all indexes to the index file, if any have been added since the last save.
+	 * 
+	 * @throws IOException If writing the index file failed.
+	 */
+	public synchronized void save() throws IOException {
+		if (added.isEmpty()) {
+			return;
+		}
+		Map<String, ByteBuffer> records = new LinkedHashMap<>(stored);
+		records.putAll(added);
+
+		byte[] name = resource.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer header = ByteBuffer.allocate(40 + align(name.length)).order(ByteOrder.LITTLE_ENDIAN);
+		header.putLong(MAGIC).putInt(VERSION).putInt(records.size()).putLong(size).putLong(modified);
+		header.putInt(name.length).putInt(0).put(name);
+		header.clear();
+
+		// Stored indexes may be mapped from the index file being replaced, which can't be replaced while mapped on
+		// some platforms. Hold copies on the heap until the new file is mapped.
+		stored.replaceAll((key, payload) -> payload.isDirect() ? copy(payload) : payload);
+
+		File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+		try {
+			try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+				write(channel, header);
+				for (Map.Entry<String, ByteBuffer> record : records.entrySet()) {
+					byte[] key = record.getKey().getBytes(StandardCharsets.UTF_8);
+					ByteBuffer payload = record.getValue().duplicate();
+					payload.rewind();
+					ByteBuffer recordHeader = ByteBuffer.allocate(16 + align(key.length)).order(ByteOrder.LITTLE_ENDIAN);
+					recordHeader.putInt(key.length).putInt(0).putLong(payload.remaining()).put(key);
+					recordHeader.clear();
+					int padding = align(payload.remaining()) - payload.remaining();
+					write(channel, recordHeader);
+					write(channel, payload);
+					write(channel, ByteBuffer.allocate(padding));
+				}
+			}
+			try {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp.toPath());
+		}
+		stored.putAll(added);
+		added.clear();
+		try {
+			load();
+		} catch (IOException | RuntimeException e) {
+			logger.warn("Unable to map index file {}: {}", file, e.getMessage());
+		}
+	}
+
+	/**
+	 * Copy the given encoded index to the heap.
+	 * 
+	 * @param payload The encoded index.
+	 * @return The copy.
+	 */
+	private static ByteBuffer copy(ByteBuffer payload) {
+		ByteBuffer src = payload.duplicate();
+		src.rewind();
+		ByteBuffer copy = ByteBuffer.allocate(src.remaining()).order(ByteOrder.LITTLE_ENDIAN);
+		copy.put(src);
+		copy.clear();
+		return copy;
+	}
+
+	/**
+	 * Get the encoded index for the given key.
+	 * 
+	 * @param key The key.
+	 * @return The encoded index, or NULL if not present.
+	 */
+	private ByteBuffer get(String key) {
+		ByteBuffer buffer = added.get(key);
+		return buffer != null ? buffer : stored.get(key);
+	}
+
+	/**
+	 * Get the key of the given bevvy.
+	 * 
+	 * @param stream The resource ID of the image stream.
+	 * @param bevvyID The bevvy ID.
+	 * @return The key.
+	 */
+	private static String getBevvyKey(String stream, int bevvyID) {
+		return String.format("%s%s/%08d", BEVVY_KEY, stream, bevvyID);
+	}
+
+	/**
+	 * Read a UTF-8 string of the given length from the buffer, and skip any alignment padding.
+	 * 
+	 * @param buffer The buffer to read from.
+	 * @param length The length of the string in bytes.
+	 * @return The string.
+	 */
+	private static String getString(ByteBuffer buffer, int length) {
+		if (length < 0 || length > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		byte[] value = new byte[length];
+		buffer.get(value);
+		buffer.position(buffer.position() + align(length) - length);
+		return new String(value, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Write the whole buffer to the channel.
+	 * 
+	 * @param channel The channel to write to.
+	 * @param buffer The buffer to write.
+	 * @throws IOException If writing failed.
+	 */
+	private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Round the given length up to a multiple of 8 bytes.
+	 * 
+	 * @param length The length.
+	 * @return The aligned length.
+	 */
+	private static int align(int length) {
+		return (length + 7) & ~7;
+	}
+}
@@ -0,0 +1,202 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.container;
+
+import java.io.IOException;
+
+import com.evimetry.aff4.cache.ChunkCache;
+import com.evimetry.aff4.imagestream.Readahead;
+
+/**
+ * Options applied to AFF4 containers as they are opened.
+ * <p>
+ * Options passed to {@link com.evimetry.aff4.Containers#open(java.io.File, ContainerOptions)} are also applied to
+ * containers opened by the default resolver, such as the other stripes of a striped image, or the containers holding
+ * the targets of a map.
+ */
+public class ContainerOptions {
+
+	/**
+	 * The chunk cache to use for image streams.
+	 */
+	private ChunkCache chunkCache = ChunkCache.getDefault();
+	/**
+	 * The readahead settings, or NULL if readahead is disabled.
+	 */
+	private Readahead readahead;
+	/**
+	 * TRUE if reads are served from a memory mapping of the container file.
+	 */
+	private boolean memoryMapped;
+	/**
+	 * The index cache, or NULL if the index cache is disabled.
+	 */
+	private IndexCache indexCache;
+	/**
+	 * TRUE if maps look up regions directly in the stored map segment.
+	 */
+	private boolean directMapLookup;
+	/**
+	 * TRUE if image streams verify chunks against their block hashes as they are loaded.
+	 */
+	private boolean verifyOnRead;
+
+	/**
+	 * Get the chunk cache to use for image streams.
+	 * 
+	 * @return The chunk cache.
+	 */
+	public ChunkCache getChunkCache() {
+		return chunkCache;
+	}
+
+	/**
+	 * Set the chunk cache to use for image streams. The shared default chunk cache is used by default.
+	 * 
+	 * @param chunkCache The chunk cache. This cache may be shared between multiple containers, and bounds the memory
+	 *        used for decompressed chunks and bevvy indexes across all of them.
+	 * @return itself.
+	 */
+	public ContainerOptions setChunkCache(ChunkCache chunkCache) {
+		if (chunkCache == null) {
+			throw new IllegalArgumentException("Chunk cache may not be null");
+		}
+		this.chunkCache = chunkCache;
+		return this;
+	}
+
+	/**
+	 * Get the readahead settings.
+	 * 
+	 * @return The readahead settings, or NULL if readahead is disabled.
+	 */
+	public Readahead getReadahead() {
+		return readahead;
+	}
+
+	/**
+	 * Set the readahead settings. Readahead is disabled by default.
+	 * 
+	 * @param readahead The readahead settings, or NULL to disable readahead.
+	 * @return itself.
+	 * @see AFF4ZipContainer#setReadahead(Readahead)
+	 */
+	public ContainerOptions setReadahead(Readahead readahead) {
+		this.readahead = readahead;
+		return this;
+	}
+
+	/**
+	 * Determine if reads are served from a memory mapping of the container file.
+	 * 
+	 * @return TRUE if memory mapped IO is enabled.
+	 */
+	public boolean isMemoryMapped() {
+		return memoryMapped;
+	}
+
+	/**
+	 * Set if reads should be served from a memory mapping of the container file. Memory mapped IO is disabled by
+	 * default.
+	 * 
+	 * @param memoryMapped TRUE to enable memory mapped IO.
+	 * @return itself.
+	 * @see AFF4ZipContainer#setMemoryMapped(boolean)
+	 */
+	public ContainerOptions setMemoryMapped(boolean memoryMapped) {
+		this.memoryMapped = memoryMapped;
+		return this;
+	}
+
+	/**
+	 * Get the on-disk index cache.
+	 * 
+	 * @return The index cache, or NULL if the index cache is disabled.
+	 */
+	public IndexCache getIndexCache() {
+		return indexCache;
+	}
+
+	/**
+	 * Set the on-disk index cache. The index cache is disabled by default.
+	 * 
+	 * @param indexCache The index cache, or NULL to disable the index cache.
+	 * @return itself.
+	 * @see AFF4ZipContainer#setIndexCache(IndexCache)
+	 */
+	public ContainerOptions setIndexCache(IndexCache indexCache) {
+		this.indexCache = indexCache;
+		return this;
+	}
+
+	/**
+	 * Determine if maps look up regions directly in the stored map segment.
+	 * 
+	 * @return TRUE if maps are not materialised.
+	 */
+	public boolean isDirectMapLookup() {
+		return directMapLookup;
+	}
+
+	/**
+	 * Set if maps should look up regions directly in the stored map segment. Direct map lookup is disabled by default.
+	 * 
+	 * @param directMapLookup TRUE to look up regions directly in the stored map segment.
+	 * @return itself.
+	 * @see AFF4ZipContainer#setDirectMapLookup(boolean)
+	 */
+	public ContainerOptions setDirectMapLookup(boolean directMapLookup) {
+		this.directMapLookup = directMapLookup;
+		return this;
+	}
+
+	/**
+	 * Determine if image streams verify chunks against their block hashes as they are loaded.
+	 * 
+	 * @return TRUE if verifying on read.
+	 */
+	public boolean isVerifyOnRead() {
+		return verifyOnRead;
+	}
+
+	/**
+	 * Set if image streams should verify each chunk against its stored block hash as it is loaded. Verify on read is
+	 * disabled by default.
+	 * 
+	 * @param verifyOnRead TRUE to verify chunks as they are loaded.
+	 * @return itself.
+	 * @see AFF4ZipContainer#setVerifyOnRead(boolean)
+	 */
+	public ContainerOptions setVerifyOnRead(boolean verifyOnRead) {
+		this.verifyOnRead = verifyOnRead;
+		return this;
+	}
+
+	/**
+	 * Apply these options, other than the chunk cache, to the given container.
+	 * 
+	 * @param container The newly opened container.
+	 * @throws IOException If creating the memory mapping or opening the index cache failed.
+	 */
+	void apply(AFF4ZipContainer container) throws IOException {
+		container.setReadahead(readahead);
+		container.setMemoryMapped(memoryMapped);
+		container.setIndexCache(indexCache);
+		container.setDirectMapLookup(directMapLookup);
+		container.setVerifyOnRead(verifyOnRead);
+	}
+}
@@ -0,0 +1,98 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.container;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * An on-disk cache of materialised map and bevvy indexes, allowing containers to be reopened without materialising
+ * them again.
+ * <p>
+ * Each container is held in a single index file within the cache directory, named from its resource ID. The index
+ * file records the size and modification time of the container file, and is discarded if either no longer match.
+ */
+public class IndexCache {
+
+	/**
+	 * The file extension of index files.
+	 */
+	private final static String INDEX_EXTENSION = ".idx";
+
+	/**
+	 * The directory holding the index files.
+	 */
+	private final File directory;
+
+	/**
+	 * Create a new index cache in the given directory.
+	 * 
+	 * @param directory The directory to hold the index files. The directory is created if it does not exist.
+	 */
+	public IndexCache(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Get the directory holding the index files.
+	 * 
+	 * @return The directory.
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Open the index of the given container, loading any existing index for the container.
+	 * 
+	 * @param resource The resource ID of the container.
+	 * @param container The container file.
+	 * @return The container index.
+	 * @throws IOException If the cache directory could not be created.
+	 */
+	public ContainerIndex open(String resource, File container) throws IOException {
+		Files.createDirectories(directory.toPath());
+		File file = new File(directory, getName(resource) + INDEX_EXTENSION);
+		return new ContainerIndex(file, resource, container.length(), container.lastModified());
+	}
+
+	/**
+	 * Get the file name to use for the given container resource.
+	 * 
+	 * @param resource The resource ID of the container.
+	 * @return The hex encoded SHA-1 of the resource ID.
+	 */
+	private static String getName(String resource) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			byte[] digest = md.digest(resource.getBytes(StandardCharsets.UTF_8));
+			StringBuilder sb = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+				sb.append(Character.forDigit(b & 0xf, 16));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			// SHA-1 is required to be supported by all Java platforms.
+			throw new IllegalStateException(e);
+		}
+	}
+}
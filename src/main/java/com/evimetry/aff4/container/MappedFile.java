@@ -0,0 +1,124 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.container;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Read-only memory mapping of an AFF4 container file.
+ * <p>
+ * The file is mapped lazily in overlapping windows, each less than 2GiB, such that any region up to
+ * {@link #MAX_SLICE_LENGTH} bytes in length lies entirely within a single window and can be served as a slice of the
+ * mapping without copying.
+ * <p>
+ * Note: Java 8 provides no supported way to unmap a mapping, so windows are released when they are no longer
+ * referenced (including by any slices handed out).
+ */
+public class MappedFile {
+
+	/**
+	 * The distance between the start of each window.
+	 */
+	private final static long WINDOW_STRIDE = 1024l * 1024l * 1024l;
+	/**
+	 * The largest region (in bytes) that may be served as a slice of the mapping.
+	 */
+	public final static int MAX_SLICE_LENGTH = 64 * 1024 * 1024;
+
+	/**
+	 * The channel to map.
+	 */
+	private final FileChannel channel;
+	/**
+	 * The size of the file at the time of mapping.
+	 */
+	private final long size;
+	/**
+	 * The mapped windows, created on first use.
+	 */
+	private final AtomicReferenceArray<MappedByteBuffer> windows;
+
+	/**
+	 * Create a new mapping of the given channel.
+	 * 
+	 * @param channel The channel to map. The channel MUST be readable.
+	 * @throws IOException If the size of the channel cannot be determined.
+	 */
+	public MappedFile(FileChannel channel) throws IOException {
+		this.channel = channel;
+		this.size = channel.size();
+		this.windows = new AtomicReferenceArray<>((int) ((size + WINDOW_STRIDE - 1) / WINDOW_STRIDE));
+	}
+
+	/**
+	 * Get the size of the mapped file.
+	 * 
+	 * @return The size in bytes.
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Get a read-only little endian slice of the mapping for the given region.
+	 * 
+	 * @param offset The offset in the file.
+	 * @param length The length of the region.
+	 * @return The slice of the mapping, or NULL if the region extends past the end of the file or is larger than
+	 *         {@link #MAX_SLICE_LENGTH}.
+	 * @throws IOException If mapping the file failed.
+	 */
+	public ByteBuffer slice(long offset, int length) throws IOException {
+		if (offset < 0 || length < 0 || length > MAX_SLICE_LENGTH || offset + length > size) {
+			return null;
+		}
+		int index = (int) (offset / WINDOW_STRIDE);
+		ByteBuffer window = getWindow(index).duplicate();
+		int position = (int) (offset - (long) index * WINDOW_STRIDE);
+		window.limit(position + length);
+		window.position(position);
+		return window.slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Get the given window, mapping it if required.
+	 * 
+	 * @param index The window index.
+	 * @return The mapped window.
+	 * @throws IOException If mapping the file failed.
+	 */
+	private MappedByteBuffer getWindow(int index) throws IOException {
+		MappedByteBuffer window = windows.get(index);
+		if (window == null) {
+			long start = (long) index * WINDOW_STRIDE;
+			long length = Math.min(size - start, WINDOW_STRIDE + MAX_SLICE_LENGTH);
+			MappedByteBuffer mapped = channel.map(MapMode.READ_ONLY, start, length);
+			if (windows.compareAndSet(index, null, mapped)) {
+				window = mapped;
+			} else {
+				window = windows.get(index);
+			}
+		}
+		return window;
+	}
+}
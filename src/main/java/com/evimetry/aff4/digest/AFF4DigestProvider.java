@@ -0,0 +1,45 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.digest;
+
+import java.security.Provider;
+
+/**
+ * Security provider for the message digests required by AFF4 hash types that are not available in the JDK.
+ * <p>
+ * Provides "BLAKE2B-512" via {@link Blake2bDigest}. The provider may be registered with
+ * {@link java.security.Security#addProvider(Provider)}, although this library uses it directly as a fallback.
+ */
+public final class AFF4DigestProvider extends Provider {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The provider name.
+	 */
+	public final static String NAME = "AFF4";
+
+	/**
+	 * Create a new provider.
+	 */
+	@SuppressWarnings("deprecation")
+	public AFF4DigestProvider() {
+		super(NAME, 1.0, "AFF4 message digests (BLAKE2B-512)");
+		put("MessageDigest." + Blake2bDigest.ALGORITHM, Blake2bDigest.class.getName());
+		put("Alg.Alias.MessageDigest.BLAKE2B", Blake2bDigest.ALGORITHM);
+	}
+}
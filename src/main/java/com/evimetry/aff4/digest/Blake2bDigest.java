@@ -0,0 +1,1098 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.digest;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+
+/**
+ * Pure Java implementation of the BLAKE2b-512 message digest (RFC 7693), as used by the aff4:blake2b hash type.
+ * <p>
+ * Input is compressed directly from the caller's array where possible, and no allocation is performed per update or
+ * digest when using {@link #digest(byte[], int, int)}. Instances are not thread safe.
+ */
+public final class Blake2bDigest extends MessageDigest implements Cloneable {
+
+	/**
+	 * The algorithm name.
+	 */
+	public final static String ALGORITHM = "BLAKE2B-512";
+	/**
+	 * The length of the digest in bytes.
+	 */
+	public final static int DIGEST_LENGTH = 64;
+	/**
+	 * The length of each compressed block in bytes.
+	 */
+	private final static int BLOCK_LENGTH = 128;
+
+	/**
+	 * The initialisation vector.
+	 */
+	private final static long[] IV = { 0x6a09e667f3bcc908L, 0xbb67ae8584caa73bL, 0x3c6ef372fe94f82bL,
+			0xa54ff53a5f1d36f1L, 0x510e527fade682d1L, 0x9b05688c2b3e6c1fL, 0x1f83d9abfb41bd6bL, 0x5be0cd19137e2179L };
+
+	/**
+	 * The chain value.
+	 */
+	private long[] h = new long[8];
+	/**
+	 * The message words of the block being compressed.
+	 */
+	private long[] m = new long[16];
+	/**
+	 * The working vector of the block being compressed.
+	 */
+	private long[] v = new long[16];
+	/**
+	 * The buffered input not yet compressed. The final block is always held here until the digest is completed.
+	 */
+	private byte[] buffer = new byte[BLOCK_LENGTH];
+	/**
+	 * The number of bytes held in the buffer.
+	 */
+	private int bufferLength;
+	/**
+	 * The low word of the byte counter.
+	 */
+	private long t0;
+	/**
+	 * The high word of the byte counter.
+	 */
+	private long t1;
+
+	/**
+	 * Create a new BLAKE2b-512 message digest.
+	 */
+	public Blake2bDigest() {
+		super(ALGORITHM);
+		engineReset();
+	}
+
+	@Override
+	protected int engineGetDigestLength() {
+		return DIGEST_LENGTH;
+	}
+
+	@Override
+	protected void engineReset() {
+		System.arraycopy(IV, 0, h, 0, 8);
+		// Parameter block: digest length, no key, fanout 1, depth 1.
+		h[0] ^= 0x01010000L | DIGEST_LENGTH;
+		t0 = 0;
+		t1 = 0;
+		bufferLength = 0;
+	}
+
+	@Override
+	protected void engineUpdate(byte input) {
+		if (bufferLength == BLOCK_LENGTH) {
+			increment(BLOCK_LENGTH);
+			compress(buffer, 0, false);
+			bufferLength = 0;
+		}
+		buffer[bufferLength++] = input;
+	}
+
+	@Override
+	protected void engineUpdate(byte[] input, int offset, int length) {
+		if (length <= 0) {
+			return;
+		}
+		if (bufferLength > 0) {
+			int fill = BLOCK_LENGTH - bufferLength;
+			if (length <= fill) {
+				System.arraycopy(input, offset, buffer, bufferLength, length);
+				bufferLength += length;
+				return;
+			}
+			System.arraycopy(input, offset, buffer, bufferLength, fill);
+			increment(BLOCK_LENGTH);
+			compress(buffer, 0, false);
+			bufferLength = 0;
+			offset += fill;
+			length -= fill;
+		}
+		// Compress whole blocks in place, retaining at least one byte for the final block.
+		while (length > BLOCK_LENGTH) {
+			increment(BLOCK_LENGTH);
+			compress(input, offset, false);
+			offset += BLOCK_LENGTH;
+			length -= BLOCK_LENGTH;
+		}
+		System.arraycopy(input, offset, buffer, 0, length);
+		bufferLength = length;
+	}
+
+	@Override
+	protected byte[] engineDigest() {
+		byte[] digest = new byte[DIGEST_LENGTH];
+		finish(digest, 0);
+		return digest;
+	}
+
+	@Override
+	protected int engineDigest(byte[] buf, int offset, int len) throws DigestException {
+		if (len < DIGEST_LENGTH) {
+			throw new DigestException("Buffer too short for digest");
+		}
+		finish(buf, offset);
+		return DIGEST_LENGTH;
+	}
+
+	@Override
+	public Object clone() throws CloneNotSupportedException {
+		Blake2bDigest clone = (Blake2bDigest) super.clone();
+		clone.h = h.clone();
+		clone.m = new long[16];
+		clone.v = new long[16];
+		clone.buffer = buffer.clone();
+		return clone;
+	}
+
+	/**
+	 * Compress the final block, write the digest and reset.
+	 * 
+	 * @param out The array to write the digest to.
+	 * @param offset The offset in the array.
+	 */
+	private void finish(byte[] out, int offset) {
+		increment(bufferLength);
+		for (int i = bufferLength; i < BLOCK_LENGTH; i++) {
+			buffer[i] = 0;
+		}
+		compress(buffer, 0, true);
+		for (int i = 0; i < 8; i++) {
+			long v = h[i];
+			for (int j = 0; j < 8; j++) {
+				out[offset + i * 8 + j] = (byte) (v >>> (j * 8));
+			}
+		}
+		engineReset();
+	}
+
+	/**
+	 * Add the given number of bytes to the byte counter.
+	 * 
+	 * @param length The number of bytes.
+	 */
+	private void increment(int length) {
+		t0 += length;
+		if (Long.compareUnsigned(t0, length) < 0) {
+			t1++;
+		}
+	}
+
+	/**
+	 * Compress a single block into the chain value.
+	 * 
+	 * @param block The array holding the block.
+	 * @param offset The offset of the block in the array.
+	 * @param last TRUE if this is the final block.
+	 */
+	private void compress(byte[] block, int offset, boolean last) {
+		long[] m = this.m;
+		for (int i = 0; i < 16; i++) {
+			int p = offset + i * 8;
+			m[i] = (block[p] & 0xffL) | (block[p + 1] & 0xffL) << 8 | (block[p + 2] & 0xffL) << 16
+					| (block[p + 3] & 0xffL) << 24 | (block[p + 4] & 0xffL) << 32 | (block[p + 5] & 0xffL) << 40
+					| (block[p + 6] & 0xffL) << 48 | (block[p + 7] & 0xffL) << 56;
+		}
+		long[] h = this.h;
+		long[] v = this.v;
+		System.arraycopy(h, 0, v, 0, 8);
+		System.arraycopy(IV, 0, v, 8, 8);
+		v[12] ^= t0;
+		v[13] ^= t1;
+		if (last) {
+			v[14] = ~v[14];
+		}
+		// The rounds are unrolled with the state in locals, and split so that each method remains small enough to
+		// be compiled by the JIT.
+		firstRounds(v, m);
+		lastRounds(v, m);
+		for (int i = 0; i < 8; i++) {
+			h[i] ^= v[i] ^ v[i + 8];
+		}
+	}
+
+	/**
+	 * Apply rounds 0 to 5.
+	 * 
+	 * @param v The working vector, which is updated.
+	 * @param m The message words.
+	 */
+	private static void firstRounds(long[] v, long[] m) {
+		long v0 = v[0], v1 = v[1], v2 = v[2], v3 = v[3], v4 = v[4], v5 = v[5], v6 = v[6], v7 = v[7];
+		long v8 = v[8], v9 = v[9], v10 = v[10], v11 = v[11], v12 = v[12], v13 = v[13], v14 = v[14], v15 = v[15];
+		long m0 = m[0];
+		long m1 = m[1];
+		long m2 = m[2];
+		long m3 = m[3];
+		long m4 = m[4];
+		long m5 = m[5];
+		long m6 = m[6];
+		long m7 = m[7];
+		long m8 = m[8];
+		long m9 = m[9];
+		long m10 = m[10];
+		long m11 = m[11];
+		long m12 = m[12];
+		long m13 = m[13];
+		long m14 = m[14];
+		long m15 = m[15];
+		// Round 0.
+		v0 += v4 + m0;
+		v12 = Long.rotateRight(v12 ^ v0, 32);
+		v8 += v12;
+		v4 = Long.rotateRight(v4 ^ v8, 24);
+		v0 += v4 + m1;
+		v12 = Long.rotateRight(v12 ^ v0, 16);
+		v8 += v12;
+		v4 = Long.rotateRight(v4 ^ v8, 63);
+		v1 += v5 + m2;
+		v13 = Long.rotateRight(v13 ^ v1, 32);
+		v9 += v13;
+		v5 = Long.rotateRight(v5 ^ v9, 24);
+		v1 += v5 + m3;
+		v13 = Long.rotateRight(v13 ^ v1, 16);
+		v9 += v13;
+		v5 = Long.rotateRight(v5 ^ v9, 63);
+		v2 += v6 + m4;
+		v14 = Long.rotateRight(v14 ^ v2, 32);
+		v10 += v14;
+		v6 = Long.rotateRight(v6 ^ v10, 24);
+		v2 += v6 + m5;
+		v14 = Long.rotateRight(v14 ^ v2, 16);
+		v10 += v14;
+		v6 = Long.rotateRight(v6 ^ v10, 63);
+		v3 += v7 + m6;
+		v15 = Long.rotateRight(v15 ^ v3, 32);
+		v11 += v15;
+		v7 = Long.rotateRight(v7 ^ v11, 24);
+		v3 += v7 + m7;
+		v15 = Long.rotateRight(v15 ^ v3, 16);
+		v11 += v15;
+		v7 = Long.rotateRight(v7 ^ v11, 63);
+		v0 += v5 + m8;
+		v15 = Long.rotateRight(v15 ^ v0, 32);
+		v10 += v15;
+		v5 = Long.rotateRight(v5 ^ v10, 24);
+		v0 += v5 + m9;
+		v15 = Long.rotateRight(v15 ^ v0, 16);
+		v10 += v15;
+		v5 = Long.rotateRight(v5 ^ v10, 63);
+		v1 += v6 + m10;
+		v12 = Long.rotateRight(v12 ^ v1, 32);
+		v11 += v12;
+		v6 = Long.rotateRight(v6 ^ v11, 24);
+		v1 += v6 + m11;
+		v12 = Long.rotateRight(v12 ^ v1, 16);
+		v11 += v12;
+		v6 = Long.rotateRight(v6 ^ v11, 63);
+		v2 += v7 + m12;
+		v13 = Long.rotateRight(v13 ^ v2, 32);
+		v8 += v13;
+		v7 = Long.rotateRight(v7 ^ v8, 24);
+		v2 += v7 + m13;
+		v13 = Long.rotateRight(v13 ^ v2, 16);
+		v8 += v13;
+		v7 = Long.rotateRight(v7 ^ v8, 63);
+		v3 += v4 + m14;
+		v14 = Long.rotateRight(v14 ^ v3, 32);
+		v9 += v14;
+		v4 = Long.rotateRight(v4 ^ v9, 24);
+		v3 += v4 + m15;
+		v14 = Long.rotateRight(v14 ^ v3, 16);
+		v9 += v14;
+		v4 = Long.rotateRight(v4 ^ v9, 63);
+		// Round 1.
+		v0 += v4 + m14;
+		v12 = Long.rotateRight(v12 ^ v0, 32);
+		v8 += v12;
+		v4 = Long.rotateRight(v4 ^ v8, 24);
+		v0 += v4 + m10;
+		v12 = Long.rotateRight(v12 ^ v0, 16);
+		v8 += v12;
+		v4 = Long.rotateRight(v4 ^ v8, 63);
+		v1 += v5 + m4;
+		v13 = Long.rotateRight(v13 ^ v1, 32);
+		v9 += v13;
+		v5 = Long.rotateRight(v5 ^ v9, 24);
+		v1 += v5 + m8;
+		v13 = Long.rotateRight(v13 ^ v1, 16);
+		v9 += v13;
+		v5 = Long.rotateRight(v5 ^ v9, 63);
+		v2 += v6 + m9;
+		v14 = Long.rotateRight(v14 ^ v2, 32);
+		v10 += v14;
+		v6 = Long.rotateRight(v6 ^ v10, 24);
+		v2 += v6 + m15;
+		v14 = Long.rotateRight(v14 ^ v2, 16);
+		v10 += v14;
+		v6 = Long.rotateRight(v6 ^ v10, 63);
+		v3 += v7 + m13;
+		v15 = Long.rotateRight(v15 ^ v3, 32);
+		v11 += v15;
+		v7 = Long.rotateRight(v7 ^ v11, 24);
+		v3 += v7 + m6;
+		v15 = Long.rotateRight(v15 ^ v3, 16);
+		v11 += v15;
+		v7 = Long.rotateRight(v7 ^ v11, 63);
+		v0 += v5 + m1;
+		v15 = Long.rotateRight(v15 ^ v0, 32);
+		v10 += v15;
+		v5 = Long.rotateRight(v5 ^ v10, 24);
+		v0 += v5 + m12;
+		v15 = Long.rotateRight(v15 ^ v0, 16);
+		v10 += v15;
+		v5 = Long.rotateRight(v5 ^ v10, 63);
+		v1 += v6 + m0;
+		v12 = Long.rotateRight(v12 ^ v1, 32);
+		v11 += v12;
+		v6 = Long.rotateRight(v6 ^ v11, 24);
+		v1 += v6 + m2;
+		v12 = Long.rotateRight(v12 ^ v1, 16);
+		v11 += v12;
+		v6 = Long.rotateRight(v6 ^ v11, 63);
+		v2 += v7 + m11;
+		v13 = Long.rotateRight(v13 ^ v2, 32);
+		v8 += v13;
+		v7 = Long.rotateRight(v7 ^ v8, 24);
+		v2 += v7 + m7;
+		v13 = Long.rotateRight(v13 ^ v2, 16);
+		v8 += v13;
+		v7 = Long.rotateRight(v7 ^ v8, 63);
+		v3 += v4 + m5;
+		v14 = Long.rotateRight(v14 ^ v3, 32);
+		v9 += v14;
+		v4 = Long.rotateRight(v4 ^ v9, 24);
+		v3 += v4 + m3;
+		v14 = Long.rotateRight(v14 ^ v3, 16);
+		v9 += v14;
+		v4 = Long.rotateRight(v4 ^ v9, 63);
+		// Round 2.
+		v0 += v4 + m11;
+		v12 = Long.rotateRight(v12 ^ v0, 32);
+		v8 += v12;
+		v4 = Long.rotateRight(v4 ^ v8, 24);
+		v0 += v4 + m8;
+		v12 = Long.rotateRight(v12 ^ v0, 16);
+		v8 += v12;
+		v4 = Long.rotateRight(v4 ^ v8, 63);
+		v1 += v5 + m12;
+		v13 = Long.rotateRight(v13 ^ v1, 32);
+		v9 += v13;
+		v5 = Long.rotateRight(v5 ^ v9, 24);
+		v1 += v5 + m0;
+		v13 = Long.rotateRight(v13 ^ v1, 16);
+		v9 += v13;
+		v5 = Long.rotateRight(v5 ^ v9, 63);
+		v2 += v6 + m5;
+		v14 = Long.rotateRight(v14 ^ v2, 32);
+		v10 += v14;
+		v6 = Long.rotateRight(v6 ^ v10, 24);
+		v2 += v6 + m2;
+		v14 = Long.rotateRight(v14 ^ v2, 16);
+		v10 += v14;
+		v6 = Long.rotateRight(v6 ^ v10, 63);
+		v3 += v7 + m15;
+		v15 = Long.rotateRight(v15 ^ v3, 32);
+		v11 += v15;
+		v7 = Long.rotateRight(v7 ^ v11, 24);
+		v3 += v7 + m13;
+		v15 = Long.rotateRight(v15 ^ v3, 16);
+		v11 += v15;
+		v7 = Long.rotateRight(v7 ^ v11, 63);
+		v0 += v5 + m10;
+		v15 = Long.rotateRight(v15 ^ v0, 32);
+		v10 += v15;
+		v5 = Long.rotateRight(v5 ^ v10, 24);
+		v0 += v5 + m14;
+		v15 = Long.rotateRight(v15 ^ v0, 16);
+		v10 += v15;
+		v5 = Long.rotateRight(v5 ^ v10, 63);
+		v1 += v6 + m3;
+		v12 = Long.rotateRight(v12 ^ v1, 32);
+		v11 += v12;
+		v6 = Long.rotateRight(v6 ^ v11, 24);
+		v1 += v6 + m6;
+		v12 = Long.rotateRight(v12 ^ v1, 16);
+		v11 += v12;
+		v6 = Long.rotateRight(v6 ^ v11, 63);
+		v2 += v7 + m7;
+		v13 = Long.rotateRight(v13 ^ v2, 32);
+		v8 += v13;
+		v7 = Long.rotateRight(v7 ^ v8, 24);
+		v2 += v7 + m1;
+		v13 = Long.rotateRight(v13 ^ v2, 16);
+		v8 += v13;
+		v7 = Long.rotateRight(v7 ^ v8, 63);
+		v3 += v4 + m9;
+		v14 = Long.rotateRight(v14 ^ v3, 32);
+		v9 += v14;
+		v4 = Long.rotateRight(v4 ^ v9, 24);
+		v3 += v4 + m4;
+		v14 = Long.rotateRight(v14 ^ v3, 16);
+		v9 += v14;
+		v4 = Long.rotateRight(v4 ^ v9, 63);
+		// Round 3.
+		v0 += v4 + m7;
+		v12 = Long.rotateRight(v12 ^ v0, 32);
+		v8 += v12;
+		v4 = Long.rotateRight(v4 ^ v8, 24);
+		v0 += v4 + m9;
+		v12 = Long.rotateRight(v12 ^ v0, 16);
+		v8 += v12;
+		v4 = Long.rotateRight(v4 ^ v8, 63);
+		v1 += v5 + m3;
+		v13 = Long.rotateRight(v13 ^ v1, 32);
+		v9 += v13;
+		v5 = Long.rotateRight(v5 ^ v9, 24);
+		v1 += v5 + m1;
+		v13 = Long.rotateRight(v13 ^ v1, 16);
+		v9 += v13;
+		v5 = Long.rotateRight(v5 ^ v9, 63);
+		v2 += v6 + m13;
+		v14 = Long.rotateRight(v14 ^ v2, 32);
+		v10 += v14;
+		v6 = Long.rotateRight(v6 ^ v10, 24);
+		v2 += v6 + m12;
+		v14 = Long.rotateRight(v14 ^ v2, 16);
+		v10 += v14;
+		v6 = Long.rotateRight(v6 ^ v10, 63);
+		v3 += v7 + m11;
+		v15 = Long.rotateRight(v15 ^ v3, 32);
+		v11 += v15;
+		v7 = Long.rotateRight(v7 ^ v11, 24);
+		v3 += v7 + m14;
+		v15 = Long.rotateRight(v15 ^ v3, 16);
+		v11 += v15;
+		v7 = Long.rotateRight(v7 ^ v11, 63);
+		v0 += v5 + m2;
+		v15 = Long.rotateRight(v15 ^ v0, 32);
+		v10 += v15;
+		v5 = Long.rotateRight(v5 ^ v10, 24);
+		v0 += v5 + m6;
+		v15 = Long.rotateRight(v15 ^ v0, 16);
+		v10 += v15;
+		v5 = Long.rotateRight(v5 ^ v10, 63);
+		v1 += v6 + m5;
+		v12 = Long.rotateRight(v12 ^ v1, 32);
+		v11 += v12;
+		v6 = Long.rotateRight(v6 ^ v11, 24);
+		v1 += v6 + m10;
+		v12 = Long.rotateRight(v12 ^ v1, 16);
+		v11 += v12;
+		v6 = Long.rotateRight(v6 ^ v11, 63);
+		v2 += v7 + m4;
+		v13 = Long.rotateRight(v13 ^ v2, 32);
+		v8 += v13;
+		v7 = Long.rotateRight(v7 ^ v8, 24);
+		v2 += v7 + m0;
+		v13 = Long.rotateRight(v13 ^ v2, 16);
+		v8 += v13;
+		v7 = Long.rotateRight(v7 ^ v8, 63);
+		v3 += v4 + m15;
+		v14 = Long.rotateRight(v14 ^ v3, 32);
+		v9 += v14;
+		v4 = Long.rotateRight(v4 ^ v9, 24);
+		v3 += v4 + m8;
+		v14 = Long.rotateRight(v14 ^ v3, 16);
+		v9 += v14;
+		v4 = Long.rotateRight(v4 ^ v9, 63);
+		// Round 4.
+		v0 += v4 + m9;
+		v12 = Long.rotateRight(v12 ^ v0, 32);
+		v8 += v12;
+		v4 = Long.rotateRight(v4 ^ v8, 24);
+		v0 += v4 + m0;
+		v12 = Long.rotateRight(v12 ^ v0, 16);
+		v8 += v12;
+		v4 = Long.rotateRight(v4 ^ v8, 63);
+		v1 += v5 + m5;
+		v13 = Long.rotateRight(v13 ^ v1, 32);
+		v9 += v13;
+		v5 = Long.rotateRight(v5 ^ v9, 24);
+		v1 += v5 + m7;
+		v13 = Long.rotateRight(v13 ^ v1, 16);
+		v9 += v13;
+		v5 = Long.rotateRight(v5 ^ v9, 63);
+		v2 += v6 + m2;
+		v14 = Long.rotateRight(v14 ^ v2, 32);
+		v10 += v14;
+		v6 = Long.rotateRight(v6 ^ v10, 24);
+		v2 += v6 + m4;
+		v14 = Long.rotateRight(v14 ^ v2, 16);
+		v10 += v14;
+		v6 = Long.rotateRight(v6 ^ v10, 63);
+		v3 += v7 + m10;
+		v15 = Long.rotateRight(v15 ^ v3, 32);
+		v11 += v15;
+		v7 = Long.rotateRight(v7 ^ v11, 24);
+		v3 += v7 + m15;
+		v15 = Long.rotateRight(v15 ^ v3, 16);
+		v11 += v15;
+		v7 = Long.rotateRight(v7 ^ v11, 63);
+		v0 += v5 + m14;
+		v15 = Long.rotateRight(v15 ^ v0, 32);
+		v10 += v15;
+		v5 = Long.rotateRight(v5 ^ v10, 24);
+		v0 += v5 + m1;
+		v15 = Long.rotateRight(v15 ^ v0, 16);
+		v10 += v15;
+		v5 = Long.rotateRight(v5 ^ v10, 63);
+		v1 += v6 + m11;
+		v12 = Long.rotateRight(v12 ^ v1, 32);
+		v11 += v12;
+		v6 = Long.rotateRight(v6 ^ v11, 24);
+		v1 += v6 + m12;
+		v12 = Long.rotateRight(v12 ^ v1, 16);
+		v11 += v12;
+		v6 = Long.rotateRight(v6 ^ v11, 63);
+		v2 += v7 + m6;
+		v13 = Long.rotateRight(v13 ^ v2, 32);
+		v8 += v13;
+		v7 = Long.rotateRight(v7 ^ v8, 24);
+		v2 += v7 + m8;
+		v13 = Long.rotateRight(v13 ^ v2, 16);
+		v8 += v13;
+		v7 = Long.rotateRight(v7 ^ v8, 63);
+		v3 += v4 + m3;
+		v14 = Long.rotateRight(v14 ^ v3, 32);
+		v9 += v14;
+		v4 = Long.rotateRight(v4 ^ v9, 24);
+		v3 += v4 + m13;
+		v14 = Long.rotateRight(v14 ^ v3, 16);
+		v9 += v14;
+		v4 = Long.rotateRight(v4 ^ v9, 63);
+		// Round 5.
+		v0 += v4 + m2;
+		v12 = Long.rotateRight(v12 ^ v0, 32);
+		v8 += v12;
+		v4 = Long.rotateRight(v4 ^ v8, 24);
+		v0 += v4 + m12;
+		v12 = Long.rotateRight(v12 ^ v0, 16);
+		v8 += v12;
+		v4 = Long.rotateRight(v4 ^ v8, 63);
+		v1 += v5 + m6;
+		v13 = Long.rotateRight(v13 ^ v1, 32);
+		v9 += v13;
+		v5 = Long.rotateRight(v5 ^ v9, 24);
+		v1 += v5 + m10;
+		v13 = Long.rotateRight(v13 ^ v1, 16);
+		v9 += v13;
+		v5 = Long.rotateRight(v5 ^ v9, 63);
+		v2 += v6 + m0;
+		v14 = Long.rotateRight(v14 ^ v2, 32);
+		v10 += v14;
+		v6 = Long.rotateRight(v6 ^ v10, 24);
+		v2 += v6 + m11;
+		v14 = Long.rotateRight(v14 ^ v2, 16);
+		v10 += v14;
+		v6 = Long.rotateRight(v6 ^ v10, 63);
+		v3 += v7 + m8;
+		v15 = Long.rotateRight(v15 ^ v3, 32);
+		v11 += v15;
+		v7 = Long.rotateRight(v7 ^ v11, 24);
+		v3 += v7 + m3;
+		v15 = Long.rotateRight(v15 ^ v3, 16);
+		v11 += v15;
+		v7 = Long.rotateRight(v7 ^ v11, 63);
+		v0 += v5 + m4;
+		v15 = Long.rotateRight(v15 ^ v0, 32);
+		v10 += v15;
+		v5 = Long.rotateRight(v5 ^ v10, 24);
+		v0 += v5 + m13;
+		v15 = Long.rotateRight(v15 ^ v0, 16);
+		v10 += v15;
+		v5 = Long.rotateRight(v5 ^ v10, 63);
+		v1 += v6 + m7;
+		v12 = Long.rotateRight(v12 ^ v1, 32);
+		v11 += v12;
+		v6 = Long.rotateRight(v6 ^ v11, 24);
+		v1 += v6 + m5;
+		v12 = Long.rotateRight(v12 ^ v1, 16);
+		v11 += v12;
+		v6 = Long.rotateRight(v6 ^ v11, 63);
+		v2 += v7 + m15;
+		v13 = Long.rotateRight(v13 ^ v2, 32);
+		v8 += v13;
+		v7 = Long.rotateRight(v7 ^ v8, 24);
+		v2 += v7 + m14;
+		v13 = Long.rotateRight(v13 ^ v2, 16);
+		v8 += v13;
+		v7 = Long.rotateRight(v7 ^ v8, 63);
+		v3 += v4 + m1;
+		v14 = Long.rotateRight(v14 ^ v3, 32);
+		v9 += v14;
+		v4 = Long.rotateRight(v4 ^ v9, 24);
+		v3 += v4 + m9;
+		v14 = Long.rotateRight(v14 ^ v3, 16);
+		v9 += v14;
+		v4 = Long.rotateRight(v4 ^ v9, 63);
+		v[0] = v0;
+		v[1] = v1;
+		v[2] = v2;
+		v[3] = v3;
+		v[4] = v4;
+		v[5] = v5;
+		v[6] = v6;
+		v[7] = v7;
+		v[8] = v8;
+		v[9] = v9;
+		v[10] = v10;
+		v[11] = v11;
+		v[12] = v12;
+		v[13] = v13;
+		v[14] = v14;
+		v[15] = v15;
+	}
+
+	/**
+	 * Apply rounds 6 to 11.
+	 * 
+	 * @param v The working vector, which is updated.
+	 * @param m The message words.
+	 */
+	private static void lastRounds(long[] v, long[] m) {
+		long v0 = v[0], v1 = v[1], v2 = v[2], v3 = v[3], v4 = v[4], v5 = v[5], v6 = v[6], v7 = v[7];
+		long v8 = v[8], v9 = v[9], v10 = v[10], v11 = v[11], v12 = v[12], v13 = v[13], v14 = v[14], v15 = v[15];
+		long m0 = m[0];
+		long m1 = m[1];
+		long m2 = m[2];
+		long m3 = m[3];
+		long m4 = m[4];
+		long m5 = m[5];
+		long m6 = m[6];
+		long m7 = m[7];
+		long m8 = m[8];
+		long m9 = m[9];
+		long m10 = m[10];
+		long m11 = m[11];
+		long m12 = m[12];
+		long m13 = m[13];
+		long m14 = m[14];
+		long m15 = m[15];
+		// Round 6.
+		v0 += v4 + m12;
+		v12 = Long.rotateRight(v12 ^ v0, 32);
+		v8 += v12;
+		v4 = Long.rotateRight(v4 ^ v8, 24);
+		v0 += v4 + m5;
+		v12 = Long.rotateRight(v12 ^ v0, 16);
+		v8 += v12;
+		v4 = Long.rotateRight(v4 ^ v8, 63);
+		v1 += v5 + m1;
+		v13 = Long.rotateRight(v13 ^ v1, 32);
+		v9 += v13;
+		v5 = Long.rotateRight(v5 ^ v9, 24);
+		v1 += v5 + m15;
+		v13 = Long.rotateRight(v13 ^ v1, 16);
+		v9 += v13;
+		v5 = Long.rotateRight(v5 ^ v9, 63);
+		v2 += v6 + m14;
+		v14 = Long.rotateRight(v14 ^ v2, 32);
+		v10 += v14;
+		v6 = Long.rotateRight(v6 ^ v10, 24);
+		v2 += v6 + m13;
+		v14 = Long.rotateRight(v14 ^ v2, 16);
+		v10 += v14;
+		v6 = Long.rotateRight(v6 ^ v10, 63);
+		v3 += v7 + m4;
+		v15 = Long.rotateRight(v15 ^ v3, 32);
+		v11 += v15;
+		v7 = Long.rotateRight(v7 ^ v11, 24);
+		v3 += v7 + m10;
+		v15 = Long.rotateRight(v15 ^ v3, 16);
+		v11 += v15;
+		v7 = Long.rotateRight(v7 ^ v11, 63);
+		v0 += v5 + m0;
+		v15 = Long.rotateRight(v15 ^ v0, 32);
+		v10 += v15;
+		v5 = Long.rotateRight(v5 ^ v10, 24);
+		v0 += v5 + m7;
+		v15 = Long.rotateRight(v15 ^ v0, 16);
+		v10 += v15;
+		v5 = Long.rotateRight(v5 ^ v10, 63);
+		v1 += v6 + m6;
+		v12 = Long.rotateRight(v12 ^ v1, 32);
+		v11 += v12;
+		v6 = Long.rotateRight(v6 ^ v11, 24);
+		v1 += v6 + m3;
+		v12 = Long.rotateRight(v12 ^ v1, 16);
+		v11 += v12;
+		v6 = Long.rotateRight(v6 ^ v11, 63);
+		v2 += v7 + m9;
+		v13 = Long.rotateRight(v13 ^ v2, 32);
+		v8 += v13;
+		v7 = Long.rotateRight(v7 ^ v8, 24);
+		v2 += v7 + m2;
+		v13 = Long.rotateRight(v13 ^ v2, 16);
+		v8 += v13;
+		v7 = Long.rotateRight(v7 ^ v8, 63);
+		v3 += v4 + m8;
+		v14 = Long.rotateRight(v14 ^ v3, 32);
+		v9 += v14;
+		v4 = Long.rotateRight(v4 ^ v9, 24);
+		v3 += v4 + m11;
+		v14 = Long.rotateRight(v14 ^ v3, 16);
+		v9 += v14;
+		v4 = Long.rotateRight(v4 ^ v9, 63);
+		// Round 7.
+		v0 += v4 + m13;
+		v12 = Long.rotateRight(v12 ^ v0, 32);
+		v8 += v12;
+		v4 = Long.rotateRight(v4 ^ v8, 24);
+		v0 += v4 + m11;
+		v12 = Long.rotateRight(v12 ^ v0, 16);
+		v8 += v12;
+		v4 = Long.rotateRight(v4 ^ v8, 63);
+		v1 += v5 + m7;
+		v13 = Long.rotateRight(v13 ^ v1, 32);
+		v9 += v13;
+		v5 = Long.rotateRight(v5 ^ v9, 24);
+		v1 += v5 + m14;
+		v13 = Long.rotateRight(v13 ^ v1, 16);
+		v9 += v13;
+		v5 = Long.rotateRight(v5 ^ v9, 63);
+		v2 += v6 + m12;
+		v14 = Long.rotateRight(v14 ^ v2, 32);
+		v10 += v14;
+		v6 = Long.rotateRight(v6 ^ v10, 24);
+		v2 += v6 + m1;
+		v14 = Long.rotateRight(v14 ^ v2, 16);
+		v10 += v14;
+		v6 = Long.rotateRight(v6 ^ v10, 63);
+		v3 += v7 + m3;
+		v15 = Long.rotateRight(v15 ^ v3, 32);
+		v11 += v15;
+		v7 = Long.rotateRight(v7 ^ v11, 24);
+		v3 += v7 + m9;
+		v15 = Long.rotateRight(v15 ^ v3, 16);
+		v11 += v15;
+		v7 = Long.rotateRight(v7 ^ v11, 63);
+		v0 += v5 + m5;
+		v15 = Long.rotateRight(v15 ^ v0, 32);
+		v10 += v15;
+		v5 = Long.rotateRight(v5 ^ v10, 24);
+		v0 += v5 + m0;
+		v15 = Long.rotateRight(v15 ^ v0, 16);
+		v10 += v15;
+		v5 = Long.rotateRight(v5 ^ v10, 63);
+		v1 += v6 + m15;
+		v12 = Long.rotateRight(v12 ^ v1, 32);
+		v11 += v12;
+		v6 = Long.rotateRight(v6 ^ v11, 24);
+		v1 += v6 + m4;
+		v12 = Long.rotateRight(v12 ^ v1, 16);
+		v11 += v12;
+		v6 = Long.rotateRight(v6 ^ v11, 63);
+		v2 += v7 + m8;
+		v13 = Long.rotateRight(v13 ^ v2, 32);
+		v8 += v13;
+		v7 = Long.rotateRight(v7 ^ v8, 24);
+		v2 += v7 + m6;
+		v13 = Long.rotateRight(v13 ^ v2, 16);
+		v8 += v13;
+		v7 = Long.rotateRight(v7 ^ v8, 63);
+		v3 += v4 + m2;
+		v14 = Long.rotateRight(v14 ^ v3, 32);
+		v9 += v14;
+		v4 = Long.rotateRight(v4 ^ v9, 24);
+		v3 += v4 + m10;
+		v14 = Long.rotateRight(v14 ^ v3, 16);
+		v9 += v14;
+		v4 = Long.rotateRight(v4 ^ v9, 63);
+		// Round 8.
+		v0 += v4 + m6;
+		v12 = Long.rotateRight(v12 ^ v0, 32);
+		v8 += v12;
+		v4 = Long.rotateRight(v4 ^ v8, 24);
+		v0 += v4 + m15;
+		v12 = Long.rotateRight(v12 ^ v0, 16);
+		v8 += v12;
+		v4 = Long.rotateRight(v4 ^ v8, 63);
+		v1 += v5 + m14;
+		v13 = Long.rotateRight(v13 ^ v1, 32);
+		v9 += v13;
+		v5 = Long.rotateRight(v5 ^ v9, 24);
+		v1 += v5 + m9;
+		v13 = Long.rotateRight(v13 ^ v1, 16);
+		v9 += v13;
+		v5 = Long.rotateRight(v5 ^ v9, 63);
+		v2 += v6 + m11;
+		v14 = Long.rotateRight(v14 ^ v2, 32);
+		v10 += v14;
+		v6 = Long.rotateRight(v6 ^ v10, 24);
+		v2 += v6 + m3;
+		v14 = Long.rotateRight(v14 ^ v2, 16);
+		v10 += v14;
+		v6 = Long.rotateRight(v6 ^ v10, 63);
+		v3 += v7 + m0;
+		v15 = Long.rotateRight(v15 ^ v3, 32);
+		v11 += v15;
+		v7 = Long.rotateRight(v7 ^ v11, 24);
+		v3 += v7 + m8;
+		v15 = Long.rotateRight(v15 ^ v3, 16);
+		v11 += v15;
+		v7 = Long.rotateRight(v7 ^ v11, 63);
+		v0 += v5 + m12;
+		v15 = Long.rotateRight(v15 ^ v0, 32);
+		v10 += v15;
+		v5 = Long.rotateRight(v5 ^ v10, 24);
+		v0 += v5 + m2;
+		v15 = Long.rotateRight(v15 ^ v0, 16);
+		v10 += v15;
+		v5 = Long.rotateRight(v5 ^ v10, 63);
+		v1 += v6 + m13;
+		v12 = Long.rotateRight(v12 ^ v1, 32);
+		v11 += v12;
+		v6 = Long.rotateRight(v6 ^ v11, 24);
+		v1 += v6 + m7;
+		v12 = Long.rotateRight(v12 ^ v1, 16);
+		v11 += v12;
+		v6 = Long.rotateRight(v6 ^ v11, 63);
+		v2 += v7 + m1;
+		v13 = Long.rotateRight(v13 ^ v2, 32);
+		v8 += v13;
+		v7 = Long.rotateRight(v7 ^ v8, 24);
+		v2 += v7 + m4;
+		v13 = Long.rotateRight(v13 ^ v2, 16);
+		v8 += v13;
+		v7 = Long.rotateRight(v7 ^ v8, 63);
+		v3 += v4 + m10;
+		v14 = Long.rotateRight(v14 ^ v3, 32);
+		v9 += v14;
+		v4 = Long.rotateRight(v4 ^ v9, 24);
+		v3 += v4 + m5;
+		v14 = Long.rotateRight(v14 ^ v3, 16);
+		v9 += v14;
+		v4 = Long.rotateRight(v4 ^ v9, 63);
+		// Round 9.
+		v0 += v4 + m10;
+		v12 = Long.rotateRight(v12 ^ v0, 32);
+		v8 += v12;
+		v4 = Long.rotateRight(v4 ^ v8, 24);
+		v0 += v4 + m2;
+		v12 = Long.rotateRight(v12 ^ v0, 16);
+		v8 += v12;
+		v4 = Long.rotateRight(v4 ^ v8, 63);
+		v1 += v5 + m8;
+		v13 = Long.rotateRight(v13 ^ v1, 32);
+		v9 += v13;
+		v5 = Long.rotateRight(v5 ^ v9, 24);
+		v1 += v5 + m4;
+		v13 = Long.rotateRight(v13 ^ v1, 16);
+		v9 += v13;
+		v5 = Long.rotateRight(v5 ^ v9, 63);
+		v2 += v6 + m7;
+		v14 = Long.rotateRight(v14 ^ v2, 32);
+		v10 += v14;
+		v6 = Long.rotateRight(v6 ^ v10, 24);
+		v2 += v6 + m6;
+		v14 = Long.rotateRight(v14 ^ v2, 16);
+		v10 += v14;
+		v6 = Long.rotateRight(v6 ^ v10, 63);
+		v3 += v7 + m1;
+		v15 = Long.rotateRight(v15 ^ v3, 32);
+		v11 += v15;
+		v7 = Long.rotateRight(v7 ^ v11, 24);
+		v3 += v7 + m5;
+		v15 = Long.rotateRight(v15 ^ v3, 16);
+		v11 += v15;
+		v7 = Long.rotateRight(v7 ^ v11, 63);
+		v0 += v5 + m15;
+		v15 = Long.rotateRight(v15 ^ v0, 32);
+		v10 += v15;
+		v5 = Long.rotateRight(v5 ^ v10, 24);
+		v0 += v5 + m11;
+		v15 = Long.rotateRight(v15 ^ v0, 16);
+		v10 += v15;
+		v5 = Long.rotateRight(v5 ^ v10, 63);
+		v1 += v6 + m9;
+		v12 = Long.rotateRight(v12 ^ v1, 32);
+		v11 += v12;
+		v6 = Long.rotateRight(v6 ^ v11, 24);
+		v1 += v6 + m14;
+		v12 = Long.rotateRight(v12 ^ v1, 16);
+		v11 += v12;
+		v6 = Long.rotateRight(v6 ^ v11, 63);
+		v2 += v7 + m3;
+		v13 = Long.rotateRight(v13 ^ v2, 32);
+		v8 += v13;
+		v7 = Long.rotateRight(v7 ^ v8, 24);
+		v2 += v7 + m12;
+		v13 = Long.rotateRight(v13 ^ v2, 16);
+		v8 += v13;
+		v7 = Long.rotateRight(v7 ^ v8, 63);
+		v3 += v4 + m13;
+		v14 = Long.rotateRight(v14 ^ v3, 32);
+		v9 += v14;
+		v4 = Long.rotateRight(v4 ^ v9, 24);
+		v3 += v4 + m0;
+		v14 = Long.rotateRight(v14 ^ v3, 16);
+		v9 += v14;
+		v4 = Long.rotateRight(v4 ^ v9, 63);
+		// Round 10.
+		v0 += v4 + m0;
+		v12 = Long.rotateRight(v12 ^ v0, 32);
+		v8 += v12;
+		v4 = Long.rotateRight(v4 ^ v8, 24);
+		v0 += v4 + m1;
+		v12 = Long.rotateRight(v12 ^ v0, 16);
+		v8 += v12;
+		v4 = Long.rotateRight(v4 ^ v8, 63);
+		v1 += v5 + m2;
+		v13 = Long.rotateRight(v13 ^ v1, 32);
+		v9 += v13;
+		v5 = Long.rotateRight(v5 ^ v9, 24);
+		v1 += v5 + m3;
+		v13 = Long.rotateRight(v13 ^ v1, 16);
+		v9 += v13;
+		v5 = Long.rotateRight(v5 ^ v9, 63);
+		v2 += v6 + m4;
+		v14 = Long.rotateRight(v14 ^ v2, 32);
+		v10 += v14;
+		v6 = Long.rotateRight(v6 ^ v10, 24);
+		v2 += v6 + m5;
+		v14 = Long.rotateRight(v14 ^ v2, 16);
+		v10 += v14;
+		v6 = Long.rotateRight(v6 ^ v10, 63);
+		v3 += v7 + m6;
+		v15 = Long.rotateRight(v15 ^ v3, 32);
+		v11 += v15;
+		v7 = Long.rotateRight(v7 ^ v11, 24);
+		v3 += v7 + m7;
+		v15 = Long.rotateRight(v15 ^ v3, 16);
+		v11 += v15;
+		v7 = Long.rotateRight(v7 ^ v11, 63);
+		v0 += v5 + m8;
+		v15 = Long.rotateRight(v15 ^ v0, 32);
+		v10 += v15;
+		v5 = Long.rotateRight(v5 ^ v10, 24);
+		v0 += v5 + m9;
+		v15 = Long.rotateRight(v15 ^ v0, 16);
+		v10 += v15;
+		v5 = Long.rotateRight(v5 ^ v10, 63);
+		v1 += v6 + m10;
+		v12 = Long.rotateRight(v12 ^ v1, 32);
+		v11 += v12;
+		v6 = Long.rotateRight(v6 ^ v11, 24);
+		v1 += v6 + m11;
+		v12 = Long.rotateRight(v12 ^ v1, 16);
+		v11 += v12;
+		v6 = Long.rotateRight(v6 ^ v11, 63);
+		v2 += v7 + m12;
+		v13 = Long.rotateRight(v13 ^ v2, 32);
+		v8 += v13;
+		v7 = Long.rotateRight(v7 ^ v8, 24);
+		v2 += v7 + m13;
+		v13 = Long.rotateRight(v13 ^ v2, 16);
+		v8 += v13;
+		v7 = Long.rotateRight(v7 ^ v8, 63);
+		v3 += v4 + m14;
+		v14 = Long.rotateRight(v14 ^ v3, 32);
+		v9 += v14;
+		v4 = Long.rotateRight(v4 ^ v9, 24);
+		v3 += v4 + m15;
+		v14 = Long.rotateRight(v14 ^ v3, 16);
+		v9 += v14;
+		v4 = Long.rotateRight(v4 ^ v9, 63);
+		// Round 11.
+		v0 += v4 + m14;
+		v12 = Long.rotateRight(v12 ^ v0, 32);
+		v8 += v12;
+		v4 = Long.rotateRight(v4 ^ v8, 24);
+		v0 += v4 + m10;
+		v12 = Long.rotateRight(v12 ^ v0, 16);
+		v8 += v12;
+		v4 = Long.rotateRight(v4 ^ v8, 63);
+		v1 += v5 + m4;
+		v13 = Long.rotateRight(v13 ^ v1, 32);
+		v9 += v13;
+		v5 = Long.rotateRight(v5 ^ v9, 24);
+		v1 += v5 + m8;
+		v13 = Long.rotateRight(v13 ^ v1, 16);
+		v9 += v13;
+		v5 = Long.rotateRight(v5 ^ v9, 63);
+		v2 += v6 + m9;
+		v14 = Long.rotateRight(v14 ^ v2, 32);
+		v10 += v14;
+		v6 = Long.rotateRight(v6 ^ v10, 24);
+		v2 += v6 + m15;
+		v14 = Long.rotateRight(v14 ^ v2, 16);
+		v10 += v14;
+		v6 = Long.rotateRight(v6 ^ v10, 63);
+		v3 += v7 + m13;
+		v15 = Long.rotateRight(v15 ^ v3, 32);
+		v11 += v15;
+		v7 = Long.rotateRight(v7 ^ v11, 24);
+		v3 += v7 + m6;
+		v15 = Long.rotateRight(v15 ^ v3, 16);
+		v11 += v15;
+		v7 = Long.rotateRight(v7 ^ v11, 63);
+		v0 += v5 + m1;
+		v15 = Long.rotateRight(v15 ^ v0, 32);
+		v10 += v15;
+		v5 = Long.rotateRight(v5 ^ v10, 24);
+		v0 += v5 + m12;
+		v15 = Long.rotateRight(v15 ^ v0, 16);
+		v10 += v15;
+		v5 = Long.rotateRight(v5 ^ v10, 63);
+		v1 += v6 + m0;
+		v12 = Long.rotateRight(v12 ^ v1, 32);
+		v11 += v12;
+		v6 = Long.rotateRight(v6 ^ v11, 24);
+		v1 += v6 + m2;
+		v12 = Long.rotateRight(v12 ^ v1, 16);
+		v11 += v12;
+		v6 = Long.rotateRight(v6 ^ v11, 63);
+		v2 += v7 + m11;
+		v13 = Long.rotateRight(v13 ^ v2, 32);
+		v8 += v13;
+		v7 = Long.rotateRight(v7 ^ v8, 24);
+		v2 += v7 + m7;
+		v13 = Long.rotateRight(v13 ^ v2, 16);
+		v8 += v13;
+		v7 = Long.rotateRight(v7 ^ v8, 63);
+		v3 += v4 + m5;
+		v14 = Long.rotateRight(v14 ^ v3, 32);
+		v9 += v14;
+		v4 = Long.rotateRight(v4 ^ v9, 24);
+		v3 += v4 + m3;
+		v14 = Long.rotateRight(v14 ^ v3, 16);
+		v9 += v14;
+		v4 = Long.rotateRight(v4 ^ v9, 63);
+		v[0] = v0;
+		v[1] = v1;
+		v[2] = v2;
+		v[3] = v3;
+		v[4] = v4;
+		v[5] = v5;
+		v[6] = v6;
+		v[7] = v7;
+		v[8] = v8;
+		v[9] = v9;
+		v[10] = v10;
+		v[11] = v11;
+		v[12] = v12;
+		v[13] = v13;
+		v[14] = v14;
+		v[15] = v15;
+	}
+}
@@ -0,0 +1,703 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.digest;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.ResIterator;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.vocabulary.RDF;
+
+import com.evimetry.aff4.AFF4Lexicon;
+import com.evimetry.aff4.IAFF4Container;
+import com.evimetry.aff4.IAFF4ImageStream;
+import com.evimetry.aff4.container.AFF4ZipContainer;
+import com.evimetry.aff4.digest.VerificationResult.Check;
+import com.evimetry.aff4.digest.VerificationResult.CorruptChunk;
+import com.evimetry.aff4.digest.VerificationResult.Status;
+import com.evimetry.aff4.imagestream.AFF4ImageStream;
+import com.evimetry.aff4.imagestream.Streams;
+import com.evimetry.aff4.rdf.RDFUtil;
+
+/**
+ * Verifies the stored block hashes of a container.
+ * <p>
+ * Each chunk of each image stream is checked against the per chunk hashes held in the
+ * <code>&lt;bevvy&gt;.blockHash.&lt;type&gt;</code> segments, with chunks read in order and decompressed and hashed
+ * in parallel on the given pool. As each chunk is checked independently, the verification scales with the number of
+ * cores rather than being limited by a single digest. The aggregate hashes are also checked:
+ * <ul>
+ * <li>aff4:hash of each aff4:BlockHashes, being the hash of the block hash segments of one type.</li>
+ * <li>aff4:imageStreamIndexHash, being the hash of the bevvy index segments.</li>
+ * <li>aff4:mapPointHash, aff4:mapIdxHash, aff4:mapPathHash and aff4:mapHash of each aff4:Map.</li>
+ * <li>aff4:blockMapHash of each aff4:Map, being the hash of the aff4:BlockHashes hashes of its dependent streams and
+ * its map segment hashes.</li>
+ * </ul>
+ * The aff4:hash of each image stream, being the linear hash of the stream contents, is computed from the same pass
+ * over the chunks by digesting them in stream order as they complete.
+ * <p>
+ * aff4:imageStreamHash values are reported as {@link Status#UNSUPPORTED}. Their construction is not defined by the
+ * standard and is not a hash of the stream contents alone; the reference images hold different values for streams
+ * with identical contents, index and block hashes.
+ */
+public class BlockHashVerifier {
+
+	/**
+	 * The block hash types, in the order they contribute to the aff4:blockMapHash.
+	 */
+	private final static AFF4Lexicon[] BLOCK_HASH_TYPES = { AFF4Lexicon.MD5, AFF4Lexicon.SHA1, AFF4Lexicon.SHA256,
+			AFF4Lexicon.SHA512, AFF4Lexicon.Blake2b };
+
+	/**
+	 * The pool to decompress and hash chunks on.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Create a new block hash verifier.
+	 * 
+	 * @param pool The pool to decompress and hash chunks on.
+	 */
+	public BlockHashVerifier(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Verify the image streams and maps stored in the given container.
+	 * 
+	 * @param container The container to verify.
+	 * @return The outcome of each check, and the chunks which failed verification.
+	 * @throws IOException If reading the container failed.
+	 */
+	public VerificationResult verify(IAFF4Container container) throws IOException {
+		if (!(container instanceof AFF4ZipContainer)) {
+			throw new IllegalArgumentException("Unsupported container type");
+		}
+		AFF4ZipContainer zip = (AFF4ZipContainer) container;
+		Model model = zip.getModel();
+		List<Check> checks = new ArrayList<>();
+		Queue<CorruptChunk> corrupt = new ConcurrentLinkedQueue<>();
+		for (String resource : listResources(model, AFF4Lexicon.ImageStream)) {
+			IAFF4ImageStream stream = zip.getImageStream(resource);
+			if (stream instanceof AFF4ImageStream) {
+				try (AFF4ImageStream imageStream = (AFF4ImageStream) stream) {
+					verifyStream(zip, imageStream, checks, corrupt);
+				}
+			}
+		}
+		for (String resource : listResources(model, AFF4Lexicon.Map)) {
+			verifyMap(zip, resource, checks);
+		}
+		return new VerificationResult(checks, new ArrayList<>(corrupt));
+	}
+
+	/**
+	 * Verify the chunks and aggregate hashes of the given image stream.
+	 * 
+	 * @param container The container.
+	 * @param stream The image stream.
+	 * @param checks The list to add checks to.
+	 * @param corrupt The queue to add corrupt chunks to.
+	 * @throws IOException If reading the container failed.
+	 */
+	private void verifyStream(AFF4ZipContainer container, AFF4ImageStream stream, List<Check> checks,
+			Queue<CorruptChunk> corrupt) throws IOException {
+		Model model = container.getModel();
+		String resource = stream.getResourceID();
+		int chunkSize = stream.getChunkSize();
+		int chunksInSegment = stream.getChunksInSegment();
+		long chunks = (stream.size() + chunkSize - 1) / chunkSize;
+		int bevvies = (int) ((chunks + chunksInSegment - 1) / chunksInSegment);
+
+		// Bevvy index segments.
+		List<byte[]> indexes = readSegments(container, resource, "index", bevvies);
+		if (indexes != null) {
+			check(checks, resource, AFF4Lexicon.imageStreamIndexHash,
+					RDFUtil.readHashProperties(model, resource, AFF4Lexicon.imageStreamIndexHash), indexes);
+		}
+		for (Map.Entry<AFF4Lexicon, String> entry : RDFUtil
+				.readHashProperties(model, resource, AFF4Lexicon.imageStreamHash).entrySet()) {
+			checks.add(new Check(resource, AFF4Lexicon.imageStreamHash, entry.getKey(), entry.getValue(), null,
+					Status.UNSUPPORTED));
+		}
+
+		// Block hash segments, and the hash of each type's segments.
+		List<AFF4Lexicon> types = new ArrayList<>();
+		List<List<byte[]>> segments = new ArrayList<>();
+		for (AFF4Lexicon type : BLOCK_HASH_TYPES) {
+			List<byte[]> blockHashes = readSegments(container, resource, "blockHash." + getSuffix(type), bevvies);
+			if (blockHashes == null) {
+				continue;
+			}
+			String blockHashesResource = getBlockHashesResource(resource, type);
+			check(checks, blockHashesResource, AFF4Lexicon.hash,
+					RDFUtil.readHashProperties(model, blockHashesResource, AFF4Lexicon.hash), blockHashes);
+			if (getDigest(type) == null) {
+				checks.add(new Check(blockHashesResource, AFF4Lexicon.BlockHashes, type, null, null,
+						Status.UNSUPPORTED));
+				continue;
+			}
+			types.add(type);
+			segments.add(blockHashes);
+		}
+		Map<AFF4Lexicon, String> streamHashes = RDFUtil.readHashProperties(model, resource, AFF4Lexicon.hash);
+		// Allow for the chunks in flight plus the next batch read.
+		LinearDigest linear = new LinearDigest(streamHashes.keySet(), stream.size(), chunkSize,
+				2 * stream.getPipelineDepth(pool));
+		if (types.isEmpty() && linear.isEmpty()) {
+			check(checks, resource, AFF4Lexicon.hash, streamHashes, Collections.emptyList());
+			return;
+		}
+
+		// Each chunk against its block hashes, and the stream contents in order.
+		AtomicIntegerArray failures = new AtomicIntegerArray(types.size());
+		ThreadLocal<MessageDigest[]> digests = ThreadLocal.withInitial(() -> {
+			MessageDigest[] mds = new MessageDigest[types.size()];
+			for (int i = 0; i < mds.length; i++) {
+				mds[i] = getDigest(types.get(i));
+			}
+			return mds;
+		});
+		try (LinearDigest closing = linear) {
+			stream.visitChunks(0, chunks, pool, (chunkIndex, data) -> {
+				linear.update(chunkIndex, data);
+				if (data == null) {
+					corrupt.add(new CorruptChunk(resource, chunkIndex, chunkIndex * chunkSize, null));
+					for (int i = 0; i < types.size(); i++) {
+						failures.incrementAndGet(i);
+					}
+					return;
+				}
+				int bevvy = (int) (chunkIndex / chunksInSegment);
+				int offset = (int) (chunkIndex % chunksInSegment);
+				MessageDigest[] mds = digests.get();
+				for (int i = 0; i < mds.length; i++) {
+					mds[i].update(data.duplicate());
+					byte[] digest = mds[i].digest();
+					if (!matches(segments.get(i).get(bevvy), offset * digest.length, digest)) {
+						corrupt.add(new CorruptChunk(resource, chunkIndex, chunkIndex * chunkSize, types.get(i)));
+						failures.incrementAndGet(i);
+					}
+				}
+			});
+		}
+		for (int i = 0; i < types.size(); i++) {
+			checks.add(new Check(getBlockHashesResource(resource, types.get(i)), AFF4Lexicon.BlockHashes,
+					types.get(i), null, null, failures.get(i) == 0 ? Status.VALID : Status.INVALID));
+		}
+		for (Map.Entry<AFF4Lexicon, String> entry : streamHashes.entrySet()) {
+			String computed = linear.digest(entry.getKey());
+			Status status;
+			if (!linear.isSupported(entry.getKey())) {
+				status = Status.UNSUPPORTED;
+			} else {
+				status = computed != null && computed.equalsIgnoreCase(entry.getValue()) ? Status.VALID
+						: Status.INVALID;
+			}
+			checks.add(new Check(resource, AFF4Lexicon.hash, entry.getKey(), entry.getValue(), computed, status));
+		}
+	}
+
+	/**
+	 * Verify the segment hashes and block map hash of the given map.
+	 * 
+	 * @param container The container.
+	 * @param resource The map resource.
+	 * @param checks The list to add checks to.
+	 * @throws IOException If reading the container failed.
+	 */
+	private void verifyMap(AFF4ZipContainer container, String resource, List<Check> checks) throws IOException {
+		byte[] map = readSegment(container, resource + "/map");
+		if (map == null) {
+			// Not stored in this container.
+			return;
+		}
+		byte[] idx = readSegment(container, resource + "/idx");
+		byte[] mapPath = readSegment(container, resource + "/mapPath");
+		List<byte[]> contents = new ArrayList<>();
+		contents.add(map);
+		contents.add(idx != null ? idx : new byte[0]);
+		contents.add(mapPath != null ? mapPath : new byte[0]);
+
+		Model model = container.getModel();
+		check(checks, resource, AFF4Lexicon.mapPointHash,
+				RDFUtil.readHashProperties(model, resource, AFF4Lexicon.mapPointHash), contents.subList(0, 1));
+		check(checks, resource, AFF4Lexicon.mapIdxHash,
+				RDFUtil.readHashProperties(model, resource, AFF4Lexicon.mapIdxHash), contents.subList(1, 2));
+		check(checks, resource, AFF4Lexicon.mapPathHash,
+				RDFUtil.readHashProperties(model, resource, AFF4Lexicon.mapPathHash), contents.subList(2, 3));
+		check(checks, resource, AFF4Lexicon.mapHash, RDFUtil.readHashProperties(model, resource, AFF4Lexicon.mapHash),
+				contents);
+
+		// The block map hash covers the stored hashes of the block hashes and the map segments.
+		List<byte[]> hashes = new ArrayList<>();
+		for (String stream : listResourceProperties(model, resource, AFF4Lexicon.dependentStream)) {
+			for (AFF4Lexicon type : BLOCK_HASH_TYPES) {
+				RDFUtil.readHashProperties(model, getBlockHashesResource(stream, type), AFF4Lexicon.hash).values()
+						.stream().findFirst().ifPresent(value -> hashes.add(decode(value)));
+			}
+		}
+		for (AFF4Lexicon property : new AFF4Lexicon[] { AFF4Lexicon.mapPointHash, AFF4Lexicon.mapIdxHash,
+				AFF4Lexicon.mapPathHash }) {
+			RDFUtil.readHashProperties(model, resource, property).values().stream().findFirst()
+					.ifPresent(value -> hashes.add(decode(value)));
+		}
+		check(checks, resource, AFF4Lexicon.blockMapHash,
+				RDFUtil.readHashProperties(model, resource, AFF4Lexicon.blockMapHash), hashes);
+	}
+
+	/**
+	 * Check each stored hash against the hash of the given contents.
+	 * 
+	 * @param checks The list to add checks to.
+	 * @param resource The resource holding the hashes.
+	 * @param property The hash property.
+	 * @param expected The stored hashes, keyed by data type.
+	 * @param contents The contents to hash, in order.
+	 */
+	private static void check(List<Check> checks, String resource, AFF4Lexicon property,
+			Map<AFF4Lexicon, String> expected, List<byte[]> contents) {
+		for (Map.Entry<AFF4Lexicon, String> entry : expected.entrySet()) {
+			MessageDigest md = getDigest(entry.getKey());
+			if (md == null) {
+				checks.add(new Check(resource, property, entry.getKey(), entry.getValue(), null, Status.UNSUPPORTED));
+				continue;
+			}
+			for (byte[] content : contents) {
+				md.update(content);
+			}
+			String computed = Hex.encodeHexString(md.digest());
+			checks.add(new Check(resource, property, entry.getKey(), entry.getValue(), computed,
+					computed.equalsIgnoreCase(entry.getValue()) ? Status.VALID : Status.INVALID));
+		}
+	}
+
+	/**
+	 * Determine if the given digest is held in the block hash segment at the given offset.
+	 * 
+	 * @param segment The block hash segment.
+	 * @param offset The offset of the chunk's hash in the segment.
+	 * @param digest The computed digest.
+	 * @return TRUE if the stored hash matches.
+	 */
+	private static boolean matches(byte[] segment, int offset, byte[] digest) {
+		if (offset + digest.length > segment.length) {
+			return false;
+		}
+		for (int i = 0; i < digest.length; i++) {
+			if (segment[offset + i] != digest[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Read the given segment of each bevvy of a stream.
+	 * 
+	 * @param container The container.
+	 * @param resource The image stream resource.
+	 * @param suffix The segment suffix, eg "index".
+	 * @param bevvies The number of bevvies.
+	 * @return The contents of each bevvy's segment, or NULL if any segment is missing.
+	 * @throws IOException If reading the container failed.
+	 */
+	private static List<byte[]> readSegments(AFF4ZipContainer container, String resource, String suffix, int bevvies)
+			throws IOException {
+		List<byte[]> segments = new ArrayList<>(bevvies);
+		for (int bevvy = 0; bevvy < bevvies; bevvy++) {
+			byte[] segment = readSegment(container, String.format("%s/%08d.%s", resource, bevvy, suffix));
+			if (segment == null) {
+				return null;
+			}
+			segments.add(segment);
+		}
+		return segments;
+	}
+
+	/**
+	 * Read the entire contents of the given segment.
+	 * 
+	 * @param container The container.
+	 * @param resource The segment resource.
+	 * @return The segment contents, or NULL if not present.
+	 * @throws IOException If reading the container failed.
+	 */
+	private static byte[] readSegment(AFF4ZipContainer container, String resource) throws IOException {
+		IAFF4ImageStream segment = container.getSegment(resource);
+		if (segment == null) {
+			return null;
+		}
+		try (SeekableByteChannel channel = segment.getChannel()) {
+			ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+			Streams.readFull(channel, 0, buffer);
+			return buffer.array();
+		}
+	}
+
+	/**
+	 * Get the resources of the given type, in a stable order.
+	 * 
+	 * @param model The model.
+	 * @param type The rdf type.
+	 * @return The resources.
+	 */
+	private static List<String> listResources(Model model, AFF4Lexicon type) {
+		List<String> resources = new ArrayList<>();
+		ResIterator it = model.listResourcesWithProperty(RDF.type, model.createResource(type.getValue()));
+		while (it.hasNext()) {
+			resources.add(it.next().getURI());
+		}
+		Collections.sort(resources);
+		return resources;
+	}
+
+	/**
+	 * Get the resources referenced by the given property, in a stable order.
+	 * 
+	 * @param model The model.
+	 * @param resource The resource.
+	 * @param property The property.
+	 * @return The referenced resources.
+	 */
+	private static List<String> listResourceProperties(Model model, String resource, AFF4Lexicon property) {
+		List<String> resources = new ArrayList<>();
+		StmtIterator it = model.createResource(resource).listProperties(model.createProperty(property.getValue()));
+		while (it.hasNext()) {
+			RDFNode node = it.next().getObject();
+			if (node.isURIResource()) {
+				resources.add(node.asResource().getURI());
+			}
+		}
+		Collections.sort(resources);
+		return resources;
+	}
+
+	/**
+	 * Get the aff4:BlockHashes resource of the given stream and hash type.
+	 * 
+	 * @param stream The image stream resource.
+	 * @param type The hash type.
+	 * @return The block hashes resource.
+	 */
+	private static String getBlockHashesResource(String stream, AFF4Lexicon type) {
+		return stream + "/blockhash." + getSuffix(type);
+	}
+
+	/**
+	 * Get the segment suffix for the given hash type, eg "sha1".
+	 * 
+	 * @param type The hash type.
+	 * @return The suffix.
+	 */
+	private static String getSuffix(AFF4Lexicon type) {
+		String value = type.getValue();
+		return value.substring(value.lastIndexOf('#') + 1).toLowerCase();
+	}
+
+	/**
+	 * Get a new message digest for the given hash type.
+	 * 
+	 * @param type The hash type.
+	 * @return The message digest, or NULL if the type is not supported.
+	 */
+	private static MessageDigest getDigest(AFF4Lexicon type) {
+		try {
+			return DigestEngine.getMessageDigest(DigestEngine.getAlgorithm(type));
+		} catch (IllegalArgumentException | NoSuchAlgorithmException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Decode the given hex encoded hash.
+	 * 
+	 * @param value The hex encoded hash.
+	 * @return The hash.
+	 */
+	private static byte[] decode(String value) {
+		try {
+			return Hex.decodeHex(value);
+		} catch (DecoderException e) {
+			throw new IllegalArgumentException("Invalid hash value " + value, e);
+		}
+	}
+
+	/**
+	 * Digests the contents of a stream from chunks visited in any order.
+	 * <p>
+	 * Visiting threads only copy each chunk and queue it. A single digest thread holds chunks which arrive ahead of
+	 * their predecessors, and updates the digests in stream order. At most {@link #window} chunks past the next chunk
+	 * to digest are accepted; visiting threads with later chunks wait for the digest thread to catch up.
+	 */
+	private static class LinearDigest implements AutoCloseable {
+
+		/**
+		 * The marker for a chunk which could not be read.
+		 */
+		private final static ByteBuffer FAILED = ByteBuffer.allocate(0);
+
+		/**
+		 * The digest of each supported hash type.
+		 */
+		private final Map<AFF4Lexicon, MessageDigest> digests = new LinkedHashMap<>();
+
+		/**
+		 * The chunks copied by visiting threads, not yet taken by the digest thread.
+		 */
+		private final BlockingQueue<Map.Entry<Long, ByteBuffer>> queue = new LinkedBlockingQueue<>();
+
+		/**
+		 * The stream size.
+		 */
+		private final long size;
+
+		/**
+		 * The chunk size.
+		 */
+		private final int chunkSize;
+
+		/**
+		 * The number of chunks.
+		 */
+		private final long chunks;
+
+		/**
+		 * The maximum number of chunks held ahead of the next chunk to digest.
+		 */
+		private final int window;
+
+		/**
+		 * The digest thread, or NULL if there is nothing to compute.
+		 */
+		private final Thread thread;
+
+		/**
+		 * The index of the next chunk to digest, guarded by this.
+		 */
+		private long next;
+
+		/**
+		 * Whether a chunk could not be read, leaving the digests incomplete.
+		 */
+		private boolean failed;
+
+		/**
+		 * Whether the digest thread has stopped, guarded by this.
+		 */
+		private boolean stopped;
+
+		/**
+		 * The failure of the digest thread.
+		 */
+		private volatile Throwable failure;
+
+		/**
+		 * Create a new linear digest, and start the digest thread.
+		 * 
+		 * @param types The hash types to compute.
+		 * @param size The stream size.
+		 * @param chunkSize The chunk size.
+		 * @param window The maximum number of chunks to hold ahead of the next chunk to digest, which MUST be at least
+		 *        the number of chunks visited concurrently.
+		 */
+		LinearDigest(Iterable<AFF4Lexicon> types, long size, int chunkSize, int window) {
+			for (AFF4Lexicon type : types) {
+				MessageDigest md = getDigest(type);
+				if (md != null) {
+					digests.put(type, md);
+				}
+			}
+			this.size = size;
+			this.chunkSize = chunkSize;
+			this.chunks = (size + chunkSize - 1) / chunkSize;
+			this.window = window;
+			if (digests.isEmpty()) {
+				thread = null;
+			} else {
+				thread = new Thread(this::run, "aff4-stream-digest");
+				thread.setDaemon(true);
+				thread.start();
+			}
+		}
+
+		/**
+		 * Determine if there are no supported hash types to compute.
+		 * 
+		 * @return TRUE if there is nothing to compute.
+		 */
+		boolean isEmpty() {
+			return digests.isEmpty();
+		}
+
+		/**
+		 * Determine if the given hash type is computed.
+		 * 
+		 * @param type The hash type.
+		 * @return TRUE if the hash type is supported.
+		 */
+		boolean isSupported(AFF4Lexicon type) {
+			return digests.containsKey(type);
+		}
+
+		/**
+		 * Queue the contents of the given chunk, waiting while it is too far ahead of the next chunk to digest.
+		 * 
+		 * @param chunkIndex The chunk index.
+		 * @param data The decompressed chunk, or NULL if the chunk could not be read.
+		 * @throws IOException If interrupted while waiting.
+		 */
+		void update(long chunkIndex, ByteBuffer data) throws IOException {
+			if (thread == null) {
+				return;
+			}
+			synchronized (this) {
+				while (!stopped && chunkIndex >= next + window) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new InterruptedIOException();
+					}
+				}
+				if (stopped) {
+					return;
+				}
+			}
+			ByteBuffer copy = FAILED;
+			if (data != null) {
+				// The buffer is only valid during the visit.
+				copy = ByteBuffer.allocate(data.remaining());
+				copy.put(data.duplicate()).flip();
+			}
+			queue.add(new AbstractMap.SimpleImmutableEntry<>(chunkIndex, copy));
+		}
+
+		/**
+		 * Digest the queued chunks in stream order, until all chunks have been digested or the digest is closed.
+		 */
+		private void run() {
+			Map<Long, ByteBuffer> pending = new HashMap<>();
+			try {
+				long index = 0;
+				while (index < chunks) {
+					Map.Entry<Long, ByteBuffer> entry = queue.take();
+					if (entry.getValue() == null) {
+						// Closed before all chunks were visited.
+						break;
+					}
+					pending.put(entry.getKey(), entry.getValue());
+					ByteBuffer buffer;
+					while ((buffer = pending.remove(index)) != null) {
+						if (buffer == FAILED) {
+							failed = true;
+						} else if (!failed) {
+							digest(index, buffer);
+						}
+						index++;
+					}
+					synchronized (this) {
+						next = index;
+						notifyAll();
+					}
+				}
+			} catch (Throwable e) {
+				failure = e;
+			} finally {
+				synchronized (this) {
+					stopped = true;
+					notifyAll();
+				}
+			}
+		}
+
+		/**
+		 * Digest the given chunk, limited to the stream size.
+		 * 
+		 * @param chunkIndex The chunk index.
+		 * @param data The chunk contents.
+		 */
+		private void digest(long chunkIndex, ByteBuffer data) {
+			long remaining = size - chunkIndex * chunkSize;
+			for (MessageDigest md : digests.values()) {
+				ByteBuffer buffer = data.duplicate();
+				if (buffer.remaining() > remaining) {
+					buffer.limit(buffer.position() + (int) remaining);
+				}
+				md.update(buffer);
+			}
+		}
+
+		/**
+		 * Wait for the digest thread to complete. Chunks not yet visited are abandoned.
+		 * 
+		 * @throws IOException If interrupted while waiting, or the digest thread failed.
+		 */
+		@Override
+		public void close() throws IOException {
+			if (thread == null) {
+				return;
+			}
+			queue.add(new AbstractMap.SimpleImmutableEntry<>(Long.MAX_VALUE, null));
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+			if (failure != null) {
+				throw new IOException("Digest failed: " + failure.getMessage(), failure);
+			}
+		}
+
+		/**
+		 * Get the computed hash of the given type, once closed.
+		 * 
+		 * @param type The hash type.
+		 * @return The hex encoded hash, or NULL if not supported or the stream could not be digested in full.
+		 */
+		synchronized String digest(AFF4Lexicon type) {
+			MessageDigest md = digests.get(type);
+			if (md == null || failed || failure != null || next < chunks) {
+				return null;
+			}
+			return Hex.encodeHexString(md.digest());
+		}
+	}
+}
@@ -0,0 +1,467 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.digest;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.evimetry.aff4.AFF4Lexicon;
+import com.evimetry.aff4.IAFF4Map;
+import com.evimetry.aff4.map.AFF4Map;
+
+/**
+ * Computes multiple digests of an image in a single pass.
+ * <p>
+ * The image is read once, with chunks of the underlying image streams decompressed in parallel on the given pool. The
+ * contents are copied into a bounded set of buffers, and each buffer is handed to one thread per digest algorithm,
+ * such that each digest is updated in image order while the digests run concurrently with each other and the read.
+ * <p>
+ * The digest threads are dedicated threads started for each pass, rather than tasks on the pool. Each blocks on its
+ * queue for the whole pass, and would otherwise hold a pool worker needed to decompress the chunks it waits on. The
+ * cost of starting a thread per algorithm is negligible against a pass over an image.
+ */
+public class DigestEngine {
+
+	/**
+	 * The default size of each pipeline buffer.
+	 */
+	public final static int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+	/**
+	 * The default number of pipeline buffers.
+	 */
+	public final static int DEFAULT_BUFFER_COUNT = 16;
+	/**
+	 * The provider of digests not available from the installed security providers.
+	 */
+	private final static AFF4DigestProvider PROVIDER = new AFF4DigestProvider();
+
+	/**
+	 * The pool to decompress chunks on, or NULL to read the image serially.
+	 */
+	private final ForkJoinPool pool;
+	/**
+	 * The size of each pipeline buffer.
+	 */
+	private int bufferSize = DEFAULT_BUFFER_SIZE;
+	/**
+	 * The number of pipeline buffers.
+	 */
+	private int bufferCount = DEFAULT_BUFFER_COUNT;
+	/**
+	 * The progress listener, or NULL.
+	 */
+	private DigestListener listener;
+
+	/**
+	 * Create a new digest engine.
+	 * 
+	 * @param pool The pool to decompress chunks on, or NULL to read the image serially.
+	 */
+	public DigestEngine(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Set the size and number of the buffers between the image read and the digests. This bounds the memory used by
+	 * the pipeline.
+	 * 
+	 * @param size The size of each buffer in bytes.
+	 * @param count The number of buffers.
+	 * @return itself.
+	 */
+	public DigestEngine setBuffers(int size, int count) {
+		if (size <= 0 || count <= 0) {
+			throw new IllegalArgumentException();
+		}
+		this.bufferSize = size;
+		this.bufferCount = count;
+		return this;
+	}
+
+	/**
+	 * Set the listener to receive progress updates.
+	 * 
+	 * @param listener The listener, or NULL for none.
+	 * @return itself.
+	 */
+	public DigestEngine setListener(DigestListener listener) {
+		this.listener = listener;
+		return this;
+	}
+
+	/**
+	 * Get the Java message digest algorithm name for the given aff4 hash type.
+	 * 
+	 * @param type The aff4 hash data type.
+	 * @return The algorithm name.
+	 * @throws IllegalArgumentException If the type is not a supported hash type.
+	 */
+	public static String getAlgorithm(AFF4Lexicon type) {
+		switch (type) {
+		case MD5:
+			return "MD5";
+		case SHA1:
+			return "SHA-1";
+		case SHA256:
+			return "SHA-256";
+		case SHA512:
+			return "SHA-512";
+		case Blake2b:
+		case Blake2bEv:
+			return "BLAKE2B-512";
+		default:
+			throw new IllegalArgumentException("Unsupported hash type " + type);
+		}
+	}
+
+	/**
+	 * Get a message digest for the given algorithm, using {@link AFF4DigestProvider} for algorithms not available from
+	 * the installed security providers, such as "BLAKE2B-512".
+	 * 
+	 * @param algorithm The message digest algorithm name.
+	 * @return A new message digest.
+	 * @throws NoSuchAlgorithmException If the algorithm is not available.
+	 */
+	public static MessageDigest getMessageDigest(String algorithm) throws NoSuchAlgorithmException {
+		try {
+			return MessageDigest.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException e) {
+			return MessageDigest.getInstance(algorithm, PROVIDER);
+		}
+	}
+
+	/**
+	 * Compute the digests of the given image for the given aff4 hash types.
+	 * 
+	 * @param map The image to digest.
+	 * @param types The aff4 hash data types.
+	 * @return The digest of each type, in the order requested.
+	 * @throws IOException If reading the image failed.
+	 * @throws NoSuchAlgorithmException If a digest algorithm is not available.
+	 */
+	public Map<AFF4Lexicon, byte[]> digest(IAFF4Map map, AFF4Lexicon... types)
+			throws IOException, NoSuchAlgorithmException {
+		String[] algorithms = new String[types.length];
+		for (int i = 0; i < types.length; i++) {
+			algorithms[i] = getAlgorithm(types[i]);
+		}
+		Map<String, byte[]> digests = digest(map, algorithms);
+		Map<AFF4Lexicon, byte[]> result = new LinkedHashMap<>();
+		for (int i = 0; i < types.length; i++) {
+			result.put(types[i], digests.get(algorithms[i]));
+		}
+		return result;
+	}
+
+	/**
+	 * Compute the digests of the given image for the given message digest algorithms.
+	 * 
+	 * @param map The image to digest.
+	 * @param algorithms The message digest algorithm names, eg "SHA-1".
+	 * @return The digest of each algorithm, in the order requested.
+	 * @throws IOException If reading the image failed.
+	 * @throws NoSuchAlgorithmException If a digest algorithm is not available.
+	 */
+	public Map<String, byte[]> digest(IAFF4Map map, String... algorithms) throws IOException, NoSuchAlgorithmException {
+		Map<String, MessageDigest> digests = new LinkedHashMap<>();
+		for (String algorithm : algorithms) {
+			if (!digests.containsKey(algorithm)) {
+				digests.put(algorithm, getMessageDigest(algorithm));
+			}
+		}
+		Pipeline pipeline = new Pipeline(digests.values().toArray(new MessageDigest[0]), map.size());
+		try {
+			pipeline.run(map);
+		} catch (Throwable e) {
+			pipeline.abort(e);
+			throw e;
+		}
+		pipeline.shutdown();
+		Map<String, byte[]> result = new LinkedHashMap<>();
+		for (Map.Entry<String, MessageDigest> entry : digests.entrySet()) {
+			result.put(entry.getKey(), entry.getValue().digest());
+		}
+		return result;
+	}
+
+	/**
+	 * A buffer in the pipeline.
+	 */
+	private static class Block {
+		/**
+		 * The contents.
+		 */
+		private final ByteBuffer buffer;
+		/**
+		 * The number of digests yet to consume the contents.
+		 */
+		private final AtomicInteger pending = new AtomicInteger();
+
+		/**
+		 * Create a new block.
+		 * 
+		 * @param size The size of the block.
+		 */
+		private Block(int size) {
+			this.buffer = ByteBuffer.allocate(size);
+		}
+	}
+
+	/**
+	 * A single digest pass of an image.
+	 */
+	private class Pipeline {
+
+		/**
+		 * The marker to stop the digest threads.
+		 */
+		private final Block end = new Block(0);
+		/**
+		 * The buffers available to be filled.
+		 */
+		private final BlockingQueue<Block> free;
+		/**
+		 * The buffers to be consumed by each digest.
+		 */
+		private final List<BlockingQueue<Block>> queues;
+		/**
+		 * The digest threads.
+		 */
+		private final Thread[] threads;
+		/**
+		 * The first failure of a digest thread.
+		 */
+		private volatile Throwable failure;
+		/**
+		 * The size of the image.
+		 */
+		private final long size;
+		/**
+		 * The time the pass started.
+		 */
+		private final long start = System.nanoTime();
+		/**
+		 * The buffer being filled, or NULL.
+		 */
+		private Block current;
+		/**
+		 * The number of bytes read so far.
+		 */
+		private long position;
+
+		/**
+		 * Create a new pipeline, and start the digest threads.
+		 * 
+		 * @param digests The digests to update.
+		 * @param size The size of the image.
+		 */
+		private Pipeline(MessageDigest[] digests, long size) {
+			this.size = size;
+			this.free = new ArrayBlockingQueue<>(bufferCount);
+			for (int i = 0; i < bufferCount; i++) {
+				free.add(new Block(bufferSize));
+			}
+			this.queues = new ArrayList<>(digests.length);
+			this.threads = new Thread[digests.length];
+			for (int i = 0; i < digests.length; i++) {
+				final MessageDigest md = digests[i];
+				final BlockingQueue<Block> queue = new LinkedBlockingQueue<>();
+				queues.add(queue);
+				threads[i] = new Thread(() -> update(md, queue), "aff4-digest-" + md.getAlgorithm());
+				threads[i].setDaemon(true);
+				threads[i].start();
+			}
+		}
+
+		/**
+		 * Read the image, handing each filled buffer to the digests.
+		 * 
+		 * @param map The image to read.
+		 * @throws IOException If reading the image failed, or a digest failed.
+		 */
+		private void run(IAFF4Map map) throws IOException {
+			if (pool != null && map instanceof AFF4Map) {
+				((AFF4Map) map).read(0, size, pool, (offset, data) -> {
+					while (data.hasRemaining()) {
+						Block block = acquire();
+						int length = Math.min(data.remaining(), block.buffer.remaining());
+						ByteBuffer src = data.duplicate();
+						src.limit(src.position() + length);
+						block.buffer.put(src);
+						data.position(data.position() + length);
+						if (!block.buffer.hasRemaining()) {
+							dispatch();
+						}
+					}
+				});
+			} else {
+				while (position + (current != null ? current.buffer.position() : 0) < size) {
+					Block block = acquire();
+					int read = map.read(position + block.buffer.position(), block.buffer);
+					if (read <= 0) {
+						break;
+					}
+					if (!block.buffer.hasRemaining()) {
+						dispatch();
+					}
+				}
+			}
+			dispatch();
+			if (position < size) {
+				throw new IOException(String.format("Image read ended at 0x%x of 0x%x", position, size));
+			}
+		}
+
+		/**
+		 * Get the buffer being filled, waiting for a free buffer if required.
+		 * 
+		 * @return The buffer being filled.
+		 * @throws IOException If interrupted, or a digest failed.
+		 */
+		private Block acquire() throws IOException {
+			checkFailure();
+			if (current == null) {
+				try {
+					current = free.take();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException();
+				}
+				current.buffer.clear();
+			}
+			return current;
+		}
+
+		/**
+		 * Hand the buffer being filled to all digests.
+		 * 
+		 * @throws IOException If a digest failed.
+		 */
+		private void dispatch() throws IOException {
+			checkFailure();
+			if (current == null) {
+				return;
+			}
+			Block block = current;
+			current = null;
+			block.buffer.flip();
+			position += block.buffer.remaining();
+			block.pending.set(queues.size());
+			for (BlockingQueue<Block> queue : queues) {
+				queue.add(block);
+			}
+			if (listener != null) {
+				double seconds = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+				listener.progress(position, size, position / seconds);
+			}
+		}
+
+		/**
+		 * Update the digest with each buffer from the queue, until the end marker.
+		 * 
+		 * @param md The digest.
+		 * @param queue The queue of buffers.
+		 */
+		private void update(MessageDigest md, BlockingQueue<Block> queue) {
+			try {
+				while (true) {
+					Block block = queue.take();
+					if (block == end) {
+						return;
+					}
+					md.update(block.buffer.duplicate());
+					if (block.pending.decrementAndGet() == 0) {
+						free.add(block);
+					}
+				}
+			} catch (Throwable e) {
+				failure = e;
+				// Release any blocked reader.
+				free.clear();
+				free.add(end);
+			}
+		}
+
+		/**
+		 * Throw the failure of any digest thread.
+		 * 
+		 * @throws IOException If a digest failed.
+		 */
+		private void checkFailure() throws IOException {
+			Throwable e = failure;
+			if (e != null) {
+				throw new IOException("Digest failed: " + e.getMessage(), e);
+			}
+		}
+
+		/**
+		 * Stop the digest threads, and wait for them to complete.
+		 * 
+		 * @throws IOException If interrupted, or a digest failed.
+		 */
+		private void shutdown() throws IOException {
+			for (BlockingQueue<Block> queue : queues) {
+				queue.add(end);
+			}
+			try {
+				for (Thread thread : threads) {
+					thread.join();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+			checkFailure();
+		}
+
+		/**
+		 * Stop the digest threads after the read failed, and wait for them to complete. Any digest failure other than
+		 * the cause of the read failure is added to it as suppressed, rather than thrown.
+		 * 
+		 * @param cause The read failure.
+		 */
+		private void abort(Throwable cause) {
+			for (BlockingQueue<Block> queue : queues) {
+				queue.clear();
+				queue.add(end);
+			}
+			try {
+				for (Thread thread : threads) {
+					thread.join();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			Throwable e = failure;
+			if (e != null && e != cause && e != cause.getCause()) {
+				cause.addSuppressed(new IOException("Digest failed: " + e.getMessage(), e));
+			}
+		}
+	}
+}
@@ -0,0 +1,35 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.digest;
+
+/**
+ * Receiver of progress updates from a {@link DigestEngine}.
+ */
+@FunctionalInterface
+public interface DigestListener {
+
+	/**
+	 * Progress of the digest.
+	 * <p>
+	 * This is invoked on the thread performing the digest, and should return promptly.
+	 * 
+	 * @param position The number of bytes read from the image so far.
+	 * @param size The size of the image.
+	 * @param bytesPerSecond The average read throughput so far.
+	 */
+	public void progress(long position, long size, double bytesPerSecond);
+}
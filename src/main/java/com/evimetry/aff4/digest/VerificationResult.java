@@ -0,0 +1,250 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.digest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.evimetry.aff4.AFF4Lexicon;
+
+/**
+ * The outcome of verifying the stored hashes of a container.
+ */
+public class VerificationResult {
+
+	/**
+	 * The outcome of a single check.
+	 */
+	public enum Status {
+		/**
+		 * The stored hash matches the contents.
+		 */
+		VALID,
+		/**
+		 * The stored hash does not match the contents.
+		 */
+		INVALID,
+		/**
+		 * The hash could not be calculated, as the algorithm or construction is not supported.
+		 */
+		UNSUPPORTED;
+	}
+
+	/**
+	 * A check of a stored hash value.
+	 */
+	public static class Check {
+		private final String resource;
+		private final AFF4Lexicon property;
+		private final AFF4Lexicon type;
+		private final String expected;
+		private final String computed;
+		private final Status status;
+
+		/**
+		 * Create a new check result.
+		 * 
+		 * @param resource The resource holding the hash.
+		 * @param property The hash property, eg aff4:hash.
+		 * @param type The hash data type.
+		 * @param expected The stored hex encoded hash, or NULL if not applicable.
+		 * @param computed The computed hex encoded hash, or NULL if not computed.
+		 * @param status The outcome.
+		 */
+		Check(String resource, AFF4Lexicon property, AFF4Lexicon type, String expected, String computed,
+				Status status) {
+			this.resource = resource;
+			this.property = property;
+			this.type = type;
+			this.expected = expected;
+			this.computed = computed;
+			this.status = status;
+		}
+
+		/**
+		 * Get the resource holding the hash.
+		 * 
+		 * @return The resource.
+		 */
+		public String getResource() {
+			return resource;
+		}
+
+		/**
+		 * Get the hash property.
+		 * 
+		 * @return The property.
+		 */
+		public AFF4Lexicon getProperty() {
+			return property;
+		}
+
+		/**
+		 * Get the hash data type.
+		 * 
+		 * @return The data type.
+		 */
+		public AFF4Lexicon getType() {
+			return type;
+		}
+
+		/**
+		 * Get the stored hash.
+		 * 
+		 * @return The hex encoded hash, or NULL if not applicable.
+		 */
+		public String getExpected() {
+			return expected;
+		}
+
+		/**
+		 * Get the computed hash.
+		 * 
+		 * @return The hex encoded hash, or NULL if not computed.
+		 */
+		public String getComputed() {
+			return computed;
+		}
+
+		/**
+		 * Get the outcome of the check.
+		 * 
+		 * @return The outcome.
+		 */
+		public Status getStatus() {
+			return status;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s %s (%s): %s", resource, property, type, status);
+		}
+	}
+
+	/**
+	 * A chunk that failed verification against its block hash.
+	 */
+	public static class CorruptChunk {
+		private final String stream;
+		private final long chunkIndex;
+		private final long offset;
+		private final AFF4Lexicon type;
+
+		/**
+		 * Create a new corrupt chunk entry.
+		 * 
+		 * @param stream The image stream.
+		 * @param chunkIndex The index of the chunk in the stream.
+		 * @param offset The offset of the chunk in the stream.
+		 * @param type The block hash type which failed, or NULL if the chunk could not be read.
+		 */
+		CorruptChunk(String stream, long chunkIndex, long offset, AFF4Lexicon type) {
+			this.stream = stream;
+			this.chunkIndex = chunkIndex;
+			this.offset = offset;
+			this.type = type;
+		}
+
+		/**
+		 * Get the image stream holding the chunk.
+		 * 
+		 * @return The image stream resource.
+		 */
+		public String getStream() {
+			return stream;
+		}
+
+		/**
+		 * Get the index of the chunk in the stream.
+		 * 
+		 * @return The chunk index.
+		 */
+		public long getChunkIndex() {
+			return chunkIndex;
+		}
+
+		/**
+		 * Get the offset of the chunk in the stream.
+		 * 
+		 * @return The offset in bytes.
+		 */
+		public long getOffset() {
+			return offset;
+		}
+
+		/**
+		 * Get the block hash type which failed.
+		 * 
+		 * @return The hash data type, or NULL if the chunk could not be read or decompressed.
+		 */
+		public AFF4Lexicon getType() {
+			return type;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s chunk %d @ 0x%x: %s", stream, chunkIndex, offset,
+					type == null ? "unreadable" : type + " mismatch");
+		}
+	}
+
+	private final List<Check> checks;
+	private final List<CorruptChunk> corruptChunks;
+
+	/**
+	 * Create a new verification result.
+	 * 
+	 * @param checks The checks performed.
+	 * @param corruptChunks The chunks that failed verification, in any order.
+	 */
+	VerificationResult(List<Check> checks, List<CorruptChunk> corruptChunks) {
+		this.checks = Collections.unmodifiableList(new ArrayList<>(checks));
+		List<CorruptChunk> chunks = new ArrayList<>(corruptChunks);
+		chunks.sort(Comparator.comparing(CorruptChunk::getStream).thenComparingLong(CorruptChunk::getChunkIndex)
+				.thenComparing(c -> c.getType() == null ? "" : c.getType().name()));
+		this.corruptChunks = Collections.unmodifiableList(chunks);
+	}
+
+	/**
+	 * Get the checks of each stored hash value, including a single check for each block hash type.
+	 * 
+	 * @return The checks performed.
+	 */
+	public List<Check> getChecks() {
+		return checks;
+	}
+
+	/**
+	 * Get the chunks which failed verification, ordered by stream and chunk index.
+	 * 
+	 * @return The corrupt chunks.
+	 */
+	public List<CorruptChunk> getCorruptChunks() {
+		return corruptChunks;
+	}
+
+	/**
+	 * Determine if no check failed and no chunk is corrupt. Unsupported checks are ignored.
+	 * 
+	 * @return TRUE if valid.
+	 */
+	public boolean isValid() {
+		return corruptChunks.isEmpty() && checks.stream().noneMatch(c -> c.getStatus() == Status.INVALID);
+	}
+}
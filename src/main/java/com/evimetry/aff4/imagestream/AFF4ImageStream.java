@@ -17,11 +17,24 @@
 package com.evimetry.aff4.imagestream;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.compress.archivers.zip.ZipFile;
@@ -29,16 +42,19 @@ import org.apache.jena.rdf.model.Model;
 
 import com.evimetry.aff4.AFF4;
 import com.evimetry.aff4.AFF4Lexicon;
+import com.evimetry.aff4.ChunkIntegrityException;
+import com.evimetry.aff4.ChunkView;
 import com.evimetry.aff4.IAFF4ImageStream;
+import com.evimetry.aff4.cache.Chunk;
+import com.evimetry.aff4.cache.ChunkCache;
 import com.evimetry.aff4.codec.CompressionCodec;
 import com.evimetry.aff4.container.AFF4ZipContainer;
 import com.evimetry.aff4.rdf.RDFUtil;
 import com.evimetry.aff4.resource.AFF4Resource;
-import com.evimetry.aff4.struct.BevvyIndex;
 import com.evimetry.aff4.struct.BevvyIndexLoaderFunction;
 import com.evimetry.aff4.struct.ChunkLoaderFunction;
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
+import com.evimetry.aff4.struct.ChunkVerifier;
+import com.evimetry.aff4.struct.ZeroChunkDetector;
 
 /**
  * aff4:ImageStream implementation for compressed data stream in AFF4 Container.
@@ -46,17 +62,21 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 public class AFF4ImageStream extends AFF4Resource implements IAFF4ImageStream, SeekableByteChannel {
 
 	/**
-	 * The maximum number of bevvy index to keep in memory
+	 * The maximum amount of chunk data (in bytes) to lookup and load in a single pass.
 	 */
-	private final static int BEVVY_CACHE_SIZE = 10;
+	private final static long CHUNK_BATCH_SIZE = 2l * 1024l * 1024l;
 	/**
-	 * The amount of chunk data (in bytes) to keep in memory.
+	 * The amount of chunk data (in bytes) to load in a single readahead request.
 	 */
-	private final static long CHUNK_CACHE_SIZE = 8l * 1024l * 1024l;
+	private final static long READAHEAD_BATCH_SIZE = 512l * 1024l;
 	/**
 	 * The parent Zip container for this entry
 	 */
 	private final AFF4ZipContainer parent;
+	/**
+	 * The parent channel, for transferring chunks stored uncompressed.
+	 */
+	private final FileChannel channel;
 
 	/**
 	 * The position of the channel.
@@ -86,22 +106,38 @@ public class AFF4ImageStream extends AFF4Resource implements IAFF4ImageStream, S
 	 */
 	private final AtomicBoolean closed = new AtomicBoolean(false);
 
-	/**
-	 * Cache of recently read bevvy index
-	 */
-	private final Cache<Integer, BevvyIndex> bevvyCache;
 	/**
 	 * Loader for the bevvy index cache
 	 */
 	private final BevvyIndexLoaderFunction bevvyLoader;
 	/**
-	 * Cache of recently read bevvy index
+	 * Cache of recently read chunks and bevvy indexes.
 	 */
-	private final Cache<Long, ByteBuffer> chunkCache;
+	private final ChunkCache chunkCache;
+	/**
+	 * The key of this stream in the chunk cache.
+	 */
+	private final String cacheKey;
 	/**
 	 * Loader for the chunk cache
 	 */
 	private final ChunkLoaderFunction chunkLoader;
+	/**
+	 * The maximum number of chunks to lookup and load in a single pass.
+	 */
+	private final int chunkBatchSize;
+	/**
+	 * The number of chunks to load in a single readahead request.
+	 */
+	private final int readaheadBatchSize;
+	/**
+	 * The readahead access tracker, created on first use.
+	 */
+	private ReadaheadWindow readaheadWindow;
+	/**
+	 * Chunks currently being loaded by readahead requests, and the request loading them.
+	 */
+	private final Map<Long, CompletableFuture<Void>> pendingChunks = new ConcurrentHashMap<>();
 
 	/**
 	 * Create a new AFF4 Image Stream
@@ -116,15 +152,23 @@ public class AFF4ImageStream extends AFF4Resource implements IAFF4ImageStream, S
 			Model model) {
 		super(resource);
 		this.parent = parent;
+		this.channel = channel;
 		this.size = RDFUtil.readLongProperty(model, resource, AFF4Lexicon.size).orElse(0l);
 		this.chunkSize = RDFUtil.readIntProperty(model, resource, AFF4Lexicon.chunkSize).orElse(AFF4.DEFAULT_CHUNK_SIZE);
 		this.chunksInSegment = RDFUtil.readIntProperty(model, resource, AFF4Lexicon.chunksInSegment).orElse(AFF4.DEFAULT_CHUNKS_PER_SEGMENT);
 		String compression = RDFUtil.readResourceProperty(model, resource, AFF4Lexicon.compressionMethod).orElse(AFF4Lexicon.NoCompression.getValue());
 		this.codec = CompressionCodec.getCodec(compression, chunkSize);
-		this.bevvyCache = Caffeine.newBuilder().maximumSize(BEVVY_CACHE_SIZE).build();
-		this.chunkCache = Caffeine.newBuilder().maximumSize((int) (CHUNK_CACHE_SIZE / (long) chunkSize)).build();
-		this.bevvyLoader = new BevvyIndexLoaderFunction(resource, parent, zipContainer);
-		this.chunkLoader = new ChunkLoaderFunction(parent, channel, bevvyCache, bevvyLoader, chunkSize, chunksInSegment, codec);
+		this.chunkCache = parent.getChunkCache();
+		this.cacheKey = parent.getCacheKey(resource);
+		long batchSize = Math.min(CHUNK_BATCH_SIZE, chunkCache.getMaximumSize() / 4);
+		this.chunkBatchSize = (int) Math.max(1, batchSize / chunkSize);
+		this.readaheadBatchSize = (int) Math.max(1, Math.min(batchSize, READAHEAD_BATCH_SIZE) / chunkSize);
+		this.bevvyLoader = new BevvyIndexLoaderFunction(resource, channel, zipContainer, parent.getContainerIndex());
+		ChunkVerifier verifier = parent.isVerifyOnRead()
+				? new ChunkVerifier(resource, channel, zipContainer, chunkSize, chunksInSegment, size)
+				: null;
+		this.chunkLoader = new ChunkLoaderFunction(resource, parent, channel, chunkCache, bevvyLoader, chunkSize,
+				chunksInSegment, codec, verifier, new ZeroChunkDetector(chunkSize, size));
 		initProperties();
 	}
 
@@ -148,11 +192,9 @@ public class AFF4ImageStream extends AFF4Resource implements IAFF4ImageStream, S
 	@Override
 	public void close() throws IOException {
 		if (!closed.getAndSet(true)) {
+			// Note: The chunk cache is shared, so cached chunks are retained for any subsequent open of this stream.
 			parent.release(this);
-			chunkCache.cleanUp();
-			chunkCache.invalidateAll();
-			bevvyCache.cleanUp();
-			bevvyCache.invalidateAll();
+			codec.close();
 		}
 	}
 
@@ -167,24 +209,834 @@ public class AFF4ImageStream extends AFF4Resource implements IAFF4ImageStream, S
 		if (position + 1 >= size || position == Long.MAX_VALUE) {
 			return -1;
 		}
-		// Determine the chunk buffer offset.
-		long offset = floor(position, chunkSize);
-		ByteBuffer regionBuffer = chunkCache.get(offset, chunkLoader);
-		if(regionBuffer == null){
-			throw new IOException("Read failed");
+		int count = read(position, dst);
+		if (count > 0) {
+			this.position += count;
 		}
-		// set the position in our region buffer...
-		long delta = position - offset;
-		regionBuffer.position((int) delta);
+		return count;
+	}
+
+	@Override
+	public int read(long position, ByteBuffer dst) throws IOException {
+		if (closed.get()) {
+			throw new ClosedChannelException();
+		}
+		if (position < 0) {
+			throw new IllegalArgumentException();
+		}
+		if (dst == null || !dst.hasRemaining()) {
+			return 0;
+		}
+		if (position >= size) {
+			return -1;
+		}
+		// Fill the destination across as many chunks as required, limited to the end of the stream.
+		long end = Math.min(size, position + dst.remaining());
+		readahead(position / chunkSize, (end + chunkSize - 1) / chunkSize);
 		int count = 0;
-		while (dst.hasRemaining() && regionBuffer.hasRemaining()) {
-			dst.put(regionBuffer.get());
-			count++;
+		fill: while (position + count < end) {
+			long offset = floor(position + count, chunkSize);
+			Chunk[] chunks = getChunks(offset, end);
+			try {
+				for (Chunk chunk : chunks) {
+					if (chunk == null) {
+						if (count == 0) {
+							throw readFailure(offset / chunkSize);
+						}
+						// Return what we have, and let the next read report the failure.
+						break fill;
+					}
+					// set the position in our region buffer...
+					int delta = (int) (position + count - offset);
+					int length = (int) Math.min(end - (position + count), chunk.getLength() - delta);
+					if (length <= 0) {
+						// Subsized chunk, with no data at this position.
+						break fill;
+					}
+					ByteBuffer region = chunk.getData();
+					region.limit(delta + length);
+					region.position(delta);
+					dst.put(region);
+					count += length;
+					offset += chunkSize;
+					if (delta + length < chunkSize && position + count < end) {
+						// Subsized chunk, so we are unable to continue past it.
+						break fill;
+					}
+				}
+			} finally {
+				release(chunks);
+			}
 		}
-		this.position += count;
 		return count;
 	}
 
+	/**
+	 * Release our references to the given chunks.
+	 * 
+	 * @param chunks The chunks to release. NULL entries are ignored.
+	 */
+	private static void release(Chunk[] chunks) {
+		for (Chunk chunk : chunks) {
+			if (chunk != null) {
+				chunk.release();
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The view is a slice of the decompressed chunk containing the position, limited to the end of that chunk, and
+	 * holds a reference to the chunk until closed.
+	 */
+	@Override
+	public ChunkView view(long position, int maxLength) throws IOException {
+		if (closed.get()) {
+			throw new ClosedChannelException();
+		}
+		if (position < 0 || maxLength < 0) {
+			throw new IllegalArgumentException();
+		}
+		if (position >= size) {
+			return null;
+		}
+		long chunkIndex = position / chunkSize;
+		readahead(chunkIndex, chunkIndex + 1);
+		long offset = chunkIndex * chunkSize;
+		Chunk chunk = getChunks(offset, offset + 1)[0];
+		if (chunk == null) {
+			throw readFailure(chunkIndex);
+		}
+		int delta = (int) (position - offset);
+		int length = (int) Math.min(Math.min(maxLength, size - position), chunk.getLength() - delta);
+		if (length <= 0) {
+			// Subsized chunk, with no data at this position.
+			chunk.release();
+			return ChunkView.empty();
+		}
+		ByteBuffer region = chunk.getData();
+		region.limit(delta + length);
+		region.position(delta);
+		return new ChunkView(region, chunk);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Runs of chunks stored uncompressed are transferred directly from the container with
+	 * {@link FileChannel#transferTo(long, long, WritableByteChannel)}, all other chunks are decompressed via the chunk
+	 * cache. When verifying on read, stored chunks are only transferred directly once they have passed verification.
+	 */
+	@Override
+	public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+		if (closed.get()) {
+			throw new ClosedChannelException();
+		}
+		if (position < 0 || count < 0) {
+			throw new IllegalArgumentException();
+		}
+		if (position >= size || count == 0) {
+			return 0;
+		}
+		long end = Math.min(size, position + Math.min(count, Long.MAX_VALUE - position));
+		long lastChunk = (end + chunkSize - 1) / chunkSize;
+		long current = position;
+		while (current < end) {
+			long chunkIndex = current / chunkSize;
+			long remainingInBevvy = chunksInSegment - (chunkIndex % chunksInSegment);
+			int batch = (int) Math.min(Math.min(remainingInBevvy, lastChunk - chunkIndex), chunkBatchSize);
+			long[] offsets = chunkLoader.getStoredOffsets(chunkIndex * chunkSize, batch);
+			int i = 0;
+			while (i < batch) {
+				// Find the run of chunks that are either stored consecutively in the container, or not stored at all.
+				boolean stored = offsets[i] >= 0;
+				int j = i + 1;
+				while (j < batch && (stored ? offsets[j] == offsets[j - 1] + chunkSize : offsets[j] < 0)) {
+					j++;
+				}
+				long runEnd = Math.min(end, (chunkIndex + j) * chunkSize);
+				long length = runEnd - current;
+				long transferred;
+				if (stored) {
+					long delta = current - (chunkIndex + i) * chunkSize;
+					transferred = Streams.transferFully(channel, offsets[i] + delta, length, target);
+				} else {
+					transferred = transferChunks(current, runEnd, target, current == position);
+				}
+				current += transferred;
+				if (transferred < length) {
+					return current - position;
+				}
+				i = j;
+			}
+		}
+		return current - position;
+	}
+
+	/**
+	 * Transfer the given region of the stream to the target from the decompressed chunks.
+	 * 
+	 * @param position The position in the stream to start the transfer at.
+	 * @param end The end of the region.
+	 * @param target The channel to write to.
+	 * @param first TRUE if this is the start of the transfer, and so a chunk that fails to load is to be reported.
+	 * @return The number of bytes transferred.
+	 * @throws IOException If the first chunk failed to load, or writing the target failed.
+	 */
+	private long transferChunks(long position, long end, WritableByteChannel target, boolean first)
+			throws IOException {
+		long current = position;
+		while (current < end) {
+			long offset = floor(current, chunkSize);
+			Chunk[] chunks = getChunks(offset, end);
+			try {
+				for (Chunk chunk : chunks) {
+					if (chunk == null) {
+						if (first && current == position) {
+							throw readFailure(offset / chunkSize);
+						}
+						// Return what we have, and let the next transfer report the failure.
+						return current - position;
+					}
+					int delta = (int) (current - offset);
+					int length = (int) Math.min(end - current, chunk.getLength() - delta);
+					if (length <= 0) {
+						// Subsized chunk, with no data at this position.
+						return current - position;
+					}
+					ByteBuffer region = chunk.getData();
+					region.limit(delta + length);
+					region.position(delta);
+					int written = Streams.writeFully(region, target);
+					current += written;
+					offset += chunkSize;
+					if (written < length || (delta + length < chunkSize && current < end)) {
+						// The target is full, or a subsized chunk that we are unable to continue past.
+						return current - position;
+					}
+				}
+			} finally {
+				release(chunks);
+			}
+		}
+		return current - position;
+	}
+
+	/**
+	 * Read from the given position into the buffer, decompressing chunks in parallel on the given pool.
+	 * <p>
+	 * This method is intended for large sequential reads, such as exporting or hashing the whole stream. It does not
+	 * use or modify the position of this channel, and decompressed chunks are not added to the chunk cache.
+	 * 
+	 * @param position The position in the stream to start reading from.
+	 * @param dst The buffer to read into.
+	 * @param pool The pool to decompress chunks on.
+	 * @return The number of bytes read, or -1 if the position is at or beyond the end of the stream.
+	 * @throws IOException If reading the stream failed.
+	 */
+	public int read(long position, ByteBuffer dst, ForkJoinPool pool) throws IOException {
+		if (dst == null || !dst.hasRemaining()) {
+			return 0;
+		}
+		if (position >= size) {
+			return -1;
+		}
+		return (int) read(position, dst.remaining(), pool, (offset, data) -> dst.put(data));
+	}
+
+	/**
+	 * Read the given region of the stream, decompressing chunks in parallel on the given pool.
+	 * <p>
+	 * Chunks are read from the container in order, decompressed concurrently on the pool by the stream codec,
+	 * and handed to the consumer in stream order on the calling thread. It does not use or modify the position of this
+	 * channel, and decompressed chunks are not added to the chunk cache.
+	 * 
+	 * @param position The position in the stream to start reading from.
+	 * @param length The number of bytes to read.
+	 * @param pool The pool to decompress chunks on.
+	 * @param consumer The consumer to receive the stream contents.
+	 * @return The number of bytes delivered to the consumer.
+	 * @throws IOException If reading the stream failed, or the consumer failed.
+	 */
+	public long read(long position, long length, ForkJoinPool pool, ChunkConsumer consumer) throws IOException {
+		if (closed.get()) {
+			throw new ClosedChannelException();
+		}
+		if (position < 0 || length < 0) {
+			throw new IllegalArgumentException();
+		}
+		if (position >= size || length == 0) {
+			return 0;
+		}
+		long end = Math.min(size, position + Math.min(length, Long.MAX_VALUE - position));
+		try (ReadPipeline pipeline = new ReadPipeline(pool, consumer)) {
+			pipeline.add(this, position, end - position, position);
+			return pipeline.finish();
+		}
+	}
+
+	/**
+	 * Get the maximum number of chunks in flight for a pipelined read or visit on the given pool.
+	 * <p>
+	 * A visit may submit one further batch of chunks beyond this depth, so at most twice this many chunks, following
+	 * the earliest chunk not yet visited, are visited concurrently.
+	 * 
+	 * @param pool The pool to decompress chunks on.
+	 * @return The number of chunks.
+	 */
+	public int getPipelineDepth(ForkJoinPool pool) {
+		return Math.max(chunkBatchSize, pool.getParallelism() * readaheadBatchSize * 2);
+	}
+
+	/**
+	 * Get the number of chunks to read in a single request of a pipelined read.
+	 * 
+	 * @param chunkIndex The index of the next chunk to read.
+	 * @param lastChunk The index following the last chunk required.
+	 * @return The number of chunks, limited to the bevvy of the next chunk.
+	 */
+	int getPipelineBatch(long chunkIndex, long lastChunk) {
+		long remainingInBevvy = chunksInSegment - (chunkIndex % chunksInSegment);
+		return (int) Math.min(Math.min(lastChunk - chunkIndex, remainingInBevvy), readaheadBatchSize);
+	}
+
+	/**
+	 * Read the given run of raw chunks, and schedule their decompression on the pool.
+	 * 
+	 * @param chunkIndex The index of the first chunk.
+	 * @param count The number of chunks, which MUST all reside in the same bevvy.
+	 * @param pool The pool to decompress chunks on.
+	 * @return The decompressed chunks in order. Chunks that fail to load complete with NULL.
+	 */
+	List<CompletableFuture<Chunk>> readPipelined(long chunkIndex, int count, ForkJoinPool pool) {
+		List<CompletableFuture<Chunk>> chunks = new ArrayList<>(count);
+		Chunk[] cached = new Chunk[count];
+		for (int i = 0; i < count; i++) {
+			cached[i] = getCachedChunk(chunkIndex + i);
+		}
+		int i = 0;
+		while (i < count) {
+			if (cached[i] != null) {
+				chunks.add(CompletableFuture.completedFuture(cached[i]));
+				i++;
+				continue;
+			}
+			int j = i;
+			while (j < count && cached[j] == null) {
+				j++;
+			}
+			Chunk[] raw = chunkLoader.readAll((chunkIndex + i) * chunkSize, j - i);
+			for (int k = 0; k < raw.length; k++) {
+				Chunk chunk = raw[k];
+				long index = chunkIndex + i + k;
+				if (chunk == null) {
+					chunks.add(CompletableFuture.completedFuture(null));
+				} else {
+					chunks.add(CompletableFuture.supplyAsync(
+							() -> chunkLoader.verify(index, chunkLoader.decode(chunk, codec)), pool));
+				}
+			}
+			i = j;
+		}
+		return chunks;
+	}
+
+	/**
+	 * Visit the given run of chunks, reading and decompressing chunks in parallel on the given pool.
+	 * <p>
+	 * Raw chunks are read from the container in order on the calling thread, while decompression and the visitor run
+	 * concurrently on the pool, so chunks are visited in no particular order. Chunks that fail to read or decompress
+	 * are visited with NULL data, rather than failing the scan. Decompressed chunks are not added to the chunk cache.
+	 * 
+	 * @param firstChunk The index of the first chunk to visit.
+	 * @param count The number of chunks to visit, limited to the end of the stream.
+	 * @param pool The pool to decompress and visit chunks on.
+	 * @param visitor The visitor to receive each chunk.
+	 * @throws IOException If the visitor failed, or the calling thread was interrupted.
+	 */
+	public void visitChunks(long firstChunk, long count, ForkJoinPool pool, ChunkVisitor visitor) throws IOException {
+		if (closed.get()) {
+			throw new ClosedChannelException();
+		}
+		if (firstChunk < 0 || count < 0) {
+			throw new IllegalArgumentException();
+		}
+		long lastChunk = Math.min((size + chunkSize - 1) / chunkSize,
+				firstChunk + Math.min(count, Long.MAX_VALUE - firstChunk));
+		// Bound the number of chunks in flight.
+		int depth = getPipelineDepth(pool);
+		Deque<CompletableFuture<Void>> pending = new ArrayDeque<>();
+		long chunkIndex = firstChunk;
+		while (chunkIndex < lastChunk) {
+			int run = getPipelineBatch(chunkIndex, lastChunk);
+			Chunk[] raw = chunkLoader.readAll(chunkIndex * chunkSize, run);
+			for (int i = 0; i < run; i++) {
+				long index = chunkIndex + i;
+				Chunk chunk = raw[i];
+				pending.add(CompletableFuture.runAsync(() -> visit(index, chunk, visitor), pool));
+			}
+			chunkIndex += run;
+			while (pending.size() >= depth) {
+				await(pending.poll());
+			}
+		}
+		while (!pending.isEmpty()) {
+			await(pending.poll());
+		}
+	}
+
+	/**
+	 * Decompress the given raw chunk, and pass it to the visitor.
+	 * 
+	 * @param chunkIndex The index of the chunk.
+	 * @param raw The raw chunk, or NULL if it failed to read. Our reference to the chunk is released.
+	 * @param visitor The visitor.
+	 */
+	private void visit(long chunkIndex, Chunk raw, ChunkVisitor visitor) {
+		Chunk chunk = raw == null ? null : chunkLoader.decode(raw, codec);
+		try {
+			visitor.visit(chunkIndex, chunk == null ? null : chunk.getData());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			if (chunk != null) {
+				chunk.release();
+			}
+		}
+	}
+
+	/**
+	 * Wait for the given visit to complete.
+	 * 
+	 * @param visit The visit.
+	 * @throws IOException If the visitor failed, or the calling thread was interrupted.
+	 */
+	private static void await(CompletableFuture<Void> visit) throws IOException {
+		try {
+			visit.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof UncheckedIOException) {
+				throw ((UncheckedIOException) cause).getCause();
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Get the run of consecutive chunks starting at the given offset, needed to service a read up to the given end.
+	 * <p>
+	 * The run is limited to the bevvy of the first chunk, and to the {@link #chunkBatchSize}. Chunks not present in
+	 * the cache are loaded as a single operation.
+	 * 
+	 * @param offset The chunk aligned offset of the first chunk.
+	 * @param end The end offset of the read request.
+	 * @return The chunk buffers, in order. Chunks which failed to load will be NULL.
+	 */
+	private Chunk[] getChunks(long offset, long end) {
+		long chunkIndex = offset / chunkSize;
+		long remainingInBevvy = chunksInSegment - (chunkIndex % chunksInSegment);
+		long required = ((end - offset) + chunkSize - 1) / chunkSize;
+		int count = (int) Math.min(Math.min(remainingInBevvy, required), chunkBatchSize);
+
+		Chunk[] chunks = new Chunk[count];
+		for (int i = 0; i < count; i++) {
+			chunks[i] = getCachedChunk(chunkIndex + i);
+		}
+		// Wait for any missing chunks that are already being loaded by a readahead request.
+		for (int i = 0; i < count; i++) {
+			if (chunks[i] == null) {
+				CompletableFuture<Void> pending = pendingChunks.get(chunkIndex + i);
+				if (pending != null) {
+					pending.join();
+					chunks[i] = getCachedChunk(chunkIndex + i);
+				}
+			}
+		}
+		// Load any missing runs of chunks.
+		int i = 0;
+		while (i < count) {
+			if (chunks[i] != null) {
+				i++;
+				continue;
+			}
+			int j = i;
+			while (j < count && chunks[j] == null) {
+				j++;
+			}
+			Chunk[] loaded = load(chunkIndex + i, j - i);
+			System.arraycopy(loaded, 0, chunks, i, loaded.length);
+			i = j;
+		}
+		return chunks;
+	}
+
+	/**
+	 * Get the given chunk from the chunk cache.
+	 * <p>
+	 * When verifying on read, a cached chunk that has not passed verification by this stream (such as one loaded by a
+	 * stream without verification enabled) is verified before use. Chunks known to contain only zeros are not held in
+	 * the cache, and are served from the shared zero buffer.
+	 * 
+	 * @param chunkIndex The index of the chunk.
+	 * @return The chunk holding a reference owned by the caller, or NULL if not cached or it failed verification.
+	 */
+	private Chunk getCachedChunk(long chunkIndex) {
+		if (chunkLoader.isZero(chunkIndex)) {
+			return chunkLoader.getZeroChunk();
+		}
+		Chunk chunk = chunkCache.getChunk(cacheKey, chunkIndex);
+		ChunkVerifier verifier = chunkLoader.getVerifier();
+		if (chunk == null || verifier == null || verifier.isVerified(chunkIndex)) {
+			return chunk;
+		}
+		return chunkLoader.verify(chunkIndex, chunk);
+	}
+
+	/**
+	 * Determine if the given chunk contains only zeros.
+	 * <p>
+	 * Chunks whose compressed length is too large to hold only zeros are answered from the bevvy index. Otherwise the
+	 * chunk is recognised from the compressed form of zero chunks seen before, and only decompressed if its compressed
+	 * form has not been seen.
+	 * 
+	 * @param chunkIndex The index of the chunk.
+	 * @return TRUE if the chunk contains only zeros, or FALSE if it contains data or could not be read.
+	 * @throws IOException If the stream is closed.
+	 */
+	public boolean isZeroChunk(long chunkIndex) throws IOException {
+		if (closed.get()) {
+			throw new ClosedChannelException();
+		}
+		if (chunkIndex < 0 || chunkIndex >= (size + chunkSize - 1) / chunkSize) {
+			throw new IllegalArgumentException();
+		}
+		return chunkLoader.findZeroChunk(chunkIndex * chunkSize, 1, true) == 0;
+	}
+
+	/**
+	 * Determine if the given chunk is already known to contain only zeros, without reading the bevvy index or the
+	 * chunk.
+	 * <p>
+	 * Chunks become known once read, or once examined by {@link #isZeroChunk(long)}, {@link #seekData(long)} or
+	 * {@link #seekHole(long)}.
+	 * 
+	 * @param chunkIndex The index of the chunk.
+	 * @return TRUE if the chunk is known to contain only zeros.
+	 * @throws IOException If the stream is closed.
+	 */
+	public boolean isKnownZeroChunk(long chunkIndex) throws IOException {
+		if (closed.get()) {
+			throw new ClosedChannelException();
+		}
+		if (chunkIndex < 0) {
+			throw new IllegalArgumentException();
+		}
+		return chunkLoader.isZero(chunkIndex);
+	}
+
+	/**
+	 * Get the stored lengths of a run of chunks from the bevvy indexes, without reading or decompressing the chunks.
+	 * <p>
+	 * The ratio of the stored length to the chunk size estimates the compressibility of the chunk contents.
+	 * 
+	 * @param chunkIndex The index of the first chunk.
+	 * @param count The number of chunks.
+	 * @return The stored length of each chunk, which is the chunk size for chunks stored uncompressed. Chunks that
+	 *         could not be located are -1.
+	 * @throws IOException If the stream is closed.
+	 */
+	public int[] getChunkLengths(long chunkIndex, int count) throws IOException {
+		if (closed.get()) {
+			throw new ClosedChannelException();
+		}
+		if (chunkIndex < 0 || count < 0) {
+			throw new IllegalArgumentException();
+		}
+		int[] lengths = new int[count];
+		int i = 0;
+		while (i < count) {
+			long index = chunkIndex + i;
+			int run = (int) Math.min(count - i, chunksInSegment - (index % chunksInSegment));
+			System.arraycopy(chunkLoader.getChunkLengths(index * chunkSize, run), 0, lengths, i, run);
+			i += run;
+		}
+		return lengths;
+	}
+
+	/**
+	 * Find the first position at or after the given position which is not within a chunk containing only zeros,
+	 * similar to SEEK_DATA.
+	 * <p>
+	 * Chunks are classified from the bevvy indexes, see {@link #isZeroChunk(long)}.
+	 * 
+	 * @param position The position in the stream.
+	 * @return The position of the next data, or -1 if there is no data at or after the given position.
+	 * @throws IOException If the stream is closed.
+	 */
+	public long seekData(long position) throws IOException {
+		long data = seekData(position, size);
+		return data < size ? data : -1;
+	}
+
+	/**
+	 * Find the first position within the given range which is not within a chunk containing only zeros.
+	 * <p>
+	 * Only the chunks overlapping the range are examined.
+	 * 
+	 * @param position The start of the range.
+	 * @param limit The end of the range, which is limited to the size of the stream.
+	 * @return The position of the next data, or the end of the range if the range holds no data.
+	 * @throws IOException If the stream is closed.
+	 */
+	public long seekData(long position, long limit) throws IOException {
+		if (position < 0) {
+			throw new IllegalArgumentException();
+		}
+		limit = Math.min(limit, size);
+		if (position >= limit) {
+			return Math.max(position, limit);
+		}
+		long chunkIndex = findChunk(position / chunkSize, (limit - 1) / chunkSize + 1, false, true);
+		return chunkIndex < 0 ? limit : Math.max(position, chunkIndex * chunkSize);
+	}
+
+	/**
+	 * Find the first position within the given range which is not within a chunk already known to contain only zeros,
+	 * see {@link #isKnownZeroChunk(long)}. No bevvy index or chunk is read.
+	 * 
+	 * @param position The start of the range.
+	 * @param limit The end of the range, which is limited to the size of the stream.
+	 * @return The position of the next data, or the end of the range if the range holds no data.
+	 * @throws IOException If the stream is closed.
+	 */
+	public long seekKnownData(long position, long limit) throws IOException {
+		if (position < 0) {
+			throw new IllegalArgumentException();
+		}
+		limit = Math.min(limit, size);
+		if (position >= limit) {
+			return Math.max(position, limit);
+		}
+		long chunkIndex = findChunk(position / chunkSize, (limit - 1) / chunkSize + 1, false, false);
+		return chunkIndex < 0 ? limit : Math.max(position, chunkIndex * chunkSize);
+	}
+
+	/**
+	 * Find the first position at or after the given position which is within a chunk containing only zeros, similar
+	 * to SEEK_HOLE.
+	 * <p>
+	 * Chunks are classified from the bevvy indexes, see {@link #isZeroChunk(long)}.
+	 * 
+	 * @param position The position in the stream.
+	 * @return The position of the next hole, the size of the stream if there is no hole after the given position, or
+	 *         -1 if the given position is at or beyond the end of the stream.
+	 * @throws IOException If the stream is closed.
+	 */
+	public long seekHole(long position) throws IOException {
+		if (position < 0) {
+			throw new IllegalArgumentException();
+		}
+		return position < size ? seekHole(position, size) : -1;
+	}
+
+	/**
+	 * Find the first position within the given range which is within a chunk containing only zeros.
+	 * <p>
+	 * Only the chunks overlapping the range are examined.
+	 * 
+	 * @param position The start of the range.
+	 * @param limit The end of the range, which is limited to the size of the stream.
+	 * @return The position of the next hole, or the end of the range if the range holds no hole.
+	 * @throws IOException If the stream is closed.
+	 */
+	public long seekHole(long position, long limit) throws IOException {
+		if (position < 0) {
+			throw new IllegalArgumentException();
+		}
+		limit = Math.min(limit, size);
+		if (position >= limit) {
+			return Math.max(position, limit);
+		}
+		long chunkIndex = findChunk(position / chunkSize, (limit - 1) / chunkSize + 1, true, true);
+		return chunkIndex < 0 ? limit : Math.max(position, chunkIndex * chunkSize);
+	}
+
+	/**
+	 * Find the first position within the given range which is within a chunk already known to contain only zeros, see
+	 * {@link #isKnownZeroChunk(long)}. No bevvy index or chunk is read.
+	 * 
+	 * @param position The start of the range.
+	 * @param limit The end of the range, which is limited to the size of the stream.
+	 * @return The position of the next known hole, or the end of the range if the range holds no known hole.
+	 * @throws IOException If the stream is closed.
+	 */
+	public long seekKnownHole(long position, long limit) throws IOException {
+		if (position < 0) {
+			throw new IllegalArgumentException();
+		}
+		limit = Math.min(limit, size);
+		if (position >= limit) {
+			return Math.max(position, limit);
+		}
+		long chunkIndex = findChunk(position / chunkSize, (limit - 1) / chunkSize + 1, true, false);
+		return chunkIndex < 0 ? limit : Math.max(position, chunkIndex * chunkSize);
+	}
+
+	/**
+	 * Find the first chunk in the given range which contains only zeros, or which contains data.
+	 * 
+	 * @param chunkIndex The index of the first chunk in the range.
+	 * @param endIndex The index of the chunk following the range.
+	 * @param zero TRUE to find a chunk containing only zeros, or FALSE to find a chunk containing data.
+	 * @param probe TRUE to examine chunks not yet known, or FALSE to only consider chunks already known to contain
+	 *        only zeros.
+	 * @return The index of the chunk, or -1 if there is no such chunk.
+	 * @throws IOException If the stream is closed.
+	 */
+	private long findChunk(long chunkIndex, long endIndex, boolean zero, boolean probe) throws IOException {
+		if (closed.get()) {
+			throw new ClosedChannelException();
+		}
+		while (chunkIndex < endIndex) {
+			// Examine a bevvy at a time.
+			int run = (int) Math.min(endIndex - chunkIndex, chunksInSegment - (chunkIndex % chunksInSegment));
+			int found = probe ? chunkLoader.findZeroChunk(chunkIndex * chunkSize, run, zero)
+					: chunkLoader.findKnownZeroChunk(chunkIndex * chunkSize, run, zero);
+			if (found >= 0) {
+				return chunkIndex + found;
+			}
+			chunkIndex += run;
+		}
+		return -1;
+	}
+
+	/**
+	 * Get the exception to report for a chunk that could not be loaded.
+	 * 
+	 * @param chunkIndex The index of the chunk.
+	 * @return The integrity failure of the chunk if it failed verification, otherwise a general read failure.
+	 */
+	IOException readFailure(long chunkIndex) {
+		ChunkVerifier verifier = chunkLoader.getVerifier();
+		ChunkIntegrityException failure = verifier == null ? null : verifier.getFailure(chunkIndex);
+		return failure != null ? failure : new IOException("Read failed");
+	}
+
+	/**
+	 * Load the given run of chunks, and add them to the chunk cache. Chunks containing only zeros take no space in the
+	 * cache.
+	 * 
+	 * @param chunkIndex The index of the first chunk in the run.
+	 * @param count The number of chunks in the run, which MUST all reside in the same bevvy.
+	 * @return The loaded chunks, each holding a reference owned by the caller. Chunks which failed to load will be
+	 *         NULL.
+	 */
+	private Chunk[] load(long chunkIndex, int count) {
+		Chunk[] loaded = chunkLoader.loadAll(chunkIndex * chunkSize, count);
+		for (int k = 0; k < loaded.length; k++) {
+			if (loaded[k] != null && !chunkLoader.isZero(chunkIndex + k)) {
+				chunkCache.putChunk(cacheKey, chunkIndex + k, loaded[k]);
+			}
+		}
+		return loaded;
+	}
+
+	/**
+	 * Record a read of the given chunks, and schedule readahead of the following chunks if the access is sequential.
+	 * 
+	 * @param start The first chunk of the read.
+	 * @param end The chunk following the last chunk of the read.
+	 */
+	private void readahead(long start, long end) {
+		Readahead settings = parent.getReadahead();
+		if (settings == null) {
+			return;
+		}
+		long[] range = getReadaheadWindow(settings).access(start, end);
+		if (range == null) {
+			return;
+		}
+		long last = Math.min(range[1], (size + chunkSize - 1) / chunkSize);
+		long chunk = range[0];
+		while (chunk < last) {
+			// Requests may not cross a bevvy boundary.
+			long bevvyEnd = ((chunk / chunksInSegment) + 1) * chunksInSegment;
+			int count = (int) Math.min(Math.min(last, bevvyEnd) - chunk, readaheadBatchSize);
+			prefetch(settings, chunk, count);
+			chunk += count;
+		}
+	}
+
+	/**
+	 * Get the readahead access tracker for this stream, creating it if required.
+	 * 
+	 * @param settings The readahead settings.
+	 * @return The readahead access tracker.
+	 */
+	private synchronized ReadaheadWindow getReadaheadWindow(Readahead settings) {
+		if (readaheadWindow == null) {
+			long window = Math.min(settings.getMaximumWindow(), chunkCache.getMaximumSize() / 4);
+			readaheadWindow = new ReadaheadWindow(readaheadBatchSize, (int) Math.max(1, window / chunkSize));
+		}
+		return readaheadWindow;
+	}
+
+	/**
+	 * Load the given run of chunks into the chunk cache on the readahead executor.
+	 * 
+	 * @param settings The readahead settings.
+	 * @param chunkIndex The index of the first chunk in the run.
+	 * @param count The number of chunks in the run.
+	 */
+	private void prefetch(Readahead settings, long chunkIndex, int count) {
+		List<Long> keys = new ArrayList<>(count);
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		for (int i = 0; i < count; i++) {
+			if (chunkLoader.isZero(chunkIndex + i)) {
+				continue;
+			}
+			Chunk chunk = chunkCache.getChunk(cacheKey, chunkIndex + i);
+			if (chunk != null) {
+				chunk.release();
+			} else if (pendingChunks.putIfAbsent(chunkIndex + i, future) == null) {
+				// Not already being loaded by another request.
+				keys.add(chunkIndex + i);
+			}
+		}
+		if (keys.isEmpty()) {
+			return;
+		}
+		Runnable task = () -> {
+			try {
+				// Load each run of consecutive missing chunks.
+				int i = 0;
+				while (i < keys.size() && isOpen()) {
+					int j = i + 1;
+					while (j < keys.size() && keys.get(j) == keys.get(j - 1) + 1) {
+						j++;
+					}
+					release(load(keys.get(i), j - i));
+					i = j;
+				}
+			} finally {
+				keys.forEach(key -> pendingChunks.remove(key, future));
+				future.complete(null);
+			}
+		};
+		try {
+			settings.getExecutor().execute(task);
+		} catch (RejectedExecutionException e) {
+			// The executor is saturated, so the reader will load these chunks itself.
+			keys.forEach(key -> pendingChunks.remove(key, future));
+			future.complete(null);
+		}
+	}
+
 	private long floor(long offset, long size) {
 		return (offset / size) * size;
 	}
@@ -224,6 +1076,24 @@ public class AFF4ImageStream extends AFF4Resource implements IAFF4ImageStream, S
 		return size;
 	}
 
+	/**
+	 * Get the size of each chunk in this stream.
+	 * 
+	 * @return The chunk size in bytes.
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Get the number of chunks in each bevvy of this stream.
+	 * 
+	 * @return The number of chunks per segment.
+	 */
+	public int getChunksInSegment() {
+		return chunksInSegment;
+	}
+
 	@Override
 	public SeekableByteChannel getChannel() {
 		return this;
@@ -0,0 +1,40 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.imagestream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Receiver of stream contents from a pipelined read.
+ * <p>
+ * Contents are delivered in stream order, on the thread that issued the read.
+ */
+@FunctionalInterface
+public interface ChunkConsumer {
+
+	/**
+	 * Accept the next region of the stream.
+	 * <p>
+	 * The buffer is only valid for the duration of this call, and MUST NOT be modified.
+	 * 
+	 * @param position The position in the stream of the first byte in the buffer.
+	 * @param data The stream contents, from the buffer's position to its limit.
+	 * @throws IOException If processing the contents failed. The read will be abandoned.
+	 */
+	public void accept(long position, ByteBuffer data) throws IOException;
+}
@@ -0,0 +1,40 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.imagestream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Receiver of individual chunks from a parallel chunk scan.
+ * <p>
+ * Chunks are delivered in no particular order, and concurrently from multiple threads.
+ */
+@FunctionalInterface
+public interface ChunkVisitor {
+
+	/**
+	 * Accept a chunk of the stream.
+	 * <p>
+	 * The buffer is only valid for the duration of this call, and MUST NOT be modified.
+	 * 
+	 * @param chunkIndex The index of the chunk in the stream.
+	 * @param data The decompressed chunk contents, or NULL if the chunk could not be read or decompressed.
+	 * @throws IOException If processing the chunk failed. The scan will be abandoned.
+	 */
+	public void visit(long chunkIndex, ByteBuffer data) throws IOException;
+}
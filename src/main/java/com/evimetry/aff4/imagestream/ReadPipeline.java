@@ -0,0 +1,294 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.imagestream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+import com.evimetry.aff4.IAFF4ImageStream;
+import com.evimetry.aff4.cache.Chunk;
+
+/**
+ * A pipelined read over consecutive regions of one or more streams.
+ * <p>
+ * Regions are added in the order they are to be delivered. Raw chunks of aff4:ImageStream regions are read from the
+ * container in order on the calling thread and decompressed concurrently on the pool, while regions of other streams
+ * are read directly on the calling thread once reached. Contents are handed to the consumer in order on the calling
+ * thread. Chunks of later regions are read and decompressed while earlier regions are still being delivered, so the
+ * pipeline does not drain at region boundaries.
+ * <p>
+ * The read ends at the first region which could not be read in full.
+ */
+public final class ReadPipeline implements AutoCloseable {
+
+	/**
+	 * The size of the buffer used to read regions not backed by an aff4:ImageStream.
+	 */
+	private final static int READ_BUFFER_SIZE = 1024 * 1024;
+	/**
+	 * The pool to decompress chunks on.
+	 */
+	private final ForkJoinPool pool;
+	/**
+	 * The consumer to receive the contents.
+	 */
+	private final ChunkConsumer consumer;
+	/**
+	 * The reads in flight, in delivery order.
+	 */
+	private final Deque<PendingRead> pending = new ArrayDeque<>();
+	/**
+	 * The maximum number of reads in flight.
+	 */
+	private int depth = 1;
+	/**
+	 * The number of bytes delivered to the consumer.
+	 */
+	private long delivered;
+	/**
+	 * Whether the read has ended.
+	 */
+	private boolean ended;
+	/**
+	 * The buffer used to read regions not backed by an aff4:ImageStream, allocated on first use.
+	 */
+	private ByteBuffer buffer;
+
+	/**
+	 * Create a new read pipeline.
+	 * 
+	 * @param pool The pool to decompress chunks on.
+	 * @param consumer The consumer to receive the contents.
+	 */
+	public ReadPipeline(ForkJoinPool pool, ChunkConsumer consumer) {
+		this.pool = pool;
+		this.consumer = consumer;
+	}
+
+	/**
+	 * Add the next region to the read, delivering earlier regions as required to bound the reads in flight.
+	 * 
+	 * @param stream The stream backing the region.
+	 * @param position The position in the stream of the region.
+	 * @param length The length of the region.
+	 * @param target The position reported to the consumer for the first byte of the region.
+	 * @return TRUE if the read may continue, or FALSE if it has ended.
+	 * @throws IOException If reading a stream failed, or the consumer failed.
+	 */
+	public boolean add(IAFF4ImageStream stream, long position, long length, long target) throws IOException {
+		if (ended) {
+			return false;
+		}
+		if (!(stream instanceof AFF4ImageStream)) {
+			pending.add(new DirectRead(stream, position, length, target));
+			return deliver(depth - 1);
+		}
+		AFF4ImageStream imageStream = (AFF4ImageStream) stream;
+		depth = Math.max(depth, imageStream.getPipelineDepth(pool));
+		int chunkSize = imageStream.getChunkSize();
+		long end = position + length;
+		long lastChunk = (end + chunkSize - 1) / chunkSize;
+		long chunkIndex = position / chunkSize;
+		while (chunkIndex < lastChunk) {
+			int count = imageStream.getPipelineBatch(chunkIndex, lastChunk);
+			List<CompletableFuture<Chunk>> chunks = imageStream.readPipelined(chunkIndex, count, pool);
+			for (int i = 0; i < count; i++) {
+				long index = chunkIndex + i;
+				long start = Math.max(position, index * chunkSize);
+				pending.add(new ChunkRead(imageStream, index, chunks.get(i), start, end, target - position));
+			}
+			chunkIndex += count;
+			if (!deliver(depth - 1)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Deliver all remaining regions.
+	 * 
+	 * @return The number of bytes delivered to the consumer.
+	 * @throws IOException If reading a stream failed, or the consumer failed.
+	 */
+	public long finish() throws IOException {
+		deliver(0);
+		return delivered;
+	}
+
+	/**
+	 * Deliver the oldest reads in flight until no more than the given number remain.
+	 * 
+	 * @param remaining The number of reads which may remain in flight.
+	 * @return TRUE if the read may continue, or FALSE if it has ended.
+	 * @throws IOException If reading a stream failed, or the consumer failed.
+	 */
+	private boolean deliver(int remaining) throws IOException {
+		while (!ended && pending.size() > remaining) {
+			if (!pending.poll().deliver()) {
+				ended = true;
+			}
+		}
+		return !ended;
+	}
+
+	/**
+	 * Release any chunks that will no longer be delivered, as they complete.
+	 */
+	@Override
+	public void close() {
+		for (PendingRead read : pending) {
+			read.discard();
+		}
+		pending.clear();
+	}
+
+	/**
+	 * A read in flight.
+	 */
+	private interface PendingRead {
+
+		/**
+		 * Deliver the contents of this read to the consumer.
+		 * 
+		 * @return TRUE if the read was delivered in full.
+		 * @throws IOException If reading the stream failed, or the consumer failed.
+		 */
+		boolean deliver() throws IOException;
+
+		/**
+		 * Discard this read without delivering it.
+		 */
+		void discard();
+	}
+
+	/**
+	 * The required part of a chunk of an aff4:ImageStream, being decompressed on the pool.
+	 */
+	private final class ChunkRead implements PendingRead {
+
+		private final AFF4ImageStream stream;
+		private final long chunkIndex;
+		private final CompletableFuture<Chunk> chunk;
+		/**
+		 * The position in the stream of the first byte to deliver.
+		 */
+		private final long start;
+		/**
+		 * The end of the region in the stream.
+		 */
+		private final long end;
+		/**
+		 * The difference between the position reported to the consumer and the stream position.
+		 */
+		private final long base;
+
+		ChunkRead(AFF4ImageStream stream, long chunkIndex, CompletableFuture<Chunk> chunk, long start, long end,
+				long base) {
+			this.stream = stream;
+			this.chunkIndex = chunkIndex;
+			this.chunk = chunk;
+			this.start = start;
+			this.end = end;
+			this.base = base;
+		}
+
+		@Override
+		public boolean deliver() throws IOException {
+			Chunk c = chunk.join();
+			if (c == null) {
+				throw stream.readFailure(chunkIndex);
+			}
+			try {
+				int chunkSize = stream.getChunkSize();
+				int delta = (int) (start - chunkIndex * chunkSize);
+				int length = (int) Math.min(end - start, c.getLength() - delta);
+				if (length <= 0) {
+					// Subsized chunk, with no data at this position.
+					return false;
+				}
+				ByteBuffer region = c.getData();
+				region.limit(delta + length);
+				region.position(delta);
+				consumer.accept(base + start, region);
+				delivered += length;
+				// A subsized chunk ends the available data.
+				return delta + length == chunkSize || start + length >= end;
+			} finally {
+				c.release();
+			}
+		}
+
+		@Override
+		public void discard() {
+			chunk.thenAccept(c -> {
+				if (c != null) {
+					c.release();
+				}
+			});
+		}
+	}
+
+	/**
+	 * A region of a stream not backed by an aff4:ImageStream, read on the calling thread once reached.
+	 */
+	private final class DirectRead implements PendingRead {
+
+		private final IAFF4ImageStream stream;
+		private final long position;
+		private final long length;
+		private final long target;
+
+		DirectRead(IAFF4ImageStream stream, long position, long length, long target) {
+			this.stream = stream;
+			this.position = position;
+			this.length = length;
+			this.target = target;
+		}
+
+		@Override
+		public boolean deliver() throws IOException {
+			int required = (int) Math.min(READ_BUFFER_SIZE, length);
+			if (buffer == null || buffer.capacity() < required) {
+				buffer = ByteBuffer.allocateDirect(required);
+			}
+			long read = 0;
+			while (read < length) {
+				buffer.clear();
+				buffer.limit((int) Math.min(buffer.capacity(), length - read));
+				int sread = stream.read(position + read, buffer);
+				if (sread <= 0) {
+					break;
+				}
+				buffer.flip();
+				consumer.accept(target + read, buffer);
+				read += sread;
+			}
+			delivered += read;
+			return read == length;
+		}
+
+		@Override
+		public void discard() {
+		}
+	}
+}
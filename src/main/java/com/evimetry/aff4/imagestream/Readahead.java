@@ -0,0 +1,130 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.imagestream;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Readahead settings for aff4:ImageStream instances.
+ * <p>
+ * When enabled, image streams that detect sequential access will load and decompress the chunks following the current
+ * read on the given executor, and place them in the chunk cache ahead of the reader. The readahead window starts small,
+ * grows while access remains sequential, and is dropped as soon as access becomes random.
+ * <p>
+ * The executor SHOULD be bounded, as readahead requests that are rejected by the executor are simply not performed.
+ */
+public final class Readahead {
+
+	/**
+	 * The default maximum readahead window in bytes.
+	 */
+	public final static long DEFAULT_MAXIMUM_WINDOW = 8l * 1024l * 1024l;
+	/**
+	 * The number of pending readahead requests the default executor will queue.
+	 */
+	private final static int DEFAULT_QUEUE_SIZE = 256;
+
+	/**
+	 * The executor to perform readahead requests on.
+	 */
+	private final Executor executor;
+	/**
+	 * The maximum readahead window in bytes.
+	 */
+	private final long maximumWindow;
+
+	/**
+	 * Create new readahead settings.
+	 * 
+	 * @param executor The executor to perform readahead requests on.
+	 * @param maximumWindow The maximum amount of data (in bytes) to read ahead of the current position.
+	 * @throws IllegalArgumentException If the executor is NULL or the window is not positive.
+	 */
+	public Readahead(Executor executor, long maximumWindow) {
+		if (executor == null) {
+			throw new IllegalArgumentException("Executor may not be null");
+		}
+		if (maximumWindow <= 0) {
+			throw new IllegalArgumentException("Readahead window must be positive");
+		}
+		this.executor = executor;
+		this.maximumWindow = maximumWindow;
+	}
+
+	/**
+	 * Get the readahead settings using the shared default executor and window.
+	 * <p>
+	 * The default executor has one daemon thread per available processor.
+	 * 
+	 * @return The default readahead settings.
+	 */
+	public static Readahead getDefault() {
+		return DefaultHolder.DEFAULT;
+	}
+
+	/**
+	 * Get the executor to perform readahead requests on.
+	 * 
+	 * @return The executor.
+	 */
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Get the maximum readahead window in bytes.
+	 * 
+	 * @return The maximum readahead window in bytes.
+	 */
+	public long getMaximumWindow() {
+		return maximumWindow;
+	}
+
+	/**
+	 * Lazy holder for the default readahead settings, so the executor is only created when used.
+	 */
+	private final static class DefaultHolder {
+		/**
+		 * The default settings.
+		 */
+		private final static Readahead DEFAULT = new Readahead(createExecutor(), DEFAULT_MAXIMUM_WINDOW);
+
+		/**
+		 * Create the default bounded executor.
+		 * 
+		 * @return The default executor.
+		 */
+		private static Executor createExecutor() {
+			int threads = Runtime.getRuntime().availableProcessors();
+			AtomicInteger count = new AtomicInteger();
+			ThreadFactory factory = r -> {
+				Thread thread = new Thread(r, "aff4-readahead-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			};
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<>(DEFAULT_QUEUE_SIZE), factory);
+			executor.allowCoreThreadTimeOut(true);
+			return executor;
+		}
+	}
+}
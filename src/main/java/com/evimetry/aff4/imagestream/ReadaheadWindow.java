@@ -0,0 +1,125 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.imagestream;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * Tracks the access pattern of a single image stream, and determines the range of chunks to read ahead.
+ * <p>
+ * The window starts at the minimum size once a sequential read is seen, doubles with each subsequent sequential read
+ * up to the maximum size, and is reset when a read is not sequential.
+ * <p>
+ * A stream may be shared by several concurrent readers, so a small set of sequential cursors is tracked, each with
+ * its own window. A read continues the cursor it follows on from, or replaces the least recently used cursor.
+ */
+final class ReadaheadWindow {
+
+	/**
+	 * The maximum number of sequential cursors tracked.
+	 */
+	final static int MAX_CURSORS = 4;
+
+	/**
+	 * The minimum window size in chunks.
+	 */
+	private final int minimumWindow;
+	/**
+	 * The maximum window size in chunks.
+	 */
+	private final int maximumWindow;
+	/**
+	 * The tracked cursors, most recently used first.
+	 */
+	private final Deque<Cursor> cursors = new ArrayDeque<>(MAX_CURSORS);
+
+	/**
+	 * Create a new readahead window.
+	 * 
+	 * @param minimumWindow The minimum window size in chunks.
+	 * @param maximumWindow The maximum window size in chunks.
+	 */
+	ReadaheadWindow(int minimumWindow, int maximumWindow) {
+		this.minimumWindow = Math.max(1, Math.min(minimumWindow, maximumWindow));
+		this.maximumWindow = Math.max(1, maximumWindow);
+	}
+
+	/**
+	 * Record a read of the given chunks, and determine the chunks to read ahead.
+	 * 
+	 * @param start The first chunk of the read.
+	 * @param end The chunk following the last chunk of the read.
+	 * @return The range of chunks to read ahead as {start, end}, or NULL if no readahead should be performed.
+	 */
+	synchronized long[] access(long start, long end) {
+		Cursor cursor = null;
+		for (Iterator<Cursor> it = cursors.iterator(); it.hasNext();) {
+			Cursor c = it.next();
+			if (start >= c.lastStart && start <= c.lastEnd) {
+				it.remove();
+				cursor = c;
+				break;
+			}
+		}
+		if (cursor == null) {
+			// Random access, so start a new cursor without a window.
+			if (cursors.size() >= MAX_CURSORS) {
+				cursors.removeLast();
+			}
+			cursor = new Cursor();
+		} else if (end > cursor.lastEnd) {
+			cursor.window = cursor.window == 0 ? minimumWindow : Math.min(cursor.window * 2, maximumWindow);
+		}
+		cursors.addFirst(cursor);
+		cursor.lastStart = start;
+		cursor.lastEnd = Math.max(end, start + 1);
+		if (cursor.window == 0) {
+			return null;
+		}
+		long from = Math.max(cursor.lastEnd, cursor.scheduled);
+		long to = cursor.lastEnd + cursor.window;
+		if (from >= to) {
+			return null;
+		}
+		cursor.scheduled = to;
+		return new long[] { from, to };
+	}
+
+	/**
+	 * The state of a single sequential reader.
+	 */
+	private static final class Cursor {
+		/**
+		 * The first chunk of the last read.
+		 */
+		long lastStart;
+		/**
+		 * The chunk following the last read.
+		 */
+		long lastEnd;
+		/**
+		 * The current window size in chunks. Zero when not reading ahead.
+		 */
+		int window;
+		/**
+		 * The chunk up to which readahead has been scheduled.
+		 */
+		long scheduled;
+	}
+}
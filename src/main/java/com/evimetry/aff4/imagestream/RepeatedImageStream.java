@@ -40,6 +40,10 @@ public class RepeatedImageStream extends AFF4Resource implements IAFF4ImageStrea
 	 * The length of the pattern.
 	 */
 	private final int PATTERN_LENGTH;
+	/**
+	 * The pattern repeated to fill a block, for bulk copies into the destination.
+	 */
+	private final byte[] PATTERN_BLOCK;
 
 	/**
 	 * The position of the channel.
@@ -54,6 +58,10 @@ public class RepeatedImageStream extends AFF4Resource implements IAFF4ImageStrea
 	 * Address mask for correct calculation of fill pattern alignment.
 	 */
 	private final static long MASK = (UNITS_M - 1);
+	/**
+	 * The approximate size of the pattern block.
+	 */
+	private final static int BLOCK_SIZE = 4096;
 
 	/**
 	 * Create a new Repeated Pattern Image Stream for the given resource
@@ -76,6 +84,7 @@ public class RepeatedImageStream extends AFF4Resource implements IAFF4ImageStrea
 		}
 		this.PATTERN = pattern.getBytes();
 		this.PATTERN_LENGTH = PATTERN.length;
+		this.PATTERN_BLOCK = createBlock(PATTERN);
 		initProperties();
 	}
 
@@ -89,9 +98,28 @@ public class RepeatedImageStream extends AFF4Resource implements IAFF4ImageStrea
 		super(resource);
 		this.PATTERN = pattern.getBytes();
 		this.PATTERN_LENGTH = PATTERN.length;
+		this.PATTERN_BLOCK = createBlock(PATTERN);
 		initProperties();
 	}
 
+	/**
+	 * Create a block consisting of whole repeats of the given pattern.
+	 * 
+	 * @param pattern The pattern.
+	 * @return The pattern block.
+	 */
+	private static byte[] createBlock(byte[] pattern) {
+		if (pattern.length == 0) {
+			return pattern;
+		}
+		int repeats = Math.max(1, BLOCK_SIZE / pattern.length);
+		byte[] block = new byte[pattern.length * repeats];
+		for (int i = 0; i < repeats; i++) {
+			System.arraycopy(pattern, 0, block, i * pattern.length, pattern.length);
+		}
+		return block;
+	}
+
 	/**
 	 * Initialise the properties for this aff4 object.
 	 */
@@ -126,11 +154,23 @@ public class RepeatedImageStream extends AFF4Resource implements IAFF4ImageStrea
 
 	@Override
 	public synchronized int read(ByteBuffer dst) throws IOException {
+		int remaining = read(position, dst);
+		this.position += remaining;
+		if (this.position <= 0) {
+			this.position = 0;
+		}
+		return remaining;
+	}
+
+	@Override
+	public int read(long position, ByteBuffer dst) throws IOException {
+		if (position < 0) {
+			throw new IllegalArgumentException();
+		}
 		if (dst == null || !dst.hasRemaining()) {
 			return 0;
 		}
 		int remaining = dst.remaining();
-		//int bposition = dst.position();
 
 		// Specification for repeated pattern ImageStream works on 1MB boundaries.
 		long offset = position & MASK;
@@ -139,19 +179,17 @@ public class RepeatedImageStream extends AFF4Resource implements IAFF4ImageStrea
 		int remainder = remaining;
 		while (remainder > 0) {
 			// fill the buffer with the pattern.
-			for (int i = 0; i < limit; i++) {
-				dst.put(PATTERN[(i + delta) % PATTERN_LENGTH]);
+			for (int i = 0; i < limit;) {
+				int start = (i + delta) % PATTERN_LENGTH;
+				int length = Math.min(PATTERN_BLOCK.length - start, limit - i);
+				dst.put(PATTERN_BLOCK, start, length);
+				i += length;
 			}
 			remainder -= limit;
 			// calculate next limit.
 			limit = (int) Math.min(remainder, UNITS_M);
 			delta = 0;
 		}
-		//dst.position(bposition);
-		this.position += remaining;
-		if (this.position <= 0) {
-			this.position = 0;
-		}
 		return remaining;
 	}
 
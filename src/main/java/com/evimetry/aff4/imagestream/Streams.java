@@ -18,13 +18,18 @@ package com.evimetry.aff4.imagestream;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import com.evimetry.aff4.IAFF4ImageStream;
+import com.evimetry.aff4.IAFF4Map;
 
 /**
  * Helper utility functions for reading from streams,
  */
 public class Streams {
-	
+
 	/**
 	 * Read the given channel into the given buffer.
 	 * 
@@ -35,6 +40,15 @@ public class Streams {
 	 */
 	public static int readFull(SeekableByteChannel channel, long position, ByteBuffer buffer) throws IOException {
 		int read = 0;
+		// Prefer the positional read where available, as it does not require locking of the channel.
+		if (channel instanceof IAFF4ImageStream) {
+			IAFF4ImageStream stream = (IAFF4ImageStream) channel;
+			return readFull(position, buffer, channel.size(), (p, dst) -> stream.read(p, dst));
+		}
+		if (channel instanceof IAFF4Map) {
+			IAFF4Map map = (IAFF4Map) channel;
+			return readFull(position, buffer, channel.size(), (p, dst) -> map.read(p, dst));
+		}
 		synchronized (channel) {
 			long oldPosition = channel.position();
 			channel.position(position);
@@ -53,4 +67,83 @@ public class Streams {
 		return read;
 	}
 
+	/**
+	 * Read fully using the given positional read function.
+	 * 
+	 * @param position The position to read
+	 * @param buffer The buffer to read into.
+	 * @param size The size of the object being read.
+	 * @param reader The positional read function.
+	 * @return The number of bytes read.
+	 * @throws IOException If reading the buffer failed.
+	 */
+	private static int readFull(long position, ByteBuffer buffer, long size, PositionalReader reader)
+			throws IOException {
+		int read = 0;
+		int toRead = (int) Math.min((long) buffer.remaining(), size - position);
+		while (toRead > 0) {
+			int readRes = reader.read(position + read, buffer);
+			if (readRes <= 0) {
+				break;
+			}
+			toRead -= readRes;
+			read += readRes;
+		}
+		return read;
+	}
+
+	/**
+	 * Transfer the given region of the file channel to the target channel, using
+	 * {@link FileChannel#transferTo(long, long, WritableByteChannel)} so the operating system may avoid copying the
+	 * contents through user space.
+	 * 
+	 * @param channel The file channel to read from.
+	 * @param offset The offset in the file to start the transfer at.
+	 * @param count The number of bytes to transfer.
+	 * @param target The channel to write to.
+	 * @return The number of bytes transferred, which is less than the count only if the end of the file was reached or
+	 *         the target would not accept more bytes.
+	 * @throws IOException If the transfer failed.
+	 */
+	static long transferFully(FileChannel channel, long offset, long count, WritableByteChannel target)
+			throws IOException {
+		long transferred = 0;
+		while (transferred < count) {
+			long written = channel.transferTo(offset + transferred, count - transferred, target);
+			if (written <= 0) {
+				break;
+			}
+			transferred += written;
+		}
+		return transferred;
+	}
+
+	/**
+	 * Write the remaining contents of the buffer to the target channel.
+	 * 
+	 * @param src The buffer to write.
+	 * @param target The channel to write to.
+	 * @return The number of bytes written, which is less than the remaining bytes only if the target would not accept
+	 *         more bytes.
+	 * @throws IOException If writing the target failed.
+	 */
+	static int writeFully(ByteBuffer src, WritableByteChannel target) throws IOException {
+		int written = 0;
+		while (src.hasRemaining()) {
+			int write = target.write(src);
+			if (write <= 0) {
+				break;
+			}
+			written += write;
+		}
+		return written;
+	}
+
+	/**
+	 * A positional read function.
+	 */
+	@FunctionalInterface
+	private interface PositionalReader {
+		int read(long position, ByteBuffer dst) throws IOException;
+	}
 }
@@ -19,6 +19,7 @@ package com.evimetry.aff4.imagestream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
 import java.util.Collections;
 
 import org.slf4j.Logger;
@@ -39,6 +40,14 @@ public class SymbolicImageStream extends AFF4Resource implements IAFF4ImageStrea
 	 * The symbol that this ImageStream consists of.
 	 */
 	private final byte symbol;
+	/**
+	 * A block of the symbol, for bulk filling of direct buffers.
+	 */
+	private final byte[] fill;
+	/**
+	 * The size of the fill block.
+	 */
+	private final static int FILL_SIZE = 4096;
 
 	/**
 	 * The position of the channel.
@@ -65,6 +74,7 @@ public class SymbolicImageStream extends AFF4Resource implements IAFF4ImageStrea
 			sym = getSymbol(resource.substring(AFF4Lexicon.SymbolicData.getValue().length()));
 		}
 		this.symbol = sym;
+		this.fill = createFill(sym);
 		initProperties();
 	}
 
@@ -77,9 +87,22 @@ public class SymbolicImageStream extends AFF4Resource implements IAFF4ImageStrea
 	protected SymbolicImageStream(String resource, byte symbol) {
 		super(resource);
 		this.symbol = symbol;
+		this.fill = createFill(symbol);
 		initProperties();
 	}
 
+	/**
+	 * Create a fill block of the given symbol.
+	 * 
+	 * @param symbol The symbol.
+	 * @return The fill block.
+	 */
+	private static byte[] createFill(byte symbol) {
+		byte[] fill = new byte[FILL_SIZE];
+		Arrays.fill(fill, symbol);
+		return fill;
+	}
+
 	/**
 	 * Initialise the properties for this aff4 object.
 	 */
@@ -123,18 +146,31 @@ public class SymbolicImageStream extends AFF4Resource implements IAFF4ImageStrea
 
 	@Override
 	public synchronized int read(ByteBuffer dst) throws IOException {
+		int remaining = read(position, dst);
+		this.position += remaining;
+		if (this.position <= 0) {
+			this.position = 0;
+		}
+		return remaining;
+	}
+
+	@Override
+	public int read(long position, ByteBuffer dst) throws IOException {
+		if (position < 0) {
+			throw new IllegalArgumentException();
+		}
 		if (dst == null || !dst.hasRemaining()) {
 			return 0;
 		}
 		int remaining = dst.remaining();
-		//int position = dst.position();
-		while (dst.hasRemaining()) {
-			dst.put(symbol);
-		}
-		//dst.position(position);
-		this.position += remaining;
-		if (this.position <= 0) {
-			this.position = 0;
+		if (dst.hasArray()) {
+			int start = dst.arrayOffset() + dst.position();
+			Arrays.fill(dst.array(), start, start + remaining, symbol);
+			dst.position(dst.limit());
+		} else {
+			while (dst.hasRemaining()) {
+				dst.put(fill, 0, Math.min(fill.length, dst.remaining()));
+			}
 		}
 		return remaining;
 	}
@@ -124,9 +124,27 @@ public class ZipSegmentImageCompressedStream extends AFF4Resource implements IAF
 		if(limit <= 0) {
 			return 0;
 		}
-		int offset = (int) position;
-		dst.put(buffer, offset, limit);
-		position += limit;
+		int read = read(position, dst);
+		position += read;
+		return read;
+	}
+
+	@Override
+	public int read(long position, ByteBuffer dst) throws IOException {
+		if (closed.get()) {
+			throw new ClosedChannelException();
+		}
+		if (position < 0) {
+			throw new IllegalArgumentException();
+		}
+		if (dst == null || !dst.hasRemaining()) {
+			return 0;
+		}
+		if (position >= size) {
+			return -1;
+		}
+		int limit = (int) Math.min(dst.remaining(), size - position);
+		dst.put(buffer, (int) position, limit);
 		return limit;
 	}
 
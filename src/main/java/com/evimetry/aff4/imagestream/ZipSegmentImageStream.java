@@ -21,14 +21,17 @@ import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Collections;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 
 import com.evimetry.aff4.AFF4Lexicon;
+import com.evimetry.aff4.ChunkView;
 import com.evimetry.aff4.IAFF4ImageStream;
 import com.evimetry.aff4.container.AFF4ZipContainer;
+import com.evimetry.aff4.container.MappedFile;
 import com.evimetry.aff4.resource.AFF4Resource;
 
 /**
@@ -121,11 +124,87 @@ public class ZipSegmentImageStream extends AFF4Resource implements IAFF4ImageStr
 		if (dst == null || !dst.hasRemaining()) {
 			return 0;
 		}
-		int read = channel.read(dst, offset + position);
-		position += read;
+		int read = read(position, dst);
+		if (read > 0) {
+			position += read;
+		}
 		return read;
 	}
 
+	@Override
+	public int read(long position, ByteBuffer dst) throws IOException {
+		if (closed.get()) {
+			throw new ClosedChannelException();
+		}
+		if (position < 0) {
+			throw new IllegalArgumentException();
+		}
+		if (dst == null || !dst.hasRemaining()) {
+			return 0;
+		}
+		if (position >= size) {
+			return -1;
+		}
+		// Limit the read to the end of this segment.
+		int oldLimit = dst.limit();
+		if (dst.remaining() > size - position) {
+			dst.limit(dst.position() + (int) (size - position));
+		}
+		try {
+			MappedFile mappedFile = parent.getMappedFile();
+			if (mappedFile != null) {
+				ByteBuffer slice = mappedFile.slice(offset + position,
+						Math.min(dst.remaining(), MappedFile.MAX_SLICE_LENGTH));
+				if (slice != null) {
+					int read = slice.remaining();
+					dst.put(slice);
+					return read;
+				}
+			}
+			return channel.read(dst, offset + position);
+		} finally {
+			dst.limit(oldLimit);
+		}
+	}
+
+	@Override
+	public ChunkView view(long position, int maxLength) throws IOException {
+		if (closed.get()) {
+			throw new ClosedChannelException();
+		}
+		if (position < 0 || maxLength < 0) {
+			throw new IllegalArgumentException();
+		}
+		if (position >= size) {
+			return null;
+		}
+		// Lend a slice of the mapping when available, otherwise copy.
+		MappedFile mappedFile = parent.getMappedFile();
+		if (mappedFile != null) {
+			int length = (int) Math.min(Math.min(maxLength, MappedFile.MAX_SLICE_LENGTH), size - position);
+			ByteBuffer slice = mappedFile.slice(offset + position, length);
+			if (slice != null) {
+				return new ChunkView(slice, null);
+			}
+		}
+		return IAFF4ImageStream.super.view(position, maxLength);
+	}
+
+	@Override
+	public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+		if (closed.get()) {
+			throw new ClosedChannelException();
+		}
+		if (position < 0 || count < 0) {
+			throw new IllegalArgumentException();
+		}
+		if (position >= size) {
+			return 0;
+		}
+		// The segment is stored, so is transferred directly from the container.
+		return Streams.transferFully(channel, offset + position, Math.min(count, size - position), target);
+	}
+
 	@Override
 	public int write(ByteBuffer src) throws IOException {
 		throw new IOException(IAFF4ImageStream.WRITE_ERROR_MESSAGE);
@@ -17,16 +17,22 @@
 package com.evimetry.aff4.map;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.jena.rdf.model.Model;
@@ -34,16 +40,21 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.evimetry.aff4.AFF4Lexicon;
+import com.evimetry.aff4.ChunkView;
 import com.evimetry.aff4.IAFF4Container;
 import com.evimetry.aff4.IAFF4ImageStream;
 import com.evimetry.aff4.IAFF4Map;
+import com.evimetry.aff4.MapExtent;
 import com.evimetry.aff4.container.AFF4ZipContainer;
+import com.evimetry.aff4.imagestream.AFF4ImageStream;
+import com.evimetry.aff4.imagestream.ChunkConsumer;
+import com.evimetry.aff4.imagestream.ReadPipeline;
+import com.evimetry.aff4.imagestream.RepeatedImageStream;
 import com.evimetry.aff4.imagestream.Streams;
-import com.evimetry.aff4.map.collection.LongTreap;
+import com.evimetry.aff4.imagestream.SymbolicImageStream;
 import com.evimetry.aff4.rdf.NameCodec;
 import com.evimetry.aff4.rdf.RDFUtil;
 import com.evimetry.aff4.resource.AFF4Resource;
-import com.evimetry.aff4.struct.MapEntryPoint;
 
 public class AFF4Map extends AFF4Resource implements IAFF4Map, SeekableByteChannel {
 
@@ -76,7 +87,7 @@ public class AFF4Map extends AFF4Resource implements IAFF4Map, SeekableByteChann
 	/**
 	 * The map for region lookup.
 	 */
-	private LongTreap<MapEntryPoint> map;
+	private volatile RegionIndex map;
 	/**
 	 * Collection of streams.
 	 */
@@ -194,8 +205,9 @@ public class AFF4Map extends AFF4Resource implements IAFF4Map, SeekableByteChann
 					.build();
 
 			streams = mapFactory.getStreams();
-			map = mapFactory.getMap();
 			externalContainers = mapFactory.getExternalContainers();
+			// Assign the map last, as it signals the map has been materialised.
+			map = mapFactory.getMap();
 		}
 	}
 
@@ -210,45 +222,407 @@ public class AFF4Map extends AFF4Resource implements IAFF4Map, SeekableByteChann
 		if (position + 1 >= size || position == Long.MAX_VALUE) {
 			return -1;
 		}
+		int read = read(position, dst);
+		if (read > 0) {
+			position += read;
+		}
+		return read;
+	}
+
+	@Override
+	public int read(long position, ByteBuffer dst) throws IOException {
+		if (closed.get()) {
+			throw new ClosedChannelException();
+		}
+		if (position < 0) {
+			throw new IllegalArgumentException();
+		}
+		if (dst == null || !dst.hasRemaining()) {
+			return 0;
+		}
+		if (position >= size) {
+			return -1;
+		}
+		if (map == null) {
+			initialiseMap();
+		}
+		int oldLimit = dst.limit();
 		if (dst.remaining() > size - position) {
 			// determine the correct limit for the buffer.
 			int remaining = (int) (size - position);
 			dst.limit(dst.position() + remaining);
 		}
 		int read = 0;
-		// look for the first region that can service this read request.
-		MapEntryPoint point = map.get(position);
-		if (point == null) {
-			point = map.findPrevious(position);
-		}
-		// get the delta between the map point, and our current position.
-		long delta = position - point.getOffset();
-		SeekableByteChannel stream = point.getStream();
-		int oldLimit = dst.limit();
-		// Ensure we limit the read to this region.
-		long streamRead = point.getLength() - delta;
-		if (dst.remaining() > streamRead) {
-			dst.limit(oldLimit - (int)(dst.remaining() - streamRead));
-		}
-		int sread = 0;
-		// Synchronize on the stream to ensure we don't have a race condition when setting our positions...
-		synchronized (stream) {
-			long oldStreamPosition = stream.position();
-			stream.position(point.getStreamOffset() + delta);
-			sread = stream.read(dst);
-			stream.position(oldStreamPosition);
-			//logger.info(String.format("Reading 0x%8x : %s", position, point.toString()));
-		}
-		if (sread >= 0) {
-			read += sread;
-		}
-		// restore the limit;
-		dst.limit(oldLimit);
-
-		position += read;
+		try {
+			// look for the first region that can service this read request.
+			int region = map.find(position);
+			if (region < 0) {
+				throw new IOException("No map region for offset " + position);
+			}
+			long current = position;
+			// walk consecutive regions until the buffer is filled.
+			while (dst.hasRemaining()) {
+				// get the delta between the map point, and our current position.
+				long delta = current - map.getOffset(region);
+				// Ensure we limit the read to this region.
+				long streamRead = map.getLength(region) - delta;
+				if (streamRead > 0) {
+					int limit = dst.limit();
+					if (dst.remaining() > streamRead) {
+						dst.limit(dst.position() + (int) streamRead);
+					}
+					int sread;
+					try {
+						sread = map.getStream(region).read(map.getStreamOffset(region) + delta, dst);
+					} finally {
+						dst.limit(limit);
+					}
+					if (sread <= 0) {
+						break;
+					}
+					read += sread;
+					current += sread;
+					if (sread < streamRead) {
+						// short read from the stream, so continue within this region.
+						continue;
+					}
+				}
+				// move to the next region, skipping any empty regions.
+				region++;
+				if (region >= map.size() || map.getOffset(region) != current) {
+					break;
+				}
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			// restore the limit;
+			dst.limit(oldLimit);
+		}
 		return read;
 	}
 
+	/**
+	 * Read from the given position into the buffer, decompressing chunks of the underlying image streams in parallel
+	 * on the given pool.
+	 * <p>
+	 * This method is intended for large sequential reads, such as exporting or hashing the whole image. It does not use
+	 * or modify the position of this channel.
+	 * 
+	 * @param position The position in the map to start reading from.
+	 * @param dst The buffer to read into.
+	 * @param pool The pool to decompress chunks on.
+	 * @return The number of bytes read, or -1 if the position is at or beyond the end of the map.
+	 * @throws IOException If reading the map failed.
+	 */
+	public int read(long position, ByteBuffer dst, ForkJoinPool pool) throws IOException {
+		if (dst == null || !dst.hasRemaining()) {
+			return 0;
+		}
+		if (position >= size) {
+			return -1;
+		}
+		return (int) read(position, dst.remaining(), pool, (offset, data) -> dst.put(data));
+	}
+
+	/**
+	 * Read the given region of the map, decompressing chunks of the underlying image streams in parallel on the given
+	 * pool.
+	 * <p>
+	 * Contents are handed to the consumer in map order on the calling thread. Consecutive regions share a single
+	 * {@link ReadPipeline}, so chunks of the following regions are read and decompressed while earlier regions are
+	 * delivered. Regions not backed by an aff4:ImageStream are read directly.
+	 * 
+	 * @param position The position in the map to start reading from.
+	 * @param length The number of bytes to read.
+	 * @param pool The pool to decompress chunks on.
+	 * @param consumer The consumer to receive the map contents.
+	 * @return The number of bytes delivered to the consumer.
+	 * @throws IOException If reading the map failed, or the consumer failed.
+	 */
+	public long read(long position, long length, ForkJoinPool pool, ChunkConsumer consumer) throws IOException {
+		if (closed.get()) {
+			throw new ClosedChannelException();
+		}
+		if (position < 0 || length < 0) {
+			throw new IllegalArgumentException();
+		}
+		if (position >= size || length == 0) {
+			return 0;
+		}
+		if (map == null) {
+			initialiseMap();
+		}
+		long end = Math.min(size, position + Math.min(length, Long.MAX_VALUE - position));
+		long current = position;
+		try (ReadPipeline pipeline = new ReadPipeline(pool, consumer)) {
+			while (current < end) {
+				int region = map.find(current);
+				if (region < 0) {
+					break;
+				}
+				long delta = current - map.getOffset(region);
+				long regionLength = Math.min(map.getLength(region) - delta, end - current);
+				if (regionLength <= 0) {
+					break;
+				}
+				long streamPosition = map.getStreamOffset(region) + delta;
+				if (!pipeline.add(map.getStream(region), streamPosition, regionLength, current)) {
+					break;
+				}
+				current += regionLength;
+			}
+			return pipeline.finish();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The view is provided by the stream backing the region containing the position, and is limited to the end of that
+	 * region.
+	 */
+	@Override
+	public ChunkView view(long position, int maxLength) throws IOException {
+		if (closed.get()) {
+			throw new ClosedChannelException();
+		}
+		if (position < 0 || maxLength < 0) {
+			throw new IllegalArgumentException();
+		}
+		if (position >= size) {
+			return null;
+		}
+		if (map == null) {
+			initialiseMap();
+		}
+		int region = map.find(position);
+		if (region < 0) {
+			throw new IOException("No map region for offset " + position);
+		}
+		long delta = position - map.getOffset(region);
+		long regionLength = Math.min(map.getLength(region) - delta, size - position);
+		if (regionLength <= 0) {
+			return ChunkView.empty();
+		}
+		try {
+			ChunkView view = map.getStream(region).view(map.getStreamOffset(region) + delta,
+					(int) Math.min(maxLength, regionLength));
+			return view != null ? view : ChunkView.empty();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Each region is transferred by the backing stream, such that regions backed by chunks or segments stored
+	 * uncompressed are transferred directly from the container.
+	 */
+	@Override
+	public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+		if (closed.get()) {
+			throw new ClosedChannelException();
+		}
+		if (position < 0 || count < 0) {
+			throw new IllegalArgumentException();
+		}
+		if (position >= size || count == 0) {
+			return 0;
+		}
+		if (map == null) {
+			initialiseMap();
+		}
+		long end = Math.min(size, position + Math.min(count, Long.MAX_VALUE - position));
+		long current = position;
+		try {
+			while (current < end) {
+				int region = map.find(current);
+				if (region < 0) {
+					if (current == position) {
+						throw new IOException("No map region for offset " + current);
+					}
+					break;
+				}
+				long delta = current - map.getOffset(region);
+				long regionLength = Math.min(map.getLength(region) - delta, end - current);
+				if (regionLength <= 0) {
+					break;
+				}
+				long transferred = map.getStream(region).transferTo(map.getStreamOffset(region) + delta, regionLength,
+						target);
+				current += transferred;
+				if (transferred < regionLength) {
+					break;
+				}
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		return current - position;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Regions backed by an aff4:ImageStream are divided at chunks already known to contain only zeros, which are
+	 * returned as {@link MapExtent.Kind#ZERO} extents. The first extent of such a region starts at the given position.
+	 * No chunk is read to classify it; use {@link AFF4ImageStream#seekData(long)} or
+	 * {@link AFF4ImageStream#seekHole(long)} to examine the chunks of a stream.
+	 */
+	@Override
+	public Iterator<MapExtent> getExtents(long position) throws IOException {
+		if (closed.get()) {
+			throw new ClosedChannelException();
+		}
+		if (position < 0) {
+			throw new IllegalArgumentException();
+		}
+		if (map == null) {
+			initialiseMap();
+		}
+		final RegionIndex index = map;
+		final int first = position >= size ? index.size() : Math.max(0, index.find(position));
+		return new Iterator<MapExtent>() {
+
+			private int region = first;
+			/**
+			 * The position the next extent starts from, if within the current region.
+			 */
+			private long current = position;
+
+			@Override
+			public boolean hasNext() {
+				while (region < index.size() && index.getLength(region) == 0) {
+					region++;
+				}
+				return region < index.size() && index.getOffset(region) < size;
+			}
+
+			@Override
+			public MapExtent next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				MapExtent extent = getExtent(index, region);
+				if (extent.getKind() == MapExtent.Kind.DATA && extent.getStream() instanceof AFF4ImageStream) {
+					try {
+						extent = getChunkExtent(extent, (AFF4ImageStream) extent.getStream(), current);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+				current = extent.getEnd();
+				if (current >= Math.min(size, index.getOffset(region) + index.getLength(region))) {
+					region++;
+				}
+				return extent;
+			}
+		};
+	}
+
+	@Override
+	public long seekData(long position) throws IOException {
+		try {
+			Iterator<MapExtent> extents = getExtents(position);
+			while (extents.hasNext()) {
+				MapExtent extent = extents.next();
+				if (!extent.getKind().isConstant()) {
+					return Math.max(position, extent.getOffset());
+				}
+			}
+			return -1;
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	@Override
+	public long seekHole(long position) throws IOException {
+		try {
+			if (position >= size) {
+				return -1;
+			}
+			Iterator<MapExtent> extents = getExtents(position);
+			long end = position;
+			while (extents.hasNext()) {
+				MapExtent extent = extents.next();
+				if (extent.getOffset() > end || extent.getKind().isConstant()) {
+					return Math.max(position, end);
+				}
+				end = extent.getEnd();
+			}
+			return Math.max(position, Math.min(end, size));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Get the given region of the map as an extent, limited to the size of the map.
+	 * 
+	 * @param index The map index.
+	 * @param region The region.
+	 * @return The extent.
+	 */
+	private MapExtent getExtent(RegionIndex index, int region) {
+		long offset = index.getOffset(region);
+		long length = Math.min(index.getLength(region), size - offset);
+		IAFF4ImageStream stream = index.getStream(region);
+		return new MapExtent(offset, length, getKind(stream), index.getStreamID(region) == -1, stream,
+				index.getStreamOffset(region));
+	}
+
+	/**
+	 * Get the run of chunks of the same kind from the given region backed by an image stream, starting at the given
+	 * position. Only chunks already known to contain only zeros are split out, so no chunk is read.
+	 * 
+	 * @param region The region.
+	 * @param stream The image stream backing the region.
+	 * @param position The position to start from, which is moved to the start of the region if outside it.
+	 * @return The extent holding the run of known zero chunks, or the run of other chunks.
+	 * @throws IOException If the stream is closed.
+	 */
+	private static MapExtent getChunkExtent(MapExtent region, AFF4ImageStream stream, long position)
+			throws IOException {
+		long start = position > region.getOffset() && position < region.getEnd() ? position : region.getOffset();
+		long streamStart = region.getStreamOffset() + (start - region.getOffset());
+		long streamEnd = region.getStreamOffset() + region.getLength();
+		MapExtent.Kind kind = MapExtent.Kind.DATA;
+		long end = stream.seekKnownHole(streamStart, streamEnd);
+		if (end == streamStart && streamStart < stream.size()) {
+			kind = MapExtent.Kind.ZERO;
+			end = stream.seekKnownData(streamStart, streamEnd);
+		}
+		if (end >= stream.size()) {
+			// The remainder of the region is beyond the end of the stream.
+			end = streamEnd;
+		}
+		return new MapExtent(start, end - streamStart, kind, false, stream, streamStart);
+	}
+
+	/**
+	 * Determine the kind of content provided by the given stream.
+	 * 
+	 * @param stream The stream.
+	 * @return The kind of content.
+	 */
+	private static MapExtent.Kind getKind(IAFF4ImageStream stream) {
+		if (stream instanceof SymbolicImageStream) {
+			return ((SymbolicImageStream) stream).getSymbol() == 0 ? MapExtent.Kind.ZERO : MapExtent.Kind.SYMBOLIC;
+		}
+		if (stream instanceof RepeatedImageStream) {
+			if (AFF4Lexicon.UnreadableData.getValue().equals(stream.getResourceID())) {
+				return MapExtent.Kind.UNREADABLE;
+			}
+			return MapExtent.Kind.UNKNOWN;
+		}
+		return MapExtent.Kind.DATA;
+	}
+
 	@Override
 	public SeekableByteChannel getChannel() throws IOException {
 		initialiseMap();
@@ -263,6 +637,14 @@ public class AFF4Map extends AFF4Resource implements IAFF4Map, SeekableByteChann
 	@Override
 	public void close() throws IOException {
 		if (!closed.getAndSet(true)) {
+			// Release the stored map if looked up directly.
+			if (map instanceof Closeable) {
+				try {
+					((Closeable) map).close();
+				} catch (Exception e) {
+					logger.error(e.getMessage(), e);
+				}
+			}
 			// Mark all streams as closed.
 			for (IAFF4ImageStream stream : streams.values()) {
 				try {
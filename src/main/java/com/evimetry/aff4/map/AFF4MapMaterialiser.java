@@ -27,8 +27,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
-import java.util.PriorityQueue;
+import java.util.TreeMap;
 
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.Property;
@@ -43,9 +44,9 @@ import com.evimetry.aff4.IAFF4ImageStream;
 import com.evimetry.aff4.IAFF4Resolver;
 import com.evimetry.aff4.IAFF4Resource;
 import com.evimetry.aff4.container.AFF4ZipContainer;
+import com.evimetry.aff4.container.ContainerIndex;
 import com.evimetry.aff4.imagestream.ImageStreamFactory;
 import com.evimetry.aff4.imagestream.Streams;
-import com.evimetry.aff4.map.collection.LongTreap;
 import com.evimetry.aff4.rdf.NameCodec;
 import com.evimetry.aff4.rdf.RDFUtil;
 import com.evimetry.aff4.struct.MapEntryPoint;
@@ -88,7 +89,7 @@ public class AFF4MapMaterialiser {
 	/**
 	 * The map for region lookup.
 	 */
-	private LongTreap<MapEntryPoint> map;
+	private RegionIndex map;
 	/**
 	 * Collection of streams.
 	 */
@@ -121,19 +122,42 @@ public class AFF4MapMaterialiser {
 	 */
 	protected synchronized AFF4MapMaterialiser build() throws IOException {
 		if (map == null) {
-			map = new LongTreap<>();
 			externalContainers = new ArrayList<>();
 			streams = new HashMap<>();
 			setMapGapDefaultStream();
 			long size = RDFUtil.readLongProperty(model, resource, AFF4Lexicon.size).orElse(0l);
-			if (size == 0) {
-				logger.warn("Map is zero sized?");
-				return this;
+			try {
+				if (size == 0) {
+					logger.warn("Map is zero sized?");
+					return this;
+				}
+				// Read in the target index.
+				readTargetIndex();
+				if (parent.isDirectMapLookup()) {
+					// Look up regions directly in the stored map.
+					map = openSegmentMap(size);
+					if (map != null) {
+						return this;
+					}
+				}
+				// Use the persisted map if available, otherwise build the map itself.
+				ContainerIndex index = parent.getContainerIndex();
+				if (index != null) {
+					map = index.getMap(resource, id -> id == -1 ? mapGapStream : getTargetStream(id));
+				}
+				if (map == null) {
+					MapIndex materialised = readMap(getIsSparse(), size);
+					if (index != null) {
+						index.putMap(resource, materialised);
+					}
+					map = materialised;
+				}
+			} finally {
+				if (map == null) {
+					// Only attempt materialisation once.
+					map = new MapIndex.Builder().build();
+				}
 			}
-			// Read in the target index.
-			readTargetIndex();
-			// Add now build the map itself.
-			readMap(getIsSparse(), size);
 		}
 		return this;
 	}
@@ -218,9 +242,10 @@ public class AFF4MapMaterialiser {
 	 * @param isSparse TRUE if this map is expected to be sparse.
 	 * @param size The size of the map.
 	 * 
+	 * @return The materialised map.
 	 * @throws IOException If reading the map failed.
 	 */
-	private void readMap(boolean isSparse, long size) throws IOException {
+	private MapIndex readMap(boolean isSparse, long size) throws IOException {
 		String mapTargetName = NameCodec.encode(String.format("%s/map", resource));
 		// Load the target map ids
 		IAFF4ImageStream stream = parent.getSegment(mapTargetName);
@@ -229,39 +254,241 @@ public class AFF4MapMaterialiser {
 			Streams.readFull(channel, 0, buffer);
 			buffer.flip();
 			int sz = MapEntryPoint.getSize();
-			long offset = 0;
-			// Add all map entries to a sorted list.
-			PriorityQueue<MapEntryPoint> points = new PriorityQueue<>((buffer.capacity() / sz) + 1);
-			while (buffer.remaining() >= sz) {
-				points.add(MapEntryPoint.create(buffer));
+			int count = buffer.remaining() / sz;
+			// Decode all map entries, noting if they are already in offset order.
+			long[] offsets = new long[count];
+			long[] lengths = new long[count];
+			long[] streamOffsets = new long[count];
+			int[] streamIDs = new int[count];
+			boolean sorted = true;
+			for (int i = 0; i < count; i++) {
+				int position = i * sz;
+				offsets[i] = buffer.getLong(position);
+				lengths[i] = buffer.getLong(position + 8);
+				streamOffsets[i] = buffer.getLong(position + 16);
+				streamIDs[i] = buffer.getInt(position + 24);
+				if (i > 0 && offsets[i] < offsets[i - 1]) {
+					sorted = false;
+				}
 			}
-			while(!points.isEmpty()) {
-				MapEntryPoint mapPoint = points.poll();
-				if (offset != mapPoint.getOffset()) {
+			int[] order = sorted ? null : sortByOffset(offsets);
+			if (!sorted) {
+				logger.debug("Map {} entries are not in offset order, sorting {} entries.", resource, count);
+			}
+			if (isOverlapping(offsets, lengths, order)) {
+				// Later entries take precedence over the portions of earlier entries they overlap.
+				logger.warn("Map {} has overlapping entries, resolving in favour of later entries.", resource);
+				Collection<MapEntryPoint> points = resolveOverlaps(offsets, lengths, streamOffsets, streamIDs);
+				count = points.size();
+				offsets = new long[count];
+				lengths = new long[count];
+				streamOffsets = new long[count];
+				streamIDs = new int[count];
+				int i = 0;
+				for (MapEntryPoint point : points) {
+					offsets[i] = point.getOffset();
+					lengths[i] = point.getLength();
+					streamOffsets[i] = point.getStreamOffset();
+					streamIDs[i] = point.getStreamID();
+					i++;
+				}
+				sorted = true;
+			}
+			// Merge runs of entries which continue the preceding entry.
+			MapIndex.Builder builder = new MapIndex.Builder(count + 1).setCoalescing(true);
+			long offset = 0;
+			int lastStreamID = -1;
+			IAFF4ImageStream lastStream = null;
+			for (int i = 0; i < count; i++) {
+				int entry = sorted ? i : order[i];
+				long pointOffset = offsets[entry];
+				long pointLength = lengths[entry];
+				long streamOffset = streamOffsets[entry];
+				int streamID = streamIDs[entry];
+				if (offset < pointOffset) {
 					if (!isSparse) {
 						logger.warn(String.format("Map %s expected offset 0x%08x, found offset 0x%08x.", resource,
-								offset, mapPoint.getOffset()));
+								offset, pointOffset));
 					}
 					// fill in with mapGapStream.
-					map.put(offset, MapEntryPoint.create(offset, mapPoint.getOffset() - offset, offset, -1,
-							mapGapStream.getChannel()));
-					offset = mapPoint.getOffset();
+					builder.add(offset, pointOffset - offset, offset, -1, mapGapStream);
+					offset = pointOffset;
 				}
-				IAFF4ImageStream lstream = streams.get(mapPoint.getStreamID());
-				if (lstream == null) {
-					logger.warn("Missing stream reference {}, replacing with unknown?", mapPoint.getStreamID());
-					lstream = missingStream != null ? missingStream : ImageStreamFactory.createUnknownStream();
-					streams.put(mapPoint.getStreamID(), lstream);
+				if (pointLength <= 0) {
+					continue;
 				}
-				mapPoint.setStream(lstream.getChannel());
-				map.put(offset, mapPoint);
-				offset += mapPoint.getLength();
+				if (lastStream == null || streamID != lastStreamID) {
+					lastStream = getTargetStream(streamID);
+					lastStreamID = streamID;
+				}
+				builder.add(offset, pointLength, streamOffset, streamID, lastStream);
+				offset += pointLength;
 			}
-			if (offset != size) {
+			if (offset < size) {
 				// missing end?
-				map.put(offset, MapEntryPoint.create(offset, size - offset, offset, -1, mapGapStream.getChannel()));
+				builder.add(offset, size - offset, offset, -1, mapGapStream);
+			}
+			return builder.build();
+		}
+	}
+
+	/**
+	 * Open an index which looks up regions directly in the stored map, without materialising the map.
+	 * 
+	 * @param size The size of the map.
+	 * @return The index, or NULL if the stored map is not sorted.
+	 * @throws IOException If reading the map failed.
+	 */
+	private RegionIndex openSegmentMap(long size) throws IOException {
+		String mapTargetName = NameCodec.encode(String.format("%s/map", resource));
+		IAFF4ImageStream segment = parent.getSegment(mapTargetName);
+		// Lookups may be concurrent, so resolve missing streams without modifying the stream collection.
+		final Map<Integer, IAFF4ImageStream> targets = new HashMap<>(streams);
+		final IAFF4ImageStream unknown = missingStream != null ? missingStream
+				: ImageStreamFactory.createUnknownStream();
+		SegmentMapIndex index = SegmentMapIndex.open(segment, size, id -> targets.getOrDefault(id, unknown),
+				mapGapStream);
+		if (index == null) {
+			logger.info("Map {} entries are not sorted, materialising the map.", resource);
+			segment.getChannel().close();
+		}
+		return index;
+	}
+
+	/**
+	 * Get the target stream for the given stream ID, substituting the unknown stream if the ID is not in the target
+	 * index.
+	 * 
+	 * @param streamID The stream ID.
+	 * @return The target stream.
+	 */
+	private IAFF4ImageStream getTargetStream(int streamID) {
+		IAFF4ImageStream lstream = streams.get(streamID);
+		if (lstream == null) {
+			logger.warn("Missing stream reference {}, replacing with unknown?", streamID);
+			lstream = missingStream != null ? missingStream : ImageStreamFactory.createUnknownStream();
+			streams.put(streamID, lstream);
+		}
+		return lstream;
+	}
+
+	/**
+	 * Determine if any of the given map entries overlap.
+	 * 
+	 * @param offsets The map offset of each entry.
+	 * @param lengths The length of each entry.
+	 * @param order The indexes of the entries in ascending offset order, or NULL if the entries are in offset order.
+	 * @return TRUE if any entry starts before the end of a preceding entry.
+	 */
+	private static boolean isOverlapping(long[] offsets, long[] lengths, int[] order) {
+		long end = 0;
+		for (int i = 0; i < offsets.length; i++) {
+			int entry = order == null ? i : order[i];
+			if (lengths[entry] <= 0) {
+				continue;
+			}
+			if (offsets[entry] < end) {
+				return true;
+			}
+			end = offsets[entry] + lengths[entry];
+		}
+		return false;
+	}
+
+	/**
+	 * Resolve overlapping map entries. Entries are applied in map segment order, with each entry replacing the
+	 * portions of any earlier entries it overlaps.
+	 * 
+	 * @param offsets The map offset of each entry.
+	 * @param lengths The length of each entry.
+	 * @param streamOffsets The stream offset of each entry.
+	 * @param streamIDs The stream ID of each entry.
+	 * @return The resolved entries in ascending offset order, without streams assigned.
+	 */
+	static Collection<MapEntryPoint> resolveOverlaps(long[] offsets, long[] lengths, long[] streamOffsets,
+			int[] streamIDs) {
+		TreeMap<Long, MapEntryPoint> points = new TreeMap<>();
+		for (int i = 0; i < offsets.length; i++) {
+			if (lengths[i] <= 0) {
+				continue;
+			}
+			long start = offsets[i];
+			long end = start + lengths[i];
+			// Trim the entry starting before this one, retaining any portion after it.
+			Map.Entry<Long, MapEntryPoint> lower = points.lowerEntry(start);
+			if (lower != null) {
+				MapEntryPoint point = lower.getValue();
+				long pointEnd = point.getOffset() + point.getLength();
+				if (pointEnd > start) {
+					points.put(point.getOffset(), trim(point, point.getOffset(), start));
+					if (pointEnd > end) {
+						points.put(end, trim(point, end, pointEnd));
+					}
+				}
+			}
+			// Replace entries starting within this one, retaining any portion after it.
+			NavigableMap<Long, MapEntryPoint> covered = points.subMap(start, true, end, false);
+			if (!covered.isEmpty()) {
+				MapEntryPoint last = covered.lastEntry().getValue();
+				long lastEnd = last.getOffset() + last.getLength();
+				covered.clear();
+				if (lastEnd > end) {
+					points.put(end, trim(last, end, lastEnd));
+				}
+			}
+			points.put(start, MapEntryPoint.create(start, lengths[i], streamOffsets[i], streamIDs[i], null));
+		}
+		return points.values();
+	}
+
+	/**
+	 * Create a map entry covering part of the given entry.
+	 * 
+	 * @param point The entry.
+	 * @param start The map offset of the start of the part.
+	 * @param end The map offset of the end of the part.
+	 * @return The map entry for the part.
+	 */
+	private static MapEntryPoint trim(MapEntryPoint point, long start, long end) {
+		return MapEntryPoint.create(start, end - start, point.getStreamOffset() + (start - point.getOffset()),
+				point.getStreamID(), null);
+	}
+
+	/**
+	 * Determine the order of the given offsets, via a stable merge sort of the entry indexes.
+	 * 
+	 * @param offsets The offsets to order.
+	 * @return The indexes of the offsets, in ascending offset order.
+	 */
+	static int[] sortByOffset(long[] offsets) {
+		int count = offsets.length;
+		int[] order = new int[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = i;
+		}
+		int[] work = new int[count];
+		for (int width = 1; width < count; width <<= 1) {
+			for (int low = 0; low < count; low += width << 1) {
+				int mid = Math.min(low + width, count);
+				int high = Math.min(low + (width << 1), count);
+				int left = low;
+				int right = mid;
+				int out = low;
+				while (left < mid && right < high) {
+					work[out++] = offsets[order[right]] < offsets[order[left]] ? order[right++] : order[left++];
+				}
+				while (left < mid) {
+					work[out++] = order[left++];
+				}
+				while (right < high) {
+					work[out++] = order[right++];
+				}
 			}
+			int[] swap = order;
+			order = work;
+			work = swap;
 		}
+		return order;
 	}
 
 	/**
@@ -361,11 +588,11 @@ public class AFF4MapMaterialiser {
 	}
 
 	/**
-	 * Get the map, as a LongTreap instance.
+	 * Get the map, as a sorted interval index.
 	 * 
 	 * @return The map.
 	 */
-	protected LongTreap<MapEntryPoint> getMap() {
+	protected RegionIndex getMap() {
 		try {
 			build();
 		} catch (IOException e) {
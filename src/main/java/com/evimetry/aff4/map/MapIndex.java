@@ -0,0 +1,461 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.map;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import com.evimetry.aff4.IAFF4ImageStream;
+import com.evimetry.aff4.imagestream.SymbolicImageStream;
+import com.evimetry.aff4.struct.MapEntryPoint;
+
+/**
+ * A sorted interval index over the regions of an aff4:Map.
+ * <p>
+ * The regions are held as parallel primitive arrays ordered by map offset, rather than as individual
+ * {@link MapEntryPoint} instances, with lookups via binary search. Streams are referenced by a slot into a small table
+ * of distinct streams.
+ */
+public final class MapIndex implements RegionIndex {
+
+	/**
+	 * The number of regions.
+	 */
+	private final int count;
+	/**
+	 * The map offset of each region.
+	 */
+	private final long[] offsets;
+	/**
+	 * The length of each region.
+	 */
+	private final long[] lengths;
+	/**
+	 * The offset into the target stream of each region.
+	 */
+	private final long[] streamOffsets;
+	/**
+	 * The slot in the stream table of each region.
+	 */
+	private final int[] streamSlots;
+	/**
+	 * The stream ID of each slot.
+	 */
+	private final int[] slotIDs;
+	/**
+	 * The stream of each slot.
+	 */
+	private final IAFF4ImageStream[] slotStreams;
+
+	/**
+	 * Create a new index from the given arrays.
+	 * 
+	 * @param offsets The map offset of each region.
+	 * @param lengths The length of each region.
+	 * @param streamOffsets The offset into the target stream of each region.
+	 * @param streamSlots The slot in the stream table of each region.
+	 * @param slotIDs The stream ID of each slot.
+	 * @param slotStreams The stream of each slot.
+	 */
+	private MapIndex(long[] offsets, long[] lengths, long[] streamOffsets, int[] streamSlots, int[] slotIDs,
+			IAFF4ImageStream[] slotStreams) {
+		this.count = offsets.length;
+		this.offsets = offsets;
+		this.lengths = lengths;
+		this.streamOffsets = streamOffsets;
+		this.streamSlots = streamSlots;
+		this.slotIDs = slotIDs;
+		this.slotStreams = slotStreams;
+	}
+
+	/**
+	 * Create a new index from the builder.
+	 * 
+	 * @param builder The builder.
+	 */
+	private MapIndex(Builder builder) {
+		this.count = builder.count;
+		this.offsets = Arrays.copyOf(builder.offsets, count);
+		this.lengths = Arrays.copyOf(builder.lengths, count);
+		this.streamOffsets = Arrays.copyOf(builder.streamOffsets, count);
+		this.streamSlots = Arrays.copyOf(builder.streamSlots, count);
+		this.slotIDs = new int[builder.slotStreams.size()];
+		for (int i = 0; i < slotIDs.length; i++) {
+			slotIDs[i] = builder.slotIDs.get(i);
+		}
+		this.slotStreams = builder.slotStreams.toArray(new IAFF4ImageStream[0]);
+	}
+
+	@Override
+	public int size() {
+		return count;
+	}
+
+	@Override
+	public int find(long position) {
+		if (count == 0 || position < offsets[0]) {
+			return -1;
+		}
+		int base = 0;
+		int n = count;
+		while (n > 1) {
+			int half = n >>> 1;
+			base = offsets[base + half] <= position ? base + half : base;
+			n -= half;
+		}
+		return base;
+	}
+
+	@Override
+	public long getOffset(int index) {
+		return offsets[index];
+	}
+
+	@Override
+	public long getLength(int index) {
+		return lengths[index];
+	}
+
+	@Override
+	public long getStreamOffset(int index) {
+		return streamOffsets[index];
+	}
+
+	@Override
+	public int getStreamID(int index) {
+		return slotIDs[streamSlots[index]];
+	}
+
+	@Override
+	public IAFF4ImageStream getStream(int index) {
+		return slotStreams[streamSlots[index]];
+	}
+
+	/**
+	 * Get the given region as a map entry point.
+	 * 
+	 * @param index The region index.
+	 * @return A new map entry point for the region.
+	 */
+	public MapEntryPoint getEntry(int index) {
+		return MapEntryPoint.create(offsets[index], lengths[index], streamOffsets[index], getStreamID(index),
+				getStream(index));
+	}
+
+	/**
+	 * Get the approximate heap use of this index.
+	 * 
+	 * @return The approximate size of the index in bytes.
+	 */
+	public long getWeight() {
+		return (long) count * (Long.BYTES * 3 + Integer.BYTES);
+	}
+
+	/**
+	 * Encode this index into a little endian buffer, for use with {@link #decode(ByteBuffer, IntFunction)}.
+	 * <p>
+	 * Only the stream IDs are encoded, so streams must be resolved again on decode.
+	 * 
+	 * @return The encoded index.
+	 */
+	public ByteBuffer encode() {
+		int slotsLength = align(slotIDs.length * Integer.BYTES);
+		long length = Integer.BYTES * 2 + slotsLength + (long) count * Long.BYTES * 3
+				+ align(count * Integer.BYTES);
+		if (length > Integer.MAX_VALUE) {
+			throw new IllegalStateException("Map index too large to encode");
+		}
+		ByteBuffer buffer = ByteBuffer.allocate((int) length).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(count);
+		buffer.putInt(slotIDs.length);
+		buffer.asIntBuffer().put(slotIDs);
+		buffer.position(buffer.position() + slotsLength);
+		buffer.asLongBuffer().put(offsets);
+		buffer.position(buffer.position() + count * Long.BYTES);
+		buffer.asLongBuffer().put(lengths);
+		buffer.position(buffer.position() + count * Long.BYTES);
+		buffer.asLongBuffer().put(streamOffsets);
+		buffer.position(buffer.position() + count * Long.BYTES);
+		buffer.asIntBuffer().put(streamSlots);
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * Decode an index previously encoded by {@link #encode()}.
+	 * 
+	 * @param buffer The little endian buffer holding the encoded index. The position of the buffer is not modified.
+	 * @param streams Function to resolve the stream for the given stream ID.
+	 * @return The decoded index.
+	 * @throws IllegalArgumentException If the buffer does not hold a valid index.
+	 */
+	public static MapIndex decode(ByteBuffer buffer, IntFunction<IAFF4ImageStream> streams) {
+		ByteBuffer src = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		try {
+			int count = src.getInt();
+			int slotCount = src.getInt();
+			if (count < 0 || slotCount < 0) {
+				throw new IllegalArgumentException("Invalid map index");
+			}
+			int[] slotIDs = new int[slotCount];
+			src.asIntBuffer().get(slotIDs);
+			src.position(src.position() + align(slotCount * Integer.BYTES));
+			long[] offsets = new long[count];
+			src.asLongBuffer().get(offsets);
+			src.position(src.position() + count * Long.BYTES);
+			long[] lengths = new long[count];
+			src.asLongBuffer().get(lengths);
+			src.position(src.position() + count * Long.BYTES);
+			long[] streamOffsets = new long[count];
+			src.asLongBuffer().get(streamOffsets);
+			src.position(src.position() + count * Long.BYTES);
+			int[] streamSlots = new int[count];
+			src.asIntBuffer().get(streamSlots);
+			IAFF4ImageStream[] slotStreams = new IAFF4ImageStream[slotCount];
+			for (int i = 0; i < slotCount; i++) {
+				slotStreams[i] = streams.apply(slotIDs[i]);
+			}
+			for (int i = 0; i < count; i++) {
+				if (streamSlots[i] < 0 || streamSlots[i] >= slotCount) {
+					throw new IllegalArgumentException("Invalid map index stream slot");
+				}
+			}
+			return new MapIndex(offsets, lengths, streamOffsets, streamSlots, slotIDs, slotStreams);
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Truncated map index", e);
+		}
+	}
+
+	/**
+	 * Round the given length up to a multiple of 8 bytes.
+	 * 
+	 * @param length The length.
+	 * @return The aligned length.
+	 */
+	private static int align(int length) {
+		return (length + 7) & ~7;
+	}
+
+	/**
+	 * Builder for an index, accepting regions in map offset order.
+	 */
+	public static class Builder {
+
+		/**
+		 * The initial capacity of the region arrays.
+		 */
+		private final static int INITIAL_CAPACITY = 16;
+		/**
+		 * The largest stream ID to hold in the slot table.
+		 */
+		private final static int MAX_TABLE_ID = 0xffff;
+
+		/**
+		 * The number of regions.
+		 */
+		private int count;
+		/**
+		 * The map offset of each region.
+		 */
+		private long[] offsets;
+		/**
+		 * The length of each region.
+		 */
+		private long[] lengths;
+		/**
+		 * The offset into the target stream of each region.
+		 */
+		private long[] streamOffsets;
+		/**
+		 * The slot in the stream table of each region.
+		 */
+		private int[] streamSlots;
+		/**
+		 * The slot plus one assigned to each small stream ID, indexed by stream ID plus one.
+		 */
+		private int[] slotTable = new int[INITIAL_CAPACITY];
+		/**
+		 * The slot assigned to each stream ID outside of the slot table.
+		 */
+		private final Map<Integer, Integer> slots = new HashMap<>();
+		/**
+		 * The stream ID of each slot.
+		 */
+		private final List<Integer> slotIDs = new ArrayList<>();
+		/**
+		 * The stream of each slot.
+		 */
+		private final List<IAFF4ImageStream> slotStreams = new ArrayList<>();
+		/**
+		 * TRUE if contiguous regions should be merged.
+		 */
+		private boolean coalescing;
+
+		/**
+		 * Create a new builder.
+		 */
+		public Builder() {
+			this(INITIAL_CAPACITY);
+		}
+
+		/**
+		 * Create a new builder.
+		 * 
+		 * @param capacity The expected number of regions.
+		 */
+		public Builder(int capacity) {
+			capacity = Math.max(capacity, INITIAL_CAPACITY);
+			offsets = new long[capacity];
+			lengths = new long[capacity];
+			streamOffsets = new long[capacity];
+			streamSlots = new int[capacity];
+		}
+
+		/**
+		 * Add a region to the index.
+		 * 
+		 * @param offset The map offset of the region.
+		 * @param length The length of the region.
+		 * @param streamOffset The offset into the target stream.
+		 * @param streamID The stream ID, or -1 for map gap regions.
+		 * @param stream The target stream. Regions with the same stream ID MUST use the same stream.
+		 * @return itself.
+		 * @throws IllegalArgumentException If the region does not start at or after the end of the last region.
+		 */
+		public Builder add(long offset, long length, long streamOffset, int streamID, IAFF4ImageStream stream) {
+			if (count > 0 && offset < offsets[count - 1] + lengths[count - 1]) {
+				throw new IllegalArgumentException("Map regions must be added in order, and not overlap");
+			}
+			if (length <= 0) {
+				throw new IllegalArgumentException("Map regions must not be empty");
+			}
+			if (count == offsets.length) {
+				int capacity = count + (count >>> 1);
+				offsets = Arrays.copyOf(offsets, capacity);
+				lengths = Arrays.copyOf(lengths, capacity);
+				streamOffsets = Arrays.copyOf(streamOffsets, capacity);
+				streamSlots = Arrays.copyOf(streamSlots, capacity);
+			}
+			int slot = getSlot(streamID, stream);
+			if (coalescing && count > 0 && canMerge(count - 1, offset, streamOffset, slot)) {
+				lengths[count - 1] += length;
+				return this;
+			}
+			offsets[count] = offset;
+			lengths[count] = length;
+			streamOffsets[count] = streamOffset;
+			streamSlots[count] = slot;
+			count++;
+			return this;
+		}
+
+		/**
+		 * Set if regions that continue the previous region should be merged into it. Regions are merged when they
+		 * start at the end of the previous region, use the same stream, and continue at the end of the previous
+		 * region in that stream. Regions of a symbolic stream are merged regardless of stream offset.
+		 * 
+		 * @param coalescing TRUE to merge contiguous regions.
+		 * @return itself.
+		 */
+		public Builder setCoalescing(boolean coalescing) {
+			this.coalescing = coalescing;
+			return this;
+		}
+
+		/**
+		 * Determine if the given region can be merged into the region at the given index.
+		 * 
+		 * @param index The index of the previous region.
+		 * @param offset The map offset of the region.
+		 * @param streamOffset The offset into the target stream.
+		 * @param slot The slot of the target stream.
+		 * @return TRUE if the region continues the previous region.
+		 */
+		private boolean canMerge(int index, long offset, long streamOffset, int slot) {
+			if (streamSlots[index] != slot || offsets[index] + lengths[index] != offset) {
+				return false;
+			}
+			return slotStreams.get(slot) instanceof SymbolicImageStream
+					|| streamOffsets[index] + lengths[index] == streamOffset;
+		}
+
+		/**
+		 * Get the slot for the given stream ID, assigning a new slot if required.
+		 * 
+		 * @param streamID The stream ID.
+		 * @param stream The target stream.
+		 * @return The slot.
+		 */
+		private int getSlot(int streamID, IAFF4ImageStream stream) {
+			if (streamID >= -1 && streamID < MAX_TABLE_ID) {
+				int index = streamID + 1;
+				if (index >= slotTable.length) {
+					slotTable = Arrays.copyOf(slotTable, Math.max(index + 1, slotTable.length << 1));
+				}
+				if (slotTable[index] == 0) {
+					slotTable[index] = addSlot(streamID, stream) + 1;
+				}
+				return slotTable[index] - 1;
+			}
+			Integer slot = slots.get(streamID);
+			if (slot == null) {
+				slot = addSlot(streamID, stream);
+				slots.put(streamID, slot);
+			}
+			return slot;
+		}
+
+		/**
+		 * Add a new slot to the stream table.
+		 * 
+		 * @param streamID The stream ID.
+		 * @param stream The target stream.
+		 * @return The new slot.
+		 */
+		private int addSlot(int streamID, IAFF4ImageStream stream) {
+			int slot = slotStreams.size();
+			slotIDs.add(streamID);
+			slotStreams.add(stream);
+			return slot;
+		}
+
+		/**
+		 * Get the end offset of the last region added.
+		 * 
+		 * @return The end of the last region, or 0 if no regions have been added.
+		 */
+		public long getEnd() {
+			return count == 0 ? 0 : offsets[count - 1] + lengths[count - 1];
+		}
+
+		/**
+		 * Build the index.
+		 * 
+		 * @return The index of the added regions.
+		 */
+		public MapIndex build() {
+			return new MapIndex(this);
+		}
+	}
+}
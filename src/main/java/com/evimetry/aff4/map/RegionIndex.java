@@ -0,0 +1,83 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.map;
+
+import com.evimetry.aff4.IAFF4ImageStream;
+
+/**
+ * Lookup of the regions of an aff4:Map.
+ * <p>
+ * Regions are numbered in map offset order, and are contiguous such that each region starts at the end of the
+ * preceding region. Implementations may contain empty regions, which callers walking consecutive regions should skip.
+ */
+public interface RegionIndex {
+
+	/**
+	 * Get the number of regions in this index.
+	 * 
+	 * @return The number of regions.
+	 */
+	public int size();
+
+	/**
+	 * Find the region containing the given map offset.
+	 * 
+	 * @param position The map offset.
+	 * @return The index of the region, or -1 if the offset is before the first region.
+	 */
+	public int find(long position);
+
+	/**
+	 * Get the map offset of the given region.
+	 * 
+	 * @param index The region index.
+	 * @return The map offset.
+	 */
+	public long getOffset(int index);
+
+	/**
+	 * Get the length of the given region.
+	 * 
+	 * @param index The region index.
+	 * @return The length of the region.
+	 */
+	public long getLength(int index);
+
+	/**
+	 * Get the offset into the target stream of the given region.
+	 * 
+	 * @param index The region index.
+	 * @return The offset into the stream.
+	 */
+	public long getStreamOffset(int index);
+
+	/**
+	 * Get the stream ID of the given region.
+	 * 
+	 * @param index The region index.
+	 * @return The stream ID, or -1 for map gap regions.
+	 */
+	public int getStreamID(int index);
+
+	/**
+	 * Get the target stream of the given region.
+	 * 
+	 * @param index The region index.
+	 * @return The stream.
+	 */
+	public IAFF4ImageStream getStream(int index);
+}
@@ -0,0 +1,355 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.map;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.IntFunction;
+
+import com.evimetry.aff4.IAFF4ImageStream;
+import com.evimetry.aff4.struct.MapEntryPoint;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * A region index which performs lookups directly over the stored map segment of an aff4:Map, rather than
+ * materialising the map.
+ * <p>
+ * Only the map offset of the first entry of each block of entries is held in memory, and blocks are decoded on demand
+ * into a small cache. The entries of the map segment MUST be sorted and not overlap.
+ * <p>
+ * Each map entry {@code i} is region {@code 2i + 1}, and region {@code 2i} is the gap preceding it, filled from the
+ * map gap stream. The final region is the gap from the last entry to the end of the map. Gap regions are empty where
+ * entries are contiguous.
+ * <p>
+ * As the region lookup methods cannot throw checked exceptions, failures reading the map segment are thrown as
+ * {@link UncheckedIOException}.
+ */
+public class SegmentMapIndex implements RegionIndex, Closeable {
+
+	/**
+	 * The number of entries in each block.
+	 */
+	private final static int BLOCK_ENTRIES = 4096;
+	/**
+	 * The maximum number of decoded blocks to hold.
+	 */
+	private final static int CACHED_BLOCKS = 64;
+
+	/**
+	 * The stored map segment.
+	 */
+	private final IAFF4ImageStream segment;
+	/**
+	 * The size of the map.
+	 */
+	private final long mapSize;
+	/**
+	 * The number of entries in the map segment.
+	 */
+	private final int entries;
+	/**
+	 * The map offset of the first entry of each block.
+	 */
+	private final long[] skip;
+	/**
+	 * Function to resolve the stream for the given stream ID.
+	 */
+	private final IntFunction<IAFF4ImageStream> streams;
+	/**
+	 * The stream used to fill gaps.
+	 */
+	private final IAFF4ImageStream gapStream;
+	/**
+	 * The decoded blocks.
+	 */
+	private final Cache<Integer, Block> blocks;
+
+	/**
+	 * Create a new index over the given map segment.
+	 * 
+	 * @param segment The stored map segment.
+	 * @param mapSize The size of the map.
+	 * @param entries The number of entries in the map segment.
+	 * @param skip The map offset of the first entry of each block.
+	 * @param streams Function to resolve the stream for the given stream ID.
+	 * @param gapStream The stream used to fill gaps.
+	 */
+	private SegmentMapIndex(IAFF4ImageStream segment, long mapSize, int entries, long[] skip,
+			IntFunction<IAFF4ImageStream> streams, IAFF4ImageStream gapStream) {
+		this.segment = segment;
+		this.mapSize = mapSize;
+		this.entries = entries;
+		this.skip = skip;
+		this.streams = streams;
+		this.gapStream = gapStream;
+		this.blocks = Caffeine.newBuilder().maximumSize(CACHED_BLOCKS).build();
+	}
+
+	/**
+	 * Open an index over the given map segment.
+	 * <p>
+	 * The map segment is validated in a single sequential pass, and only the map offset of the first entry of each
+	 * block is retained.
+	 * 
+	 * @param segment The stored map segment. The segment is closed when this index is closed.
+	 * @param mapSize The size of the map.
+	 * @param streams Function to resolve the stream for the given stream ID.
+	 * @param gapStream The stream used to fill gaps.
+	 * @return The index, or NULL if the map segment entries are not sorted or overlap.
+	 * @throws IOException If reading the map segment failed.
+	 */
+	public static SegmentMapIndex open(IAFF4ImageStream segment, long mapSize, IntFunction<IAFF4ImageStream> streams,
+			IAFF4ImageStream gapStream) throws IOException {
+		int sz = MapEntryPoint.getSize();
+		long count = segment.size() / sz;
+		if (count > Integer.MAX_VALUE / 2) {
+			return null;
+		}
+		int entries = (int) count;
+		long[] skip = new long[(entries + BLOCK_ENTRIES - 1) / BLOCK_ENTRIES];
+		ByteBuffer buffer = ByteBuffer.allocate(Math.min(entries, BLOCK_ENTRIES) * sz).order(ByteOrder.LITTLE_ENDIAN);
+		long previousEnd = 0;
+		for (int block = 0; block < skip.length; block++) {
+			int first = block * BLOCK_ENTRIES;
+			int blockEntries = Math.min(BLOCK_ENTRIES, entries - first);
+			buffer.clear().limit(blockEntries * sz);
+			readFully(segment, (long) first * sz, buffer);
+			skip[block] = buffer.getLong(0);
+			for (int i = 0; i < blockEntries; i++) {
+				long offset = buffer.getLong(i * sz);
+				long length = buffer.getLong(i * sz + 8);
+				if (offset < previousEnd || length < 0) {
+					return null;
+				}
+				previousEnd = offset + length;
+			}
+		}
+		return new SegmentMapIndex(segment, mapSize, entries, skip, streams, gapStream);
+	}
+
+	@Override
+	public int size() {
+		return entries * 2 + 1;
+	}
+
+	@Override
+	public int find(long position) {
+		if (position < 0) {
+			return -1;
+		}
+		// Find the last block starting at or before the position.
+		int low = 0;
+		int high = skip.length - 1;
+		int blockIndex = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (skip[mid] <= position) {
+				blockIndex = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		if (blockIndex < 0) {
+			// Before the first entry.
+			return 0;
+		}
+		Block block = getBlock(blockIndex);
+		// Find the last entry in the block starting at or before the position.
+		int base = 0;
+		int n = block.offsets.length;
+		while (n > 1) {
+			int half = n >>> 1;
+			base = block.offsets[base + half] <= position ? base + half : base;
+			n -= half;
+		}
+		int entry = blockIndex * BLOCK_ENTRIES + base;
+		if (position < block.offsets[base] + block.lengths[base]) {
+			return entry * 2 + 1;
+		}
+		return (entry + 1) * 2;
+	}
+
+	@Override
+	public long getOffset(int index) {
+		int entry = index >>> 1;
+		if ((index & 1) != 0) {
+			return getBlock(entry / BLOCK_ENTRIES).offsets[entry % BLOCK_ENTRIES];
+		}
+		return entry == 0 ? 0 : getEnd(entry - 1);
+	}
+
+	@Override
+	public long getLength(int index) {
+		int entry = index >>> 1;
+		if ((index & 1) != 0) {
+			return getBlock(entry / BLOCK_ENTRIES).lengths[entry % BLOCK_ENTRIES];
+		}
+		long start = getOffset(index);
+		long end = entry < entries ? getOffset(index + 1) : mapSize;
+		return Math.max(0, end - start);
+	}
+
+	@Override
+	public long getStreamOffset(int index) {
+		int entry = index >>> 1;
+		if ((index & 1) != 0) {
+			return getBlock(entry / BLOCK_ENTRIES).streamOffsets[entry % BLOCK_ENTRIES];
+		}
+		// Gaps are filled from the same offset of the gap stream.
+		return getOffset(index);
+	}
+
+	@Override
+	public int getStreamID(int index) {
+		int entry = index >>> 1;
+		if ((index & 1) != 0) {
+			return getBlock(entry / BLOCK_ENTRIES).streamIDs[entry % BLOCK_ENTRIES];
+		}
+		return -1;
+	}
+
+	@Override
+	public IAFF4ImageStream getStream(int index) {
+		if ((index & 1) != 0) {
+			return streams.apply(getStreamID(index));
+		}
+		return gapStream;
+	}
+
+	/**
+	 * Get the number of entries in the map segment.
+	 * 
+	 * @return The number of entries.
+	 */
+	public int getEntries() {
+		return entries;
+	}
+
+	@Override
+	public void close() throws IOException {
+		blocks.invalidateAll();
+		segment.getChannel().close();
+	}
+
+	/**
+	 * Get the map offset of the end of the given entry.
+	 * 
+	 * @param entry The entry.
+	 * @return The end of the entry.
+	 */
+	private long getEnd(int entry) {
+		Block block = getBlock(entry / BLOCK_ENTRIES);
+		int index = entry % BLOCK_ENTRIES;
+		return block.offsets[index] + block.lengths[index];
+	}
+
+	/**
+	 * Get the given block, decoding it from the map segment if required.
+	 * 
+	 * @param block The block index.
+	 * @return The decoded block.
+	 * @throws UncheckedIOException If reading the map segment failed.
+	 */
+	private Block getBlock(int block) {
+		return blocks.get(block, this::loadBlock);
+	}
+
+	/**
+	 * Decode the given block from the map segment.
+	 * 
+	 * @param block The block index.
+	 * @return The decoded block.
+	 * @throws UncheckedIOException If reading the map segment failed.
+	 */
+	private Block loadBlock(int block) {
+		int sz = MapEntryPoint.getSize();
+		int first = block * BLOCK_ENTRIES;
+		int count = Math.min(BLOCK_ENTRIES, entries - first);
+		try {
+			ByteBuffer buffer = ByteBuffer.allocate(count * sz).order(ByteOrder.LITTLE_ENDIAN);
+			readFully(segment, (long) first * sz, buffer);
+			Block result = new Block(count);
+			for (int i = 0; i < count; i++) {
+				int position = i * sz;
+				result.offsets[i] = buffer.getLong(position);
+				result.lengths[i] = buffer.getLong(position + 8);
+				result.streamOffsets[i] = buffer.getLong(position + 16);
+				result.streamIDs[i] = buffer.getInt(position + 24);
+			}
+			return result;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Fill the buffer from the given position of the stream.
+	 * 
+	 * @param stream The stream to read.
+	 * @param position The position in the stream.
+	 * @param buffer The buffer to fill.
+	 * @throws IOException If the stream could not be read.
+	 */
+	private static void readFully(IAFF4ImageStream stream, long position, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = stream.read(position, buffer);
+			if (read <= 0) {
+				throw new IOException("Unexpected end of map segment");
+			}
+			position += read;
+		}
+	}
+
+	/**
+	 * A decoded block of map segment entries.
+	 */
+	private static class Block {
+		/**
+		 * The map offset of each entry.
+		 */
+		private final long[] offsets;
+		/**
+		 * The length of each entry.
+		 */
+		private final long[] lengths;
+		/**
+		 * The offset into the target stream of each entry.
+		 */
+		private final long[] streamOffsets;
+		/**
+		 * The stream ID of each entry.
+		 */
+		private final int[] streamIDs;
+
+		/**
+		 * Create a new block.
+		 * 
+		 * @param count The number of entries.
+		 */
+		private Block(int count) {
+			this.offsets = new long[count];
+			this.lengths = new long[count];
+			this.streamOffsets = new long[count];
+			this.streamIDs = new int[count];
+		}
+	}
+}
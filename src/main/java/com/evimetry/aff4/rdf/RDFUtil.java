@@ -17,15 +17,19 @@
 package com.evimetry.aff4.rdf;
 
 import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 
 import org.apache.jena.datatypes.xsd.XSDDateTime;
 import org.apache.jena.rdf.model.Literal;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.ResIterator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
 import org.apache.jena.vocabulary.RDF;
 
 import com.evimetry.aff4.AFF4Lexicon;
@@ -254,4 +258,27 @@ public class RDFUtil {
 		}
 		return Optional.empty();
 	}
+
+	/**
+	 * Get the hash values of the property for the given resource, keyed by the data type of each value.
+	 * 
+	 * @param model The model to use
+	 * @param resource The resource
+	 * @param property the property
+	 * @return The hex encoded hash value of each data type, in the order found. Empty if none are present.
+	 */
+	public static Map<AFF4Lexicon, String> readHashProperties(Model model, String resource, AFF4Lexicon property) {
+		Map<AFF4Lexicon, String> hashes = new LinkedHashMap<>();
+		Resource r = model.createResource(resource);
+		StmtIterator statements = r.listProperties(model.createProperty(property.getValue()));
+		while (statements.hasNext()) {
+			RDFNode node = statements.next().getObject();
+			if (node.isLiteral()) {
+				Literal literal = node.asLiteral();
+				AFF4Lexicon type = AFF4Lexicon.forValue(literal.getDatatypeURI());
+				hashes.putIfAbsent(type, literal.getLexicalForm());
+			}
+		}
+		return hashes;
+	}
 }
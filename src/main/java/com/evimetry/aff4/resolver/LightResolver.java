@@ -29,9 +29,10 @@ import org.slf4j.LoggerFactory;
 
 import com.evimetry.aff4.AFF4Lexicon;
 import com.evimetry.aff4.Containers;
-import com.evimetry.aff4.IAFF4Container;
 import com.evimetry.aff4.IAFF4Resolver;
 import com.evimetry.aff4.IAFF4Resource;
+import com.evimetry.aff4.cache.ChunkCache;
+import com.evimetry.aff4.container.ContainerOptions;
 import com.evimetry.aff4.resource.AFF4Resource;
 
 /**
@@ -56,6 +57,11 @@ public class LightResolver extends AFF4Resource implements IAFF4Resolver {
 	 */
 	protected final Map<String, File> volumes = Collections.synchronizedMap(new ConcurrentHashMap<>());
 
+	/**
+	 * The options to apply to containers opened by this resolver.
+	 */
+	private final ContainerOptions options;
+
 	/**
 	 * Create a new lightweight resolver.
 	 * 
@@ -63,8 +69,31 @@ public class LightResolver extends AFF4Resource implements IAFF4Resolver {
 	 * @param path The base path to start scanning for files.
 	 */
 	public LightResolver(String resource, File path) {
+		this(resource, path, ChunkCache.getDefault());
+	}
+
+	/**
+	 * Create a new lightweight resolver.
+	 * 
+	 * @param resource The resource to apply to this resolver
+	 * @param path The base path to start scanning for files.
+	 * @param cache The chunk cache to use for containers opened by this resolver.
+	 */
+	public LightResolver(String resource, File path, ChunkCache cache) {
+		this(resource, path, new ContainerOptions().setChunkCache(cache));
+	}
+
+	/**
+	 * Create a new lightweight resolver.
+	 * 
+	 * @param resource The resource to apply to this resolver
+	 * @param path The base path to start scanning for files.
+	 * @param options The options to apply to containers opened by this resolver.
+	 */
+	public LightResolver(String resource, File path, ContainerOptions options) {
 		super(resource);
 		this.path = path;
+		this.options = options;
 		properties.put(AFF4Lexicon.fileName, Collections.singletonList(path.getAbsolutePath()));
 		scanForAFF4Volumes(path.toPath());
 	}
@@ -81,9 +110,7 @@ public class LightResolver extends AFF4Resource implements IAFF4Resolver {
 			}
 			if (parentFile.exists() && parentFile.canRead()) {
 				try {
-					IAFF4Container con = Containers.open(parentFile);
-					con.setResolver(this);
-					return con;
+					return Containers.open(parentFile, this, options);
 				} catch (Throwable e) {
 					logger.warn(e.getMessage(), e);
 				}
@@ -17,20 +17,24 @@
 package com.evimetry.aff4.struct;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.FileChannel;
 
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.archivers.zip.ZipMethod;
+import org.apache.commons.io.IOUtils;
 
-import com.evimetry.aff4.IAFF4ImageStream;
-import com.evimetry.aff4.container.AFF4ZipContainer;
-import com.evimetry.aff4.imagestream.Streams;
 import com.evimetry.aff4.rdf.NameCodec;
 
 /**
  * An ImageStream/Bevvy index reader.
+ * <p>
+ * The index entries are held as packed primitive arrays, rather than as individual {@link ImageStreamPoint}
+ * instances.
  */
 public class BevvyIndex {
 
@@ -45,20 +49,24 @@ public class BevvyIndex {
 	private final long offset;
 
 	/**
-	 * The collection of image stream points.
+	 * The offset of each chunk into the bevvy.
 	 */
-	private ImageStreamPoint[] entries;
+	private final long[] offsets;
+	/**
+	 * The length of each raw chunk.
+	 */
+	private final int[] lengths;
 
 	/**
 	 * Create a new Bevvy Index reader
 	 * 
 	 * @param resource The resource of the image stream we are servicing.
 	 * @param bevvyID The bevvy id
-	 * @param parent The parent zip container
+	 * @param channel The parent container channel.
 	 * @param zipContainer The zip container.
 	 * @throws IOException If reading the zip container fails.
 	 */
-	public BevvyIndex(String resource, int bevvyID, AFF4ZipContainer parent, ZipFile zipContainer) throws IOException {
+	public BevvyIndex(String resource, int bevvyID, FileChannel channel, ZipFile zipContainer) throws IOException {
 		this.bevvyID = bevvyID;
 
 		// Get the offset of the bevvy segment into the primary channel.
@@ -70,20 +78,116 @@ public class BevvyIndex {
 
 		// Load the indices
 		String bevvyIndexName = NameCodec.encode(String.format("%s/%08d.index", resource, bevvyID));
-		IAFF4ImageStream stream = parent.getSegment(bevvyIndexName);
-		try (SeekableByteChannel channel = stream.getChannel()) {
-			ByteBuffer buffer = ByteBuffer.allocateDirect((int) channel.size()).order(ByteOrder.LITTLE_ENDIAN);
-			Streams.readFull(channel, 0, buffer);
-			buffer.flip();
-			int sz = ImageStreamPoint.getSize();
-			this.entries = new ImageStreamPoint[buffer.remaining() / sz];
-			int index = 0;
-			while (buffer.remaining() >= sz) {
-				entries[index++] = ImageStreamPoint.create(buffer);
+		ZipArchiveEntry indexEntry = zipContainer.getEntry(bevvyIndexName);
+		if (indexEntry == null)
+			throw new IOException("Missing bevvy index segment");
+		ByteBuffer buffer = readEntry(indexEntry, channel, zipContainer);
+		int sz = ImageStreamPoint.getSize();
+		int count = buffer.remaining() / sz;
+		this.offsets = new long[count];
+		this.lengths = new int[count];
+		for (int index = 0; index < count; index++) {
+			offsets[index] = buffer.getLong(index * sz);
+			lengths[index] = buffer.getInt(index * sz + Long.BYTES);
+		}
+	}
+
+	/**
+	 * Create a new Bevvy Index from the given chunk entries.
+	 * 
+	 * @param bevvyID The bevvy id
+	 * @param offset The offset of the first chunk in the parent's channel
+	 * @param offsets The offset of each chunk into the bevvy.
+	 * @param lengths The length of each raw chunk.
+	 */
+	private BevvyIndex(int bevvyID, long offset, long[] offsets, int[] lengths) {
+		this.bevvyID = bevvyID;
+		this.offset = offset;
+		this.offsets = offsets;
+		this.lengths = lengths;
+	}
+
+	/**
+	 * Encode this index into a little endian buffer, for use with {@link #decode(ByteBuffer)}.
+	 * 
+	 * @return The encoded index.
+	 */
+	public ByteBuffer encode() {
+		int count = offsets.length;
+		int length = Integer.BYTES * 2 + Long.BYTES + count * Long.BYTES + ((count * Integer.BYTES + 7) & ~7);
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(bevvyID);
+		buffer.putInt(count);
+		buffer.putLong(offset);
+		buffer.asLongBuffer().put(offsets);
+		buffer.position(buffer.position() + count * Long.BYTES);
+		buffer.asIntBuffer().put(lengths);
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * Decode an index previously encoded by {@link #encode()}.
+	 * 
+	 * @param buffer The little endian buffer holding the encoded index. The position of the buffer is not modified.
+	 * @return The decoded index.
+	 * @throws IllegalArgumentException If the buffer does not hold a valid index.
+	 */
+	public static BevvyIndex decode(ByteBuffer buffer) {
+		ByteBuffer src = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		try {
+			int bevvyID = src.getInt();
+			int count = src.getInt();
+			long offset = src.getLong();
+			if (count < 0 || count > src.remaining() / (Long.BYTES + Integer.BYTES)) {
+				throw new IllegalArgumentException("Invalid bevvy index");
 			}
+			long[] offsets = new long[count];
+			src.asLongBuffer().get(offsets);
+			src.position(src.position() + count * Long.BYTES);
+			int[] lengths = new int[count];
+			src.asIntBuffer().get(lengths);
+			return new BevvyIndex(bevvyID, offset, offsets, lengths);
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Truncated bevvy index", e);
 		}
 	}
 
+	/**
+	 * Read the contents of the given zip entry.
+	 * <p>
+	 * Stored entries are read directly from the parent channel, otherwise the entry is inflated via the zip container.
+	 * 
+	 * @param entry The zip entry to read.
+	 * @param channel The parent container channel.
+	 * @param zipContainer The zip container.
+	 * @return A little endian buffer holding the entry contents.
+	 * @throws IOException If reading the entry fails.
+	 */
+	static ByteBuffer readEntry(ZipArchiveEntry entry, FileChannel channel, ZipFile zipContainer)
+			throws IOException {
+		long size = entry.getSize();
+		if (size < 0 || size > Integer.MAX_VALUE) {
+			throw new IOException("Invalid segment size");
+		}
+		if (entry.getMethod() != ZipMethod.STORED.getCode()) {
+			try (InputStream is = zipContainer.getInputStream(entry)) {
+				return ByteBuffer.wrap(IOUtils.toByteArray(is, size)).order(ByteOrder.LITTLE_ENDIAN);
+			}
+		}
+		ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+		long position = entry.getDataOffset();
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read <= 0) {
+				throw new IOException("Failed to read segment");
+			}
+			position += read;
+		}
+		buffer.flip();
+		return buffer;
+	}
+
 	/**
 	 * Get the bevvy id.
 	 * 
@@ -95,11 +199,63 @@ public class BevvyIndex {
 
 	/**
 	 * The offset of the first chunk in the parent's channel
+	 * 
+	 * @return The offset of the first chunk in the parent's channel
 	 */
 	public long getOffset() {
 		return offset;
 	}
 
+	/**
+	 * Get the number of chunks in this index.
+	 * 
+	 * @return The number of chunks.
+	 */
+	public int getCount() {
+		return offsets.length;
+	}
+
+	/**
+	 * Get the approximate memory used by this index.
+	 * 
+	 * @return The size of this index in bytes.
+	 */
+	public int getWeight() {
+		return offsets.length * ImageStreamPoint.getSize();
+	}
+
+	/**
+	 * Determine if the given chunk is present in this index.
+	 * 
+	 * @param chunk The chunk offset.
+	 * @return TRUE if the chunk is present.
+	 */
+	public boolean hasChunk(int chunk) {
+		return chunk >= 0 && chunk < offsets.length;
+	}
+
+	/**
+	 * Get the offset into the bevvy of the given chunk.
+	 * 
+	 * @param chunk The chunk offset.
+	 * @return The offset into the bevvy.
+	 * @throws ArrayIndexOutOfBoundsException If the chunk is not present in this index.
+	 */
+	public long getChunkOffset(int chunk) {
+		return offsets[chunk];
+	}
+
+	/**
+	 * Get the length of the raw chunk.
+	 * 
+	 * @param chunk The chunk offset.
+	 * @return The length of the raw chunk.
+	 * @throws ArrayIndexOutOfBoundsException If the chunk is not present in this index.
+	 */
+	public int getChunkLength(int chunk) {
+		return lengths[chunk];
+	}
+
 	/**
 	 * Get the image point for this region
 	 * 
@@ -107,9 +263,9 @@ public class BevvyIndex {
 	 * @return The image point, or null if none exist.
 	 */
 	public ImageStreamPoint getPoint(int offset) {
-		if (offset < 0 || offset >= entries.length) {
+		if (!hasChunk(offset)) {
 			return null;
 		}
-		return entries[offset];
+		return ImageStreamPoint.create(offsets[offset], lengths[offset]);
 	}
 }
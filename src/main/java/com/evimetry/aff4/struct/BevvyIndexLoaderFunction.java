@@ -16,13 +16,14 @@
  */
 package com.evimetry.aff4.struct;
 
+import java.nio.channels.FileChannel;
 import java.util.function.Function;
 
 import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.evimetry.aff4.container.AFF4ZipContainer;
+import com.evimetry.aff4.container.ContainerIndex;
 
 /**
  * A bevvy loader for the bevvy cache.
@@ -36,31 +37,58 @@ public class BevvyIndexLoaderFunction implements Function<Integer, BevvyIndex> {
 	 */
 	private final String resource;
 	/**
-	 * The parent container file
+	 * The parent container channel
 	 */
-	private final AFF4ZipContainer parent;
+	private final FileChannel channel;
 	/**
 	 * The parent zip container.
 	 */
 	private final ZipFile zipContainer;
+	/**
+	 * The persisted indexes of the parent container, or NULL if not available.
+	 */
+	private final ContainerIndex containerIndex;
 
 	/**
 	 * Create a bevvy loader for the bevvy cache.
 	 * 
 	 * @param resource The resource we are servicing
-	 * @param parent The parent container file
+	 * @param channel The parent container channel
+	 * @param zipContainer The parent zip container.
+	 */
+	public BevvyIndexLoaderFunction(String resource, FileChannel channel, ZipFile zipContainer) {
+		this(resource, channel, zipContainer, null);
+	}
+
+	/**
+	 * Create a bevvy loader for the bevvy cache, using the persisted indexes of the parent container where available.
+	 * 
+	 * @param resource The resource we are servicing
+	 * @param channel The parent container channel
 	 * @param zipContainer The parent zip container.
+	 * @param containerIndex The persisted indexes of the parent container, or NULL if not available.
 	 */
-	public BevvyIndexLoaderFunction(String resource, AFF4ZipContainer parent, ZipFile zipContainer) {
+	public BevvyIndexLoaderFunction(String resource, FileChannel channel, ZipFile zipContainer,
+			ContainerIndex containerIndex) {
 		this.resource = resource;
-		this.parent = parent;
+		this.channel = channel;
 		this.zipContainer = zipContainer;
+		this.containerIndex = containerIndex;
 	}
 
 	@Override
 	public BevvyIndex apply(Integer t) {
 		try {
-			return new BevvyIndex(resource, t, parent, zipContainer);
+			if (containerIndex != null) {
+				BevvyIndex index = containerIndex.getBevvyIndex(resource, t);
+				if (index != null) {
+					return index;
+				}
+				index = new BevvyIndex(resource, t, channel, zipContainer);
+				containerIndex.putBevvyIndex(resource, index);
+				return index;
+			}
+			return new BevvyIndex(resource, t, channel, zipContainer);
 		} catch (Throwable e) {
 			logger.error(e.getMessage(), e);
 		}
@@ -18,36 +18,47 @@ package com.evimetry.aff4.struct;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
+import java.util.Arrays;
 import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.evimetry.aff4.ChunkIntegrityException;
+import com.evimetry.aff4.cache.BufferPool;
+import com.evimetry.aff4.cache.Chunk;
+import com.evimetry.aff4.cache.ChunkCache;
 import com.evimetry.aff4.codec.CompressionCodec;
 import com.evimetry.aff4.container.AFF4ZipContainer;
-import com.github.benmanes.caffeine.cache.Cache;
+import com.evimetry.aff4.container.MappedFile;
 
 /**
  * Function for loading a Chunk into memory for the given offset.
  */
-public class ChunkLoaderFunction implements Function<Long, ByteBuffer> {
+public class ChunkLoaderFunction implements Function<Long, Chunk> {
 
 	private final static Logger logger = LoggerFactory.getLogger(ChunkLoaderFunction.class);
+	/**
+	 * The largest region (in bytes) to read from the container in a single operation.
+	 */
+	private final static int MAX_READ_LENGTH = 4 * 1024 * 1024;
+	/**
+	 * The key of the image stream we are servicing in the chunk cache.
+	 */
+	private final String cacheKey;
 	/**
 	 * The parent container
 	 */
-	@SuppressWarnings("unused")
 	private final AFF4ZipContainer parent;
 	/**
 	 * The channel to load our buffer from
 	 */
 	private final FileChannel channel;
 	/**
-	 * The bevvy cache
+	 * The cache holding bevvy indexes.
 	 */
-	private final Cache<Integer, BevvyIndex> bevvyCache;
+	private final ChunkCache cache;
 	/**
 	 * Loader function for the cache.
 	 */
@@ -64,71 +75,465 @@ public class ChunkLoaderFunction implements Function<Long, ByteBuffer> {
 	 * The compression codec to decompress raw buffers.
 	 */
 	private final CompressionCodec codec;
+	/**
+	 * The verifier for loaded chunks, or NULL if chunks are not verified.
+	 */
+	private final ChunkVerifier verifier;
+	/**
+	 * The detector for chunks containing only zeros, or NULL.
+	 */
+	private final ZeroChunkDetector zeros;
 
 	/**
 	 * Function for loading a Chunk into memory for the given offset.
 	 * 
+	 * @param resource The resource of the image stream we are servicing.
 	 * @param parent The parent container
 	 * @param channel The channel to load our buffer from
-	 * @param bevvyCache The bevvy cache
+	 * @param cache The cache holding bevvy indexes.
 	 * @param bevvyLoader Loader function for the bevvy cache.
 	 * @param chunkSize The chunksize
 	 * @param chunksInSegment The number of chunks per segment
 	 * @param codec The compression codec to decompress raw buffers.
 	 */
-	public ChunkLoaderFunction(AFF4ZipContainer parent, FileChannel channel, Cache<Integer, BevvyIndex> bevvyCache,
+	public ChunkLoaderFunction(String resource, AFF4ZipContainer parent, FileChannel channel, ChunkCache cache,
 			BevvyIndexLoaderFunction bevvyLoader, int chunkSize, int chunksInSegment, CompressionCodec codec) {
+		this(resource, parent, channel, cache, bevvyLoader, chunkSize, chunksInSegment, codec, null);
+	}
+
+	/**
+	 * Function for loading a Chunk into memory for the given offset, verifying each loaded chunk against its block
+	 * hash.
+	 * 
+	 * @param resource The resource of the image stream we are servicing.
+	 * @param parent The parent container
+	 * @param channel The channel to load our buffer from
+	 * @param cache The cache holding bevvy indexes.
+	 * @param bevvyLoader Loader function for the bevvy cache.
+	 * @param chunkSize The chunksize
+	 * @param chunksInSegment The number of chunks per segment
+	 * @param codec The compression codec to decompress raw buffers.
+	 * @param verifier The verifier for loaded chunks, or NULL if chunks are not verified.
+	 */
+	public ChunkLoaderFunction(String resource, AFF4ZipContainer parent, FileChannel channel, ChunkCache cache,
+			BevvyIndexLoaderFunction bevvyLoader, int chunkSize, int chunksInSegment, CompressionCodec codec,
+			ChunkVerifier verifier) {
+		this(resource, parent, channel, cache, bevvyLoader, chunkSize, chunksInSegment, codec, verifier, null);
+	}
+
+	/**
+	 * Function for loading a Chunk into memory for the given offset, verifying each loaded chunk against its block
+	 * hash, and recognising chunks containing only zeros without decompressing them.
+	 * 
+	 * @param resource The resource of the image stream we are servicing.
+	 * @param parent The parent container
+	 * @param channel The channel to load our buffer from
+	 * @param cache The cache holding bevvy indexes.
+	 * @param bevvyLoader Loader function for the bevvy cache.
+	 * @param chunkSize The chunksize
+	 * @param chunksInSegment The number of chunks per segment
+	 * @param codec The compression codec to decompress raw buffers.
+	 * @param verifier The verifier for loaded chunks, or NULL if chunks are not verified.
+	 * @param zeros The detector for chunks containing only zeros, or NULL if zero chunks are not recognised.
+	 */
+	public ChunkLoaderFunction(String resource, AFF4ZipContainer parent, FileChannel channel, ChunkCache cache,
+			BevvyIndexLoaderFunction bevvyLoader, int chunkSize, int chunksInSegment, CompressionCodec codec,
+			ChunkVerifier verifier, ZeroChunkDetector zeros) {
+		this.cacheKey = parent != null ? parent.getCacheKey(resource) : resource;
 		this.parent = parent;
 		this.channel = channel;
-		this.bevvyCache = bevvyCache;
+		this.cache = cache;
 		this.bevvyLoader = bevvyLoader;
 		this.chunksInSegment = chunksInSegment;
 		this.chunkSize = chunkSize;
 		this.codec = codec;
+		this.verifier = verifier;
+		this.zeros = zeros;
 	}
 
 	@Override
-	public ByteBuffer apply(Long offset) {
+	public Chunk apply(Long offset) {
+		return loadAll(offset, 1)[0];
+	}
+
+	/**
+	 * Load a run of consecutive chunks starting at the given offset.
+	 * <p>
+	 * All chunks MUST reside in the same bevvy. Chunks that are stored contiguously in the container are read with a
+	 * single IO operation and then decompressed individually.
+	 * 
+	 * @param offset The stream offset of the first chunk (chunk aligned).
+	 * @param count The number of chunks to load.
+	 * @return An array of chunks, each holding a single reference owned by the caller. Any chunk that failed to load
+	 *         or failed verification will be NULL.
+	 */
+	public Chunk[] loadAll(long offset, int count) {
+		Chunk[] chunks = readAll(offset, count);
+		for (int i = 0; i < count; i++) {
+			if (chunks[i] != null) {
+				long chunkIndex = offset / chunkSize + i;
+				chunks[i] = verify(chunkIndex, decode(chunks[i], codec, chunkIndex));
+			}
+		}
+		return chunks;
+	}
+
+	/**
+	 * Verify a decoded chunk against its block hash, if verification is enabled.
+	 * 
+	 * @param chunkIndex The index of the chunk in the stream.
+	 * @param chunk The decoded chunk, or NULL. Our reference to the chunk is released if it fails verification.
+	 * @return The chunk, or NULL if it was NULL or failed verification.
+	 */
+	public Chunk verify(long chunkIndex, Chunk chunk) {
+		if (chunk == null || verifier == null || verifier.verify(chunkIndex, chunk)) {
+			return chunk;
+		}
+		ChunkIntegrityException failure = verifier.getFailure(chunkIndex);
+		if (failure != null) {
+			logger.error(failure.getMessage());
+		}
+		chunk.release();
+		return null;
+	}
+
+	/**
+	 * Determine if the given chunk is known to contain only zeros. When verifying chunks, the chunk must also have
+	 * passed verification.
+	 * 
+	 * @param chunkIndex The index of the chunk in the stream.
+	 * @return TRUE if the chunk is a known zero chunk.
+	 */
+	public boolean isZero(long chunkIndex) {
+		return zeros != null && zeros.isZero(chunkIndex) && (verifier == null || verifier.isVerified(chunkIndex));
+	}
+
+	/**
+	 * Find the first of a run of consecutive chunks which contains only zeros, or which contains data.
+	 * <p>
+	 * All chunks MUST reside in the same bevvy. Chunks whose stored length is too large to hold only zeros are answered
+	 * from the bevvy index. Smaller chunks are read and compared against the compressed forms of zero chunks seen
+	 * before, and are only decompressed if their compressed form has not been seen. The outcome for each small chunk is
+	 * recorded, so it is only examined once.
+	 * 
+	 * @param offset The stream offset of the first chunk (chunk aligned).
+	 * @param count The number of chunks.
+	 * @param zero TRUE to find a chunk containing only zeros, or FALSE to find a chunk containing data.
+	 * @return The position of the chunk in the run, or -1 if no chunk in the run matches.
+	 */
+	public int findZeroChunk(long offset, int count, boolean zero) {
+		long firstChunk = offset / chunkSize;
+		BevvyIndex index = cache.getBevvyIndex(cacheKey, (int) (firstChunk / chunksInSegment), bevvyLoader);
+		int chunkID = (int) (firstChunk % chunksInSegment);
+		for (int i = 0; i < count; i++) {
+			int length = index != null && index.hasChunk(chunkID + i) ? index.getChunkLength(chunkID + i) : -1;
+			if (isZeroChunk(firstChunk + i, length) == zero) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Find the first of a run of consecutive chunks which is known to contain only zeros, or which is not, without
+	 * reading the bevvy index or any chunk.
+	 * 
+	 * @param offset The stream offset of the first chunk (chunk aligned).
+	 * @param count The number of chunks.
+	 * @param zero TRUE to find a known zero chunk, or FALSE to find a chunk not known to contain only zeros.
+	 * @return The position of the chunk in the run, or -1 if no chunk in the run matches.
+	 */
+	public int findKnownZeroChunk(long offset, int count, boolean zero) {
+		long firstChunk = offset / chunkSize;
+		for (int i = 0; i < count; i++) {
+			if (isZero(firstChunk + i) == zero) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Determine if the given chunk contains only zeros.
+	 * 
+	 * @param chunkIndex The index of the chunk in the stream.
+	 * @param length The stored length of the chunk.
+	 * @return TRUE if the chunk contains only zeros, or FALSE if it contains data or could not be read.
+	 */
+	private boolean isZeroChunk(long chunkIndex, int length) {
+		if (zeros == null || !zeros.isCandidate(length) || zeros.isData(chunkIndex)) {
+			return false;
+		}
+		if (zeros.isZero(chunkIndex)) {
+			return true;
+		}
+		Chunk raw = readAll(chunkIndex * chunkSize, 1)[0];
+		if (raw == null) {
+			return false;
+		}
+		if (zeros.matches(raw)) {
+			raw.release();
+			zeros.mark(chunkIndex);
+			return true;
+		}
+		// Not seen before, so decompress to learn if it is a zero chunk.
+		Chunk chunk = decode(raw, codec, chunkIndex);
+		if (chunk == null) {
+			return false;
+		}
+		chunk.release();
+		if (zeros.isZero(chunkIndex)) {
+			return true;
+		}
+		zeros.markData(chunkIndex);
+		return false;
+	}
+
+	/**
+	 * Get a chunk over the shared zero buffer.
+	 * 
+	 * @return A zero chunk holding a single reference owned by the caller, or NULL if zero chunks are not recognised.
+	 */
+	public Chunk getZeroChunk() {
+		return zeros == null ? null : zeros.getChunk();
+	}
+
+	/**
+	 * Get the verifier for loaded chunks.
+	 * 
+	 * @return The verifier, or NULL if chunks are not verified.
+	 */
+	public ChunkVerifier getVerifier() {
+		return verifier;
+	}
+
+	/**
+	 * Read the raw (possibly compressed) contents of a run of consecutive chunks starting at the given offset.
+	 * <p>
+	 * All chunks MUST reside in the same bevvy. Chunks that are stored contiguously in the container are read with a
+	 * single IO operation, and share the underlying buffer. Use {@link #decode(Chunk, CompressionCodec)} to obtain the
+	 * chunk contents.
+	 * 
+	 * @param offset The stream offset of the first chunk (chunk aligned).
+	 * @param count The number of chunks to read.
+	 * @return An array of raw chunks, each holding a single reference owned by the caller. Any chunk that failed to
+	 *         read will be NULL.
+	 */
+	public Chunk[] readAll(long offset, int count) {
+		Chunk[] chunks = new Chunk[count];
 		// Determine the bevvy ID.
 		long bevvyID = (offset / chunkSize) / chunksInSegment;
-		BevvyIndex index = bevvyCache.get((int) bevvyID, bevvyLoader);
+		BevvyIndex index = cache.getBevvyIndex(cacheKey, (int) bevvyID, bevvyLoader);
 		if (index == null) {
 			logger.error("Failed to read bevvy index");
-			return null;
-		}
-		// Determine the offset into the bevvy index our chunk is.
-		long chunkID = (offset / chunkSize) % chunksInSegment;
-		ImageStreamPoint point = index.getPoint((int) chunkID);
-		if (point == null) {
-			logger.error("Failed to read bevvy index point");
-			return null;
+			return chunks;
 		}
-		long chunkOffset = index.getOffset() + point.getOffset();
-		long chunkLength = point.getLength();
-		try {
-			ByteBuffer buffer = ByteBuffer.allocateDirect((int) chunkLength).order(ByteOrder.LITTLE_ENDIAN);
-			int toRead = (int)chunkLength;
-			// In all typical circumstances this should be a single read, but be careful otherwise.
-			while(toRead >= 0){
-				int read = channel.read(buffer, chunkOffset);
-				if(read <= 0){
+		// Determine the offset into the bevvy index our first chunk is.
+		int chunkID = (int) ((offset / chunkSize) % chunksInSegment);
+		int i = 0;
+		while (i < count) {
+			int first = chunkID + i;
+			if (!index.hasChunk(first)) {
+				logger.error("Failed to read bevvy index point");
+				return chunks;
+			}
+			// Determine the run of chunks that follow each other in the bevvy.
+			int run = 1;
+			long runLength = index.getChunkLength(first);
+			while (i + run < count) {
+				int next = first + run;
+				if (!index.hasChunk(next) || index.getChunkOffset(next) != index.getChunkOffset(first) + runLength
+						|| runLength + index.getChunkLength(next) > MAX_READ_LENGTH) {
 					break;
 				}
-				toRead -= read;
-				chunkOffset += read;
+				runLength += index.getChunkLength(next);
+				run++;
+			}
+			try {
+				Chunk region = read(index.getOffset() + index.getChunkOffset(first), (int) runLength);
+				try {
+					int position = 0;
+					for (int j = 0; j < run; j++) {
+						int chunkLength = index.getChunkLength(first + j);
+						chunks[i + j] = region.slice(position, chunkLength);
+						position += chunkLength;
+					}
+				} finally {
+					region.release();
+				}
+			} catch (Throwable e) {
+				logger.error(e.getMessage(), e);
+			}
+			i += run;
+		}
+		return chunks;
+	}
+
+	/**
+	 * Get the stored lengths of a run of consecutive chunks from the bevvy index, without reading the chunks.
+	 * <p>
+	 * All chunks MUST reside in the same bevvy. The bevvy index is loaded directly rather than via the chunk cache, so
+	 * scanning a whole stream does not displace cached chunks.
+	 * 
+	 * @param offset The stream offset of the first chunk (chunk aligned).
+	 * @param count The number of chunks.
+	 * @return The stored length of each chunk, which is the chunk size for chunks stored uncompressed. Chunks that
+	 *         could not be located are -1.
+	 */
+	public int[] getChunkLengths(long offset, int count) {
+		int[] lengths = new int[count];
+		Arrays.fill(lengths, -1);
+		long firstChunk = offset / chunkSize;
+		BevvyIndex index = bevvyLoader.apply((int) (firstChunk / chunksInSegment));
+		if (index == null) {
+			return lengths;
+		}
+		int chunkID = (int) (firstChunk % chunksInSegment);
+		for (int i = 0; i < count; i++) {
+			if (index.hasChunk(chunkID + i)) {
+				lengths[i] = index.getChunkLength(chunkID + i);
+			}
+		}
+		return lengths;
+	}
+
+	/**
+	 * Get the container offsets of a run of consecutive chunks that are stored uncompressed, such that their contents
+	 * may be transferred directly from the container channel.
+	 * <p>
+	 * All chunks MUST reside in the same bevvy. When verifying chunks, only chunks that have already passed
+	 * verification are considered.
+	 * 
+	 * @param offset The stream offset of the first chunk (chunk aligned).
+	 * @param count The number of chunks.
+	 * @return An array of offsets in the container channel. Chunks that are compressed, not yet verified or could not be
+	 *         located are -1.
+	 */
+	public long[] getStoredOffsets(long offset, int count) {
+		long[] offsets = new long[count];
+		Arrays.fill(offsets, -1);
+		long firstChunk = offset / chunkSize;
+		BevvyIndex index = cache.getBevvyIndex(cacheKey, (int) (firstChunk / chunksInSegment), bevvyLoader);
+		if (index == null) {
+			return offsets;
+		}
+		int chunkID = (int) (firstChunk % chunksInSegment);
+		for (int i = 0; i < count; i++) {
+			if (index.hasChunk(chunkID + i) && index.getChunkLength(chunkID + i) == chunkSize
+					&& (verifier == null || verifier.isVerified(firstChunk + i))) {
+				offsets[i] = index.getOffset() + index.getChunkOffset(chunkID + i);
 			}
-			buffer.flip();
-			if (toRead > 0) {
-				throw new IOException("Failed to read");
+		}
+		return offsets;
+	}
+
+	/**
+	 * Decode a raw chunk as returned by {@link #readAll(long, int)}.
+	 * <p>
+	 * Chunks whose raw length is the chunk size are stored uncompressed, and are returned as is. Chunks recognised as
+	 * containing only zeros are returned as a chunk over the shared zero buffer. Otherwise the reference to the raw
+	 * chunk is released once decompressed.
+	 * 
+	 * @param raw The raw chunk. Ownership of the caller's reference passes to this method.
+	 * @param codec The codec to decompress with. Callers decoding on multiple threads may supply their own instance.
+	 * @return The chunk contents holding a single reference owned by the caller, or NULL if decompression failed.
+	 */
+	public Chunk decode(Chunk raw, CompressionCodec codec) {
+		return decode(raw, codec, -1);
+	}
+
+	/**
+	 * Decode a raw chunk, recording the chunk if it contains only zeros.
+	 * 
+	 * @param raw The raw chunk. Ownership of the caller's reference passes to this method.
+	 * @param codec The codec to decompress with.
+	 * @param chunkIndex The index of the chunk in the stream, or -1 if not to be recorded.
+	 * @return The chunk contents holding a single reference owned by the caller, or NULL if decompression failed.
+	 */
+	private Chunk decode(Chunk raw, CompressionCodec codec, long chunkIndex) {
+		if (raw.getLength() == chunkSize) {
+			// Stored chunks may be slices of a larger read, which must not be pinned while the chunk is cached.
+			return raw.compact(cache.getBufferPool());
+		}
+		try {
+			if (zeros != null && zeros.matches(raw)) {
+				return zero(chunkIndex);
 			}
-			// now decompress if the buffer is not chunk length;
-			if (chunkLength != chunkSize) {
-				return codec.decompress(buffer);
+			Chunk chunk = codec.decompress(raw.getData(), cache.getBufferPool());
+			if (zeros != null && zeros.learn(raw, chunk)) {
+				chunk.release();
+				return zero(chunkIndex);
 			}
-			return buffer;
+			return chunk;
 		} catch (Throwable e) {
 			logger.error(e.getMessage(), e);
+		} finally {
+			raw.release();
 		}
 		return null;
 	}
+
+	/**
+	 * Record the given chunk as containing only zeros.
+	 * 
+	 * @param chunkIndex The index of the chunk in the stream, or -1 if not to be recorded.
+	 * @return A chunk over the shared zero buffer.
+	 */
+	private Chunk zero(long chunkIndex) {
+		if (chunkIndex >= 0) {
+			zeros.mark(chunkIndex);
+		}
+		return zeros.getChunk();
+	}
+
+	/**
+	 * Get the compression codec used by this loader.
+	 * 
+	 * @return The compression codec.
+	 */
+	public CompressionCodec getCodec() {
+		return codec;
+	}
+
+	/**
+	 * Read the raw region of the container, as a slice of the memory mapping if enabled, otherwise into a buffer
+	 * acquired from the buffer pool.
+	 * 
+	 * @param offset The offset in the container channel.
+	 * @param length The number of bytes to read.
+	 * @return A chunk containing the region, holding a single reference owned by the caller.
+	 * @throws IOException If reading the region failed.
+	 */
+	private Chunk read(long offset, int length) throws IOException {
+		MappedFile mappedFile = parent.getMappedFile();
+		if (mappedFile != null) {
+			ByteBuffer slice = mappedFile.slice(offset, length);
+			if (slice != null) {
+				return Chunk.wrap(slice);
+			}
+		}
+		BufferPool pool = cache.getBufferPool();
+		ByteBuffer buffer = pool.acquire(length);
+		int toRead = length;
+		// In all typical circumstances this should be a single read, but be careful otherwise.
+		try {
+			while (toRead > 0) {
+				int read = channel.read(buffer, offset);
+				if (read <= 0) {
+					break;
+				}
+				toRead -= read;
+				offset += read;
+			}
+		} catch (IOException | RuntimeException e) {
+			pool.release(buffer);
+			throw e;
+		}
+		buffer.flip();
+		if (toRead > 0) {
+			pool.release(buffer);
+			throw new IOException("Failed to read");
+		}
+		return Chunk.pooled(buffer, pool);
+	}
 }
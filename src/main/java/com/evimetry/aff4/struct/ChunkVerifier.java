@@ -0,0 +1,276 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.struct;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+import com.evimetry.aff4.AFF4Lexicon;
+import com.evimetry.aff4.ChunkIntegrityException;
+import com.evimetry.aff4.cache.Chunk;
+import com.evimetry.aff4.digest.DigestEngine;
+import com.evimetry.aff4.rdf.NameCodec;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Verifies decompressed chunks of an image stream against the stored <code>&lt;bevvy&gt;.blockHash.&lt;type&gt;</code>
+ * segments.
+ * <p>
+ * A single block hash type is used, being the strongest type that is both stored and supported. Chunks that pass are
+ * recorded, so that a chunk is only hashed once for the life of the verifier, regardless of how often it is reloaded.
+ * Chunks that fail are recorded with the failure, for the reader to report.
+ */
+public class ChunkVerifier {
+
+	/**
+	 * The block hash types in order of preference.
+	 */
+	private final static AFF4Lexicon[] PREFERRED_TYPES = { AFF4Lexicon.SHA512, AFF4Lexicon.Blake2b,
+			AFF4Lexicon.SHA256, AFF4Lexicon.SHA1, AFF4Lexicon.MD5 };
+	/**
+	 * The number of block hash segments to retain.
+	 */
+	private final static int SEGMENT_CACHE_SIZE = 64;
+
+	/**
+	 * The resource of the image stream we are servicing.
+	 */
+	private final String resource;
+	/**
+	 * The parent container channel.
+	 */
+	private final FileChannel channel;
+	/**
+	 * The parent zip container.
+	 */
+	private final ZipFile zipContainer;
+	/**
+	 * The chunk size.
+	 */
+	private final long chunkSize;
+	/**
+	 * The number of chunks per segment.
+	 */
+	private final int chunksInSegment;
+	/**
+	 * The block hash type used, or NULL if none is available.
+	 */
+	private final AFF4Lexicon type;
+	/**
+	 * The digest for the block hash type, per thread.
+	 */
+	private final ThreadLocal<MessageDigest> digest;
+	/**
+	 * Bitmap of chunks which have passed verification.
+	 */
+	private final AtomicLongArray verified;
+	/**
+	 * Chunks which have failed verification.
+	 */
+	private final Map<Long, ChunkIntegrityException> failures = new ConcurrentHashMap<>();
+	/**
+	 * Recently used block hash segments, by bevvy ID.
+	 */
+	private final Cache<Integer, byte[]> segments = Caffeine.newBuilder().maximumSize(SEGMENT_CACHE_SIZE).build();
+
+	/**
+	 * Create a new chunk verifier.
+	 * 
+	 * @param resource The resource of the image stream we are servicing.
+	 * @param channel The parent container channel.
+	 * @param zipContainer The parent zip container.
+	 * @param chunkSize The chunk size.
+	 * @param chunksInSegment The number of chunks per segment.
+	 * @param size The size of the image stream.
+	 */
+	public ChunkVerifier(String resource, FileChannel channel, ZipFile zipContainer, int chunkSize,
+			int chunksInSegment, long size) {
+		this.resource = resource;
+		this.channel = channel;
+		this.zipContainer = zipContainer;
+		this.chunkSize = chunkSize;
+		this.chunksInSegment = chunksInSegment;
+		long chunks = (size + chunkSize - 1) / chunkSize;
+		this.verified = new AtomicLongArray(Math.toIntExact((chunks + 63) / 64));
+		AFF4Lexicon found = null;
+		for (AFF4Lexicon candidate : PREFERRED_TYPES) {
+			if (zipContainer.getEntry(getSegmentName(candidate, 0)) != null && getDigest(candidate) != null) {
+				found = candidate;
+				break;
+			}
+		}
+		this.type = found;
+		this.digest = ThreadLocal.withInitial(() -> getDigest(type));
+	}
+
+	/**
+	 * Get the block hash type chunks are verified against.
+	 * 
+	 * @return The hash data type, or NULL if the stream has no supported block hashes.
+	 */
+	public AFF4Lexicon getType() {
+		return type;
+	}
+
+	/**
+	 * Determine if the given chunk has passed verification.
+	 * 
+	 * @param chunkIndex The index of the chunk.
+	 * @return TRUE if the chunk has been verified.
+	 */
+	public boolean isVerified(long chunkIndex) {
+		int word = (int) (chunkIndex >>> 6);
+		return word < verified.length() && (verified.get(word) & (1L << chunkIndex)) != 0;
+	}
+
+	/**
+	 * Verify the given chunk against its block hash, unless it has already passed verification.
+	 * 
+	 * @param chunkIndex The index of the chunk.
+	 * @param chunk The decompressed chunk.
+	 * @return TRUE if the chunk is valid. Otherwise the failure is available via {@link #getFailure(long)}.
+	 */
+	public boolean verify(long chunkIndex, Chunk chunk) {
+		if (isVerified(chunkIndex)) {
+			return true;
+		}
+		long offset = chunkIndex * chunkSize;
+		if (type == null) {
+			failures.put(chunkIndex,
+					new ChunkIntegrityException("No supported block hashes", resource, chunkIndex, offset, null));
+			return false;
+		}
+		byte[] segment;
+		try {
+			segment = segments.get((int) (chunkIndex / chunksInSegment), this::readSegment);
+		} catch (UncheckedIOException e) {
+			failures.put(chunkIndex,
+					new ChunkIntegrityException("Unable to read block hash", resource, chunkIndex, offset, type));
+			return false;
+		}
+		MessageDigest md = digest.get();
+		md.update(chunk.getData());
+		byte[] hash = md.digest();
+		int position = (int) (chunkIndex % chunksInSegment) * hash.length;
+		if (!matches(segment, position, hash)) {
+			failures.put(chunkIndex,
+					new ChunkIntegrityException("Block hash mismatch", resource, chunkIndex, offset, type));
+			return false;
+		}
+		int word = (int) (chunkIndex >>> 6);
+		long bit = 1L << chunkIndex;
+		long current;
+		do {
+			current = verified.get(word);
+		} while ((current & bit) == 0 && !verified.compareAndSet(word, current, current | bit));
+		failures.remove(chunkIndex);
+		return true;
+	}
+
+	/**
+	 * Get the failure recorded for the given chunk.
+	 * 
+	 * @param chunkIndex The index of the chunk.
+	 * @return The failure, or NULL if the chunk has not failed verification.
+	 */
+	public ChunkIntegrityException getFailure(long chunkIndex) {
+		return failures.get(chunkIndex);
+	}
+
+	/**
+	 * Read the block hash segment of the given bevvy.
+	 * 
+	 * @param bevvyID The bevvy ID.
+	 * @return The segment contents.
+	 * @throws UncheckedIOException If the segment is missing, or reading it failed.
+	 */
+	private byte[] readSegment(int bevvyID) {
+		ZipArchiveEntry entry = zipContainer.getEntry(getSegmentName(type, bevvyID));
+		try {
+			if (entry == null) {
+				throw new IOException("Missing block hash segment");
+			}
+			ByteBuffer buffer = BevvyIndex.readEntry(entry, channel, zipContainer);
+			byte[] contents = new byte[buffer.remaining()];
+			buffer.get(contents);
+			return contents;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Get the zip entry name of the block hash segment for the given type and bevvy.
+	 * 
+	 * @param type The block hash type.
+	 * @param bevvyID The bevvy ID.
+	 * @return The entry name.
+	 */
+	private String getSegmentName(AFF4Lexicon type, int bevvyID) {
+		String value = type.getValue();
+		String suffix = value.substring(value.lastIndexOf('#') + 1).toLowerCase();
+		return NameCodec.encode(String.format("%s/%08d.blockHash.%s", resource, bevvyID, suffix));
+	}
+
+	/**
+	 * Determine if the given hash is held in the block hash segment at the given position.
+	 * 
+	 * @param segment The block hash segment.
+	 * @param position The position of the chunk's hash in the segment.
+	 * @param hash The computed hash.
+	 * @return TRUE if the stored hash matches.
+	 */
+	private static boolean matches(byte[] segment, int position, byte[] hash) {
+		if (position + hash.length > segment.length) {
+			return false;
+		}
+		for (int i = 0; i < hash.length; i++) {
+			if (segment[position + i] != hash[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Get a new message digest for the given hash type.
+	 * 
+	 * @param type The hash type.
+	 * @return The message digest, or NULL if the type is not supported.
+	 */
+	private static MessageDigest getDigest(AFF4Lexicon type) {
+		if (type == null) {
+			return null;
+		}
+		try {
+			return DigestEngine.getMessageDigest(DigestEngine.getAlgorithm(type));
+		} catch (IllegalArgumentException | NoSuchAlgorithmException e) {
+			return null;
+		}
+	}
+}
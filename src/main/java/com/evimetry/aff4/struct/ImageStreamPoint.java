@@ -48,6 +48,20 @@ public class ImageStreamPoint implements Comparable<ImageStreamPoint> {
 		return null;
 	}
 
+	/**
+	 * Create a new Image Point from the given values.
+	 * 
+	 * @param offset The offset into the bevvy.
+	 * @param length The length of the raw chunk.
+	 * @return A new ImageStreamPoint instance.
+	 */
+	public static ImageStreamPoint create(long offset, int length) {
+		ImageStreamPoint point = new ImageStreamPoint();
+		point.offset = offset;
+		point.length = length;
+		return point;
+	}
+
 	/**
 	 * Get the offset into the bevvy that this entry represents.
 	 * 
@@ -17,7 +17,8 @@
 package com.evimetry.aff4.struct;
 
 import java.nio.ByteBuffer;
-import java.nio.channels.SeekableByteChannel;
+
+import com.evimetry.aff4.IAFF4ImageStream;
 
 public class MapEntryPoint implements Comparable<MapEntryPoint> {
 
@@ -40,7 +41,7 @@ public class MapEntryPoint implements Comparable<MapEntryPoint> {
 	/**
 	 * The actual stream.
 	 */
-	private SeekableByteChannel stream;
+	private IAFF4ImageStream stream;
 
 	/**
 	 * Create a new Map Entry Point
@@ -53,7 +54,7 @@ public class MapEntryPoint implements Comparable<MapEntryPoint> {
 	 * @return A new map point.
 	 */
 	public static MapEntryPoint create(long offset, long length, long streamOffset, int streamID,
-			SeekableByteChannel stream) {
+			IAFF4ImageStream stream) {
 		MapEntryPoint point = new MapEntryPoint();
 		point.offset = offset;
 		point.length = length;
@@ -86,7 +87,7 @@ public class MapEntryPoint implements Comparable<MapEntryPoint> {
 	 * 
 	 * @return The stream to read from this entry
 	 */
-	public SeekableByteChannel getStream() {
+	public IAFF4ImageStream getStream() {
 		return stream;
 	}
 
@@ -95,7 +96,7 @@ public class MapEntryPoint implements Comparable<MapEntryPoint> {
 	 * 
 	 * @param stream The stream to set for this entry
 	 */
-	public void setStream(SeekableByteChannel stream) {
+	public void setStream(IAFF4ImageStream stream) {
 		this.stream = stream;
 	}
 
@@ -0,0 +1,238 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.struct;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.evimetry.aff4.cache.Chunk;
+
+/**
+ * Recognises chunks of an image stream that contain only zeros from their compressed form.
+ * <p>
+ * The compressed form of an all-zero chunk depends on the codec and the settings of the application that wrote the
+ * image, so it is learnt at runtime. Whenever a small compressed chunk decompresses to zeros, its compressed form is
+ * recorded as a signature. Later chunks matching a signature are recognised without decompression. All recognised
+ * chunks share a single read-only zero buffer for the chunk size, and are recorded so that they need not be read
+ * again. Small chunks found to hold data are also recorded, so that they need not be examined again.
+ */
+public class ZeroChunkDetector {
+
+	/**
+	 * The maximum number of signatures to learn.
+	 */
+	private final static int MAX_SIGNATURES = 4;
+	/**
+	 * The shared zero chunk contents for each chunk size.
+	 */
+	private final static Map<Integer, ByteBuffer> ZERO_BUFFERS = new ConcurrentHashMap<>();
+
+	/**
+	 * The chunk size.
+	 */
+	private final int chunkSize;
+	/**
+	 * The largest compressed chunk considered as a zero chunk.
+	 */
+	private final int maxSignatureLength;
+	/**
+	 * The shared zero chunk contents.
+	 */
+	private final ByteBuffer zeros;
+	/**
+	 * Bitmap of chunks which are known to contain only zeros.
+	 */
+	private final AtomicLongArray known;
+	/**
+	 * Bitmap of chunks small enough to be zero chunks which are known to contain data.
+	 */
+	private final AtomicLongArray data;
+	/**
+	 * The compressed forms of a zero chunk seen so far.
+	 */
+	private volatile byte[][] signatures = new byte[0][];
+
+	/**
+	 * Create a new zero chunk detector.
+	 * 
+	 * @param chunkSize The chunk size.
+	 * @param size The size of the image stream.
+	 */
+	public ZeroChunkDetector(int chunkSize, long size) {
+		this.chunkSize = chunkSize;
+		// Zeros compress to a small fraction of the chunk with every supported codec.
+		this.maxSignatureLength = Math.max(64, chunkSize / 8);
+		this.zeros = ZERO_BUFFERS.computeIfAbsent(chunkSize, n -> ByteBuffer.allocateDirect(n).asReadOnlyBuffer());
+		long chunks = (size + chunkSize - 1) / chunkSize;
+		this.known = new AtomicLongArray(Math.toIntExact((chunks + 63) / 64));
+		this.data = new AtomicLongArray(known.length());
+	}
+
+	/**
+	 * Determine if a compressed chunk of the given length may be a zero chunk.
+	 * 
+	 * @param length The length of the compressed chunk.
+	 * @return TRUE if the chunk is small enough to be a zero chunk.
+	 */
+	public boolean isCandidate(int length) {
+		return length > 0 && length <= maxSignatureLength && length != chunkSize;
+	}
+
+	/**
+	 * Determine if the raw chunk matches the compressed form of a zero chunk seen before.
+	 * 
+	 * @param raw The raw (compressed) chunk.
+	 * @return TRUE if the chunk is known to decompress to zeros.
+	 */
+	public boolean matches(Chunk raw) {
+		int length = raw.getLength();
+		if (!isCandidate(length)) {
+			return false;
+		}
+		for (byte[] signature : signatures) {
+			if (signature.length == length && raw.getData().equals(ByteBuffer.wrap(signature))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Learn the compressed form of a zero chunk from a decompressed chunk.
+	 * 
+	 * @param raw The raw (compressed) chunk.
+	 * @param decoded The decompressed chunk.
+	 * @return TRUE if the decompressed chunk contains only zeros.
+	 */
+	public boolean learn(Chunk raw, Chunk decoded) {
+		if (!isCandidate(raw.getLength()) || decoded.getLength() != chunkSize || !isZero(decoded.getData())) {
+			return false;
+		}
+		synchronized (this) {
+			if (signatures.length < MAX_SIGNATURES && !matches(raw)) {
+				byte[] signature = new byte[raw.getLength()];
+				raw.getData().get(signature);
+				byte[][] updated = Arrays.copyOf(signatures, signatures.length + 1);
+				updated[signatures.length] = signature;
+				signatures = updated;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Get a chunk over the shared zero buffer.
+	 * 
+	 * @return A zero chunk holding a single reference owned by the caller. The contents are read-only.
+	 */
+	public Chunk getChunk() {
+		return Chunk.wrap(zeros);
+	}
+
+	/**
+	 * Record the given chunk as containing only zeros.
+	 * 
+	 * @param chunkIndex The index of the chunk.
+	 */
+	public void mark(long chunkIndex) {
+		set(known, chunkIndex);
+	}
+
+	/**
+	 * Determine if the given chunk is known to contain only zeros.
+	 * 
+	 * @param chunkIndex The index of the chunk.
+	 * @return TRUE if the chunk has been recognised as a zero chunk.
+	 */
+	public boolean isZero(long chunkIndex) {
+		return get(known, chunkIndex);
+	}
+
+	/**
+	 * Record the given chunk as containing data, despite being small enough to be a zero chunk.
+	 * 
+	 * @param chunkIndex The index of the chunk.
+	 */
+	public void markData(long chunkIndex) {
+		set(data, chunkIndex);
+	}
+
+	/**
+	 * Determine if the given chunk is known to contain data.
+	 * 
+	 * @param chunkIndex The index of the chunk.
+	 * @return TRUE if the chunk has been recorded as containing data.
+	 */
+	public boolean isData(long chunkIndex) {
+		return get(data, chunkIndex);
+	}
+
+	/**
+	 * Set the bit for the given chunk in a bitmap.
+	 * 
+	 * @param bitmap The bitmap.
+	 * @param chunkIndex The index of the chunk.
+	 */
+	private static void set(AtomicLongArray bitmap, long chunkIndex) {
+		int word = (int) (chunkIndex >>> 6);
+		if (word >= bitmap.length()) {
+			return;
+		}
+		long bit = 1L << chunkIndex;
+		long current;
+		do {
+			current = bitmap.get(word);
+		} while ((current & bit) == 0 && !bitmap.compareAndSet(word, current, current | bit));
+	}
+
+	/**
+	 * Get the bit for the given chunk in a bitmap.
+	 * 
+	 * @param bitmap The bitmap.
+	 * @param chunkIndex The index of the chunk.
+	 * @return TRUE if the bit is set.
+	 */
+	private static boolean get(AtomicLongArray bitmap, long chunkIndex) {
+		int word = (int) (chunkIndex >>> 6);
+		return word < bitmap.length() && (bitmap.get(word) & (1L << chunkIndex)) != 0;
+	}
+
+	/**
+	 * Determine if the buffer contains only zeros.
+	 * 
+	 * @param data The buffer, from position 0 to the limit.
+	 * @return TRUE if all bytes are zero.
+	 */
+	private static boolean isZero(ByteBuffer data) {
+		int length = data.limit();
+		int i = 0;
+		for (; i + 8 <= length; i += 8) {
+			if (data.getLong(i) != 0) {
+				return false;
+			}
+		}
+		for (; i < length; i++) {
+			if (data.get(i) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
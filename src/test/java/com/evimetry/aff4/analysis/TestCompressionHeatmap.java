@@ -0,0 +1,175 @@
+/*
+  This file is part of AFF4 Java.
+  
+  Copyright (c) 2017-2019 Schatz Forensic Pty Ltd
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+	
+	    http://www.apache.org/licenses/LICENSE-2.0
+	
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.evimetry.aff4.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.evimetry.aff4.Containers;
+import com.evimetry.aff4.IAFF4Container;
+import com.evimetry.aff4.IAFF4Map;
+import com.evimetry.aff4.container.AFF4ZipContainer;
+import com.evimetry.aff4.container.ContainerFixtures;
+import com.evimetry.aff4.container.TestContainer;
+import com.evimetry.aff4.imagestream.AFF4ImageStream;
+
+/**
+ * Tests for the compression heatmap analysis.
+ */
+public class TestCompressionHeatmap {
+
+	private final String file_1 = "/Base-Linear.aff4";
+	private final String stream_1 = "aff4://c215ba20-5648-4209-a793-1f918c723610";
+	private final int chunkSize = 32768;
+
+	private final String file_2 = "/Base-Allocated.aff4";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Test the analysis of a stream matches the stored chunk lengths of its bevvy index.
+	 * 
+	 * @throws Exception something went wrong.
+	 */
+	@Test
+	public void testStream() throws Exception {
+		try (IAFF4Container container = open(file_1)) {
+			AFF4ImageStream stream = (AFF4ImageStream) ((AFF4ZipContainer) container).getImageStream(stream_1);
+			List<HeatmapBucket> buckets = new CompressionHeatmap(1024 * 1024).analyse(stream);
+			assertEquals(4, buckets.size());
+			HeatmapBucket total = CompressionHeatmap.total(buckets);
+			assertEquals(stream.size(), total.getLength());
+			assertEquals(stream.size(), total.getDataBytes());
+			assertEquals(0, total.getHoleBytes());
+			assertEquals(0, total.getUnknownBytes());
+			assertEquals(3047794, total.getStoredBytes());
+			assertEquals(16 * chunkSize, total.getSparseBytes());
+			assertEquals(67 * chunkSize, total.getIncompressibleBytes());
+			assertEquals(HeatmapBucket.Kind.COMPRESSIBLE, total.getKind());
+		}
+	}
+
+	/**
+	 * Test the chunk lengths of a stream span bevvy boundaries.
+	 * 
+	 * @throws Exception something went wrong.
+	 */
+	@Test
+	public void testChunkLengths() throws Exception {
+		try (IAFF4Container container = open(file_1)) {
+			AFF4ImageStream stream = (AFF4ImageStream) ((AFF4ZipContainer) container).getImageStream(stream_1);
+			int[] lengths = stream.getChunkLengths(0, 122);
+			long sum = 0;
+			for (int i = 0; i < 121; i++) {
+				assertTrue(lengths[i] > 0 && lengths[i] <= chunkSize);
+				sum += lengths[i];
+			}
+			assertEquals(3047794, sum);
+			// Beyond the end of the stream.
+			assertEquals(-1, lengths[121]);
+		}
+	}
+
+	/**
+	 * Test the analysis of images accounts every byte of the image.
+	 * 
+	 * @throws Exception something went wrong.
+	 */
+	@Test
+	public void testMap() throws Exception {
+		testMap(file_1);
+		testMap(file_2);
+	}
+
+	/**
+	 * Test the analysis of a map does not read any chunk, and so does not depend on which chunks have been read.
+	 * 
+	 * @throws Exception something went wrong.
+	 */
+	@Test
+	public void testMapReadsNoChunks() throws Exception {
+		File file = ContainerFixtures.createZeroChunkContainer(folder.newFile("zero-chunks.aff4"));
+		try (IAFF4Container container = Containers.open(file)) {
+			IAFF4Map map = container.getImages().next().getMap();
+			// The stream instance backing the map.
+			AFF4ImageStream stream = (AFF4ImageStream) map.getExtents(0).next().getStream();
+			assertEquals(stream_1, stream.getResourceID());
+			CompressionHeatmap heatmap = new CompressionHeatmap(1024 * 1024);
+			HeatmapBucket before = CompressionHeatmap.total(heatmap.analyse(map));
+			// The first two chunks hold only zeros, but have not been examined.
+			assertFalse(stream.isKnownZeroChunk(0));
+			assertFalse(stream.isKnownZeroChunk(1));
+
+			assertEquals(2 * chunkSize, stream.seekData(0));
+			assertTrue(stream.isKnownZeroChunk(0));
+			HeatmapBucket after = CompressionHeatmap.total(heatmap.analyse(map));
+			assertEquals(before.getHoleBytes(), after.getHoleBytes());
+			assertEquals(before.getDataBytes(), after.getDataBytes());
+			assertEquals(before.getStoredBytes(), after.getStoredBytes());
+			assertEquals(before.getSparseBytes(), after.getSparseBytes());
+		}
+	}
+
+	/**
+	 * Test invalid bucket sizes.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidBucketSize() {
+		new CompressionHeatmap(0);
+	}
+
+	private void testMap(String resource) throws Exception {
+		try (IAFF4Container container = open(resource)) {
+			IAFF4Map map = container.getImages().next().getMap();
+			CompressionHeatmap heatmap = new CompressionHeatmap(16 * 1024 * 1024 + 512);
+			List<HeatmapBucket> buckets = heatmap.analyse(map);
+			long offset = 0;
+			for (HeatmapBucket bucket : buckets) {
+				assertEquals(offset, bucket.getOffset());
+				assertEquals(bucket.getLength(),
+						bucket.getDataBytes() + bucket.getHoleBytes() + bucket.getUnknownBytes());
+				assertTrue(bucket.getStoredBytes() <= bucket.getDataBytes());
+				if (bucket.getDataBytes() == 0) {
+					assertEquals(HeatmapBucket.Kind.EMPTY, bucket.getKind());
+				}
+				offset += bucket.getLength();
+			}
+			assertEquals(map.size(), offset);
+			HeatmapBucket total = CompressionHeatmap.total(buckets);
+			assertTrue(total.getDataBytes() > 0);
+			assertTrue(total.getHoleBytes() > 0);
+			assertEquals(HeatmapBucket.Kind.SPARSE, total.getKind());
+		}
+	}
+
+	private IAFF4Container open(String resource) throws Exception {
+		URL url = TestContainer.class.getResource(resource);
+		File file = Paths.get(url.toURI()).toFile();
+		return Containers.open(file);
+	}
+}
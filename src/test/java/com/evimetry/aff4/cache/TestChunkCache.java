@@ -0,0 +1,261 @@
+/*
+  This file is part of AFF4 Java.
+  
+  Copyright (c) 2017-2019 Schatz Forensic Pty Ltd
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+	
+	    http://www.apache.org/licenses/LICENSE-2.0
+	
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+
+package com.evimetry.aff4.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.evimetry.aff4.Containers;
+import com.evimetry.aff4.IAFF4Container;
+import com.evimetry.aff4.container.AFF4ZipContainer;
+import com.evimetry.aff4.container.TestContainer;
+
+public class TestChunkCache {
+
+	private final String file_1 = "/Base-Linear.aff4";
+	private final String stream_1 = "aff4://c215ba20-5648-4209-a793-1f918c723610";
+	private final String streamSHA1_1 = "fbac22cca549310bc5df03b7560afcf490995fbb";
+
+	private final String file_2 = "/Base-Allocated.aff4";
+	private final String stream_2 = "aff4://fce3df71-dce8-4a17-af67-36bed58f25c9";
+	private final String streamSHA1_2 = "eb6aa5ba18ec68e94ddc9e7a06871127dcafdaa6";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Test the cache is bounded by the size of the data held, not the number of entries.
+	 */
+	@Test
+	public void testWeightedEviction() {
+		ChunkCache cache = ChunkCache.create(64 * 1024);
+		for (int i = 0; i < 16; i++) {
+			Chunk chunk = Chunk.wrap(ByteBuffer.allocate(32 * 1024));
+			cache.putChunk("aff4://stream", i, chunk);
+			chunk.release();
+		}
+		assertTrue(cache.getSize() <= cache.getMaximumSize());
+		cache.invalidateAll();
+		assertEquals(0, cache.getSize());
+	}
+
+	/**
+	 * Test entries are keyed by stream as well as by chunk.
+	 */
+	@Test
+	public void testStreamKeys() {
+		ChunkCache cache = ChunkCache.create(1024 * 1024);
+		Chunk chunk = Chunk.wrap(ByteBuffer.allocate(1024));
+		cache.putChunk("aff4://stream1", 0, chunk);
+		chunk.release();
+		Chunk cached = cache.getChunk("aff4://stream1", 0);
+		assertNotNull(cached);
+		cached.release();
+		assertNull(cache.getChunk("aff4://stream1", 1));
+		assertNull(cache.getChunk("aff4://stream2", 0));
+		cache.invalidate("aff4://stream1");
+		assertNull(cache.getChunk("aff4://stream1", 0));
+	}
+
+	/**
+	 * Test pooled chunks are only returned to the pool once evicted from the cache and released by all readers.
+	 */
+	@Test
+	public void testPooledEviction() {
+		BufferPool pool = new BufferPool(1024 * 1024);
+		ChunkCache cache = ChunkCache.create(32 * 1024, pool);
+		assertTrue(cache.getBufferPool() == pool);
+		ByteBuffer buffer = pool.acquire(32 * 1024);
+		assertEquals(32 * 1024, buffer.remaining());
+		Chunk chunk = Chunk.pooled(buffer, pool);
+		cache.putChunk("aff4://stream", 0, chunk);
+		chunk.release();
+
+		// Hold a reader reference while the chunk is evicted.
+		Chunk reader = cache.getChunk("aff4://stream", 0);
+		assertNotNull(reader);
+		cache.invalidateAll();
+		assertNull(cache.getChunk("aff4://stream", 0));
+		assertEquals(0, pool.getSize());
+		reader.release();
+		assertEquals(32 * 1024, pool.getSize());
+		assertFalse(reader.retain());
+
+		// The buffer is reused.
+		assertTrue(pool.acquire(20 * 1024) == buffer);
+		assertEquals(0, pool.getSize());
+	}
+
+	/**
+	 * Test slices hold a reference to their parent chunk.
+	 */
+	@Test
+	public void testSlices() {
+		BufferPool pool = new BufferPool(1024 * 1024);
+		Chunk region = Chunk.pooled(pool.acquire(8192), pool);
+		Chunk first = region.slice(0, 4096);
+		Chunk second = region.slice(4096, 4096);
+		assertEquals(4096, second.getLength());
+		region.release();
+		first.release();
+		assertEquals(0, pool.getSize());
+		second.release();
+		assertEquals(8192, pool.getSize());
+	}
+
+	/**
+	 * Test compacting a slice copies it out of its parent, so the parent is no longer retained.
+	 */
+	@Test
+	public void testCompact() {
+		BufferPool pool = new BufferPool(1024 * 1024);
+		ByteBuffer buffer = pool.acquire(8192);
+		buffer.put(4096, (byte) 0x5a);
+		Chunk region = Chunk.pooled(buffer, pool);
+		Chunk slice = region.slice(4096, 4096);
+		region.release();
+		Chunk compact = slice.compact(pool);
+		assertTrue(compact != slice);
+		assertFalse(slice.retain());
+		// The region has been returned to the pool.
+		assertEquals(8192, pool.getSize());
+		assertEquals(4096, compact.getWeight());
+		assertEquals(0x5a, compact.getData().get(0));
+
+		// A chunk which is not a slice of a larger chunk is not copied.
+		assertTrue(compact.compact(pool) == compact);
+		Chunk whole = compact.slice(0, 4096);
+		assertTrue(whole.compact(pool) == whole);
+		whole.release();
+		compact.release();
+
+		// A slice of an unpooled region, such as a memory mapping, pins no pooled memory and is not copied.
+		Chunk mapped = Chunk.wrap(ByteBuffer.allocateDirect(8192));
+		Chunk mappedSlice = mapped.slice(4096, 4096);
+		mapped.release();
+		assertTrue(mappedSlice.compact(pool) == mappedSlice);
+		assertEquals(4096, mappedSlice.getLength());
+		mappedSlice.release();
+	}
+
+	/**
+	 * Test a single cache shared by multiple containers respects it's budget and retains chunks after streams are
+	 * closed.
+	 * 
+	 * @throws Exception something went wrong.
+	 */
+	@Test
+	public void testSharedCache() throws Exception {
+		ChunkCache cache = ChunkCache.create(4 * 1024 * 1024);
+		readStream(cache, getFile(file_1), stream_1, streamSHA1_1);
+		String key = readStream(cache, getFile(file_2), stream_2, streamSHA1_2);
+		assertTrue(cache.getSize() > 0);
+		assertTrue(cache.getSize() <= cache.getMaximumSize());
+		// The last chunk read should be retained for the next open of the stream.
+		Chunk chunk = cache.getChunk(key, 0);
+		assertNotNull(chunk);
+		chunk.release();
+		assertEquals(key, readStream(cache, getFile(file_2), stream_2, streamSHA1_2));
+	}
+
+	/**
+	 * Test containers holding the same stream with a different layout do not share cache entries.
+	 * 
+	 * @throws Exception something went wrong.
+	 */
+	@Test
+	public void testRepackedContainer() throws Exception {
+		File original = getFile(file_1);
+		File repacked = folder.newFile("repacked.aff4");
+		// Write the entries in reverse order, which moves every bevvy to a different offset.
+		try (ZipFile zip = new ZipFile(original); ZipArchiveOutputStream out = new ZipArchiveOutputStream(repacked)) {
+			List<ZipArchiveEntry> entries = Collections.list(zip.getEntriesInPhysicalOrder());
+			Collections.reverse(entries);
+			for (ZipArchiveEntry entry : entries) {
+				out.addRawArchiveEntry(entry, zip.getRawInputStream(entry));
+			}
+			out.setComment(Containers.getResourceID(original));
+		}
+		// Small enough that chunks are evicted while bevvy indexes remain cached.
+		ChunkCache cache = ChunkCache.create(1024 * 1024);
+		String key = readStream(cache, original, stream_1, streamSHA1_1);
+		assertFalse(key.equals(readStream(cache, repacked, stream_1, streamSHA1_1)));
+		assertEquals(key, readStream(cache, original, stream_1, streamSHA1_1));
+	}
+
+	/**
+	 * Get the test resource with the given name.
+	 * 
+	 * @param filename The name of the resource.
+	 * @return The file for the resource.
+	 * @throws Exception something went wrong.
+	 */
+	private File getFile(String filename) throws Exception {
+		URL url = TestContainer.class.getResource(filename);
+		return Paths.get(url.toURI()).toFile();
+	}
+
+	/**
+	 * Read the given stream and confirm the SHA1 of the contents.
+	 * 
+	 * @param cache The cache to use.
+	 * @param file The container to open.
+	 * @param stream The stream to read.
+	 * @param hash The expected SHA1 hash.
+	 * @return The key of the stream in the cache.
+	 * @throws Exception something went wrong.
+	 */
+	private String readStream(ChunkCache cache, File file, String stream, String hash) throws Exception {
+		try (IAFF4Container container = Containers.open(file, cache)) {
+			assertTrue(container instanceof AFF4ZipContainer);
+			AFF4ZipContainer con = (AFF4ZipContainer) container;
+			assertTrue(con.getChunkCache() == cache);
+			try (SeekableByteChannel channel = con.getImageStream(stream).getChannel()) {
+				MessageDigest digest = MessageDigest.getInstance("SHA1");
+				ByteBuffer buffer = ByteBuffer.allocate(1024 * 1024);
+				while (channel.read(buffer) > 0) {
+					buffer.flip();
+					digest.update(buffer);
+					buffer.clear();
+				}
+				assertEquals(hash, Hex.encodeHexString(digest.digest()));
+			}
+			return con.getCacheKey(stream);
+		}
+	}
+}
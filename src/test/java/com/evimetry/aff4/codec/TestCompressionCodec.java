@@ -17,9 +17,13 @@
 
 package com.evimetry.aff4.codec;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runners.MethodSorters;
@@ -146,4 +150,35 @@ public class TestCompressionCodec {
 		assertEquals(codec.getValue(), c.getResourceID());
 		assertEquals(class1, c.getClass());
 	}
+
+	/**
+	 * Decompress the given data into heap and direct destinations at a non-zero position, from both heap and direct
+	 * sources, and check the result.
+	 * 
+	 * @param c The codec to test.
+	 * @param compressed The compressed data.
+	 * @param expected The expected decompressed data.
+	 * @throws IOException If decompression fails.
+	 */
+	static void assertDecompressInto(CompressionCodec c, byte[] compressed, byte[] expected) throws IOException {
+		ByteBuffer heapSource = ByteBuffer.wrap(compressed);
+		ByteBuffer directSource = ByteBuffer.allocateDirect(compressed.length);
+		directSource.put(compressed);
+		directSource.flip();
+		for (ByteBuffer source : new ByteBuffer[] { heapSource, directSource }) {
+			ByteBuffer[] destinations = { ByteBuffer.allocate(expected.length + 16),
+					ByteBuffer.allocateDirect(expected.length + 16) };
+			for (ByteBuffer destination : destinations) {
+				destination.position(8);
+				int length = c.decompress(source, destination);
+				assertEquals(expected.length, length);
+				assertEquals(8 + length, destination.position());
+				assertEquals(0, source.position());
+				byte[] result = new byte[length];
+				destination.position(8);
+				destination.get(result);
+				assertArrayEquals(expected, result);
+			}
+		}
+	}
 }
@@ -17,12 +17,18 @@
 
 package com.evimetry.aff4.codec;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.Deflater;
 
 import org.junit.Test;
@@ -67,5 +73,85 @@ public class TestDeflateCompression {
 		assertEquals(128, dec.remaining());
 		assertTrue(dec.compareTo(source) == 0);
 	}
-	
+
+	/**
+	 * Compress the source text.
+	 * 
+	 * @return The compressed text.
+	 */
+	private byte[] compress() {
+		Deflater compressor = new Deflater(Deflater.BEST_COMPRESSION, true);
+		compressor.setInput(srcText.getBytes());
+		compressor.finish();
+		byte[] d = new byte[blockLength * 2];
+		int res = compressor.deflate(d);
+		compressor.end();
+		byte[] result = new byte[res];
+		System.arraycopy(d, 0, result, 0, res);
+		return result;
+	}
+
+	@Test
+	public void testDeflateSlicedSource() throws IOException {
+		byte[] compressed = compress();
+		byte[] padded = new byte[compressed.length + 16];
+		System.arraycopy(compressed, 0, padded, 8, compressed.length);
+		ByteBuffer buffer = ByteBuffer.wrap(padded);
+		buffer.position(8);
+		ByteBuffer source = buffer.slice();
+		source.limit(compressed.length);
+
+		CompressionCodec c = CompressionCodec.getCodec(AFF4Lexicon.DeflateCompression, blockLength);
+		ByteBuffer dec = c.decompress(source);
+		assertEquals(0, source.position());
+		byte[] result = new byte[dec.remaining()];
+		dec.get(result);
+		assertArrayEquals(srcText.getBytes(), result);
+		c.close();
+	}
+
+	@Test
+	public void testDeflateConcurrent() throws Exception {
+		byte[] compressed = compress();
+		CompressionCodec c = CompressionCodec.getCodec(AFF4Lexicon.DeflateCompression, blockLength);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				results.add(executor.submit(() -> {
+					for (int j = 0; j < 1000; j++) {
+						ByteBuffer dec = c.decompress(ByteBuffer.wrap(compressed));
+						byte[] result = new byte[dec.remaining()];
+						dec.get(result);
+						if (!srcText.equals(new String(result))) {
+							return false;
+						}
+					}
+					return true;
+				}));
+			}
+			for (Future<Boolean> result : results) {
+				assertTrue(result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		c.close();
+		// Still usable after close, with the inflater released after use.
+		ByteBuffer dec = c.decompress(ByteBuffer.wrap(compressed));
+		assertEquals(blockLength, dec.remaining());
+	}
+
+	@Test
+	public void testDeflateIntoDestination() throws IOException {
+		CompressionCodec c = CompressionCodec.getCodec(AFF4Lexicon.DeflateCompression, blockLength);
+		TestCompressionCodec.assertDecompressInto(c, compress(), srcText.getBytes());
+		c.close();
+	}
+
+	@Test(expected = IOException.class)
+	public void testDeflateDestinationTooSmall() throws IOException {
+		CompressionCodec c = CompressionCodec.getCodec(AFF4Lexicon.DeflateCompression, blockLength);
+		c.decompress(ByteBuffer.wrap(compress()), ByteBuffer.allocate(blockLength / 2));
+	}
 }
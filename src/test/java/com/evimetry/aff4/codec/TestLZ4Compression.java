@@ -27,6 +27,8 @@ import java.nio.ByteOrder;
 import org.junit.Test;
 
 import com.evimetry.aff4.AFF4Lexicon;
+import com.evimetry.aff4.cache.BufferPool;
+import com.evimetry.aff4.cache.Chunk;
 
 import net.jpountz.lz4.LZ4Compressor;
 import net.jpountz.lz4.LZ4Factory;
@@ -65,5 +67,34 @@ public class TestLZ4Compression {
 		assertEquals(128, dec.remaining());
 		assertTrue(dec.compareTo(source) == 0);
 	}
-	
+
+	@Test
+	public void testLZ4Pooled() throws IOException {
+		LZ4Compressor compressor = LZ4Factory.fastestJavaInstance().fastCompressor();
+		ByteBuffer source = ByteBuffer.allocateDirect(blockLength).order(ByteOrder.LITTLE_ENDIAN);
+		source.put(srcText.getBytes());
+		source.position(0);
+
+		ByteBuffer compressed = ByteBuffer.allocateDirect(blockLength * 2).order(ByteOrder.LITTLE_ENDIAN);
+		compressor.compress(source, compressed);
+		compressed.flip();
+		source.position(0);
+
+		BufferPool pool = new BufferPool(1024 * 1024);
+		CompressionCodec c = CompressionCodec.getCodec(AFF4Lexicon.LZ4Compression, blockLength);
+		Chunk chunk = c.decompress(compressed, pool);
+		// Ensure our source buffers position is unchanged.
+		assertEquals(0, compressed.position());
+		assertEquals(128, chunk.getLength());
+		assertTrue(chunk.getData().compareTo(source) == 0);
+		chunk.release();
+		assertTrue(pool.getSize() > 0);
+	}
+
+	@Test
+	public void testLZ4IntoDestination() throws IOException {
+		byte[] compressed = LZ4Factory.fastestJavaInstance().fastCompressor().compress(srcText.getBytes());
+		CompressionCodec c = CompressionCodec.getCodec(AFF4Lexicon.LZ4Compression, blockLength);
+		TestCompressionCodec.assertDecompressInto(c, compressed, srcText.getBytes());
+	}
 }
@@ -53,4 +53,10 @@ public class TestNoCompression {
 		assertEquals(128, dec.remaining());
 		assertTrue(dec.compareTo(source) == 0);
 	}
+
+	@Test
+	public void testNoCompressionIntoDestination() throws IOException {
+		CompressionCodec c = CompressionCodec.getCodec(AFF4Lexicon.NoCompression, blockLength);
+		TestCompressionCodec.assertDecompressInto(c, srcText.getBytes(), srcText.getBytes());
+	}
 }
@@ -27,6 +27,8 @@ import org.junit.Test;
 import org.xerial.snappy.Snappy;
 
 import com.evimetry.aff4.AFF4Lexicon;
+import com.evimetry.aff4.cache.BufferPool;
+import com.evimetry.aff4.cache.Chunk;
 
 /**
  * Test the Snappy Codec.
@@ -58,4 +60,41 @@ public class TestSnappyCompression {
 		assertTrue(dec.compareTo(source) == 0);
 	}
 
+	@Test
+	public void testSnappyPooled() throws IOException {
+		ByteBuffer source = ByteBuffer.allocateDirect(blockLength).order(ByteOrder.LITTLE_ENDIAN);
+		source.put(srcText.getBytes());
+		source.position(0);
+
+		ByteBuffer destination = ByteBuffer.allocateDirect(blockLength * 2).order(ByteOrder.LITTLE_ENDIAN);
+		Snappy.compress(source, destination);
+		// Heap sources are also supported.
+		ByteBuffer compressed = ByteBuffer.allocate(destination.remaining());
+		compressed.put(destination);
+		compressed.flip();
+
+		BufferPool pool = new BufferPool(1024 * 1024);
+		CompressionCodec c = CompressionCodec.getCodec(AFF4Lexicon.SnappyCompression, blockLength);
+		Chunk chunk = c.decompress(compressed, pool);
+		// Ensure our source buffers position is unchanged.
+		assertEquals(0, compressed.position());
+		assertEquals(128, chunk.getLength());
+		assertTrue(chunk.getData().compareTo(source) == 0);
+		chunk.release();
+		assertTrue(pool.getSize() > 0);
+	}
+
+	@Test
+	public void testSnappyIntoDestination() throws IOException {
+		byte[] compressed = Snappy.compress(srcText.getBytes());
+		CompressionCodec c = CompressionCodec.getCodec(AFF4Lexicon.SnappyCompression, blockLength);
+		TestCompressionCodec.assertDecompressInto(c, compressed, srcText.getBytes());
+	}
+
+	@Test(expected = IOException.class)
+	public void testSnappyDestinationTooSmall() throws IOException {
+		byte[] compressed = Snappy.compress(srcText.getBytes());
+		CompressionCodec c = CompressionCodec.getCodec(AFF4Lexicon.SnappyCompression, blockLength);
+		c.decompress(ByteBuffer.wrap(compressed), ByteBuffer.allocateDirect(blockLength / 2));
+	}
 }
@@ -0,0 +1,157 @@
+/*
+  This file is part of AFF4 Java.
+  
+  Copyright (c) 2017-2019 Schatz Forensic Pty Ltd
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+	
+	    http://www.apache.org/licenses/LICENSE-2.0
+	
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.evimetry.aff4.container;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.IOUtils;
+import org.xerial.snappy.Snappy;
+
+import com.evimetry.aff4.Containers;
+import com.evimetry.aff4.rdf.NameCodec;
+
+/**
+ * Shared helpers for tests that open the test containers, or write modified copies of them.
+ */
+public final class ContainerFixtures {
+
+	/**
+	 * The image stream of Base-Linear.
+	 */
+	public final static String LINEAR_STREAM = "aff4://c215ba20-5648-4209-a793-1f918c723610";
+
+	private ContainerFixtures() {
+	}
+
+	/**
+	 * Get the given test container.
+	 * 
+	 * @param name The resource name, eg "/Base-Linear.aff4".
+	 * @return The container file.
+	 * @throws Exception something went wrong.
+	 */
+	public static File getFile(String name) throws Exception {
+		URL url = TestContainer.class.getResource(name);
+		return Paths.get(url.toURI()).toFile();
+	}
+
+	/**
+	 * Copy the given test container into the given directory, so it may be modified.
+	 * 
+	 * @param name The resource name, eg "/Base-Linear.aff4".
+	 * @param directory The directory to copy to.
+	 * @return The copied container file.
+	 * @throws Exception something went wrong.
+	 */
+	public static File copy(String name, File directory) throws Exception {
+		File file = new File(directory, name.substring(1));
+		Files.copy(getFile(name).toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		return file;
+	}
+
+	/**
+	 * Invert the byte at the given offset into a stored segment of the given container.
+	 * 
+	 * @param file The container file.
+	 * @param segment The segment name.
+	 * @param offset The offset into the segment.
+	 * @throws Exception something went wrong.
+	 */
+	public static void corrupt(File file, String segment, long offset) throws Exception {
+		long dataOffset;
+		try (ZipFile zip = new ZipFile(file)) {
+			dataOffset = zip.getEntry(NameCodec.encode(segment)).getDataOffset();
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.seek(dataOffset + offset);
+			int value = raf.read();
+			raf.seek(dataOffset + offset);
+			raf.write(value ^ 0xff);
+		}
+	}
+
+	/**
+	 * Write a copy of Base-Linear with the first two chunks of the image stream replaced by compressed zeros.
+	 * 
+	 * @param file The file to write.
+	 * @return The container file.
+	 * @throws Exception something went wrong.
+	 */
+	public static File createZeroChunkContainer(File file) throws Exception {
+		File original = getFile("/Base-Linear.aff4");
+		byte[] zeros = Snappy.compress(new byte[0x8000]);
+		String bevvyName = NameCodec.encode(LINEAR_STREAM + "/00000000");
+		try (ZipFile zip = new ZipFile(original); ZipArchiveOutputStream out = new ZipArchiveOutputStream(file)) {
+			byte[] bevvy = IOUtils.toByteArray(zip.getInputStream(zip.getEntry(bevvyName)));
+			byte[] indexEntry = IOUtils.toByteArray(zip.getInputStream(zip.getEntry(bevvyName + ".index")));
+			ByteBuffer index = ByteBuffer.wrap(indexEntry).order(ByteOrder.LITTLE_ENDIAN);
+			// Replace the first two chunks, and move the remaining chunks to follow them.
+			int removed = (int) index.getLong(24);
+			long delta = zeros.length * 2 - removed;
+			ByteBuffer updated = ByteBuffer.allocate(bevvy.length + (int) delta);
+			updated.put(zeros).put(zeros).put(bevvy, removed, bevvy.length - removed);
+			index.putLong(0, 0).putInt(8, zeros.length).putLong(12, zeros.length).putInt(20, zeros.length);
+			for (int position = 24; position < index.capacity(); position += 12) {
+				index.putLong(position, index.getLong(position) + delta);
+			}
+			for (ZipArchiveEntry entry : Collections.list(zip.getEntriesInPhysicalOrder())) {
+				if (entry.getName().equals(bevvyName)) {
+					putEntry(out, entry.getName(), updated.array());
+				} else if (entry.getName().equals(bevvyName + ".index")) {
+					putEntry(out, entry.getName(), index.array());
+				} else {
+					out.addRawArchiveEntry(entry, zip.getRawInputStream(entry));
+				}
+			}
+			out.setComment(Containers.getResourceID(original));
+		}
+		return file;
+	}
+
+	/**
+	 * Write an uncompressed zip entry.
+	 * 
+	 * @param out The zip to write to.
+	 * @param name The entry name.
+	 * @param contents The entry contents.
+	 * @throws Exception something went wrong.
+	 */
+	public static void putEntry(ZipArchiveOutputStream out, String name, byte[] contents) throws Exception {
+		ZipArchiveEntry entry = new ZipArchiveEntry(name);
+		entry.setMethod(ZipEntry.STORED);
+		entry.setSize(contents.length);
+		CRC32 crc = new CRC32();
+		crc.update(contents);
+		entry.setCrc(crc.getValue());
+		out.putArchiveEntry(entry);
+		out.write(contents);
+		out.closeArchiveEntry();
+	}
+}
@@ -0,0 +1,90 @@
+/*
+  This file is part of AFF4 Java.
+  
+  Copyright (c) 2017-2019 Schatz Forensic Pty Ltd
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+	
+	    http://www.apache.org/licenses/LICENSE-2.0
+	
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.evimetry.aff4.container;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.evimetry.aff4.Containers;
+import com.evimetry.aff4.IAFF4Container;
+import com.evimetry.aff4.IAFF4Resource;
+import com.evimetry.aff4.cache.ChunkCache;
+import com.evimetry.aff4.imagestream.Readahead;
+
+/**
+ * Tests for the options applied to containers as they are opened.
+ */
+public class TestContainerOptions {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testDefaults() throws Exception {
+		try (IAFF4Container container = Containers.open(ContainerFixtures.getFile("/Base-Linear.aff4"))) {
+			AFF4ZipContainer zip = (AFF4ZipContainer) container;
+			assertSame(ChunkCache.getDefault(), zip.getChunkCache());
+			assertNull(zip.getReadahead());
+			assertNull(zip.getMappedFile());
+			assertNull(zip.getContainerIndex());
+			assertFalse(zip.isDirectMapLookup());
+			assertFalse(zip.isVerifyOnRead());
+		}
+	}
+
+	/**
+	 * Test the options are applied to the opened container, and to the other stripes opened by its resolver.
+	 * 
+	 * @throws Exception something went wrong.
+	 */
+	@Test
+	public void testResolverInheritsOptions() throws Exception {
+		ContainerOptions options = new ContainerOptions().setChunkCache(ChunkCache.create(1024 * 1024))
+				.setReadahead(new Readahead(ForkJoinPool.commonPool(), 1024 * 1024)).setMemoryMapped(true)
+				.setIndexCache(new IndexCache(folder.newFolder("index"))).setDirectMapLookup(true)
+				.setVerifyOnRead(true);
+		File stripe = ContainerFixtures.getFile("/Striped/Base-Linear_2.aff4");
+		try (IAFF4Container container = Containers.open(ContainerFixtures.getFile("/Striped/Base-Linear_1.aff4"),
+				options)) {
+			assertOptions(options, (AFF4ZipContainer) container);
+			IAFF4Resource resource = container.getResolver().open(Containers.getResourceID(stripe));
+			assertTrue(resource instanceof AFF4ZipContainer);
+			try (AFF4ZipContainer other = (AFF4ZipContainer) resource) {
+				assertOptions(options, other);
+			}
+		}
+	}
+
+	private void assertOptions(ContainerOptions options, AFF4ZipContainer container) {
+		assertSame(options.getChunkCache(), container.getChunkCache());
+		assertSame(options.getReadahead(), container.getReadahead());
+		assertNotNull(container.getMappedFile());
+		assertNotNull(container.getContainerIndex());
+		assertTrue(container.isDirectMapLookup());
+		assertTrue(container.isVerifyOnRead());
+	}
+}
@@ -0,0 +1,202 @@
+/*
+  This file is part of AFF4 Java.
+  
+  Copyright (c) 2017-2019 Schatz Forensic Pty Ltd
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+	
+	    http://www.apache.org/licenses/LICENSE-2.0
+	
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.evimetry.aff4.container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.evimetry.aff4.Containers;
+import com.evimetry.aff4.IAFF4Container;
+import com.evimetry.aff4.IAFF4ImageStream;
+import com.evimetry.aff4.IAFF4Map;
+import com.evimetry.aff4.MapExtent;
+import com.evimetry.aff4.imagestream.ImageStreamFactory;
+import com.evimetry.aff4.map.SegmentMapIndex;
+import com.evimetry.aff4.rdf.NameCodec;
+import com.evimetry.aff4.struct.MapEntryPoint;
+
+/**
+ * Tests for looking up map regions directly in the stored map segment.
+ */
+public class TestDirectMapLookup {
+
+	private final static String linearSHA1 = "7d3d27f667f95f7ec5b9d32121622c0f4b60b48d";
+	private final static String allocatedSHA1 = "e8650e89b262cf0b4b73c025312488d5a6317a26";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testLinear() throws Exception {
+		assertEquals(linearSHA1, getDigest("/Base-Linear.aff4"));
+	}
+
+	@Test
+	public void testAllocated() throws Exception {
+		assertEquals(allocatedSHA1, getDigest("/Base-Allocated.aff4"));
+	}
+
+	@Test
+	public void testAllocatedExtents() throws Exception {
+		URL url = TestContainer.class.getResource("/Base-Allocated.aff4");
+		File file = Paths.get(url.toURI()).toFile();
+		try (IAFF4Container container = Containers.open(file)) {
+			((AFF4ZipContainer) container).setDirectMapLookup(true);
+			IAFF4Map map = container.getImages().next().getMap();
+			Iterator<MapExtent> extents = map.getExtents(0);
+			long offset = 0;
+			int holes = 0;
+			while (extents.hasNext()) {
+				MapExtent extent = extents.next();
+				assertEquals(offset, extent.getOffset());
+				assertTrue(extent.getLength() > 0);
+				if (extent.getKind().isConstant()) {
+					holes++;
+				}
+				offset = extent.getEnd();
+			}
+			assertEquals(map.size(), offset);
+			assertTrue(holes > 0);
+		}
+	}
+
+	@Test
+	public void testSegmentIndex() throws Exception {
+		URL url = TestContainer.class.getResource("/Base-Allocated.aff4");
+		File file = Paths.get(url.toURI()).toFile();
+		try (IAFF4Container container = Containers.open(file)) {
+			AFF4ZipContainer zip = (AFF4ZipContainer) container;
+			IAFF4Map map = container.getImages().next().getMap();
+			IAFF4ImageStream segment = zip
+					.getSegment(NameCodec.encode(String.format("%s/map", map.getResourceID())));
+			IAFF4ImageStream gap = ImageStreamFactory.createZeroStream();
+			try (SegmentMapIndex index = SegmentMapIndex.open(segment, map.size(),
+					id -> ImageStreamFactory.createUnknownStream(), gap)) {
+				assertNotNull(index);
+				assertTrue(index.getEntries() > 0);
+				assertEquals(index.getEntries() * 2 + 1, index.size());
+				// Every position maps to a non-empty region containing it.
+				for (long position = 0; position < map.size(); position += 12345678) {
+					int region = index.find(position);
+					assertTrue(index.getOffset(region) <= position);
+					assertTrue(index.getOffset(region) + index.getLength(region) > position);
+					if ((region & 1) == 0) {
+						assertEquals(-1, index.getStreamID(region));
+						assertEquals(gap, index.getStream(region));
+					}
+				}
+				// Regions are contiguous.
+				for (int region = 1; region < index.size(); region++) {
+					assertEquals(index.getOffset(region - 1) + index.getLength(region - 1), index.getOffset(region));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testUnsortedSegment() throws Exception {
+		URL url = TestContainer.class.getResource("/Base-Allocated.aff4");
+		File original = Paths.get(url.toURI()).toFile();
+		File file = folder.newFile("unsorted.aff4");
+		// Swap two entries in the middle of the first block of the map segment.
+		try (ZipFile zip = new ZipFile(original); ZipArchiveOutputStream out = new ZipArchiveOutputStream(file)) {
+			for (ZipArchiveEntry entry : Collections.list(zip.getEntriesInPhysicalOrder())) {
+				if (!entry.getName().endsWith("/map")) {
+					out.addRawArchiveEntry(entry, zip.getRawInputStream(entry));
+					continue;
+				}
+				byte[] segment = IOUtils.toByteArray(zip.getInputStream(entry));
+				int sz = MapEntryPoint.getSize();
+				assertTrue(segment.length / sz > 201);
+				byte[] swapped = Arrays.copyOfRange(segment, 200 * sz, 201 * sz);
+				System.arraycopy(segment, 201 * sz, segment, 200 * sz, sz);
+				System.arraycopy(swapped, 0, segment, 201 * sz, sz);
+				ZipArchiveEntry replacement = new ZipArchiveEntry(entry.getName());
+				replacement.setMethod(ZipEntry.STORED);
+				replacement.setSize(segment.length);
+				CRC32 crc = new CRC32();
+				crc.update(segment);
+				replacement.setCrc(crc.getValue());
+				out.putArchiveEntry(replacement);
+				out.write(segment);
+				out.closeArchiveEntry();
+			}
+			out.setComment(Containers.getResourceID(original));
+		}
+
+		try (IAFF4Container container = Containers.open(file)) {
+			AFF4ZipContainer zip = (AFF4ZipContainer) container;
+			IAFF4Map map = container.getImages().next().getMap();
+			IAFF4ImageStream segment = zip
+					.getSegment(NameCodec.encode(String.format("%s/map", map.getResourceID())));
+			try {
+				assertNull(SegmentMapIndex.open(segment, map.size(), id -> ImageStreamFactory.createUnknownStream(),
+						ImageStreamFactory.createZeroStream()));
+			} finally {
+				segment.getChannel().close();
+			}
+		}
+		// The map is materialised instead.
+		assertEquals(allocatedSHA1, getDigest(file));
+	}
+
+	private String getDigest(String resource) throws Exception {
+		URL url = TestContainer.class.getResource(resource);
+		return getDigest(Paths.get(url.toURI()).toFile());
+	}
+
+	private String getDigest(File file) throws Exception {
+		try (IAFF4Container container = Containers.open(file)) {
+			((AFF4ZipContainer) container).setDirectMapLookup(true);
+			IAFF4Map map = container.getImages().next().getMap();
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+			long offset = 0;
+			while (offset < map.size()) {
+				buffer.clear();
+				int read = map.read(offset, buffer);
+				assertTrue(read > 0);
+				buffer.flip();
+				md.update(buffer);
+				offset += read;
+			}
+			return Hex.encodeHexString(md.digest());
+		}
+	}
+}
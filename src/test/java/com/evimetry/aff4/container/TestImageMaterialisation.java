@@ -33,6 +33,7 @@ import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.codec.binary.Hex;
 import org.junit.FixMethodOrder;
@@ -158,6 +159,80 @@ public class TestImageMaterialisation {
 		}
 	}
 
+	@Test
+	public void testContainerAllocatedPositional() throws UnsupportedOperationException, IOException, Exception {
+		URL url = TestContainer.class.getResource("/Base-Allocated.aff4");
+		File file = Paths.get(url.toURI()).toFile();
+		try (IAFF4Container container = Containers.open(file)) {
+			IAFF4Map map = container.getImages().next().getMap();
+			try (SeekableByteChannel channel = map.getChannel()) {
+				MessageDigest md = MessageDigest.getInstance("SHA-1");
+				ByteBuffer buffer = ByteBuffer.allocateDirect((int) readSize).order(ByteOrder.LITTLE_ENDIAN);
+				long offset = 0;
+				while (offset < map.size()) {
+					buffer.clear();
+					int read = map.read(offset, buffer);
+					// Reads fill the buffer across map regions.
+					assertEquals(Math.min(buffer.capacity(), map.size() - offset), read);
+					buffer.flip();
+					md.update(buffer);
+					offset += read;
+				}
+				// Positional reads do not move the channel.
+				assertEquals(0, channel.position());
+				assertEquals(allocatedSHA1, Hex.encodeHexString(md.digest()));
+			}
+		}
+	}
+
+	@Test
+	public void testContainerAllocatedPipelined() throws UnsupportedOperationException, IOException, Exception {
+		URL url = TestContainer.class.getResource("/Base-Allocated.aff4");
+		File file = Paths.get(url.toURI()).toFile();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try (IAFF4Container container = Containers.open(file)) {
+			AFF4Map map = (AFF4Map) container.getImages().next().getMap();
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			ByteBuffer buffer = ByteBuffer.allocateDirect((int) readSize).order(ByteOrder.LITTLE_ENDIAN);
+			long offset = 0;
+			while (offset < map.size()) {
+				buffer.clear();
+				int read = map.read(offset, buffer, pool);
+				assertTrue(read > 0);
+				buffer.flip();
+				md.update(buffer);
+				offset += read;
+			}
+			assertEquals(allocatedSHA1, Hex.encodeHexString(md.digest()));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testContainerAllocatedPipelinedSingleRead() throws UnsupportedOperationException, IOException,
+			Exception {
+		URL url = TestContainer.class.getResource("/Base-Allocated.aff4");
+		File file = Paths.get(url.toURI()).toFile();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try (IAFF4Container container = Containers.open(file)) {
+			AFF4Map map = (AFF4Map) container.getImages().next().getMap();
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			long[] next = new long[1];
+			// All regions of the map in a single read, delivered in order.
+			long read = map.read(0, map.size(), pool, (position, data) -> {
+				assertEquals(next[0], position);
+				next[0] += data.remaining();
+				md.update(data);
+			});
+			assertEquals(map.size(), read);
+			assertEquals(map.size(), next[0]);
+			assertEquals(allocatedSHA1, Hex.encodeHexString(md.digest()));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
 	@Test
 	public void testContainerLinearReadError() throws UnsupportedOperationException, IOException, Exception {
 		URL url = TestContainer.class.getResource("/Base-Linear-ReadError.aff4");
@@ -0,0 +1,175 @@
+/*
+  This file is part of AFF4 Java.
+  
+  Copyright (c) 2017-2019 Schatz Forensic Pty Ltd
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+	
+	    http://www.apache.org/licenses/LICENSE-2.0
+	
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.evimetry.aff4.container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import org.apache.commons.codec.binary.Hex;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.evimetry.aff4.Containers;
+import com.evimetry.aff4.IAFF4Container;
+import com.evimetry.aff4.IAFF4Map;
+import com.evimetry.aff4.cache.ChunkCache;
+import com.evimetry.aff4.imagestream.ImageStreamFactory;
+import com.evimetry.aff4.map.MapIndex;
+
+/**
+ * Tests for the persistent map and bevvy index cache.
+ */
+public class TestIndexCache {
+
+	private final static String allocatedSHA1 = "e8650e89b262cf0b4b73c025312488d5a6317a26";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testReopen() throws Exception {
+		URL url = TestContainer.class.getResource("/Base-Allocated.aff4");
+		File file = Paths.get(url.toURI()).toFile();
+		IndexCache cache = new IndexCache(folder.newFolder("index"));
+		int indexes;
+		try (IAFF4Container container = Containers.open(file, ChunkCache.create(ChunkCache.DEFAULT_CACHE_SIZE))) {
+			((AFF4ZipContainer) container).setIndexCache(cache);
+			assertEquals(allocatedSHA1, getDigest(container.getImages().next().getMap()));
+			indexes = ((AFF4ZipContainer) container).getContainerIndex().size();
+		}
+		// The map and at least one bevvy.
+		assertTrue(indexes > 1);
+		assertEquals(1, cache.getDirectory().list().length);
+
+		// Reopen, using the persisted indexes.
+		try (IAFF4Container container = Containers.open(file, ChunkCache.create(ChunkCache.DEFAULT_CACHE_SIZE))) {
+			((AFF4ZipContainer) container).setIndexCache(cache);
+			ContainerIndex index = ((AFF4ZipContainer) container).getContainerIndex();
+			assertEquals(indexes, index.size());
+			assertEquals(allocatedSHA1, getDigest(container.getImages().next().getMap()));
+			assertEquals(indexes, index.size());
+		}
+	}
+
+	@Test
+	public void testStale() throws IOException {
+		File container = folder.newFile("container.aff4");
+		IndexCache cache = new IndexCache(folder.newFolder("index"));
+		MapIndex map = new MapIndex.Builder().add(0, 0x1000, 0, -1, ImageStreamFactory.createZeroStream()).build();
+
+		ContainerIndex index = cache.open("aff4://container", container);
+		index.putMap("aff4://map", map);
+		index.save();
+
+		index = cache.open("aff4://container", container);
+		assertNotNull(index.getMap("aff4://map", id -> ImageStreamFactory.createZeroStream()));
+		assertNull(index.getBevvyIndex("aff4://stream", 0));
+
+		// Modify the container, which invalidates the index.
+		assertTrue(container.setLastModified(container.lastModified() - 10000));
+		index = cache.open("aff4://container", container);
+		assertNull(index.getMap("aff4://map", id -> ImageStreamFactory.createZeroStream()));
+	}
+
+	@Test
+	public void testSaveLoaded() throws IOException {
+		File container = folder.newFile("container.aff4");
+		IndexCache cache = new IndexCache(folder.newFolder("index"));
+		ContainerIndex index = cache.open("aff4://container", container);
+		index.putMap("aff4://map",
+				new MapIndex.Builder().add(0, 0x1000, 0, -1, ImageStreamFactory.createZeroStream()).build());
+		index.save();
+
+		// Replace the index file holding the loaded indexes, twice.
+		index = cache.open("aff4://container", container);
+		for (int i = 0; i < 2; i++) {
+			index.putMap("aff4://map" + i,
+					new MapIndex.Builder().add(0, 0x2000, 0, -1, ImageStreamFactory.createZeroStream()).build());
+			index.save();
+			assertEquals(2 + i, index.size());
+			assertEquals(0x1000, index.getMap("aff4://map", id -> ImageStreamFactory.createZeroStream()).getLength(0));
+			assertEquals(0x2000, index.getMap("aff4://map0", id -> ImageStreamFactory.createZeroStream()).getLength(0));
+		}
+
+		index = cache.open("aff4://container", container);
+		assertEquals(3, index.size());
+		assertEquals(0x2000, index.getMap("aff4://map1", id -> ImageStreamFactory.createZeroStream()).getLength(0));
+	}
+
+	@Test
+	public void testCorrupt() throws IOException {
+		File container = folder.newFile("container.aff4");
+		IndexCache cache = new IndexCache(folder.newFolder("index"));
+		ContainerIndex index = cache.open("aff4://container", container);
+		index.putMap("aff4://map",
+				new MapIndex.Builder().add(0, 0x1000, 0, -1, ImageStreamFactory.createZeroStream()).build());
+		index.save();
+		// Truncate the index file.
+		File indexFile = cache.getDirectory().listFiles()[0];
+		byte[] contents = Files.readAllBytes(indexFile.toPath());
+		Files.write(indexFile.toPath(), Arrays.copyOf(contents, contents.length - 16));
+
+		index = cache.open("aff4://container", container);
+		assertEquals(0, index.size());
+	}
+
+	@Test
+	public void testEncode() {
+		MapIndex map = new MapIndex.Builder()//
+				.add(0, 0x1000, 0, 2, ImageStreamFactory.createUnknownStream())//
+				.add(0x1000, 0x800, 0x1000, -1, ImageStreamFactory.createZeroStream())//
+				.add(0x1800, 0x1000, 0x1000, 2, ImageStreamFactory.createUnknownStream())//
+				.build();
+		ByteBuffer encoded = map.encode();
+		assertEquals(0, encoded.remaining() % 8);
+		MapIndex decoded = MapIndex.decode(encoded, id -> ImageStreamFactory.createZeroStream());
+		assertEquals(map.size(), decoded.size());
+		for (int i = 0; i < map.size(); i++) {
+			assertEquals(map.getOffset(i), decoded.getOffset(i));
+			assertEquals(map.getLength(i), decoded.getLength(i));
+			assertEquals(map.getStreamOffset(i), decoded.getStreamOffset(i));
+			assertEquals(map.getStreamID(i), decoded.getStreamID(i));
+		}
+		assertEquals(2, decoded.find(0x2000));
+	}
+
+	private String getDigest(IAFF4Map map) throws Exception {
+		MessageDigest md = MessageDigest.getInstance("SHA-1");
+		ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+		long offset = 0;
+		while (offset < map.size()) {
+			buffer.clear();
+			int read = map.read(offset, buffer);
+			buffer.flip();
+			md.update(buffer);
+			offset += read;
+		}
+		return Hex.encodeHexString(md.digest());
+	}
+}
@@ -0,0 +1,167 @@
+/*
+  This file is part of AFF4 Java.
+  
+  Copyright (c) 2017-2019 Schatz Forensic Pty Ltd
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+	
+	    http://www.apache.org/licenses/LICENSE-2.0
+	
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.evimetry.aff4.container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.Iterator;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.evimetry.aff4.Containers;
+import com.evimetry.aff4.IAFF4Container;
+import com.evimetry.aff4.IAFF4Map;
+import com.evimetry.aff4.MapExtent;
+import com.evimetry.aff4.imagestream.AFF4ImageStream;
+
+/**
+ * Tests for iteration of map extents, and data/hole queries.
+ */
+public class TestMapExtents {
+
+	private final static String STREAM = ContainerFixtures.LINEAR_STREAM;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testAllocatedExtents() throws Exception {
+		URL url = TestContainer.class.getResource("/Base-Allocated.aff4");
+		File file = Paths.get(url.toURI()).toFile();
+		try (IAFF4Container container = Containers.open(file)) {
+			IAFF4Map map = container.getImages().next().getMap();
+			Iterator<MapExtent> extents = map.getExtents(0);
+			long offset = 0;
+			int data = 0;
+			int holes = 0;
+			while (extents.hasNext()) {
+				MapExtent extent = extents.next();
+				// Extents are contiguous.
+				assertEquals(offset, extent.getOffset());
+				assertTrue(extent.getLength() > 0);
+				if (extent.getKind().isConstant()) {
+					holes++;
+					assertEquals(extent.getOffset(), map.seekHole(extent.getOffset()));
+					long next = map.seekData(extent.getOffset());
+					assertTrue(next == -1 || next >= extent.getEnd());
+					assertConstant(map, extent);
+				} else {
+					data++;
+					assertEquals(extent.getOffset(), map.seekData(extent.getOffset()));
+					// Adjacent data extents are skipped.
+					assertTrue(map.seekHole(extent.getOffset()) >= extent.getEnd());
+				}
+				offset = extent.getEnd();
+			}
+			assertEquals(map.size(), offset);
+			assertTrue(data > 0);
+			assertTrue(holes > 0);
+			assertFalse(map.getExtents(map.size()).hasNext());
+			assertEquals(-1, map.seekData(map.size()));
+			assertEquals(-1, map.seekHole(map.size()));
+		}
+	}
+
+	@Test
+	public void testExtentsFromPosition() throws Exception {
+		URL url = TestContainer.class.getResource("/Base-Allocated.aff4");
+		File file = Paths.get(url.toURI()).toFile();
+		try (IAFF4Container container = Containers.open(file)) {
+			IAFF4Map map = container.getImages().next().getMap();
+			long position = map.size() / 2 + 1;
+			MapExtent extent = map.getExtents(position).next();
+			assertTrue(extent.getOffset() <= position);
+			assertTrue(extent.getEnd() > position);
+		}
+	}
+
+	/**
+	 * Test chunks of an image stream containing only zeros are reported as holes.
+	 * 
+	 * @throws Exception something went wrong.
+	 */
+	@Test
+	public void testZeroChunkExtents() throws Exception {
+		File file = ContainerFixtures.createZeroChunkContainer(folder.newFile("zero-chunks.aff4"));
+		try (IAFF4Container container = Containers.open(file)) {
+			IAFF4Map map = container.getImages().next().getMap();
+			// The stream instance backing the map.
+			AFF4ImageStream stream = (AFF4ImageStream) map.getExtents(0).next().getStream();
+			assertEquals(STREAM, stream.getResourceID());
+			// Walking the extents does not examine chunks, so unread zero chunks are reported as data.
+			assertEquals(MapExtent.Kind.DATA, map.getExtents(0).next().getKind());
+			assertEquals(0, map.seekData(0));
+			assertFalse(stream.isKnownZeroChunk(0));
+			assertFalse(stream.isKnownZeroChunk(1));
+
+			assertTrue(stream.isZeroChunk(0));
+			assertTrue(stream.isZeroChunk(1));
+			assertFalse(stream.isZeroChunk(2));
+			assertEquals(0, stream.seekHole(0));
+			assertEquals(0x10000, stream.seekData(0));
+			assertEquals(0x8000, stream.seekData(0x8000, 0x8000));
+			assertEquals(stream.size(), stream.seekHole(0x10000));
+
+			// Map [0, 0x8000) is chunk 0, [0x8000, 0x10000) is aff4:Zero, and [0x10000, 0x18000) is chunk 1.
+			Iterator<MapExtent> extents = map.getExtents(0);
+			long offset = 0;
+			while (extents.hasNext()) {
+				MapExtent extent = extents.next();
+				assertEquals(offset, extent.getOffset());
+				assertTrue(extent.getLength() > 0);
+				if (extent.getEnd() <= 0x18000) {
+					assertEquals(MapExtent.Kind.ZERO, extent.getKind());
+				} else if (extent.getStream() == stream) {
+					assertEquals(MapExtent.Kind.DATA, extent.getKind());
+				}
+				if (extent.getKind() == MapExtent.Kind.ZERO) {
+					assertConstant(map, extent);
+				}
+				offset = extent.getEnd();
+			}
+			assertEquals(map.size(), offset);
+			assertEquals(0, map.seekHole(0));
+			assertEquals(0x18000, map.seekData(0));
+			assertEquals(0x10000, map.getExtents(0x10000).next().getOffset());
+			assertEquals(0x12000, map.getExtents(0x12000).next().getOffset());
+			// The next hole is aff4:Zero.
+			assertEquals(0x40000, map.seekHole(0x18000));
+		}
+	}
+
+	/**
+	 * Check the start of a zero extent reads as zero bytes.
+	 */
+	private void assertConstant(IAFF4Map map, MapExtent extent) throws Exception {
+		ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(4096, extent.getLength()));
+		assertEquals(buffer.capacity(), map.read(extent.getOffset(), buffer));
+		buffer.flip();
+		if (extent.getKind() == MapExtent.Kind.ZERO) {
+			while (buffer.hasRemaining()) {
+				assertEquals(0, buffer.get());
+			}
+		}
+	}
+}
@@ -0,0 +1,142 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.codec.binary.Hex;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.evimetry.aff4.AFF4Lexicon;
+import com.evimetry.aff4.ChunkIntegrityException;
+import com.evimetry.aff4.Containers;
+import com.evimetry.aff4.IAFF4Container;
+import com.evimetry.aff4.IAFF4Map;
+import com.evimetry.aff4.cache.ChunkCache;
+import com.evimetry.aff4.imagestream.AFF4ImageStream;
+
+/**
+ * Tests for verification of chunks against their block hashes as they are loaded.
+ */
+public class TestVerifyOnRead {
+
+	private final static String STREAM = "aff4://e53a108a-bb2e-41f4-ab2e-28fe4ef578c1";
+	private final static int CHUNK_SIZE = 32768;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testValid() throws Exception {
+		File file = ContainerFixtures.getFile("/Base-Linear-AllHashes.aff4");
+		String expected;
+		try (IAFF4Container container = Containers.open(file, ChunkCache.create(ChunkCache.DEFAULT_CACHE_SIZE))) {
+			expected = getDigest(container.getImages().next().getMap());
+		}
+		try (IAFF4Container container = Containers.open(file, ChunkCache.create(ChunkCache.DEFAULT_CACHE_SIZE))) {
+			((AFF4ZipContainer) container).setVerifyOnRead(true);
+			assertEquals(expected, getDigest(container.getImages().next().getMap()));
+		}
+	}
+
+	@Test
+	public void testMismatch() throws Exception {
+		File file = ContainerFixtures.copy("/Base-Linear-AllHashes.aff4", folder.getRoot());
+		// SHA512 is preferred, so alter the stored hash of chunk 3.
+		ContainerFixtures.corrupt(file, STREAM + "/00000000.blockHash.sha512", 3 * 64);
+		try (IAFF4Container container = Containers.open(file, ChunkCache.create(ChunkCache.DEFAULT_CACHE_SIZE))) {
+			((AFF4ZipContainer) container).setVerifyOnRead(true);
+			try (AFF4ImageStream stream = (AFF4ImageStream) container.open(STREAM)) {
+				ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+				assertEquals(CHUNK_SIZE, stream.read(0, buffer));
+				assertIntegrityFailure(stream, 3);
+				// Reported again on subsequent reads.
+				assertIntegrityFailure(stream, 3);
+				try {
+					stream.read(0, stream.size(), ForkJoinPool.commonPool(), (position, data) -> {
+					});
+					fail();
+				} catch (ChunkIntegrityException e) {
+					assertEquals(3, e.getChunkIndex());
+				}
+			}
+		}
+		// Without verification, the chunk is readable.
+		try (IAFF4Container container = Containers.open(file, ChunkCache.create(ChunkCache.DEFAULT_CACHE_SIZE))) {
+			try (AFF4ImageStream stream = (AFF4ImageStream) container.open(STREAM)) {
+				assertEquals(CHUNK_SIZE, stream.read(3 * CHUNK_SIZE, ByteBuffer.allocate(CHUNK_SIZE)));
+			}
+		}
+	}
+
+	@Test
+	public void testCachedChunk() throws Exception {
+		File file = ContainerFixtures.copy("/Base-Linear-AllHashes.aff4", folder.getRoot());
+		ContainerFixtures.corrupt(file, STREAM + "/00000000.blockHash.sha512", 3 * 64);
+		ChunkCache cache = ChunkCache.create(ChunkCache.DEFAULT_CACHE_SIZE);
+		// Populate the cache without verification.
+		File original = ContainerFixtures.getFile("/Base-Linear-AllHashes.aff4");
+		try (IAFF4Container container = Containers.open(original, cache)) {
+			try (AFF4ImageStream stream = (AFF4ImageStream) container.open(STREAM)) {
+				assertEquals(CHUNK_SIZE, stream.read(3 * CHUNK_SIZE, ByteBuffer.allocate(CHUNK_SIZE)));
+			}
+		}
+		// Cached chunks are still verified.
+		try (IAFF4Container container = Containers.open(file, cache)) {
+			((AFF4ZipContainer) container).setVerifyOnRead(true);
+			try (AFF4ImageStream stream = (AFF4ImageStream) container.open(STREAM)) {
+				assertIntegrityFailure(stream, 3);
+			}
+		}
+	}
+
+	private void assertIntegrityFailure(AFF4ImageStream stream, long chunkIndex) throws Exception {
+		try {
+			stream.read(chunkIndex * CHUNK_SIZE, ByteBuffer.allocate(CHUNK_SIZE));
+			fail();
+		} catch (ChunkIntegrityException e) {
+			assertEquals(STREAM, e.getStream());
+			assertEquals(chunkIndex, e.getChunkIndex());
+			assertEquals(chunkIndex * CHUNK_SIZE, e.getOffset());
+			assertEquals(AFF4Lexicon.SHA512, e.getType());
+		}
+	}
+
+	private String getDigest(IAFF4Map map) throws Exception {
+		MessageDigest md = MessageDigest.getInstance("SHA-1");
+		ByteBuffer buffer = ByteBuffer.allocate(1024 * 1024);
+		long offset = 0;
+		while (offset < map.size()) {
+			buffer.clear();
+			int read = map.read(offset, buffer);
+			assertTrue(read > 0);
+			buffer.flip();
+			md.update(buffer);
+			offset += read;
+		}
+		return Hex.encodeHexString(md.digest());
+	}
+}
@@ -0,0 +1,83 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.digest;
+
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH comparison of the {@link Blake2bDigest} against the JDK SHA-512 and SHA-1 digests.
+ * <p>
+ * Each invocation digests a single buffer, either a typical 32KiB chunk as hashed by block hash verification, or a
+ * 1MiB buffer as hashed by a linear image digest. Run via {@link #main(String[])} using the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Blake2bBenchmark {
+
+	@Param({ "32768", "1048576" })
+	public int size;
+
+	@Param({ Blake2bDigest.ALGORITHM, "SHA-512", "SHA-1" })
+	public String algorithm;
+
+	private MessageDigest md;
+	private byte[] data;
+	private byte[] digest;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		md = DigestEngine.getMessageDigest(algorithm);
+		data = new byte[size];
+		new Random(0x4aff4).nextBytes(data);
+		digest = new byte[md.getDigestLength()];
+	}
+
+	/**
+	 * Digest a single buffer.
+	 */
+	@Benchmark
+	public byte[] digest() throws Exception {
+		md.update(data, 0, data.length);
+		md.digest(digest, 0, digest.length);
+		return digest;
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder().include(Blake2bBenchmark.class.getSimpleName()).build()).run();
+	}
+}
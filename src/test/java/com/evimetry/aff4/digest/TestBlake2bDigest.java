@@ -0,0 +1,142 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.digest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import org.apache.commons.codec.binary.Hex;
+import org.junit.Test;
+
+import com.evimetry.aff4.AFF4Lexicon;
+import com.evimetry.aff4.Containers;
+import com.evimetry.aff4.IAFF4Container;
+import com.evimetry.aff4.container.TestContainer;
+import com.evimetry.aff4.imagestream.AFF4ImageStream;
+
+/**
+ * Tests for the BLAKE2b-512 message digest.
+ */
+public class TestBlake2bDigest {
+
+	private final static String LONG_DIGEST = "a0b4e1c912a57364ed019d57296b9f14fd4ac7a36dc5b324706ba2b1497cf7b5"
+			+ "8b813ef6d86efab3a9461768ea9a552ab97554f8c4b010ed26d04ae6158bcedf";
+
+	@Test
+	public void testVectors() {
+		Blake2bDigest md = new Blake2bDigest();
+		assertEquals("786a02f742015903c6c6fd852552d272912f4740e15847618a86e217f71f5419"
+				+ "d25e1031afee585313896444934eb04b903a685b1448b755d56f701afe9be2ce", Hex.encodeHexString(md.digest()));
+		assertEquals("ba80a53f981c4d0d6a2797b69f12f6e94c212f14685ac4b74b12bb6fdbffa2d1"
+				+ "7d87c5392aab792dc252d5de4533cc9518d38aa8dbf1925ab92386edd4009923",
+				Hex.encodeHexString(md.digest("abc".getBytes(StandardCharsets.US_ASCII))));
+		// A single whole block.
+		assertEquals("865939e120e6805438478841afb739ae4250cf372653078a065cdcfffca4caf7"
+				+ "98e6d462b65d658fc165782640eded70963449ae1500fb0f24981d7727e22c41",
+				Hex.encodeHexString(md.digest(new byte[128])));
+	}
+
+	@Test
+	public void testIncremental() throws Exception {
+		byte[] data = new byte[100000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i % 251);
+		}
+		MessageDigest md = DigestEngine.getMessageDigest(DigestEngine.getAlgorithm(AFF4Lexicon.Blake2b));
+		assertEquals(LONG_DIGEST, Hex.encodeHexString(md.digest(data)));
+
+		// Random update lengths, crossing block boundaries, with single bytes and direct buffers.
+		Random random = new Random(0x4aff4);
+		int offset = 0;
+		while (offset < data.length) {
+			int length = Math.min(data.length - offset, random.nextInt(300));
+			switch (random.nextInt(3)) {
+			case 0:
+				md.update(data, offset, length);
+				break;
+			case 1:
+				for (int i = 0; i < length; i++) {
+					md.update(data[offset + i]);
+				}
+				break;
+			default:
+				ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+				buffer.put(data, offset, length).flip();
+				md.update(buffer);
+			}
+			offset += length;
+		}
+		byte[] digest = new byte[Blake2bDigest.DIGEST_LENGTH];
+		assertEquals(Blake2bDigest.DIGEST_LENGTH, md.digest(digest, 0, digest.length));
+		assertEquals(LONG_DIGEST, Hex.encodeHexString(digest));
+	}
+
+	@Test
+	public void testClone() throws Exception {
+		byte[] data = new byte[100000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i % 251);
+		}
+		Blake2bDigest md = new Blake2bDigest();
+		md.update(data, 0, 50000);
+		MessageDigest clone = (MessageDigest) md.clone();
+		md.update(data, 50000, 50000);
+		clone.update(data, 50000, 50000);
+		assertEquals(LONG_DIGEST, Hex.encodeHexString(md.digest()));
+		assertEquals(LONG_DIGEST, Hex.encodeHexString(clone.digest()));
+	}
+
+	@Test
+	public void testProvider() throws Exception {
+		MessageDigest md = MessageDigest.getInstance("BLAKE2B", new AFF4DigestProvider());
+		assertEquals(Blake2bDigest.ALGORITHM, md.getAlgorithm());
+		assertEquals(Blake2bDigest.DIGEST_LENGTH, md.getDigestLength());
+	}
+
+	@Test
+	public void testImageStreamHash() throws Exception {
+		URL url = TestContainer.class.getResource("/Base-Linear-AllHashes.aff4");
+		File file = Paths.get(url.toURI()).toFile();
+		try (IAFF4Container container = Containers.open(file)) {
+			try (AFF4ImageStream stream = (AFF4ImageStream) container
+					.open("aff4://e53a108a-bb2e-41f4-ab2e-28fe4ef578c1")) {
+				Blake2bDigest md = new Blake2bDigest();
+				ByteBuffer buffer = ByteBuffer.allocate(1024 * 1024);
+				long offset = 0;
+				while (offset < stream.size()) {
+					buffer.clear();
+					int read = stream.read(offset, buffer);
+					assertTrue(read > 0);
+					buffer.flip();
+					md.update(buffer);
+					offset += read;
+				}
+				// The stored aff4:hash of the stream.
+				assertEquals("042ab10e686b199d5e7c5f5fc27b8e1572d846abacca6d0c0028b289753496264365d1e21c1fdb92c8a2"
+						+ "2bd4bac05d5ee20a3345d281fee9fbdd3ff3387486d2", Hex.encodeHexString(md.digest()));
+			}
+		}
+	}
+}
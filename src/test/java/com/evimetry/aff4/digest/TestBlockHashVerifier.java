@@ -0,0 +1,136 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.digest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.evimetry.aff4.AFF4Lexicon;
+import com.evimetry.aff4.Containers;
+import com.evimetry.aff4.IAFF4Container;
+import com.evimetry.aff4.container.ContainerFixtures;
+import com.evimetry.aff4.digest.VerificationResult.Check;
+import com.evimetry.aff4.digest.VerificationResult.CorruptChunk;
+import com.evimetry.aff4.digest.VerificationResult.Status;
+
+/**
+ * Tests for verification of stored block hashes.
+ */
+public class TestBlockHashVerifier {
+
+	private final static String STREAM = "aff4://e53a108a-bb2e-41f4-ab2e-28fe4ef578c1";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testAllHashes() throws Exception {
+		VerificationResult result = verify(ContainerFixtures.getFile("/Base-Linear-AllHashes.aff4"));
+		assertTrue(result.isValid());
+		assertTrue(result.getCorruptChunks().isEmpty());
+		for (AFF4Lexicon type : new AFF4Lexicon[] { AFF4Lexicon.MD5, AFF4Lexicon.SHA1, AFF4Lexicon.SHA256,
+				AFF4Lexicon.SHA512, AFF4Lexicon.Blake2b }) {
+			assertStatus(result, AFF4Lexicon.BlockHashes, type, Status.VALID);
+		}
+		assertStatus(result, AFF4Lexicon.imageStreamIndexHash, AFF4Lexicon.SHA512, Status.VALID);
+		assertStatus(result, AFF4Lexicon.blockMapHash, AFF4Lexicon.SHA512, Status.VALID);
+		assertStatus(result, AFF4Lexicon.mapHash, AFF4Lexicon.SHA512, Status.VALID);
+		// The hash of each type's block hash segments.
+		assertEquals(5, result.getChecks().stream().filter(c -> c.getProperty() == AFF4Lexicon.hash
+				&& !c.getResource().equals(STREAM) && c.getStatus() == Status.VALID).count());
+		// The linear hash of the stream contents, of each type.
+		assertEquals(5, result.getChecks().stream().filter(c -> c.getProperty() == AFF4Lexicon.hash
+				&& c.getResource().equals(STREAM) && c.getStatus() == Status.VALID).count());
+	}
+
+	@Test
+	public void testStreamHash() throws Exception {
+		VerificationResult result = verify(ContainerFixtures.getFile("/Base-Linear.aff4"));
+		assertTrue(result.isValid());
+		String stream = ContainerFixtures.LINEAR_STREAM;
+		assertStreamHash(result, stream, AFF4Lexicon.SHA1, "fbac22cca549310bc5df03b7560afcf490995fbb");
+		assertStreamHash(result, stream, AFF4Lexicon.MD5, "d5825dc1152a42958c8219ff11ed01a3");
+		assertStatus(result, AFF4Lexicon.imageStreamHash, AFF4Lexicon.SHA512, Status.UNSUPPORTED);
+	}
+
+	@Test
+	public void testStandardImages() throws Exception {
+		for (String name : new String[] { "/Base-Linear.aff4", "/Base-Allocated.aff4", "/Base-Linear-ReadError.aff4" }) {
+			VerificationResult result = verify(ContainerFixtures.getFile(name));
+			assertTrue(name, result.isValid());
+			assertStatus(result, AFF4Lexicon.blockMapHash, AFF4Lexicon.SHA512, Status.VALID);
+			assertStatus(result, AFF4Lexicon.BlockHashes, AFF4Lexicon.SHA1, Status.VALID);
+		}
+	}
+
+	@Test
+	public void testCorruptBlockHash() throws Exception {
+		File file = ContainerFixtures.copy("/Base-Linear-AllHashes.aff4", folder.getRoot());
+		// Alter the stored SHA1 hash of chunk 5.
+		ContainerFixtures.corrupt(file, STREAM + "/00000000.blockHash.sha1", 5 * 20);
+		VerificationResult result = verify(file);
+		assertFalse(result.isValid());
+		List<CorruptChunk> chunks = result.getCorruptChunks();
+		assertEquals(1, chunks.size());
+		assertEquals(5, chunks.get(0).getChunkIndex());
+		assertEquals(5 * 32768, chunks.get(0).getOffset());
+		assertEquals(AFF4Lexicon.SHA1, chunks.get(0).getType());
+		assertStatus(result, AFF4Lexicon.BlockHashes, AFF4Lexicon.SHA1, Status.INVALID);
+		assertStatus(result, AFF4Lexicon.BlockHashes, AFF4Lexicon.MD5, Status.VALID);
+	}
+
+	@Test
+	public void testCorruptChunk() throws Exception {
+		File file = ContainerFixtures.copy("/Base-Linear-AllHashes.aff4", folder.getRoot());
+		// Alter the compressed contents of the first chunk.
+		ContainerFixtures.corrupt(file, STREAM + "/00000000", 100);
+		VerificationResult result = verify(file);
+		assertFalse(result.isValid());
+		assertFalse(result.getCorruptChunks().isEmpty());
+		for (CorruptChunk chunk : result.getCorruptChunks()) {
+			assertEquals(0, chunk.getChunkIndex());
+		}
+		assertStatus(result, AFF4Lexicon.hash, AFF4Lexicon.SHA1, Status.INVALID);
+	}
+
+	private VerificationResult verify(File file) throws Exception {
+		try (IAFF4Container container = Containers.open(file)) {
+			return new BlockHashVerifier(ForkJoinPool.commonPool()).verify(container);
+		}
+	}
+
+	private void assertStatus(VerificationResult result, AFF4Lexicon property, AFF4Lexicon type, Status status) {
+		List<Check> checks = result.getChecks();
+		assertTrue(property + " " + type, checks.stream()
+				.anyMatch(c -> c.getProperty() == property && c.getType() == type && c.getStatus() == status));
+	}
+
+	private void assertStreamHash(VerificationResult result, String stream, AFF4Lexicon type, String expected) {
+		assertTrue(type.toString(), result.getChecks().stream()
+				.anyMatch(c -> c.getResource().equals(stream) && c.getProperty() == AFF4Lexicon.hash
+						&& c.getType() == type && expected.equals(c.getComputed()) && c.getStatus() == Status.VALID));
+	}
+}
@@ -0,0 +1,196 @@
+/*
+  This file is part of AFF4 Java.
+
+  AFF4 Java is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  AFF4 Java is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with AFF4 Java.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.evimetry.aff4.digest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.MessageDigestSpi;
+import java.security.Provider;
+import java.security.Security;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.codec.binary.Hex;
+import org.junit.Test;
+
+import com.evimetry.aff4.AFF4Lexicon;
+import com.evimetry.aff4.Containers;
+import com.evimetry.aff4.IAFF4Container;
+import com.evimetry.aff4.IAFF4Map;
+import com.evimetry.aff4.container.TestContainer;
+
+/**
+ * Tests for single pass multiple digest calculation.
+ */
+public class TestDigestEngine {
+
+	@Test
+	public void testLinear() throws Exception {
+		testImage("/Base-Linear.aff4", "7d3d27f667f95f7ec5b9d32121622c0f4b60b48d");
+	}
+
+	@Test
+	public void testAllocated() throws Exception {
+		testImage("/Base-Allocated.aff4", "e8650e89b262cf0b4b73c025312488d5a6317a26");
+	}
+
+	@Test
+	public void testSerial() throws Exception {
+		URL url = TestContainer.class.getResource("/Base-Linear.aff4");
+		File file = Paths.get(url.toURI()).toFile();
+		try (IAFF4Container container = Containers.open(file)) {
+			IAFF4Map map = container.getImages().next().getMap();
+			// Small odd sized buffers to force buffer reuse and partial fills.
+			DigestEngine engine = new DigestEngine(null).setBuffers(65521, 2);
+			Map<String, byte[]> digests = engine.digest(map, "SHA-1");
+			assertEquals("7d3d27f667f95f7ec5b9d32121622c0f4b60b48d", Hex.encodeHexString(digests.get("SHA-1")));
+		}
+	}
+
+	/**
+	 * Test a read failure is thrown in preference to a concurrent digest failure, which is added as suppressed.
+	 * 
+	 * @throws Exception something went wrong.
+	 */
+	@Test
+	public void testReadFailureNotMasked() throws Exception {
+		Provider provider = new Provider("AFF4Test", 1.0, "Failing digest") {
+			private static final long serialVersionUID = 1L;
+			{
+				put("MessageDigest.AFF4-TEST-FAIL", FailingDigest.class.getName());
+			}
+		};
+		Security.addProvider(provider);
+		try {
+			AtomicInteger reads = new AtomicInteger();
+			IAFF4Map map = (IAFF4Map) Proxy.newProxyInstance(getClass().getClassLoader(),
+					new Class<?>[] { IAFF4Map.class }, (proxy, method, args) -> {
+						if (method.getName().equals("size")) {
+							return 1024L;
+						}
+						if (method.getName().equals("read") && args.length == 2) {
+							if (reads.getAndIncrement() == 0) {
+								ByteBuffer dst = (ByteBuffer) args[1];
+								int length = dst.remaining();
+								dst.put(new byte[length]);
+								return length;
+							}
+							// Fail the read once the digest has failed on the first buffer.
+							FailingDigest.READ.countDown();
+							FailingDigest.FAILED.await();
+							throw new IOException("Read failed");
+						}
+						throw new UnsupportedOperationException(method.getName());
+					});
+			try {
+				new DigestEngine(null).setBuffers(16, 2).digest(map, "AFF4-TEST-FAIL");
+				fail();
+			} catch (IOException e) {
+				assertEquals("Read failed", e.getMessage());
+				assertEquals(1, e.getSuppressed().length);
+				assertEquals("Digest failed", e.getSuppressed()[0].getCause().getMessage());
+			}
+		} finally {
+			Security.removeProvider(provider.getName());
+		}
+	}
+
+	/**
+	 * A digest which fails on the first update, once the read is waiting for it.
+	 */
+	public static class FailingDigest extends MessageDigestSpi {
+
+		private final static CountDownLatch READ = new CountDownLatch(1);
+		private final static CountDownLatch FAILED = new CountDownLatch(1);
+
+		@Override
+		protected void engineUpdate(byte input) {
+			engineUpdate(new byte[] { input }, 0, 1);
+		}
+
+		@Override
+		protected void engineUpdate(byte[] input, int offset, int len) {
+			try {
+				READ.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			FAILED.countDown();
+			throw new IllegalStateException("Digest failed");
+		}
+
+		@Override
+		protected byte[] engineDigest() {
+			return new byte[0];
+		}
+
+		@Override
+		protected void engineReset() {
+		}
+	}
+
+	private void testImage(String resource, String sha1) throws Exception {
+		URL url = TestContainer.class.getResource(resource);
+		File file = Paths.get(url.toURI()).toFile();
+		try (IAFF4Container container = Containers.open(file)) {
+			IAFF4Map map = container.getImages().next().getMap();
+			long mapSize = map.size();
+			AtomicLong last = new AtomicLong();
+			DigestEngine engine = new DigestEngine(ForkJoinPool.commonPool()).setBuffers(65521, 4);
+			engine.setListener((position, size, rate) -> {
+				assertTrue(position >= last.get());
+				assertEquals(mapSize, size);
+				last.set(position);
+			});
+			Map<AFF4Lexicon, byte[]> digests = engine.digest(map, AFF4Lexicon.MD5, AFF4Lexicon.SHA1,
+					AFF4Lexicon.SHA256, AFF4Lexicon.SHA512);
+			assertEquals(mapSize, last.get());
+			assertEquals(sha1, Hex.encodeHexString(digests.get(AFF4Lexicon.SHA1)));
+			assertArrayEquals(serial(map, "MD5"), digests.get(AFF4Lexicon.MD5));
+			assertArrayEquals(serial(map, "SHA-256"), digests.get(AFF4Lexicon.SHA256));
+			assertArrayEquals(serial(map, "SHA-512"), digests.get(AFF4Lexicon.SHA512));
+		}
+	}
+
+	private byte[] serial(IAFF4Map map, String algorithm) throws Exception {
+		MessageDigest md = MessageDigest.getInstance(algorithm);
+		ByteBuffer buffer = ByteBuffer.allocate(1024 * 1024);
+		long offset = 0;
+		while (offset < map.size()) {
+			buffer.clear();
+			int read = map.read(offset, buffer);
+			assertTrue(read > 0);
+			buffer.flip();
+			md.update(buffer);
+			offset += read;
+		}
+		return md.digest();
+	}
+}
@@ -18,13 +18,10 @@
 package com.evimetry.aff4.examples;
 
 import java.io.File;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.channels.SeekableByteChannel;
-import java.security.MessageDigest;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.codec.binary.Hex;
 import org.slf4j.Logger;
@@ -35,10 +32,10 @@ import com.evimetry.aff4.Containers;
 import com.evimetry.aff4.IAFF4Container;
 import com.evimetry.aff4.IAFF4Image;
 import com.evimetry.aff4.IAFF4Map;
-import com.evimetry.aff4.imagestream.Streams;
+import com.evimetry.aff4.digest.DigestEngine;
 
 /**
- * Example application that will calculate the SHA1 digest of the first image in the provided container.
+ * Example application that will calculate the MD5, SHA1 and SHA256 digests of the first image in the provided container.
  */
 public class Digest {
 
@@ -71,37 +68,21 @@ public class Digest {
 			exportProperties(image.getResourceID(), image.getProperties());
 
 			/*
-			 * Get the map object of the image, and construct a channel based on the map.
+			 * Get the map object of the image, and digest it once for MD5, SHA1 and SHA256, decompressing chunks on
+			 * the common pool.
 			 */
 			IAFF4Map map = image.getMap();
-			try (SeekableByteChannel channel = map.getChannel()) {
-				/*
-				 * Construct a message digest to generate the digest.
-				 */
-				MessageDigest md = MessageDigest.getInstance("SHA-1");
-				ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024).order(ByteOrder.LITTLE_ENDIAN);
-
-				/*
-				 * Read a buffer full of the stream at a time, adding to the message digest as we go.
-				 */
-				channel.position(0);
-				long length = channel.size();
-				long offset = 0;
-				while (offset < length) {
-					/*
-					 * Use the helper to read buffers at a time.
-					 */
-					int read = Streams.readFull(channel, offset, buffer);
-					buffer.flip();
-					md.update(buffer);
-					buffer.position(0); // don't forget to reset the position in the buffer after adding to the digest.
-					offset += read;
-				}
-				/*
-				 * Get and print the result of the digest.
-				 */
-				String result = Hex.encodeHexString(md.digest());
-				System.out.println("SHA1 : " + result);
+			DigestEngine engine = new DigestEngine(ForkJoinPool.commonPool());
+			engine.setListener((position, size, rate) -> System.out.printf("\r%d%% (%.1f MB/s)",
+					size == 0 ? 100 : position * 100 / size, rate / (1024 * 1024)));
+			Map<AFF4Lexicon, byte[]> digests = engine.digest(map, AFF4Lexicon.MD5, AFF4Lexicon.SHA1,
+					AFF4Lexicon.SHA256);
+			System.out.println();
+			/*
+			 * Print the result of each digest.
+			 */
+			for (Map.Entry<AFF4Lexicon, byte[]> entry : digests.entrySet()) {
+				System.out.println(entry.getKey().name() + " : " + Hex.encodeHexString(entry.getValue()));
 			}
 		} catch (Throwable e) {
 			logger.error(e.getMessage());
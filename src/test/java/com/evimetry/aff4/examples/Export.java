@@ -18,9 +18,9 @@
 package com.evimetry.aff4.examples;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
-import java.nio.channels.SeekableByteChannel;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
@@ -71,22 +71,24 @@ public class Export {
 			exportProperties(image.getResourceID(), image.getProperties());
 
 			/*
-			 * Get the map object of the image, and construct a channel based on the map.
+			 * Get the map object of the image, and the channel of our target.
 			 */
 			IAFF4Map map = image.getMap();
-			try (SeekableByteChannel channel = map.getChannel();
-					FileChannel outputChannel = outContainer.getChannel()) {
+			try (FileChannel outputChannel = outContainer.getChannel()) {
 
 				/*
-				 * Read a buffer full of the stream at a time, adding to the output channel as we go.
+				 * Transfer the image to the output channel. Chunks stored uncompressed are copied directly from the
+				 * container, and the transfer may be short, so loop until complete.
 				 */
-				channel.position(0);
 				outputChannel.position(0);
-				/*
-				 * Note: The following works in limited testing, however as per API documentation, is not guaranteed to
-				 * actually transfer the whole source channel in a single call.
-				 */
-				outputChannel.transferFrom(channel, 0, channel.size());
+				long position = 0;
+				while (position < map.size()) {
+					long transferred = map.transferTo(position, map.size() - position, outputChannel);
+					if (transferred <= 0) {
+						throw new IOException("Transfer failed at offset " + position);
+					}
+					position += transferred;
+				}
 				/*
 				 * And finish
 				 */
@@ -0,0 +1,109 @@
+/*
+  This file is part of AFF4 Java.
+  
+  Copyright (c) 2017-2019 Schatz Forensic Pty Ltd
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+	
+	    http://www.apache.org/licenses/LICENSE-2.0
+	
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.evimetry.aff4.examples;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.evimetry.aff4.Containers;
+import com.evimetry.aff4.IAFF4Container;
+import com.evimetry.aff4.IAFF4Image;
+import com.evimetry.aff4.IAFF4Map;
+import com.evimetry.aff4.analysis.CompressionHeatmap;
+import com.evimetry.aff4.analysis.HeatmapBucket;
+
+/**
+ * Example application that will print a compression heatmap of each image in the provided container, computed from the
+ * stream indexes alone.
+ */
+public class Heatmap {
+
+	private final static Logger logger = LoggerFactory.getLogger(Heatmap.class);
+
+	/**
+	 * The width of the density bar.
+	 */
+	private final static int BAR_WIDTH = 32;
+
+	/**
+	 * Application entry point.
+	 * 
+	 * @param args The application arguments.
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.out.println("Usage: Heatmap <file> [bucket size in MiB]");
+			return;
+		}
+		String filename = args[0];
+		File file = new File(filename);
+		long bucketSize = args.length > 1 ? Long.parseLong(args[1]) * 1024l * 1024l
+				: CompressionHeatmap.DEFAULT_BUCKET_SIZE;
+		/*
+		 * Open the container.
+		 */
+		try (IAFF4Container container = Containers.open(file)) {
+			CompressionHeatmap heatmap = new CompressionHeatmap(bucketSize);
+			Iterator<IAFF4Image> images = container.getImages();
+			while (images.hasNext()) {
+				IAFF4Image image = images.next();
+				IAFF4Map map = image.getMap();
+				System.out.println("Image: " + image.getResourceID());
+				/*
+				 * Analyse the image, and print each bucket.
+				 */
+				long start = System.nanoTime();
+				List<HeatmapBucket> buckets = heatmap.analyse(map);
+				long elapsed = System.nanoTime() - start;
+				for (HeatmapBucket bucket : buckets) {
+					print(bucket);
+				}
+				/*
+				 * And the summary for the whole image.
+				 */
+				HeatmapBucket total = CompressionHeatmap.total(buckets);
+				System.out.println("Total:");
+				print(total);
+				System.out.printf("Holes: %d, Sparse: %d, Incompressible: %d, Unknown: %d bytes (%d ms)%n",
+						total.getHoleBytes(), total.getSparseBytes(), total.getIncompressibleBytes(),
+						total.getUnknownBytes(), elapsed / 1000000);
+			}
+		} catch (Throwable e) {
+			logger.error(e.getMessage());
+		}
+	}
+
+	/**
+	 * Print a bucket as a single line, with a bar showing its density.
+	 * 
+	 * @param bucket The bucket.
+	 */
+	private static void print(HeatmapBucket bucket) {
+		double density = bucket.getDensity();
+		int width = Double.isNaN(density) ? 0 : (int) Math.round(Math.min(1.0, density) * BAR_WIDTH);
+		StringBuilder bar = new StringBuilder(BAR_WIDTH);
+		for (int i = 0; i < BAR_WIDTH; i++) {
+			bar.append(i < width ? '#' : '.');
+		}
+		System.out.printf("0x%012x %-14s %6.1f%% [%s]%n", bucket.getOffset(), bucket.getKind(),
+				Double.isNaN(density) ? 0.0 : density * 100, bar);
+	}
+}
@@ -0,0 +1,183 @@
+/*
+  This file is part of AFF4 Java.
+  
+  Copyright (c) 2017-2019 Schatz Forensic Pty Ltd
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+	
+	    http://www.apache.org/licenses/LICENSE-2.0
+	
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+
+package com.evimetry.aff4.imagestream;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.evimetry.aff4.AFF4;
+import com.evimetry.aff4.Containers;
+import com.evimetry.aff4.IAFF4Container;
+import com.evimetry.aff4.container.AFF4ZipContainer;
+import com.evimetry.aff4.container.TestContainer;
+
+/**
+ * JMH comparison of reads of a complete image stream.
+ * <p>
+ * The copy benchmarks are synthetic: they copy a fixed in-memory chunk, and isolate the byte-by-byte copy loop
+ * previously used by {@link AFF4ImageStream#read(ByteBuffer)} from the bulk copy without touching the stream. The read
+ * benchmarks go through the stream, one chunk per call as reads were previously returned, filling the whole buffer in
+ * one call, and with the parallel decompression pipeline.
+ * <p>
+ * Run via {@link #main(String[])} using the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageStreamReadBenchmark {
+
+	private final static String streamID = "aff4://c215ba20-5648-4209-a793-1f918c723610";
+	/**
+	 * The size of the destination buffer (1MiB).
+	 */
+	private final static int READ_SIZE = 1024 * 1024;
+
+	private IAFF4Container container;
+	private AFF4ImageStream stream;
+	private SeekableByteChannel channel;
+	private ByteBuffer chunk;
+	private ByteBuffer destination;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		File file = Paths.get(TestContainer.class.getResource("/Base-Linear.aff4").toURI()).toFile();
+		container = Containers.open(file);
+		stream = (AFF4ImageStream) ((AFF4ZipContainer) container).getImageStream(streamID);
+		channel = stream.getChannel();
+		chunk = ByteBuffer.allocateDirect(AFF4.DEFAULT_CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		destination = ByteBuffer.allocateDirect(READ_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	@TearDown(Level.Trial)
+	public void teardown() throws Exception {
+		channel.close();
+		container.close();
+	}
+
+	/**
+	 * Synthetic: fill a 1MiB buffer from an in-memory chunk one byte at a time, as the previous implementation copied.
+	 */
+	@Benchmark
+	public void syntheticByteCopy(Blackhole bh) {
+		destination.clear();
+		while (destination.hasRemaining()) {
+			chunk.position(0);
+			while (destination.hasRemaining() && chunk.hasRemaining()) {
+				destination.put(chunk.get());
+			}
+		}
+		bh.consume(destination);
+	}
+
+	/**
+	 * Synthetic: fill a 1MiB buffer from an in-memory chunk with bulk slices, as the current implementation copies.
+	 */
+	@Benchmark
+	public void syntheticBulkCopy(Blackhole bh) {
+		destination.clear();
+		while (destination.hasRemaining()) {
+			ByteBuffer region = chunk.duplicate();
+			region.limit(Math.min(region.capacity(), destination.remaining()));
+			destination.put(region);
+		}
+		bh.consume(destination);
+	}
+
+	/**
+	 * End to end read of the complete image stream, with each read limited to a single chunk.
+	 */
+	@Benchmark
+	public void readStreamByChunk(Blackhole bh) throws Exception {
+		long length = stream.size();
+		long offset = 0;
+		while (offset < length) {
+			chunk.clear();
+			int read = stream.read(offset, chunk);
+			if (read <= 0) {
+				break;
+			}
+			offset += read;
+		}
+		bh.consume(chunk);
+	}
+
+	/**
+	 * End to end read of the complete image stream with a 1MiB buffer.
+	 */
+	@Benchmark
+	public void readStream(Blackhole bh) throws Exception {
+		channel.position(0);
+		long length = channel.size();
+		long offset = 0;
+		while (offset < length) {
+			destination.clear();
+			int read = Streams.readFull(channel, offset, destination);
+			if (read <= 0) {
+				break;
+			}
+			offset += read;
+		}
+		bh.consume(destination);
+	}
+
+	/**
+	 * End to end read of the complete image stream with the parallel decompression pipeline.
+	 */
+	@Benchmark
+	public void pipelinedReadStream(Blackhole bh) throws Exception {
+		long length = stream.size();
+		long offset = 0;
+		while (offset < length) {
+			destination.clear();
+			int read = stream.read(offset, destination, ForkJoinPool.commonPool());
+			if (read <= 0) {
+				break;
+			}
+			offset += read;
+		}
+		bh.consume(destination);
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder().include(ImageStreamReadBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,181 @@
+/*
+  This file is part of AFF4 Java.
+  
+  Copyright (c) 2017-2019 Schatz Forensic Pty Ltd
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+	
+	    http://www.apache.org/licenses/LICENSE-2.0
+	
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.evimetry.aff4.imagestream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+
+import org.apache.commons.codec.binary.Hex;
+import org.junit.Test;
+
+import com.evimetry.aff4.ChunkView;
+import com.evimetry.aff4.Containers;
+import com.evimetry.aff4.IAFF4Container;
+import com.evimetry.aff4.IAFF4ImageStream;
+import com.evimetry.aff4.IAFF4Map;
+import com.evimetry.aff4.cache.ChunkCache;
+import com.evimetry.aff4.container.AFF4ZipContainer;
+import com.evimetry.aff4.container.TestContainer;
+
+/**
+ * Test read-only views of images and streams.
+ */
+public class TestChunkView {
+
+	private final String file_1 = "/Base-Linear.aff4";
+	private final String stream_1 = "aff4://c215ba20-5648-4209-a793-1f918c723610";
+	private final String streamSHA1_1 = "fbac22cca549310bc5df03b7560afcf490995fbb";
+	private final String mapSHA1_1 = "7d3d27f667f95f7ec5b9d32121622c0f4b60b48d";
+	private final String segment_1 = "aff4://c215ba20-5648-4209-a793-1f918c723610/00000000";
+	private final String segmentSHA1_1 = "ba85b601a65aef8adf7b0e0fb3144b217d4cd27c";
+
+	/**
+	 * Test walking a stream with views, which never span a chunk.
+	 * 
+	 * @throws Exception something went wrong.
+	 */
+	@Test
+	public void testStreamViews() throws Exception {
+		try (IAFF4Container container = open(file_1, ChunkCache.create(32 * 1024 * 1024))) {
+			AFF4ImageStream stream = (AFF4ImageStream) ((AFF4ZipContainer) container).getImageStream(stream_1);
+			int chunkSize = stream.getChunkSize();
+			MessageDigest digest = MessageDigest.getInstance("SHA1");
+			long position = 0;
+			ChunkView view;
+			while ((view = stream.view(position, 4099)) != null) {
+				try {
+					ByteBuffer data = view.getData();
+					assertTrue(data.isReadOnly());
+					assertEquals(ByteOrder.LITTLE_ENDIAN, data.order());
+					assertTrue(view.getLength() > 0);
+					assertTrue(view.getLength() <= 4099);
+					assertEquals(position / chunkSize, (position + view.getLength() - 1) / chunkSize);
+					digest.update(data);
+					position += view.getLength();
+				} finally {
+					view.close();
+				}
+			}
+			assertEquals(stream.size(), position);
+			assertEquals(streamSHA1_1, Hex.encodeHexString(digest.digest()));
+			assertNull(stream.view(stream.size(), 10));
+		}
+	}
+
+	/**
+	 * Test a held view remains valid when its chunk is evicted from the cache.
+	 * 
+	 * @throws Exception something went wrong.
+	 */
+	@Test
+	public void testViewOutlivesCache() throws Exception {
+		// A cache that holds only a couple of chunks.
+		ChunkCache cache = ChunkCache.create(64 * 1024);
+		try (IAFF4Container container = open(file_1, cache)) {
+			IAFF4ImageStream stream = ((AFF4ZipContainer) container).getImageStream(stream_1);
+			ByteBuffer expected = ByteBuffer.allocate(1000);
+			stream.read(100, expected);
+			try (ChunkView view = stream.view(100, 1000)) {
+				// Read the remainder of the stream to evict the chunk and recycle buffers.
+				ByteBuffer buffer = ByteBuffer.allocate(4096);
+				for (long position = 32768; position < stream.size(); position += 4096) {
+					buffer.clear();
+					stream.read(position, buffer);
+				}
+				byte[] actual = new byte[view.getLength()];
+				view.getData().get(actual);
+				assertArrayEquals(expected.array(), actual);
+			}
+		}
+	}
+
+	/**
+	 * Test the view lifetime.
+	 * 
+	 * @throws Exception something went wrong.
+	 */
+	@Test
+	public void testClose() throws Exception {
+		try (IAFF4Container container = open(file_1, ChunkCache.create(32 * 1024 * 1024))) {
+			IAFF4ImageStream stream = ((AFF4ZipContainer) container).getImageStream(stream_1);
+			ChunkView view = stream.view(0, 512);
+			assertTrue(view.isOpen());
+			assertEquals(512, view.getLength());
+			view.close();
+			assertFalse(view.isOpen());
+			// Closing again has no effect.
+			view.close();
+			try {
+				view.getData();
+				fail();
+			} catch (IllegalStateException e) {
+				// Expected.
+			}
+		}
+	}
+
+	/**
+	 * Test walking the image and a raw zip segment with views.
+	 * 
+	 * @throws Exception something went wrong.
+	 */
+	@Test
+	public void testMapAndSegmentViews() throws Exception {
+		try (IAFF4Container container = open(file_1, ChunkCache.create(32 * 1024 * 1024))) {
+			IAFF4Map map = container.getImages().next().getMap();
+			assertEquals(mapSHA1_1, sha1(map.size(), (position) -> map.view(position, 1024 * 1024)));
+			IAFF4ImageStream segment = ((AFF4ZipContainer) container).getSegment(segment_1);
+			assertEquals(segmentSHA1_1, sha1(segment.size(), (position) -> segment.view(position, 5000)));
+		}
+	}
+
+	private IAFF4Container open(String resource, ChunkCache cache) throws Exception {
+		URL url = TestContainer.class.getResource(resource);
+		File file = Paths.get(url.toURI()).toFile();
+		return Containers.open(file, cache);
+	}
+
+	private String sha1(long size, Viewer viewer) throws Exception {
+		MessageDigest digest = MessageDigest.getInstance("SHA1");
+		long position = 0;
+		while (position < size) {
+			try (ChunkView view = viewer.view(position)) {
+				assertTrue(view.getLength() > 0);
+				digest.update(view.getData());
+				position += view.getLength();
+			}
+		}
+		assertEquals(size, position);
+		return Hex.encodeHexString(digest.digest());
+	}
+
+	@FunctionalInterface
+	private interface Viewer {
+		ChunkView view(long position) throws Exception;
+	}
+}
@@ -18,6 +18,8 @@
 package com.evimetry.aff4.imagestream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -26,16 +28,31 @@ import java.net.URL;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
 
 import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.IOUtils;
 import org.junit.FixMethodOrder;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.rules.TestName;
 import org.junit.runner.RunWith;
 import org.junit.runners.MethodSorters;
@@ -47,8 +64,10 @@ import com.evimetry.aff4.AFF4Lexicon;
 import com.evimetry.aff4.Containers;
 import com.evimetry.aff4.IAFF4Container;
 import com.evimetry.aff4.IAFF4ImageStream;
+import com.evimetry.aff4.cache.ChunkCache;
 import com.evimetry.aff4.container.AFF4ZipContainer;
 import com.evimetry.aff4.container.TestContainer;
+import com.evimetry.aff4.rdf.NameCodec;
 
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
 @RunWith(Parameterized.class)
@@ -74,6 +93,11 @@ public class TestImageStream {
 	private final String stream_4 = "aff4://e53a108a-bb2e-41f4-ab2e-28fe4ef578c1";
 	private final String streamSHA1_4 = "fbac22cca549310bc5df03b7560afcf490995fbb";
 
+	/**
+	 * The number of chunks in each bevvy of the re-segmented copy of {@link #file_1}.
+	 */
+	private final static int SEGMENTED_CHUNKS = 16;
+
 	/**
 	 * The size of the read to perform.
 	 */
@@ -101,6 +125,9 @@ public class TestImageStream {
 	@Rule
 	public TestName name = new TestName();
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	public TestImageStream(long readSize) {
 		this.readSize = readSize;
 	}
@@ -185,6 +212,258 @@ public class TestImageStream {
 		}
 	}
 
+	/**
+	 * Test that a single read fills the buffer across chunk boundaries.
+	 * 
+	 * @throws Exception something went wrong.
+	 */
+	@Test
+	public void testLinearImageStreamSingleRead() throws Exception {
+		URL url = TestContainer.class.getResource(file_1);
+		assertSingleRead(Paths.get(url.toURI()).toFile(), AFF4.DEFAULT_CHUNK_SIZE / 2);
+		// Across the boundary between the first and second bevvy.
+		File segmented = createSegmentedContainer();
+		try (IAFF4Container container = Containers.open(segmented)) {
+			IAFF4ImageStream stream = ((AFF4ZipContainer) container).getImageStream(stream_1);
+			assertEquals(SEGMENTED_CHUNKS, ((AFF4ImageStream) stream).getChunksInSegment());
+		}
+		long boundary = (long) SEGMENTED_CHUNKS * AFF4.DEFAULT_CHUNK_SIZE;
+		assertSingleRead(segmented, Math.max(0, boundary - readSize / 2));
+	}
+
+	/**
+	 * Check a single read from the given offset fills the buffer with the same contents as reading chunk by chunk.
+	 */
+	private void assertSingleRead(File file, long offset) throws Exception {
+		try (IAFF4Container container = Containers.open(file)) {
+			@SuppressWarnings("resource")
+			AFF4ZipContainer con = (AFF4ZipContainer) container;
+			IAFF4ImageStream stream = con.getImageStream(stream_1);
+			try (SeekableByteChannel channel = stream.getChannel()) {
+				channel.position(offset);
+				ByteBuffer buffer = ByteBuffer.allocateDirect((int) readSize).order(ByteOrder.LITTLE_ENDIAN);
+				int expected = (int) Math.min(readSize, channel.size() - offset);
+				assertEquals(expected, channel.read(buffer));
+				assertEquals(offset + expected, channel.position());
+				buffer.flip();
+				assertEquals(ByteBuffer.wrap(readChunks(stream, offset, expected)), buffer);
+			}
+		}
+	}
+
+	/**
+	 * Read the given region of the stream, with each read limited to a single chunk.
+	 */
+	private byte[] readChunks(IAFF4ImageStream stream, long offset, int length) throws IOException {
+		ByteBuffer contents = ByteBuffer.allocate(length);
+		while (contents.hasRemaining()) {
+			long position = offset + contents.position();
+			int chunkRemaining = (int) (AFF4.DEFAULT_CHUNK_SIZE - position % AFF4.DEFAULT_CHUNK_SIZE);
+			ByteBuffer chunk = contents.slice();
+			chunk.limit(Math.min(chunk.remaining(), chunkRemaining));
+			int read = stream.read(position, chunk);
+			assertTrue(read > 0);
+			contents.position(contents.position() + read);
+		}
+		return contents.array();
+	}
+
+	/**
+	 * Create a copy of Base-Linear with the image stream stored in bevvies of {@link #SEGMENTED_CHUNKS} chunks.
+	 * 
+	 * @return The container file.
+	 * @throws Exception something went wrong.
+	 */
+	private File createSegmentedContainer() throws Exception {
+		File original = Paths.get(TestContainer.class.getResource(file_1).toURI()).toFile();
+		File file = folder.newFile("segmented.aff4");
+		String prefix = NameCodec.encode(stream_1) + "/";
+		String bevvyName = prefix + "00000000";
+		try (ZipFile zip = new ZipFile(original); ZipArchiveOutputStream out = new ZipArchiveOutputStream(file)) {
+			byte[] bevvy = IOUtils.toByteArray(zip.getInputStream(zip.getEntry(bevvyName)));
+			ByteBuffer index = ByteBuffer.wrap(IOUtils.toByteArray(zip.getInputStream(zip.getEntry(bevvyName
+					+ ".index")))).order(ByteOrder.LITTLE_ENDIAN);
+			int chunks = index.capacity() / 12;
+			for (ZipArchiveEntry entry : Collections.list(zip.getEntriesInPhysicalOrder())) {
+				if (entry.getName().equals(bevvyName)) {
+					for (int first = 0; first < chunks; first += SEGMENTED_CHUNKS) {
+						int count = Math.min(SEGMENTED_CHUNKS, chunks - first);
+						int last = (first + count - 1) * 12;
+						int start = (int) index.getLong(first * 12);
+						int end = (int) (index.getLong(last) + index.getInt(last + 8));
+						ByteBuffer bevvyIndex = ByteBuffer.allocate(count * 12).order(ByteOrder.LITTLE_ENDIAN);
+						for (int i = first; i < first + count; i++) {
+							bevvyIndex.putLong(index.getLong(i * 12) - start).putInt(index.getInt(i * 12 + 8));
+						}
+						String name = prefix + String.format("%08d", first / SEGMENTED_CHUNKS);
+						putEntry(out, name, Arrays.copyOfRange(bevvy, start, end));
+						putEntry(out, name + ".index", bevvyIndex.array());
+					}
+				} else if (entry.getName().equals("information.turtle")) {
+					String turtle = IOUtils.toString(zip.getInputStream(entry), StandardCharsets.UTF_8);
+					turtle = turtle.replaceAll("(chunksInSegment\\s+)\"2048\"", "$1\"" + SEGMENTED_CHUNKS + "\"");
+					putEntry(out, entry.getName(), turtle.getBytes(StandardCharsets.UTF_8));
+				} else if (!entry.getName().startsWith(bevvyName)) {
+					out.addRawArchiveEntry(entry, zip.getRawInputStream(entry));
+				}
+			}
+			out.setComment(Containers.getResourceID(original));
+		}
+		return file;
+	}
+
+	/**
+	 * Write an uncompressed zip entry.
+	 */
+	private void putEntry(ZipArchiveOutputStream out, String name, byte[] contents) throws Exception {
+		ZipArchiveEntry entry = new ZipArchiveEntry(name);
+		entry.setMethod(ZipEntry.STORED);
+		entry.setSize(contents.length);
+		CRC32 crc = new CRC32();
+		crc.update(contents);
+		entry.setCrc(crc.getValue());
+		out.putArchiveEntry(entry);
+		out.write(contents);
+		out.closeArchiveEntry();
+	}
+
+	/**
+	 * Test concurrent positional reads from multiple threads against a single stream.
+	 * 
+	 * @throws Exception something went wrong.
+	 */
+	@Test
+	public void testLinearImageStreamPositionalRead() throws Exception {
+		URL url = TestContainer.class.getResource(file_1);
+		File file = Paths.get(url.toURI()).toFile();
+		try (IAFF4Container container = Containers.open(file)) {
+			@SuppressWarnings("resource")
+			AFF4ZipContainer con = (AFF4ZipContainer) container;
+			IAFF4ImageStream stream = con.getImageStream(stream_1);
+			final int threads = 4;
+			final byte[] contents = new byte[(int) stream.size()];
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			try {
+				List<Future<Void>> results = new ArrayList<>();
+				for (int t = 0; t < threads; t++) {
+					final int thread = t;
+					results.add(executor.submit(() -> {
+						// Each thread reads every n'th region of the stream.
+						ByteBuffer buffer = ByteBuffer.allocateDirect((int) readSize);
+						for (long offset = thread * readSize; offset < contents.length; offset += threads * readSize) {
+							buffer.clear();
+							int read = Streams.readFull(stream.getChannel(), offset, buffer);
+							buffer.flip();
+							buffer.get(contents, (int) offset, read);
+						}
+						return null;
+					}));
+				}
+				for (Future<Void> result : results) {
+					result.get();
+				}
+			} finally {
+				executor.shutdown();
+			}
+			assertEquals(0, stream.getChannel().position());
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			assertEquals(streamSHA1_1, Hex.encodeHexString(md.digest(contents)));
+		}
+	}
+
+	/**
+	 * Test reading the stream with the parallel decompression pipeline.
+	 * 
+	 * @throws Exception something went wrong.
+	 */
+	@Test
+	public void testLinearImageStreamPipelinedRead() throws Exception {
+		URL url = TestContainer.class.getResource(file_1);
+		File file = Paths.get(url.toURI()).toFile();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try (IAFF4Container container = Containers.open(file)) {
+			@SuppressWarnings("resource")
+			AFF4ZipContainer con = (AFF4ZipContainer) container;
+			AFF4ImageStream stream = (AFF4ImageStream) con.getImageStream(stream_1);
+			// Fill caller supplied buffers.
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			ByteBuffer buffer = ByteBuffer.allocateDirect((int) readSize);
+			long offset = 0;
+			int read;
+			while ((read = stream.read(offset, buffer, pool)) > 0) {
+				buffer.flip();
+				md.update(buffer);
+				buffer.clear();
+				offset += read;
+			}
+			assertEquals(stream.size(), offset);
+			assertEquals(streamSHA1_1, Hex.encodeHexString(md.digest()));
+
+			// Deliver the whole stream to a consumer in order.
+			long[] expected = new long[] { 0 };
+			long count = stream.read(0, stream.size(), pool, (position, data) -> {
+				assertEquals(expected[0], position);
+				expected[0] += data.remaining();
+				md.update(data);
+			});
+			assertEquals(stream.size(), count);
+			assertEquals(streamSHA1_1, Hex.encodeHexString(md.digest()));
+			assertEquals(0, stream.getChannel().position());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Test reading chunks and stored segments via a memory mapping of the container.
+	 * 
+	 * @throws Exception something went wrong.
+	 */
+	@Test
+	public void testLinearImageStreamMemoryMapped() throws Exception {
+		URL url = TestContainer.class.getResource(file_1);
+		File file = Paths.get(url.toURI()).toFile();
+		String segment = stream_1 + "/00000000";
+		String segmentSHA1;
+		try (IAFF4Container container = Containers.open(file, ChunkCache.create(ChunkCache.DEFAULT_CACHE_SIZE))) {
+			@SuppressWarnings("resource")
+			AFF4ZipContainer con = (AFF4ZipContainer) container;
+			segmentSHA1 = getDigest(con.getSegment(segment).getChannel(), readSize);
+		}
+		try (IAFF4Container container = Containers.open(file, ChunkCache.create(ChunkCache.DEFAULT_CACHE_SIZE))) {
+			@SuppressWarnings("resource")
+			AFF4ZipContainer con = (AFF4ZipContainer) container;
+			con.setMemoryMapped(true);
+			assertNotNull(con.getMappedFile());
+			testStreamContentsRead(con.getImageStream(stream_1), streamSHA1_1, readSize);
+			assertEquals(segmentSHA1, getDigest(con.getSegment(segment).getChannel(), readSize));
+			con.setMemoryMapped(false);
+			assertNull(con.getMappedFile());
+		}
+	}
+
+	/**
+	 * Get the sha1 of the contents of the given channel.
+	 * 
+	 * @param channel The channel to read. The channel will be closed.
+	 * @param readSize The size of reads to perform.
+	 * @return The sha1 of the contents.
+	 * @throws IOException IO Failed.
+	 * @throws NoSuchAlgorithmException
+	 */
+	private String getDigest(SeekableByteChannel channel, long readSize) throws IOException, NoSuchAlgorithmException {
+		try (SeekableByteChannel c = channel) {
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			ByteBuffer buffer = ByteBuffer.allocateDirect((int) readSize);
+			while (c.read(buffer) > 0) {
+				buffer.flip();
+				md.update(buffer);
+				buffer.clear();
+			}
+			return Hex.encodeHexString(md.digest());
+		}
+	}
+
 	/**
 	 * Read the contents of the given segment, and compare to a sha1 of the contents.
 	 * 
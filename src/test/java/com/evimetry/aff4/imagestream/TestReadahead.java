@@ -0,0 +1,136 @@
+/*
+  This file is part of AFF4 Java.
+  
+  Copyright (c) 2017-2019 Schatz Forensic Pty Ltd
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+	
+	    http://www.apache.org/licenses/LICENSE-2.0
+	
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+
+package com.evimetry.aff4.imagestream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.codec.binary.Hex;
+import org.junit.Test;
+
+import com.evimetry.aff4.Containers;
+import com.evimetry.aff4.IAFF4Container;
+import com.evimetry.aff4.cache.ChunkCache;
+import com.evimetry.aff4.container.AFF4ZipContainer;
+import com.evimetry.aff4.container.TestContainer;
+
+public class TestReadahead {
+
+	private final String file_1 = "/Base-Linear.aff4";
+	private final String stream_1 = "aff4://c215ba20-5648-4209-a793-1f918c723610";
+	private final String streamSHA1_1 = "fbac22cca549310bc5df03b7560afcf490995fbb";
+
+	/**
+	 * Test the readahead window grows with sequential access, and is dropped on random access.
+	 */
+	@Test
+	public void testReadaheadWindow() {
+		ReadaheadWindow window = new ReadaheadWindow(2, 8);
+		// First access has no history.
+		assertNull(window.access(0, 1));
+		assertArrayEquals(new long[] { 2, 4 }, window.access(1, 2));
+		assertArrayEquals(new long[] { 4, 7 }, window.access(2, 3));
+		// Reading within the same chunk doesn't schedule anything new.
+		assertNull(window.access(2, 3));
+		assertArrayEquals(new long[] { 7, 12 }, window.access(3, 4));
+		assertArrayEquals(new long[] { 12, 13 }, window.access(4, 5));
+		// Random access.
+		assertNull(window.access(100, 101));
+		assertArrayEquals(new long[] { 102, 104 }, window.access(101, 102));
+	}
+
+	/**
+	 * Test interleaved sequential readers each keep their own readahead window.
+	 */
+	@Test
+	public void testReadaheadWindowTwoReaders() {
+		ReadaheadWindow window = new ReadaheadWindow(2, 8);
+		assertNull(window.access(0, 1));
+		assertNull(window.access(1000, 1001));
+		assertArrayEquals(new long[] { 2, 4 }, window.access(1, 2));
+		assertArrayEquals(new long[] { 1002, 1004 }, window.access(1001, 1002));
+		assertArrayEquals(new long[] { 4, 7 }, window.access(2, 3));
+		assertArrayEquals(new long[] { 1004, 1007 }, window.access(1002, 1003));
+		// A random read doesn't disturb either reader.
+		assertNull(window.access(500, 501));
+		assertArrayEquals(new long[] { 7, 12 }, window.access(3, 4));
+		assertArrayEquals(new long[] { 1007, 1012 }, window.access(1003, 1004));
+	}
+
+	/**
+	 * Test only the least recently used reader is dropped once too many readers are tracked.
+	 */
+	@Test
+	public void testReadaheadWindowEviction() {
+		ReadaheadWindow window = new ReadaheadWindow(2, 8);
+		assertNull(window.access(0, 1));
+		assertArrayEquals(new long[] { 2, 4 }, window.access(1, 2));
+		for (int i = 1; i < ReadaheadWindow.MAX_CURSORS; i++) {
+			assertNull(window.access(i * 1000, i * 1000 + 1));
+		}
+		assertArrayEquals(new long[] { 4, 7 }, window.access(2, 3));
+		assertNull(window.access(100000, 100001));
+		// The reader at 1000 was the least recently used.
+		assertNull(window.access(1001, 1002));
+		assertArrayEquals(new long[] { 7, 12 }, window.access(3, 4));
+	}
+
+	/**
+	 * Test a sequential read with readahead enabled returns the correct content, and places chunks in the cache ahead
+	 * of the reader.
+	 * 
+	 * @throws Exception something went wrong.
+	 */
+	@Test
+	public void testSequentialReadahead() throws Exception {
+		URL url = TestContainer.class.getResource(file_1);
+		File file = Paths.get(url.toURI()).toFile();
+		ChunkCache cache = ChunkCache.create(32 * 1024 * 1024);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try (IAFF4Container container = Containers.open(file, cache)) {
+			AFF4ZipContainer con = (AFF4ZipContainer) container;
+			con.setReadahead(new Readahead(executor, 1024 * 1024));
+			assertNotNull(con.getReadahead());
+			try (SeekableByteChannel channel = con.getImageStream(stream_1).getChannel()) {
+				MessageDigest digest = MessageDigest.getInstance("SHA1");
+				ByteBuffer buffer = ByteBuffer.allocate(4096);
+				while (channel.read(buffer) > 0) {
+					buffer.flip();
+					digest.update(buffer);
+					buffer.clear();
+				}
+				assertEquals(streamSHA1_1, Hex.encodeHexString(digest.digest()));
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertTrue(cache.getSize() > 0);
+	}
+}
@@ -0,0 +1,202 @@
+/*
+  This file is part of AFF4 Java.
+  
+  Copyright (c) 2017-2019 Schatz Forensic Pty Ltd
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+	
+	    http://www.apache.org/licenses/LICENSE-2.0
+	
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.evimetry.aff4.imagestream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+import org.apache.commons.codec.binary.Hex;
+import org.junit.Test;
+
+import com.evimetry.aff4.Containers;
+import com.evimetry.aff4.IAFF4Container;
+import com.evimetry.aff4.IAFF4ImageStream;
+import com.evimetry.aff4.IAFF4Map;
+import com.evimetry.aff4.container.AFF4ZipContainer;
+import com.evimetry.aff4.container.TestContainer;
+
+/**
+ * Test transferring images and streams to a channel.
+ */
+public class TestTransferTo {
+
+	private final String file_1 = "/Base-Linear.aff4";
+	private final String stream_1 = "aff4://c215ba20-5648-4209-a793-1f918c723610";
+	private final String streamSHA1_1 = "fbac22cca549310bc5df03b7560afcf490995fbb";
+	private final String mapSHA1_1 = "7d3d27f667f95f7ec5b9d32121622c0f4b60b48d";
+	private final String segment_1 = "aff4://c215ba20-5648-4209-a793-1f918c723610/00000000";
+	private final String segmentSHA1_1 = "ba85b601a65aef8adf7b0e0fb3144b217d4cd27c";
+
+	private final String file_2 = "/Base-Allocated.aff4";
+	private final String mapSHA1_2 = "e8650e89b262cf0b4b73c025312488d5a6317a26";
+
+	/**
+	 * Test transferring a stream which has a mix of stored and compressed chunks, with transfers that are not chunk
+	 * aligned.
+	 * 
+	 * @throws Exception something went wrong.
+	 */
+	@Test
+	public void testStreamTransfer() throws Exception {
+		try (IAFF4Container container = open(file_1)) {
+			IAFF4ImageStream stream = ((AFF4ZipContainer) container).getImageStream(stream_1);
+			assertEquals(streamSHA1_1, transfer(stream.size(), (p, c, t) -> stream.transferTo(p, c, t), 12345));
+			assertEquals(streamSHA1_1, transfer(stream.size(), (p, c, t) -> stream.transferTo(p, c, t), 1024 * 1024));
+			assertEquals(0, stream.transferTo(stream.size(), 100, new DigestChannel()));
+		}
+	}
+
+	/**
+	 * Test transferring a raw zip segment.
+	 * 
+	 * @throws Exception something went wrong.
+	 */
+	@Test
+	public void testSegmentTransfer() throws Exception {
+		try (IAFF4Container container = open(file_1)) {
+			IAFF4ImageStream stream = ((AFF4ZipContainer) container).getSegment(segment_1);
+			assertEquals(segmentSHA1_1, transfer(stream.size(), (p, c, t) -> stream.transferTo(p, c, t), 12345));
+		}
+	}
+
+	/**
+	 * Test transferring whole images.
+	 * 
+	 * @throws Exception something went wrong.
+	 */
+	@Test
+	public void testMapTransfer() throws Exception {
+		try (IAFF4Container container = open(file_1)) {
+			IAFF4Map map = container.getImages().next().getMap();
+			assertEquals(mapSHA1_1, transfer(map.size(), (p, c, t) -> map.transferTo(p, c, t), 4 * 1024 * 1024 + 1));
+		}
+		try (IAFF4Container container = open(file_2)) {
+			IAFF4Map map = container.getImages().next().getMap();
+			assertEquals(mapSHA1_2, transfer(map.size(), (p, c, t) -> map.transferTo(p, c, t), 4 * 1024 * 1024 + 1));
+		}
+	}
+
+	/**
+	 * Test transferring an image to a file, where stored chunks are transferred between file channels.
+	 * 
+	 * @throws Exception something went wrong.
+	 */
+	@Test
+	public void testMapTransferToFile() throws Exception {
+		Path target = Files.createTempFile("aff4", ".raw");
+		try (IAFF4Container container = open(file_1);
+				FileChannel channel = FileChannel.open(target, StandardOpenOption.WRITE)) {
+			IAFF4Map map = container.getImages().next().getMap();
+			long transferred = 0;
+			while (transferred < map.size()) {
+				long count = map.transferTo(transferred, map.size() - transferred, channel);
+				assertTrue(count > 0);
+				transferred += count;
+			}
+			assertEquals(map.size(), channel.size());
+			assertEquals(mapSHA1_1, sha1(target));
+		} finally {
+			Files.delete(target);
+		}
+	}
+
+	/**
+	 * Test transferring with verification on read enabled.
+	 * 
+	 * @throws Exception something went wrong.
+	 */
+	@Test
+	public void testVerifiedTransfer() throws Exception {
+		try (IAFF4Container container = open(file_1)) {
+			((AFF4ZipContainer) container).setVerifyOnRead(true);
+			IAFF4Map map = container.getImages().next().getMap();
+			// Once to verify the chunks, then again to transfer verified stored chunks directly.
+			assertEquals(mapSHA1_1, transfer(map.size(), (p, c, t) -> map.transferTo(p, c, t), 1024 * 1024));
+			assertEquals(mapSHA1_1, transfer(map.size(), (p, c, t) -> map.transferTo(p, c, t), 1024 * 1024));
+		}
+	}
+
+	private IAFF4Container open(String resource) throws Exception {
+		URL url = TestContainer.class.getResource(resource);
+		File file = Paths.get(url.toURI()).toFile();
+		return Containers.open(file);
+	}
+
+	private String transfer(long size, Transfer transfer, long count) throws Exception {
+		DigestChannel target = new DigestChannel();
+		long position = 0;
+		while (position < size) {
+			long transferred = transfer.transferTo(position, count, target);
+			assertTrue(transferred > 0);
+			assertTrue(transferred <= count);
+			position += transferred;
+		}
+		assertEquals(size, position);
+		return Hex.encodeHexString(target.digest.digest());
+	}
+
+	private String sha1(Path path) throws Exception {
+		MessageDigest md = MessageDigest.getInstance("SHA1");
+		md.update(Files.readAllBytes(path));
+		return Hex.encodeHexString(md.digest());
+	}
+
+	@FunctionalInterface
+	private interface Transfer {
+		long transferTo(long position, long count, WritableByteChannel target) throws IOException;
+	}
+
+	/**
+	 * A channel that calculates the SHA1 of all bytes written to it.
+	 */
+	private static class DigestChannel implements WritableByteChannel {
+
+		private final MessageDigest digest;
+
+		DigestChannel() throws Exception {
+			this.digest = MessageDigest.getInstance("SHA1");
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public int write(ByteBuffer src) {
+			int length = src.remaining();
+			digest.update(src);
+			return length;
+		}
+	}
+}
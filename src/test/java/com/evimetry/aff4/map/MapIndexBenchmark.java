@@ -0,0 +1,133 @@
+/*
+  This file is part of AFF4 Java.
+  
+  Copyright (c) 2017-2019 Schatz Forensic Pty Ltd
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+	
+	    http://www.apache.org/licenses/LICENSE-2.0
+	
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.evimetry.aff4.map;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.evimetry.aff4.IAFF4ImageStream;
+import com.evimetry.aff4.imagestream.ImageStreamFactory;
+import com.evimetry.aff4.map.collection.LongTreap;
+import com.evimetry.aff4.struct.MapEntryPoint;
+
+/**
+ * JMH comparison of map region lookups in the {@link LongTreap} of {@link MapEntryPoint} instances previously used by
+ * {@link AFF4Map}, against the {@link MapIndex} sorted interval index.
+ * <p>
+ * Each structure is built with the given number of regions, and looked up at random offsets. Only one structure is
+ * built per trial, so the 10M entry treap fits the default heap. Run via {@link #main(String[])} using the test
+ * classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MapIndexBenchmark {
+
+	/**
+	 * The number of lookups per benchmark invocation.
+	 */
+	private final static int LOOKUPS = 1024;
+
+	@Param({ "10000", "1000000", "10000000" })
+	public int entries;
+
+	@Param({ "treap", "index" })
+	public String structure;
+
+	private LongTreap<MapEntryPoint> treap;
+	private MapIndex index;
+	private long[] positions;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		IAFF4ImageStream stream = ImageStreamFactory.createZeroStream();
+		Random random = new Random(0x4aff4);
+		MapIndex.Builder builder = "index".equals(structure) ? new MapIndex.Builder(entries) : null;
+		treap = "treap".equals(structure) ? new LongTreap<>() : null;
+		long offset = 0;
+		for (int i = 0; i < entries; i++) {
+			// Regions between 4KiB and 1MiB, similar to an allocated-only image.
+			long length = (1 + random.nextInt(256)) * 4096l;
+			if (builder != null) {
+				builder.add(offset, length, offset, 0, stream);
+			} else {
+				treap.put(offset, MapEntryPoint.create(offset, length, offset, 0, stream));
+			}
+			offset += length;
+		}
+		if (builder != null) {
+			index = builder.build();
+		}
+		positions = new long[LOOKUPS];
+		for (int i = 0; i < LOOKUPS; i++) {
+			positions[i] = (long) (random.nextDouble() * offset);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void teardown() {
+		treap = null;
+		index = null;
+	}
+
+	/**
+	 * Random region lookups, as performed by each map read.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void lookup(Blackhole bh) {
+		if (index != null) {
+			for (long position : positions) {
+				int region = index.find(position);
+				bh.consume(index.getStreamOffset(region) + position - index.getOffset(region));
+			}
+		} else {
+			for (long position : positions) {
+				MapEntryPoint point = treap.get(position);
+				if (point == null) {
+					point = treap.findPrevious(position);
+				}
+				bh.consume(point.getStreamOffset() + position - point.getOffset());
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder().include(MapIndexBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,274 @@
+/*
+  This file is part of AFF4 Java.
+  
+  Copyright (c) 2017-2019 Schatz Forensic Pty Ltd
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+	
+	    http://www.apache.org/licenses/LICENSE-2.0
+	
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.evimetry.aff4.map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.evimetry.aff4.Containers;
+import com.evimetry.aff4.IAFF4Container;
+import com.evimetry.aff4.IAFF4ImageStream;
+import com.evimetry.aff4.IAFF4Map;
+import com.evimetry.aff4.container.AFF4ZipContainer;
+import com.evimetry.aff4.container.TestContainer;
+import com.evimetry.aff4.imagestream.ImageStreamFactory;
+import com.evimetry.aff4.map.collection.LongTreap;
+import com.evimetry.aff4.struct.MapEntryPoint;
+
+/**
+ * Tests for the map interval index.
+ */
+public class TestMapIndex {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testFind() {
+		IAFF4ImageStream zero = ImageStreamFactory.createZeroStream();
+		IAFF4ImageStream unknown = ImageStreamFactory.createUnknownStream();
+		MapIndex index = new MapIndex.Builder()//
+				.add(0x1000, 0x1000, 0, 0, unknown)//
+				.add(0x2000, 0x800, 0x2000, -1, zero)//
+				.add(0x4000, 0x1000, 0x1000, 0, unknown)//
+				.build();
+		assertEquals(3, index.size());
+		assertEquals(-1, index.find(0));
+		assertEquals(-1, index.find(0xfff));
+		assertEquals(0, index.find(0x1000));
+		assertEquals(0, index.find(0x1fff));
+		assertEquals(1, index.find(0x2000));
+		assertEquals(1, index.find(0x3fff));
+		assertEquals(2, index.find(0x4000));
+		assertEquals(2, index.find(Long.MAX_VALUE));
+
+		assertEquals(0x1000, index.getStreamOffset(2));
+		assertEquals(0, index.getStreamID(2));
+		assertEquals(-1, index.getStreamID(1));
+		assertSame(unknown, index.getStream(0));
+		assertSame(zero, index.getStream(1));
+		assertEquals(MapEntryPoint.create(0x4000, 0x1000, 0x1000, 0, unknown), index.getEntry(2));
+	}
+
+	@Test
+	public void testEmpty() {
+		MapIndex index = new MapIndex.Builder().build();
+		assertEquals(0, index.size());
+		assertEquals(-1, index.find(0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOverlap() {
+		IAFF4ImageStream zero = ImageStreamFactory.createZeroStream();
+		new MapIndex.Builder().add(0, 0x1000, 0, -1, zero).add(0x800, 0x1000, 0, -1, zero);
+	}
+
+	@Test
+	public void testAgainstTreap() {
+		IAFF4ImageStream zero = ImageStreamFactory.createZeroStream();
+		Random random = new Random(0x4aff4);
+		LongTreap<MapEntryPoint> treap = new LongTreap<>();
+		MapIndex.Builder builder = new MapIndex.Builder();
+		long offset = 0;
+		for (int i = 0; i < 10000; i++) {
+			long length = 1 + random.nextInt(0x10000);
+			treap.put(offset, MapEntryPoint.create(offset, length, offset, -1, zero));
+			builder.add(offset, length, offset, -1, zero);
+			offset += length + random.nextInt(2) * random.nextInt(0x1000);
+		}
+		MapIndex index = builder.build();
+		assertEquals(treap.size(), index.size());
+		for (int i = 0; i < 100000; i++) {
+			long position = (long) (random.nextDouble() * offset);
+			MapEntryPoint point = treap.get(position);
+			if (point == null) {
+				point = treap.findPrevious(position);
+			}
+			assertEquals(point.getOffset(), index.getOffset(index.find(position)));
+		}
+	}
+
+	@Test
+	public void testLargeStreamID() {
+		IAFF4ImageStream zero = ImageStreamFactory.createZeroStream();
+		IAFF4ImageStream unknown = ImageStreamFactory.createUnknownStream();
+		MapIndex index = new MapIndex.Builder()//
+				.add(0, 0x1000, 0, 0x7fffffff, unknown)//
+				.add(0x1000, 0x1000, 0, 3, zero)//
+				.add(0x2000, 0x1000, 0x1000, 0x7fffffff, unknown)//
+				.build();
+		assertEquals(0x7fffffff, index.getStreamID(0));
+		assertEquals(3, index.getStreamID(1));
+		assertEquals(0x7fffffff, index.getStreamID(2));
+		assertSame(unknown, index.getStream(2));
+	}
+
+	@Test
+	public void testSortByOffset() {
+		Random random = new Random(0x4aff4);
+		long[] offsets = new long[10001];
+		for (int i = 0; i < offsets.length; i++) {
+			// include duplicates, which must retain their original order.
+			offsets[i] = random.nextInt(5000);
+		}
+		int[] order = AFF4MapMaterialiser.sortByOffset(offsets);
+		assertEquals(offsets.length, order.length);
+		for (int i = 1; i < order.length; i++) {
+			assertTrue(offsets[order[i - 1]] <= offsets[order[i]]);
+			if (offsets[order[i - 1]] == offsets[order[i]]) {
+				assertTrue(order[i - 1] < order[i]);
+			}
+		}
+		assertEquals(0, AFF4MapMaterialiser.sortByOffset(new long[0]).length);
+	}
+
+	@Test
+	public void testCoalesce() {
+		IAFF4ImageStream zero = ImageStreamFactory.createZeroStream();
+		IAFF4ImageStream unknown = ImageStreamFactory.createUnknownStream();
+		MapIndex index = new MapIndex.Builder().setCoalescing(true)//
+				.add(0, 0x1000, 0x8000, 0, unknown)//
+				.add(0x1000, 0x1000, 0x9000, 0, unknown)// continues the previous entry.
+				.add(0x2000, 0x1000, 0x1000, 0, unknown)// different stream offset.
+				.add(0x3000, 0x1000, 0x2000, 1, unknown)// different stream.
+				.add(0x4000, 0x1000, 0x4000, -1, zero)//
+				.add(0x5000, 0x1000, 0x0, -1, zero)// symbolic, so stream offset is irrelevant.
+				.add(0x7000, 0x1000, 0x7000, -1, zero)// not contiguous.
+				.build();
+		assertEquals(5, index.size());
+		assertEquals(0x2000, index.getLength(0));
+		assertEquals(0x8000, index.getStreamOffset(0));
+		assertEquals(0x2000, index.getOffset(1));
+		assertEquals(0x3000, index.getOffset(2));
+		assertEquals(0x4000, index.getOffset(3));
+		assertEquals(0x2000, index.getLength(3));
+		assertEquals(0x7000, index.getOffset(4));
+		assertEquals(0, index.find(0x1fff));
+		assertEquals(3, index.find(0x5fff));
+	}
+
+	@Test
+	public void testResolveOverlaps() {
+		long[] offsets = { 0, 0x1000, 0x800, 0x1800, 0x2000, 0x2800 };
+		long[] lengths = { 0x2000, 0x1000, 0x400, 0x1000, 0x800, 0 };
+		long[] streamOffsets = { 0x10000, 0x20000, 0x30000, 0x40000, 0x50000, 0x60000 };
+		int[] streamIDs = { 0, 1, 2, 3, 4, 5 };
+		List<MapEntryPoint> points = new ArrayList<>(
+				AFF4MapMaterialiser.resolveOverlaps(offsets, lengths, streamOffsets, streamIDs));
+		assertEquals(Arrays.asList(//
+				MapEntryPoint.create(0, 0x800, 0x10000, 0, null), //
+				MapEntryPoint.create(0x800, 0x400, 0x30000, 2, null), // inserted into the first entry.
+				MapEntryPoint.create(0xc00, 0x400, 0x10c00, 0, null), //
+				MapEntryPoint.create(0x1000, 0x800, 0x20000, 1, null), // replaces the tail of the first entry.
+				MapEntryPoint.create(0x1800, 0x800, 0x40000, 3, null), //
+				MapEntryPoint.create(0x2000, 0x800, 0x50000, 4, null)), // replaces the tail of the previous entry.
+				points);
+	}
+
+	/**
+	 * Test entries later in the map segment take precedence where they overlap earlier entries.
+	 * 
+	 * @throws Exception something went wrong.
+	 */
+	@Test
+	public void testOverlappingEntries() throws Exception {
+		URL url = TestContainer.class.getResource("/Base-Linear.aff4");
+		File original = Paths.get(url.toURI()).toFile();
+		File file = folder.newFile("overlapping.aff4");
+		// Append entries to the map segment which overlap existing entries.
+		long[][] overlaps = { //
+				{ 0x10000, 0x10000, 0 }, // replaces an entire entry.
+				{ 140000, 10000, 500000 }, // within an entry.
+				{ 300000, 70000, 1000000 }, // spanning two entries.
+		};
+		try (ZipFile zip = new ZipFile(original); ZipArchiveOutputStream out = new ZipArchiveOutputStream(file)) {
+			for (ZipArchiveEntry entry : Collections.list(zip.getEntriesInPhysicalOrder())) {
+				if (!entry.getName().endsWith("/map")) {
+					out.addRawArchiveEntry(entry, zip.getRawInputStream(entry));
+					continue;
+				}
+				byte[] segment = IOUtils.toByteArray(zip.getInputStream(entry));
+				ByteBuffer buffer = ByteBuffer.allocate(segment.length + overlaps.length * MapEntryPoint.getSize())
+						.order(ByteOrder.LITTLE_ENDIAN);
+				buffer.put(segment);
+				for (long[] overlap : overlaps) {
+					buffer.putLong(overlap[0]).putLong(overlap[1]).putLong(overlap[2]).putInt(0);
+				}
+				ZipArchiveEntry replacement = new ZipArchiveEntry(entry.getName());
+				replacement.setMethod(ZipEntry.STORED);
+				replacement.setSize(buffer.capacity());
+				CRC32 crc = new CRC32();
+				crc.update(buffer.array());
+				replacement.setCrc(crc.getValue());
+				out.putArchiveEntry(replacement);
+				out.write(buffer.array());
+				out.closeArchiveEntry();
+			}
+			out.setComment(Containers.getResourceID(original));
+		}
+
+		byte[] expected;
+		try (IAFF4Container container = Containers.open(original)) {
+			IAFF4Map map = container.getImages().next().getMap();
+			expected = readFully(map, map.size());
+			IAFF4ImageStream stream = ((AFF4ZipContainer) container)
+					.getImageStream("aff4://c215ba20-5648-4209-a793-1f918c723610");
+			for (long[] overlap : overlaps) {
+				ByteBuffer buffer = ByteBuffer.wrap(expected, (int) overlap[0], (int) overlap[1]);
+				while (buffer.hasRemaining()) {
+					assertTrue(stream.read(overlap[2] + buffer.position() - overlap[0], buffer) > 0);
+				}
+			}
+		}
+		try (IAFF4Container container = Containers.open(file)) {
+			IAFF4Map map = container.getImages().next().getMap();
+			assertEquals(expected.length, map.size());
+			assertTrue(Arrays.equals(expected, readFully(map, map.size())));
+		}
+	}
+
+	private byte[] readFully(IAFF4Map map, long size) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate((int) size);
+		while (buffer.hasRemaining()) {
+			assertTrue(map.read(buffer.position(), buffer) > 0);
+		}
+		return buffer.array();
+	}
+}
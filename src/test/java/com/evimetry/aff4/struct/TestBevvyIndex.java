@@ -0,0 +1,134 @@
+/*
+  This file is part of AFF4 Java.
+  
+  Copyright (c) 2017-2019 Schatz Forensic Pty Ltd
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+	
+	    http://www.apache.org/licenses/LICENSE-2.0
+	
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.evimetry.aff4.struct;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.junit.Test;
+
+import com.evimetry.aff4.container.ContainerFixtures;
+import com.evimetry.aff4.rdf.NameCodec;
+
+/**
+ * Tests for the packed bevvy index.
+ */
+public class TestBevvyIndex {
+
+	@Test
+	public void testRead() throws Exception {
+		File file = ContainerFixtures.getFile("/Base-Linear.aff4");
+		try (ZipFile zip = new ZipFile(file);
+				FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			BevvyIndex index = new BevvyIndex(ContainerFixtures.LINEAR_STREAM, 0, channel, zip);
+			String name = NameCodec.encode(ContainerFixtures.LINEAR_STREAM + "/00000000.index");
+			ByteBuffer raw = BevvyIndex.readEntry(zip.getEntry(name), channel, zip);
+			int count = raw.remaining() / ImageStreamPoint.getSize();
+			assertTrue(count > 0);
+			assertEquals(0, index.getBevvyID());
+			String bevvy = NameCodec.encode(ContainerFixtures.LINEAR_STREAM + "/00000000");
+			assertEquals(zip.getEntry(bevvy).getDataOffset(), index.getOffset());
+			assertEquals(count, index.getCount());
+			assertEquals(count * ImageStreamPoint.getSize(), index.getWeight());
+			for (int i = 0; i < count; i++) {
+				assertEquals(raw.getLong(i * ImageStreamPoint.getSize()), index.getChunkOffset(i));
+				assertEquals(raw.getInt(i * ImageStreamPoint.getSize() + Long.BYTES), index.getChunkLength(i));
+			}
+			assertHasChunks(index);
+			assertEquals(index.getChunkOffset(count - 1), index.getPoint(count - 1).getOffset());
+			assertNull(index.getPoint(count));
+		}
+	}
+
+	@Test
+	public void testEncodeDecode() throws Exception {
+		File file = ContainerFixtures.getFile("/Base-Linear.aff4");
+		try (ZipFile zip = new ZipFile(file);
+				FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			BevvyIndex index = new BevvyIndex(ContainerFixtures.LINEAR_STREAM, 0, channel, zip);
+			ByteBuffer encoded = index.encode();
+			assertEquals(0, encoded.remaining() % 8);
+			BevvyIndex decoded = BevvyIndex.decode(encoded);
+			assertEquals(0, encoded.position());
+			assertEquals(index.getBevvyID(), decoded.getBevvyID());
+			assertEquals(index.getOffset(), decoded.getOffset());
+			assertEquals(index.getCount(), decoded.getCount());
+			assertEquals(index.getWeight(), decoded.getWeight());
+			for (int i = 0; i < index.getCount(); i++) {
+				assertEquals(index.getChunkOffset(i), decoded.getChunkOffset(i));
+				assertEquals(index.getChunkLength(i), decoded.getChunkLength(i));
+			}
+			assertHasChunks(decoded);
+		}
+	}
+
+	@Test
+	public void testDecodeEmpty() {
+		ByteBuffer encoded = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+		encoded.putInt(3).putInt(0).putLong(0x1000).flip();
+		BevvyIndex index = BevvyIndex.decode(encoded);
+		assertEquals(3, index.getBevvyID());
+		assertEquals(0, index.getCount());
+		assertEquals(0, index.getWeight());
+		assertFalse(index.hasChunk(0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDecodeTruncated() {
+		ByteBuffer encoded = ByteBuffer.allocate(16 + 4 * 12).order(ByteOrder.LITTLE_ENDIAN);
+		encoded.putInt(0).putInt(4).putLong(0).clear();
+		encoded.limit(encoded.capacity() - 4);
+		BevvyIndex.decode(encoded);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDecodeHeaderTruncated() {
+		BevvyIndex.decode(ByteBuffer.allocate(12));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDecodeNegativeCount() {
+		ByteBuffer encoded = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+		encoded.putInt(0).putInt(-1).putLong(0).flip();
+		BevvyIndex.decode(encoded);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDecodeCorruptCount() {
+		// A corrupt count must be rejected before sizing the index arrays from it.
+		ByteBuffer encoded = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+		encoded.putInt(0).putInt(Integer.MAX_VALUE).putLong(0).flip();
+		BevvyIndex.decode(encoded);
+	}
+
+	private void assertHasChunks(BevvyIndex index) {
+		int count = index.getCount();
+		assertTrue(index.hasChunk(0));
+		assertTrue(index.hasChunk(count - 1));
+		assertFalse(index.hasChunk(count));
+		assertFalse(index.hasChunk(-1));
+	}
+}
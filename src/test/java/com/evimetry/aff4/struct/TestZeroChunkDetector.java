@@ -0,0 +1,211 @@
+/*
+  This file is part of AFF4 Java.
+  
+  Copyright (c) 2017-2019 Schatz Forensic Pty Ltd
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+	
+	    http://www.apache.org/licenses/LICENSE-2.0
+	
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.evimetry.aff4.struct;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+import org.junit.Test;
+import org.xerial.snappy.Snappy;
+
+import com.evimetry.aff4.AFF4Lexicon;
+import com.evimetry.aff4.Containers;
+import com.evimetry.aff4.IAFF4Container;
+import com.evimetry.aff4.cache.BufferPool;
+import com.evimetry.aff4.cache.Chunk;
+import com.evimetry.aff4.cache.ChunkCache;
+import com.evimetry.aff4.codec.CompressionCodec;
+import com.evimetry.aff4.container.AFF4ZipContainer;
+import com.evimetry.aff4.container.TestContainer;
+import com.evimetry.aff4.imagestream.AFF4ImageStream;
+
+import net.jpountz.lz4.LZ4Factory;
+
+/**
+ * Test recognition of chunks containing only zeros.
+ */
+public class TestZeroChunkDetector {
+
+	private final int chunkSize = 32768;
+
+	@Test
+	public void testSnappy() throws Exception {
+		testCodec(AFF4Lexicon.SnappyCompression, Snappy.compress(new byte[chunkSize]));
+	}
+
+	@Test
+	public void testLZ4() throws Exception {
+		byte[] compressed = LZ4Factory.fastestJavaInstance().fastCompressor().compress(new byte[chunkSize]);
+		testCodec(AFF4Lexicon.LZ4Compression, compressed);
+	}
+
+	@Test
+	public void testDeflate() throws Exception {
+		testCodec(AFF4Lexicon.DeflateCompression, deflate(new byte[chunkSize], true));
+	}
+
+	@Test
+	public void testZlib() throws Exception {
+		testCodec(AFF4Lexicon.ZlibCompression, deflate(new byte[chunkSize], false));
+	}
+
+	/**
+	 * Test that chunks which are not entirely zero are not learnt.
+	 * 
+	 * @throws Exception something went wrong.
+	 */
+	@Test
+	public void testNonZero() throws Exception {
+		byte[] data = new byte[chunkSize];
+		data[chunkSize - 1] = 1;
+		ZeroChunkDetector detector = new ZeroChunkDetector(chunkSize, chunkSize * 4l);
+		CompressionCodec codec = CompressionCodec.getCodec(AFF4Lexicon.SnappyCompression, chunkSize);
+		Chunk raw = Chunk.wrap(ByteBuffer.wrap(Snappy.compress(data)));
+		Chunk decoded = codec.decompress(raw.getData(), BufferPool.getDefault());
+		assertFalse(detector.learn(raw, decoded));
+		assertFalse(detector.matches(raw));
+		// Chunks too large to hold zeros are never candidates.
+		assertFalse(detector.isCandidate(chunkSize));
+		assertFalse(detector.isCandidate(chunkSize / 2));
+	}
+
+	/**
+	 * Test the known zero chunk bitmap.
+	 */
+	@Test
+	public void testMark() {
+		ZeroChunkDetector detector = new ZeroChunkDetector(chunkSize, chunkSize * 100l);
+		assertFalse(detector.isZero(65));
+		detector.mark(65);
+		assertTrue(detector.isZero(65));
+		assertFalse(detector.isZero(64));
+		// Out of range chunks are ignored.
+		detector.mark(1000);
+		assertFalse(detector.isZero(1000));
+	}
+
+	/**
+	 * Test holes in a stream without zero chunks.
+	 * 
+	 * @throws Exception something went wrong.
+	 */
+	@Test
+	public void testStreamWithoutZeros() throws Exception {
+		URL url = TestContainer.class.getResource("/Base-Linear.aff4");
+		File file = Paths.get(url.toURI()).toFile();
+		try (IAFF4Container container = Containers.open(file)) {
+			AFF4ImageStream stream = (AFF4ImageStream) ((AFF4ZipContainer) container)
+					.getImageStream("aff4://c215ba20-5648-4209-a793-1f918c723610");
+			for (long chunk = 0; chunk * stream.getChunkSize() < stream.size(); chunk++) {
+				assertFalse(stream.isZeroChunk(chunk));
+			}
+			assertEquals(stream.size(), stream.seekHole(0));
+			assertEquals(100, stream.seekData(100));
+			assertEquals(-1, stream.seekHole(stream.size()));
+			assertEquals(-1, stream.seekData(stream.size()));
+		}
+	}
+
+	/**
+	 * Test a zero chunk is decompressed once to learn its compressed form, and then recognised without decompression.
+	 * 
+	 * @param compression The compression method.
+	 * @param compressed The compressed form of a zero chunk.
+	 * @throws Exception something went wrong.
+	 */
+	private void testCodec(AFF4Lexicon compression, byte[] compressed) throws Exception {
+		CountingCodec codec = new CountingCodec(CompressionCodec.getCodec(compression, chunkSize));
+		ZeroChunkDetector detector = new ZeroChunkDetector(chunkSize, chunkSize * 4l);
+		ChunkLoaderFunction loader = new ChunkLoaderFunction("aff4://test", null, null,
+				ChunkCache.create(1024 * 1024), null, chunkSize, 4, codec, null, detector);
+		assertTrue(detector.isCandidate(compressed.length));
+
+		Chunk first = loader.decode(Chunk.wrap(ByteBuffer.wrap(compressed)), codec);
+		assertEquals(1, codec.count.get());
+		assertZero(first);
+		first.release();
+
+		Chunk second = loader.decode(Chunk.wrap(ByteBuffer.wrap(compressed.clone())), codec);
+		assertEquals(1, codec.count.get());
+		assertZero(second);
+		second.release();
+
+		// Same length, different content.
+		byte[] other = compressed.clone();
+		other[other.length - 1] ^= 1;
+		assertFalse(detector.matches(Chunk.wrap(ByteBuffer.wrap(other))));
+	}
+
+	private void assertZero(Chunk chunk) {
+		ByteBuffer data = chunk.getData();
+		assertTrue(data.isReadOnly());
+		assertEquals(chunkSize, data.remaining());
+		byte[] contents = new byte[chunkSize];
+		data.get(contents);
+		assertTrue(Arrays.equals(new byte[chunkSize], contents));
+	}
+
+	private static byte[] deflate(byte[] data, boolean nowrap) {
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap);
+		deflater.setInput(data);
+		deflater.finish();
+		byte[] buffer = new byte[data.length];
+		int length = deflater.deflate(buffer);
+		deflater.end();
+		return Arrays.copyOf(buffer, length);
+	}
+
+	/**
+	 * A codec counting the chunks it decompresses.
+	 */
+	private static class CountingCodec implements CompressionCodec {
+
+		private final CompressionCodec codec;
+		private final AtomicInteger count = new AtomicInteger();
+
+		CountingCodec(CompressionCodec codec) {
+			this.codec = codec;
+		}
+
+		@Override
+		public ByteBuffer decompress(ByteBuffer source) throws IOException {
+			count.incrementAndGet();
+			return codec.decompress(source);
+		}
+
+		@Override
+		public Chunk decompress(ByteBuffer source, BufferPool pool) throws IOException {
+			count.incrementAndGet();
+			return codec.decompress(source, pool);
+		}
+
+		@Override
+		public String getResourceID() {
+			return codec.getResourceID();
+		}
+	}
+}